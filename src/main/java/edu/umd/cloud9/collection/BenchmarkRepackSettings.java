@@ -0,0 +1,220 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Program that measures how the settings of {@link RepackOptions} trade off the size of a repacked
+ * collection, the throughput of scanning it, and the latency of fetching random records from it the
+ * way a forward index does (i.e., seeking to the start of the block that holds the record and
+ * reading up to it). The first records of an existing <code>SequenceFile</code> (e.g., part of a
+ * repacked collection) are rewritten locally with each combination of codec and block size, using
+ * block compression, as well as without compression.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class BenchmarkRepackSettings {
+  private BenchmarkRepackSettings() {}
+
+  private static final String INPUT_OPTION = "input";
+  private static final String CODECS_OPTION = "codecs";
+  private static final String BLOCK_SIZES_OPTION = "block_sizes";
+  private static final String MAX_OPTION = "max";
+  private static final String FETCHES_OPTION = "fetches";
+
+  private static final String DEFAULT_BLOCK_SIZES = "65536,262144,1000000,4000000";
+
+  @SuppressWarnings("static-access")
+  public static void main(String[] args) throws Exception {
+    Options options = new Options();
+    options.addOption(OptionBuilder.withArgName("path").hasArg()
+        .withDescription("SequenceFile to take records from").create(INPUT_OPTION));
+    options.addOption(OptionBuilder.withArgName("list").hasArg()
+        .withDescription("comma-separated codecs (default: all available)").create(CODECS_OPTION));
+    options.addOption(OptionBuilder.withArgName("list").hasArg()
+        .withDescription("comma-separated block sizes (default: " + DEFAULT_BLOCK_SIZES + ")")
+        .create(BLOCK_SIZES_OPTION));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("maximum number of records (default: 100000)").create(MAX_OPTION));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("number of random fetches (default: 1000)").create(FETCHES_OPTION));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("maximum number of records per block")
+        .create(RepackOptions.RECORDS_PER_BLOCK_OPTION));
+
+    CommandLine cmdline = null;
+    CommandLineParser parser = new GnuParser();
+    try {
+      cmdline = parser.parse(options, args);
+    } catch (ParseException exp) {
+      System.err.println("Error parsing command line: " + exp.getMessage());
+      System.exit(-1);
+    }
+
+    if (!cmdline.hasOption(INPUT_OPTION)) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp(BenchmarkRepackSettings.class.getCanonicalName(), options);
+      System.exit(-1);
+    }
+
+    Configuration conf = new Configuration();
+    Path input = new Path(cmdline.getOptionValue(INPUT_OPTION));
+    List<String> codecs = cmdline.hasOption(CODECS_OPTION)
+        ? Arrays.asList(cmdline.getOptionValue(CODECS_OPTION).split(","))
+        : RepackOptions.getAvailableCodecs(conf);
+    String[] blockSizes = (cmdline.hasOption(BLOCK_SIZES_OPTION)
+        ? cmdline.getOptionValue(BLOCK_SIZES_OPTION) : DEFAULT_BLOCK_SIZES).split(",");
+    int max = cmdline.hasOption(MAX_OPTION)
+        ? Integer.parseInt(cmdline.getOptionValue(MAX_OPTION)) : 100000;
+    int fetches = cmdline.hasOption(FETCHES_OPTION)
+        ? Integer.parseInt(cmdline.getOptionValue(FETCHES_OPTION)) : 1000;
+    int recordsPerBlock = cmdline.hasOption(RepackOptions.RECORDS_PER_BLOCK_OPTION)
+        ? Integer.parseInt(cmdline.getOptionValue(RepackOptions.RECORDS_PER_BLOCK_OPTION)) : 0;
+
+    System.out.println(String.format("%-8s %10s %10s %8s %10s %10s %9s %9s %9s", "codec", "block",
+        "size (MB)", "records", "scan rec/s", "scan MB/s", "fetch avg", "p50 (ms)", "p99 (ms)"));
+
+    Configuration settings = new Configuration(conf);
+    settings.set(RepackOptions.COMPRESSION_TYPE_PROPERTY, "none");
+    run(conf, settings, input, max, fetches, "none", "-");
+
+    for (String codec : codecs) {
+      for (String blockSize : blockSizes) {
+        settings = new Configuration(conf);
+        settings.set(RepackOptions.COMPRESSION_TYPE_PROPERTY, "block");
+        settings.set(RepackOptions.CODEC_PROPERTY, codec);
+        settings.setInt(RepackOptions.BLOCK_SIZE_PROPERTY, Integer.parseInt(blockSize));
+        settings.setInt(RepackOptions.RECORDS_PER_BLOCK_PROPERTY, recordsPerBlock);
+        try {
+          RepackOptions.getCodecClass(settings);
+        } catch (IllegalArgumentException e) {
+          System.out.println(String.format("%-8s %s", codec, e.getMessage()));
+          break;
+        }
+        run(conf, settings, input, max, fetches, codec, blockSize);
+      }
+    }
+  }
+
+  private static void run(Configuration conf, Configuration settings, Path input, int max,
+      int fetches, String codec, String blockSize) throws IOException {
+    FileSystem local = FileSystem.getLocal(conf);
+    File tmp = File.createTempFile("repack", ".seq");
+    tmp.delete();
+    Path file = local.makeQualified(new Path(tmp.getAbsolutePath()));
+
+    try {
+      // Rewrite the records with the settings.
+      SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(input));
+      Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+      Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+      SequenceFile.Writer writer = RepackOptions.createWriter(settings, file, reader.getKeyClass(),
+          reader.getValueClass(), null);
+      int recordsPerBlock = RepackOptions.getRecordsPerBlock(settings);
+      int n = 0;
+      while (n < max && reader.next(key, value)) {
+        writer.append(key, value);
+        n++;
+        if (recordsPerBlock > 0 && n % recordsPerBlock == 0) {
+          writer.sync();
+        }
+      }
+      writer.close();
+      reader.close();
+      long size = local.getFileStatus(file).getLen();
+
+      // Scan the file, noting where each block (or record, without block compression) starts.
+      boolean blocks = RepackOptions.getCompressionType(settings)
+          == SequenceFile.CompressionType.BLOCK;
+      List<Long> offsets = Lists.newArrayList();
+      List<Integer> firsts = Lists.newArrayList();
+      reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+      long startTime = System.nanoTime();
+      long pos = reader.getPosition();
+      int i = 0;
+      while (reader.next(key, value)) {
+        if (!blocks || reader.syncSeen() || i == 0) {
+          offsets.add(pos);
+          firsts.add(i);
+        }
+        pos = reader.getPosition();
+        i++;
+      }
+      long scanTime = System.nanoTime() - startTime;
+
+      // Fetch random records.
+      Random random = new Random(42);
+      long[] times = new long[fetches];
+      int[] firstRecords = new int[firsts.size()];
+      for (int j = 0; j < firstRecords.length; j++) {
+        firstRecords[j] = firsts.get(j);
+      }
+      for (int j = 0; j < fetches && n > 0; j++) {
+        int record = random.nextInt(n);
+        int block = Arrays.binarySearch(firstRecords, record);
+        if (block < 0) {
+          block = -block - 2;
+        }
+
+        startTime = System.nanoTime();
+        reader.seek(offsets.get(block));
+        for (int k = firstRecords[block]; k <= record; k++) {
+          reader.next(key, value);
+        }
+        times[j] = System.nanoTime() - startTime;
+      }
+      reader.close();
+      Arrays.sort(times);
+
+      long total = 0;
+      for (long t : times) {
+        total += t;
+      }
+      System.out.println(String.format("%-8s %10s %10.2f %8d %10.0f %10.2f %9.3f %9.3f %9.3f",
+          codec, blockSize, size / 1e6, n, n / (scanTime / 1e9), size / 1e6 / (scanTime / 1e9),
+          fetches == 0 ? 0.0 : total / 1e6 / fetches,
+          fetches == 0 ? 0.0 : times[fetches / 2] / 1e6,
+          fetches == 0 ? 0.0 : times[Math.min(fetches - 1, fetches * 99 / 100)] / 1e6));
+    } finally {
+      local.delete(file, false);
+      local.delete(new Path(file.getParent(), "." + file.getName() + ".crc"), false);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Compact, bidirectional table of docids for collections whose docnos run sequentially from one.
+ * Instead of one {@code String} object per document, all docids are stored back-to-back as UTF-8
+ * in a single byte array with an offset table, and docid to docno lookups go through an
+ * open-addressing hash table of docnos that compares bytes in place. Lookups in either direction
+ * are constant time, and the heap footprint is a fraction of that of a {@code String[]}.
+ * </p>
+ *
+ * <p>
+ * Tables can be built from the traditional mappings data format (a count followed by the docids as
+ * {@code writeUTF} strings), or read from a compact binary format written by
+ * {@link #write(DataOutput)}, which is identified by a leading magic number. The {@code main} of
+ * this class converts a mappings file from the traditional format into the compact format.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class CompactDocidTable {
+  private static final Logger LOG = Logger.getLogger(CompactDocidTable.class);
+
+  /**
+   * Magic number at the beginning of the compact format. Since it's negative, it can't be confused
+   * with the document count at the beginning of the traditional format.
+   */
+  public static final int MAGIC = 0xCDD0C1D0;
+
+  private static final int VERSION = 1;
+
+  // Largest hash table that can be allocated, which caps the number of docids at about 715 million.
+  static final int MAX_TABLE_SIZE = 1 << 30;
+
+  // docid of docno i is stored in data[offsets[i - 1], offsets[i]).
+  private final byte[] data;
+  private final int[] offsets;
+  private final int[] table;
+  private final int mask;
+
+  private CompactDocidTable(byte[] data, int[] offsets) {
+    this.data = data;
+    this.offsets = offsets;
+
+    int n = size();
+    int capacity = tableSize(n);
+    this.table = new int[capacity];
+    this.mask = capacity - 1;
+
+    for (int docno = 1; docno <= n; docno++) {
+      int slot = hash(data, offsets[docno - 1], offsets[docno]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = docno;
+    }
+  }
+
+  /**
+   * Builds a table from an array of docids, where the docid for docno {@code i} is at index
+   * position {@code i}. The entry at index position zero is ignored.
+   *
+   * @param docids array of docids
+   * @return the table
+   */
+  public static CompactDocidTable fromArray(String[] docids) {
+    Preconditions.checkNotNull(docids);
+
+    Builder builder = new Builder();
+    for (int i = 1; i < docids.length; i++) {
+      builder.add(docids[i]);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the number of docids in the table.
+   */
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * Returns the docno for a particular docid, or -1 if the docid isn't in the table.
+   */
+  public int getDocno(String docid) {
+    byte[] bytes = docid.getBytes(Charsets.UTF_8);
+    int slot = hash(bytes, 0, bytes.length) & mask;
+
+    while (table[slot] != 0) {
+      int docno = table[slot];
+      if (matches(docno, bytes)) {
+        return docno;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the docid for a particular docno.
+   */
+  public String getDocid(int docno) {
+    if (docno < 1 || docno > size()) {
+      throw new ArrayIndexOutOfBoundsException(docno);
+    }
+
+    int start = offsets[docno - 1];
+    return new String(data, start, offsets[docno] - start, Charsets.UTF_8);
+  }
+
+  private boolean matches(int docno, byte[] bytes) {
+    int start = offsets[docno - 1];
+    if (offsets[docno] - start != bytes.length) {
+      return false;
+    }
+
+    for (int i = 0; i < bytes.length; i++) {
+      if (data[start + i] != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Returns the size of a hash table for n docids: the smallest power of two that keeps the load
+  // factor at or below two thirds. Computed in long, since n * 1.5 may exceed the range of an int.
+  static int tableSize(int n) {
+    Preconditions.checkArgument(n >= 0);
+    long size = Long.highestOneBit(Math.max(2L, n + n / 2L) - 1) << 1;
+    if (size > MAX_TABLE_SIZE) {
+      throw new IllegalArgumentException("Too many docids for a hash table: " + n
+          + " (the table would hold " + size + " slots, at most " + MAX_TABLE_SIZE + ")");
+    }
+    return (int) size;
+  }
+
+  // FNV-1a, followed by a final mix so that the low-order bits are usable as a slot index.
+  static int hash(byte[] bytes, int start, int end) {
+    int h = 0x811c9dc5;
+    for (int i = start; i < end; i++) {
+      h ^= bytes[i];
+      h *= 0x01000193;
+    }
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    return h;
+  }
+
+  /**
+   * Serializes this table in the compact format.
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(size());
+    out.writeInt(data.length);
+    out.write(data);
+    for (int i = 1; i < offsets.length; i++) {
+      out.writeInt(offsets[i]);
+    }
+  }
+
+  /**
+   * Deserializes a table in the compact format, starting immediately after the magic number.
+   */
+  private static CompactDocidTable readCompact(DataInput in) throws IOException {
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported docid table version: " + version);
+    }
+
+    int n = in.readInt();
+    byte[] data = new byte[in.readInt()];
+    in.readFully(data);
+
+    int[] offsets = new int[n + 1];
+    for (int i = 1; i <= n; i++) {
+      offsets[i] = in.readInt();
+    }
+
+    return new CompactDocidTable(data, offsets);
+  }
+
+  /**
+   * Reads a mappings file in either the traditional or the compact format.
+   *
+   * @param p path to the mappings file
+   * @param fs appropriate {@code FileSystem}
+   * @return the table
+   * @throws IOException
+   */
+  public static CompactDocidTable read(Path p, FileSystem fs) throws IOException {
+    Preconditions.checkNotNull(p);
+    Preconditions.checkNotNull(fs);
+
+    FSDataInputStream in = fs.open(p);
+    try {
+      int n = in.readInt();
+      if (n == MAGIC) {
+        return readCompact(in);
+      }
+
+      Builder builder = new Builder();
+      for (int i = 0; i < n; i++) {
+        builder.add(in.readUTF());
+      }
+      return builder.build();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Incrementally builds a table; docids must be added in docno order, starting from docno one.
+   */
+  public static class Builder {
+    private byte[] data = new byte[1024];
+    private int[] offsets = new int[256];
+    private int n = 0;
+
+    /**
+     * Adds the docid for the next docno.
+     */
+    public Builder add(String docid) {
+      Preconditions.checkNotNull(docid);
+      byte[] bytes = docid.getBytes(Charsets.UTF_8);
+
+      int start = offsets[n];
+      if (start + bytes.length > data.length) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, start + bytes.length));
+      }
+      System.arraycopy(bytes, 0, data, start, bytes.length);
+
+      if (n + 1 == offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[++n] = start + bytes.length;
+
+      return this;
+    }
+
+    /**
+     * Returns the table holding all docids added so far.
+     */
+    public CompactDocidTable build() {
+      return new CompactDocidTable(Arrays.copyOf(data, offsets[n]), Arrays.copyOf(offsets, n + 1));
+    }
+  }
+
+  /**
+   * Converts a mappings file from the traditional format into the compact format.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("usage: [input-mapping-file] [output-mapping-file]");
+      System.exit(-1);
+    }
+
+    FileSystem fs = FileSystem.get(new Configuration());
+
+    LOG.info("Reading " + args[0]);
+    CompactDocidTable table = read(new Path(args[0]), fs);
+
+    LOG.info("Writing " + table.size() + " docids to " + args[1]);
+    FSDataOutputStream out = fs.create(new Path(args[1]), true);
+    table.write(out);
+    out.close();
+    LOG.info("Done!");
+  }
+}
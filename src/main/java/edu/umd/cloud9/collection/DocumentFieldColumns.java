@@ -0,0 +1,444 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Columnar store for a few small fields of the documents in a repacked collection (e.g., their
+ * docids, URLs, and titles), so that jobs that only need those fields don't have to read and
+ * decompress the content of every document. The repack tools write a column file alongside each
+ * <code>SequenceFile</code> that they write, holding the fields of the same documents in the same
+ * order, together with their keys (i.e., docnos). Column files are kept in the {@link #DIRECTORY}
+ * subdirectory of the output, so that they are ignored by the input formats for the collection
+ * itself; {@link DocumentFieldColumnsInputFormat} reads them.
+ * </p>
+ *
+ * <p>
+ * A column file is a header with the names of the fields, followed by groups of
+ * {@link #ROWS_PER_GROUP} documents. Within a group, the keys and each field are stored as separate
+ * compressed chunks, so that a reader only decompresses the fields that it asks for, and seeks over
+ * the rest.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class DocumentFieldColumns {
+  /**
+   * Name of the subdirectory of the output that holds the column files.
+   */
+  public static final String DIRECTORY = "_columns";
+
+  /**
+   * Number of documents in each group of a column file.
+   */
+  public static final int ROWS_PER_GROUP = 16384;
+
+  private static final int MAGIC = 0x4446434C; // "DFCL"
+
+  private DocumentFieldColumns() {}
+
+  /**
+   * Returns the path of the column file for a file of a repacked collection.
+   */
+  public static Path getColumnsPath(Path file) {
+    return new Path(new Path(file.getParent(), DIRECTORY), file.getName());
+  }
+
+  /**
+   * Extracts fields from documents. The fields that are known by default are <code>docid</code>,
+   * <code>url</code> (for {@link WebDocument}s), and <code>title</code> (the HTML title of the
+   * content). Subclasses can extract other fields, or extract them differently for particular kinds
+   * of documents.
+   */
+  public static class FieldExtractor {
+    private final HTMLFieldScanner titleScanner = new HTMLFieldScanner("title");
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Returns the value of a field of a document, or <code>null</code> if it doesn't have one.
+     */
+    public String extract(Indexable doc, String field) {
+      if (field.equals("docid")) {
+        return doc.getDocid();
+      } else if (field.equals("url")) {
+        return doc instanceof WebDocument ? ((WebDocument) doc).getURL() : null;
+      } else if (field.equals("title")) {
+        String content = doc.getContent();
+        return content == null ? null : findTitle(content);
+      }
+      return null;
+    }
+
+    /**
+     * Returns the text of the first <code>title</code> element of an HTML document, with
+     * whitespace collapsed, or <code>null</code> if there's none.
+     */
+    public String findTitle(String html) {
+      buffer.setLength(0);
+      if (titleScanner.scan(html, buffer, 1) == 0) {
+        return null;
+      }
+
+      // Skip the start tag and the end tag (if any).
+      int start = buffer.indexOf(">") + 1;
+      int end = buffer.length() - 1;
+      int close = buffer.lastIndexOf("</");
+      if (close >= start) {
+        end = close;
+      }
+      return buffer.substring(start, end).trim().replaceAll("\\s+", " ");
+    }
+  }
+
+  /**
+   * Creates a writer for the column file of a file of a repacked collection, with the fields and
+   * extractor given by {@link RepackOptions#COLUMNS_PROPERTY} and
+   * {@link RepackOptions#FIELD_EXTRACTOR_PROPERTY}.
+   *
+   * @return the writer, or <code>null</code> if no fields are to be written as columns
+   */
+  public static Writer createWriter(Configuration conf, Path file) throws IOException {
+    String[] fields = RepackOptions.getColumns(conf);
+    if (fields.length == 0) {
+      return null;
+    }
+    FieldExtractor extractor = ReflectionUtils.newInstance(conf.getClass(
+        RepackOptions.FIELD_EXTRACTOR_PROPERTY, FieldExtractor.class, FieldExtractor.class), conf);
+    return new Writer(conf, getColumnsPath(file), fields, extractor);
+  }
+
+  /**
+   * Returns the key of a record as a number: the value of an {@code IntWritable} or
+   * {@code LongWritable}, or otherwise the position of the record.
+   */
+  public static long getKey(Object key, long position) {
+    if (key instanceof IntWritable) {
+      return ((IntWritable) key).get();
+    } else if (key instanceof LongWritable) {
+      return ((LongWritable) key).get();
+    }
+    return position;
+  }
+
+  /**
+   * Writes a column file.
+   */
+  public static class Writer implements Closeable {
+    private final FSDataOutputStream out;
+    private final String[] fields;
+    private final FieldExtractor extractor;
+    private final CompressionCodec codec;
+    private final Compressor compressor;
+
+    // Column 0 holds the keys, and column i + 1 holds field i.
+    private final DataOutputBuffer[] columns;
+    private final DataOutputBuffer compressed = new DataOutputBuffer();
+    private int rows = 0;
+    private long position = 0;
+
+    /**
+     * Creates a writer.
+     *
+     * @param conf configuration
+     * @param path the column file
+     * @param fields names of the fields to write
+     * @param extractor extracts the fields from documents
+     * @throws IOException
+     */
+    public Writer(Configuration conf, Path path, String[] fields, FieldExtractor extractor)
+        throws IOException {
+      Preconditions.checkArgument(fields.length > 0);
+      this.fields = fields.clone();
+      this.extractor = Preconditions.checkNotNull(extractor);
+      codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+      compressor = CodecPool.getCompressor(codec);
+
+      columns = new DataOutputBuffer[fields.length + 1];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = new DataOutputBuffer();
+      }
+
+      out = path.getFileSystem(conf).create(path, true);
+      out.writeInt(MAGIC);
+      WritableUtils.writeVInt(out, fields.length);
+      for (String field : fields) {
+        out.writeUTF(field);
+      }
+    }
+
+    /**
+     * Appends the fields of a record, which should be the next record of the file that the column
+     * file goes with.
+     */
+    public void append(Object key, Object value) throws IOException {
+      WritableUtils.writeVLong(columns[0], getKey(key, position++));
+      for (int i = 0; i < fields.length; i++) {
+        String s = value instanceof Indexable ? extractor.extract((Indexable) value, fields[i])
+            : null;
+        if (s == null) {
+          WritableUtils.writeVInt(columns[i + 1], 0);
+        } else {
+          byte[] bytes = s.getBytes(Charsets.UTF_8);
+          WritableUtils.writeVInt(columns[i + 1], bytes.length + 1);
+          columns[i + 1].write(bytes);
+        }
+      }
+
+      if (++rows == ROWS_PER_GROUP) {
+        writeGroup();
+      }
+    }
+
+    private void writeGroup() throws IOException {
+      if (rows == 0) {
+        return;
+      }
+
+      // Each chunk is compressed separately, so that readers can skip the ones they don't need.
+      int[] lengths = new int[columns.length];
+      compressed.reset();
+      for (int i = 0; i < columns.length; i++) {
+        int start = compressed.getLength();
+        compressor.reset();
+        CompressionOutputStream stream = codec.createOutputStream(compressed, compressor);
+        stream.write(columns[i].getData(), 0, columns[i].getLength());
+        stream.finish();
+        lengths[i] = compressed.getLength() - start;
+      }
+
+      out.writeInt(rows);
+      for (int i = 0; i < columns.length; i++) {
+        out.writeInt(columns[i].getLength());
+        out.writeInt(lengths[i]);
+      }
+      out.write(compressed.getData(), 0, compressed.getLength());
+
+      for (DataOutputBuffer column : columns) {
+        column.reset();
+      }
+      rows = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        writeGroup();
+        out.close();
+      } finally {
+        CodecPool.returnCompressor(compressor);
+      }
+    }
+  }
+
+  /**
+   * Reads some or all of the fields of a column file.
+   */
+  public static class Reader implements Closeable {
+    private final FSDataInputStream in;
+    private final long length;
+    private final String[] fileFields;
+    private final String[] fields;
+    private final int[] columns;
+    private final CompressionCodec codec;
+    private final Decompressor decompressor;
+
+    private final DataInputBuffer[] buffers;
+    private byte[][] data;
+    private byte[] compressed = new byte[0];
+    private int rows = 0;
+
+    /**
+     * Creates a reader.
+     *
+     * @param conf configuration
+     * @param path the column file
+     * @param fields names of the fields to read, or <code>null</code> for all of them
+     * @throws IOException if the file can't be read, or doesn't have some field
+     */
+    public Reader(Configuration conf, Path path, String[] fields) throws IOException {
+      FileSystem fs = path.getFileSystem(conf);
+      length = fs.getFileStatus(path).getLen();
+      in = fs.open(path);
+      if (in.readInt() != MAGIC) {
+        in.close();
+        throw new IOException(path + " is not a column file!");
+      }
+
+      fileFields = new String[WritableUtils.readVInt(in)];
+      for (int i = 0; i < fileFields.length; i++) {
+        fileFields[i] = in.readUTF();
+      }
+
+      this.fields = fields == null ? fileFields.clone() : fields.clone();
+      columns = new int[this.fields.length];
+      for (int i = 0; i < this.fields.length; i++) {
+        int column = Arrays.asList(fileFields).indexOf(this.fields[i]);
+        if (column < 0) {
+          in.close();
+          throw new IOException(path + " doesn't have the field \"" + this.fields[i] + "\"!");
+        }
+        columns[i] = column + 1;
+      }
+
+      codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+      decompressor = CodecPool.getDecompressor(codec);
+      buffers = new DataInputBuffer[fileFields.length + 1];
+      data = new byte[fileFields.length + 1][0];
+    }
+
+    /**
+     * Returns the names of all the fields in the file.
+     */
+    public String[] getFileFields() {
+      return fileFields;
+    }
+
+    /**
+     * Returns the names of the fields that are read.
+     */
+    public String[] getFields() {
+      return fields;
+    }
+
+    /**
+     * Reads the key and the fields of the next record.
+     *
+     * @return <code>false</code> at the end of the file
+     */
+    public boolean next(LongWritable key, DocumentFields value) throws IOException {
+      if (rows == 0 && !readGroup()) {
+        return false;
+      }
+      rows--;
+
+      if (!Arrays.equals(value.getNames(), fields)) {
+        value.setNames(fields);
+      }
+      key.set(WritableUtils.readVLong(buffers[0]));
+      for (int i = 0; i < columns.length; i++) {
+        DataInputBuffer buffer = buffers[columns[i]];
+        int n = WritableUtils.readVInt(buffer);
+        if (n == 0) {
+          value.set(i, null);
+        } else {
+          value.set(i, new String(buffer.getData(), buffer.getPosition(), n - 1, Charsets.UTF_8));
+          buffer.skip(n - 1);
+        }
+      }
+      return true;
+    }
+
+    private boolean readGroup() throws IOException {
+      if (in.getPos() >= length) {
+        return false;
+      }
+
+      rows = in.readInt();
+      int[] rawLengths = new int[fileFields.length + 1];
+      int[] lengths = new int[fileFields.length + 1];
+      for (int i = 0; i < lengths.length; i++) {
+        rawLengths[i] = in.readInt();
+        lengths[i] = in.readInt();
+      }
+
+      for (int i = 0; i < lengths.length; i++) {
+        if (i != 0 && !isRead(i)) {
+          IOUtils.skipFully(in, lengths[i]);
+          continue;
+        }
+
+        if (compressed.length < lengths[i]) {
+          compressed = new byte[lengths[i]];
+        }
+        in.readFully(compressed, 0, lengths[i]);
+        if (data[i].length < rawLengths[i]) {
+          data[i] = new byte[rawLengths[i]];
+        }
+        decompressor.reset();
+        CompressionInputStream stream = codec.createInputStream(
+            new ByteArrayInputStream(compressed, 0, lengths[i]), decompressor);
+        IOUtils.readFully(stream, data[i], 0, rawLengths[i]);
+
+        if (buffers[i] == null) {
+          buffers[i] = new DataInputBuffer();
+        }
+        buffers[i].reset(data[i], rawLengths[i]);
+      }
+      return true;
+    }
+
+    private boolean isRead(int column) {
+      for (int c : columns) {
+        if (c == column) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns the position in the file.
+     */
+    public long getPosition() throws IOException {
+      return in.getPos();
+    }
+
+    /**
+     * Returns the length of the file.
+     */
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        in.close();
+      } finally {
+        CodecPool.returnDecompressor(decompressor);
+      }
+    }
+  }
+}
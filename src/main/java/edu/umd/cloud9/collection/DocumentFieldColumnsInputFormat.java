@@ -0,0 +1,164 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Hadoop {@code InputFormat} for reading the columns written by {@link DocumentFieldColumns}
+ * alongside a repacked collection ({@code org.apache.hadoop.mapreduce} API). Keys are the keys of
+ * the documents in the collection (i.e., their docnos), and values are the fields of the documents
+ * that are asked for with {@link #setColumns(Job, String...)} (all of them by default). Only the
+ * columns of those fields are read, so jobs that need, say, just the titles of documents don't pay
+ * for reading their content.
+ * </p>
+ *
+ * <p>
+ * Input paths can be the output directories of the repack tools, or files in them, or the column
+ * files themselves. Each column file is read as a single split.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class DocumentFieldColumnsInputFormat extends FileInputFormat<LongWritable, DocumentFields> {
+  /**
+   * Configuration property for the comma-separated names of the fields to read.
+   */
+  public static final String COLUMNS_PROPERTY = "Cloud9.Columns";
+
+  /**
+   * Sets the fields to read.
+   */
+  public static void setColumns(Job job, String... fields) {
+    job.getConfiguration().setStrings(COLUMNS_PROPERTY, fields);
+  }
+
+  /**
+   * Returns the fields to read, or <code>null</code> for all of them.
+   */
+  public static String[] getColumns(Configuration conf) {
+    String[] fields = conf.getTrimmedStrings(COLUMNS_PROPERTY);
+    return fields.length == 0 ? null : fields;
+  }
+
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    return false;
+  }
+
+  @Override
+  protected List<FileStatus> listStatus(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    List<FileStatus> files = Lists.newArrayList();
+    for (Path path : getInputPaths(job)) {
+      FileSystem fs = path.getFileSystem(conf);
+      FileStatus status = fs.getFileStatus(path);
+
+      if (status.isDirectory()) {
+        Path dir = path.getName().equals(DocumentFieldColumns.DIRECTORY) ? path
+            : new Path(path, DocumentFieldColumns.DIRECTORY);
+        if (!fs.exists(dir)) {
+          throw new IOException("No columns in " + path + "!");
+        }
+        for (FileStatus file : fs.listStatus(dir)) {
+          String name = file.getPath().getName();
+          if (file.isFile() && !name.startsWith("_") && !name.startsWith(".")) {
+            files.add(file);
+          }
+        }
+      } else if (path.getParent().getName().equals(DocumentFieldColumns.DIRECTORY)) {
+        files.add(status);
+      } else {
+        Path columns = DocumentFieldColumns.getColumnsPath(path);
+        if (!fs.exists(columns)) {
+          throw new IOException("No columns for " + path + "!");
+        }
+        files.add(fs.getFileStatus(columns));
+      }
+    }
+    return files;
+  }
+
+  @Override
+  public RecordReader<LongWritable, DocumentFields> createRecordReader(InputSplit split,
+      TaskAttemptContext context) throws IOException, InterruptedException {
+    return new DocumentFieldColumnsRecordReader();
+  }
+
+  /**
+   * Hadoop {@code RecordReader} for reading a column file.
+   */
+  public static class DocumentFieldColumnsRecordReader extends
+      RecordReader<LongWritable, DocumentFields> {
+    private DocumentFieldColumns.Reader reader;
+    private final LongWritable key = new LongWritable();
+    private final DocumentFields value = new DocumentFields();
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException,
+        InterruptedException {
+      Configuration conf = context.getConfiguration();
+      reader = new DocumentFieldColumns.Reader(conf, ((FileSplit) split).getPath(),
+          getColumns(conf));
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      return reader.next(key, value);
+    }
+
+    @Override
+    public LongWritable getCurrentKey() throws IOException, InterruptedException {
+      return key;
+    }
+
+    @Override
+    public DocumentFields getCurrentValue() throws IOException, InterruptedException {
+      return value;
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+      return reader.getLength() == 0 ? 1.0f
+          : Math.min(1.0f, reader.getPosition() / (float) reader.getLength());
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+}
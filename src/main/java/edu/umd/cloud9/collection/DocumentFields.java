@@ -0,0 +1,142 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Values of a few named fields of a document (e.g., its docid, URL, and title), as read from the
+ * columns written by {@link DocumentFieldColumns}. A field that a document doesn't have is
+ * <code>null</code>.
+ *
+ * @author Jimmy Lin
+ */
+public class DocumentFields implements Writable {
+  private String[] names = new String[0];
+  private String[] values = new String[0];
+
+  /**
+   * Creates an empty {@code DocumentFields} object.
+   */
+  public DocumentFields() {}
+
+  /**
+   * Sets the names of the fields, and clears their values.
+   */
+  public void setNames(String[] names) {
+    this.names = names.clone();
+    this.values = new String[names.length];
+  }
+
+  /**
+   * Returns the names of the fields.
+   */
+  public String[] getNames() {
+    return names;
+  }
+
+  /**
+   * Returns the number of fields.
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * Returns the value of the <i>i</i>th field.
+   */
+  public String get(int i) {
+    return values[i];
+  }
+
+  /**
+   * Returns the value of a field, or <code>null</code> if there's no such field.
+   */
+  public String get(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return values[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Sets the value of the <i>i</i>th field.
+   */
+  public void set(int i, String value) {
+    values[i] = value;
+  }
+
+  /**
+   * Serializes this object.
+   */
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, names.length);
+    for (int i = 0; i < names.length; i++) {
+      out.writeUTF(names[i]);
+      out.writeBoolean(values[i] != null);
+      if (values[i] != null) {
+        WritableUtils.writeString(out, values[i]);
+      }
+    }
+  }
+
+  /**
+   * Deserializes this object.
+   */
+  public void readFields(DataInput in) throws IOException {
+    int n = WritableUtils.readVInt(in);
+    if (n != names.length) {
+      names = new String[n];
+      values = new String[n];
+    }
+    for (int i = 0; i < n; i++) {
+      names[i] = in.readUTF();
+      values[i] = in.readBoolean() ? WritableUtils.readString(in) : null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < names.length; i++) {
+      sb.append(i == 0 ? "" : "\t").append(names[i]).append('=').append(values[i]);
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof DocumentFields)) {
+      return false;
+    }
+    DocumentFields other = (DocumentFields) o;
+    return Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+  }
+}
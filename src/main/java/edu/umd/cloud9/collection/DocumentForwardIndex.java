@@ -17,6 +17,7 @@
 package edu.umd.cloud9.collection;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -57,6 +58,17 @@ public interface DocumentForwardIndex<T extends Indexable> {
    */
   T getDocument(String docid);
 
+  /**
+   * Fetches the documents for a batch of docnos. Implementations are free to reorder and coalesce
+   * the underlying reads, but documents are returned in the same order as the docnos; an invalid
+   * docno yields a {@code null} entry. See {@link DocumentForwardIndexUtils} for a generic
+   * implementation and for parallel and asynchronous variants.
+   *
+   * @param docnos docnos of the documents to fetch
+   * @return the document objects
+   */
+  List<T> getDocuments(int[] docnos);
+
   /**
    * Returns the first docno in the collection.
    *
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import javax.servlet.ServletException;
@@ -30,8 +31,14 @@ import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
+import org.mortbay.jetty.Handler;
 import org.mortbay.jetty.Server;
+import org.mortbay.jetty.nio.SelectChannelConnector;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.FilterHolder;
 import org.mortbay.jetty.servlet.ServletHolder;
+import org.mortbay.servlet.GzipFilter;
+import org.mortbay.thread.QueuedThreadPool;
 
 import edu.umd.cloud9.mapreduce.NullInputFormat;
 import edu.umd.cloud9.mapreduce.NullMapper;
@@ -49,6 +56,11 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
   private static final String INDEX_KEY = "index";
   private static final String DOCNO_MAPPING_KEY = "docnoMapping";
   private static final String TMP_KEY = "tmp";
+  private static final String THREADS_KEY = "Cloud9.ForwardIndexServerThreads";
+
+  private static final int DEFAULT_THREADS = 64;
+  private static final int MAX_IDLE_TIME = 30000;
+  static final int MAX_BATCH_SIZE = 10000;
 
   @SuppressWarnings({ "unchecked", "rawtypes" })
   private static class MyMapper extends NullMapper {
@@ -78,24 +90,16 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
         INDEX = (DocumentForwardIndex<Indexable>) Class.forName(indexClass).newInstance();
         INDEX.loadIndex(new Path(indexFile), new Path(mappingFile), fs);
 
-        Server server = new Server(port);
-        org.mortbay.jetty.servlet.Context root = new org.mortbay.jetty.servlet.Context(server, "/",
-            org.mortbay.jetty.servlet.Context.SESSIONS);
-        root.addServlet(new ServletHolder(new FetchDocidServlet()), "/fetch_docid");
-        root.addServlet(new ServletHolder(new FetchDocnoServlet()), "/fetch_docno");
-        root.addServlet(new ServletHolder(new HomeServlet()), "/");
+        Server server = createServer(port, conf.getInt(THREADS_KEY, DEFAULT_THREADS));
+        server.start();
 
+        // Only announce the host once the server is actually accepting connections.
         FSDataOutputStream out = FileSystem.get(conf).create(tmpPath, true);
         out.writeUTF(host);
         out.close();
 
-        try {
-          server.start();
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-
-        while (true);
+        // Park the task thread until the server is stopped (i.e., the job is killed).
+        server.join();
       } catch (Exception e) {
         e.printStackTrace();
         throw new RuntimeException(e);
@@ -105,6 +109,37 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
 
   private DocumentForwardIndexHttpServer() {}
 
+  /**
+   * Creates the server. Connections are managed by a non-blocking NIO connector, so idle
+   * keep-alive connections don't tie up threads; requests are handled by a bounded pool of
+   * {@code threads} worker threads. Responses are gzipped for clients that accept it.
+   */
+  static Server createServer(int port, int threads) {
+    Server server = new Server();
+
+    SelectChannelConnector connector = new SelectChannelConnector();
+    connector.setPort(port);
+    connector.setMaxIdleTime(MAX_IDLE_TIME);
+    connector.setAcceptQueueSize(threads * 4);
+    server.addConnector(connector);
+
+    QueuedThreadPool pool = new QueuedThreadPool(threads);
+    pool.setMinThreads(Math.min(threads, 8));
+    pool.setName("fetch");
+    server.setThreadPool(pool);
+
+    Context root = new Context(server, "/", Context.NO_SESSIONS);
+    FilterHolder gzip = root.addFilter(GzipFilter.class, "/*", Handler.DEFAULT);
+    gzip.setInitParameter("minGzipSize", "1024");
+    root.addServlet(new ServletHolder(new FetchDocidServlet()), "/fetch_docid");
+    root.addServlet(new ServletHolder(new FetchDocnoServlet()), "/fetch_docno");
+    root.addServlet(new ServletHolder(new FetchDocnosServlet()), "/fetch_docnos");
+    root.addServlet(new ServletHolder(new MetricsServlet()), "/metrics");
+    root.addServlet(new ServletHolder(new HomeServlet()), "/");
+
+    return server;
+  }
+
   // This must be public.
   public static class HomeServlet extends HttpServlet {
 
@@ -126,8 +161,8 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
       int lastDocno = INDEX.getLastDocno();
       int numDocs = lastDocno - firstDocno;
 
-      LOG.info("first docno: " + firstDocno);
-      LOG.info("last docno: " + lastDocno);
+      LOG.debug("first docno: " + firstDocno);
+      LOG.debug("last docno: " + lastDocno);
 
       String firstDocid = INDEX.getDocid(firstDocno);
       String lastDocid = INDEX.getDocid(lastDocno);
@@ -198,7 +233,7 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
 
     public void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException,
         IOException {
-      LOG.info("triggered servlet for fetching document by docid");
+      LOG.debug("triggered servlet for fetching document by docid");
       String docid = null;
 
       try {
@@ -208,7 +243,9 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
         Indexable doc = INDEX.getDocument(docid);
 
         if (doc != null) {
-          LOG.info("fetched: " + doc.getDocid());
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("fetched: " + doc.getDocid());
+          }
           res.setContentType(doc.getDisplayContentType());
 
           PrintWriter out = res.getWriter();
@@ -245,7 +282,7 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
 
     public void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException,
         IOException {
-      LOG.info("triggered servlet for fetching document by docno");
+      LOG.debug("triggered servlet for fetching document by docno");
 
       int docno = 0;
       try {
@@ -255,7 +292,9 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
         Indexable doc = INDEX.getDocument(docno);
 
         if (doc != null) {
-          LOG.info("fetched: " + doc.getDocid() + " = docno " + docno);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("fetched: " + doc.getDocid() + " = docno " + docno);
+          }
           res.setContentType(doc.getDisplayContentType());
 
           PrintWriter out = res.getWriter();
@@ -278,8 +317,143 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
       }
     }
   }
-  
+
+  /**
+   * Fetches a batch of documents with a single call to {@link DocumentForwardIndex#getDocuments},
+   * e.g., <code>/fetch_docnos?ids=1,5,42</code>. The response is a JSON array with one element per
+   * requested docno (in request order), each holding the docno, docid, content type, and content
+   * of the document, or <code>null</code> if the document couldn't be fetched.
+   */
+  // this has to be public
+  public static class FetchDocnosServlet extends HttpServlet {
+    static final long serialVersionUID = 7130582296L;
+
+    public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException,
+        IOException {
+      doPost(req, res);
+    }
+
+    public void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException,
+        IOException {
+      int[] docnos;
+      try {
+        docnos = parseDocnos(req.getParameter("ids"));
+      } catch (IllegalArgumentException e) {
+        res.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid docnos: " + e.getMessage());
+        return;
+      }
+
+      if (docnos.length > MAX_BATCH_SIZE) {
+        res.sendError(HttpServletResponse.SC_BAD_REQUEST, "Too many docnos: " + docnos.length
+            + " (at most " + MAX_BATCH_SIZE + ")");
+        return;
+      }
+
+      List<Indexable> docs = INDEX.getDocuments(docnos);
+
+      res.setContentType("application/json; charset=UTF-8");
+      PrintWriter out = res.getWriter();
+      out.print('[');
+      for (int i = 0; i < docnos.length; i++) {
+        if (i > 0) {
+          out.print(',');
+        }
+
+        Indexable doc = docs.get(i);
+        if (doc == null) {
+          out.print("null");
+          continue;
+        }
+
+        out.print("{\"docno\":");
+        out.print(docnos[i]);
+        out.print(",\"docid\":");
+        writeJsonString(out, doc.getDocid());
+        out.print(",\"contentType\":");
+        writeJsonString(out, doc.getDisplayContentType());
+        out.print(",\"content\":");
+        writeJsonString(out, doc.getDisplayContent());
+        out.print('}');
+      }
+      out.print("]\n");
+      out.close();
+    }
+  }
+
+  /**
+   * Reports the counters and latency histograms of {@link ForwardIndexMetrics#getDefault()} as
+   * plain text, one <code>name value</code> pair per line.
+   */
+  // this has to be public
+  public static class MetricsServlet extends HttpServlet {
+    static final long serialVersionUID = 4471925387L;
+
+    public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException,
+        IOException {
+      res.setContentType("text/plain; charset=UTF-8");
+      PrintWriter out = res.getWriter();
+      ForwardIndexMetrics.getDefault().write(out);
+      out.close();
+    }
+  }
+
+  /**
+   * Parses a comma-separated list of docnos. Whitespace around each docno is ignored, but the list
+   * can't be empty, and neither can any of its entries (so trailing commas aren't allowed either).
+   *
+   * @throws IllegalArgumentException if the list is missing, empty or malformed
+   */
+  static int[] parseDocnos(String ids) {
+    if (ids == null || ids.trim().isEmpty()) {
+      throw new IllegalArgumentException("no docnos given");
+    }
+
+    String[] terms = ids.split(",", -1);
+    int[] docnos = new int[terms.length];
+    for (int i = 0; i < terms.length; i++) {
+      docnos[i] = Integer.parseInt(terms[i].trim());
+    }
+    return docnos;
+  }
+
+  static void writeJsonString(PrintWriter out, String s) {
+    if (s == null) {
+      out.print("null");
+      return;
+    }
+
+    out.print('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"':
+        out.print("\\\"");
+        break;
+      case '\\':
+        out.print("\\\\");
+        break;
+      case '\n':
+        out.print("\\n");
+        break;
+      case '\r':
+        out.print("\\r");
+        break;
+      case '\t':
+        out.print("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          out.print(String.format("\\u%04x", (int) c));
+        } else {
+          out.print(c);
+        }
+      }
+    }
+    out.print('"');
+  }
+
   public static final String INDEX_OPTION = "index";
+  public static final String THREADS_OPTION = "threads";
   public static final String MAPPING_OPTION = "docnoMapping";
 
   @SuppressWarnings("static-access")
@@ -289,6 +463,9 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
         .withDescription("(required) forward index path").create(INDEX_OPTION));
     options.addOption(OptionBuilder.withArgName("path").hasArg()
         .withDescription("(required) DocnoMapping data path").create(MAPPING_OPTION));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("number of worker threads (default " + DEFAULT_THREADS + ")")
+        .create(THREADS_OPTION));
 
     CommandLine cmdline;
     CommandLineParser parser = new GnuParser();
@@ -333,6 +510,10 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
     job.getConfiguration().set(INDEX_KEY, indexFile);
     job.getConfiguration().set(DOCNO_MAPPING_KEY, mappingFile);
     job.getConfiguration().set(TMP_KEY, tmpPath.toString());
+    if (cmdline.hasOption(THREADS_OPTION)) {
+      job.getConfiguration().setInt(THREADS_KEY,
+          Integer.parseInt(cmdline.getOptionValue(THREADS_OPTION)));
+    }
 
     job.setNumReduceTasks(0);
     job.setInputFormatClass(NullInputFormat.class);
@@ -366,4 +547,4 @@ public class DocumentForwardIndexHttpServer extends Configured implements Tool {
         " with args " + Arrays.toString(args));
     ToolRunner.run(new DocumentForwardIndexHttpServer(), args);
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,361 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+
+/**
+ * Utility methods for fetching batches of documents from a {@link DocumentForwardIndex}.
+ *
+ * @author Jimmy Lin
+ */
+public class DocumentForwardIndexUtils {
+  private static final Logger LOG = Logger.getLogger(DocumentForwardIndexUtils.class);
+
+  private DocumentForwardIndexUtils() {}
+
+  /**
+   * Fetches a batch of documents one at a time with {@link DocumentForwardIndex#getDocument(int)}.
+   * This is the generic implementation of {@link DocumentForwardIndex#getDocuments(int[])} for
+   * indexes that have nothing to gain from batching. Docnos outside of the range of the index yield
+   * {@code null} entries, without being passed to {@code getDocument}.
+   *
+   * @param index the forward index
+   * @param docnos docnos of the documents to fetch
+   * @return the documents, in the same order as the docnos
+   */
+  public static <T extends Indexable> List<T> getDocuments(DocumentForwardIndex<T> index,
+      int[] docnos) {
+    Preconditions.checkNotNull(index);
+    Preconditions.checkNotNull(docnos);
+
+    List<T> docs = Lists.newArrayListWithCapacity(docnos.length);
+    for (int docno : docnos) {
+      docs.add(isValidDocno(index, docno) ? index.getDocument(docno) : null);
+    }
+    return docs;
+  }
+
+  /**
+   * Checks whether a docno lies within the range of a forward index, i.e., between
+   * {@link DocumentForwardIndex#getFirstDocno()} and {@link DocumentForwardIndex#getLastDocno()}.
+   */
+  public static boolean isValidDocno(DocumentForwardIndex<?> index, int docno) {
+    return docno >= index.getFirstDocno() && docno <= index.getLastDocno();
+  }
+
+  /**
+   * Fetches a batch of documents in parallel. Duplicate docnos are removed, the remaining docnos
+   * are sorted, and each of {@code parallelism} contiguous ranges is fetched with a separate call
+   * to {@link DocumentForwardIndex#getDocuments(int[])}, so every call still benefits from the
+   * index's own I/O scheduling. The index must be safe for use by multiple threads.
+   *
+   * @param index the forward index
+   * @param docnos docnos of the documents to fetch
+   * @param executor executor to run the fetches on
+   * @param parallelism maximum number of concurrent fetches
+   * @return the documents, in the same order as the docnos
+   */
+  public static <T extends Indexable> List<T> getDocuments(final DocumentForwardIndex<T> index,
+      int[] docnos, ExecutorService executor, int parallelism) {
+    Preconditions.checkNotNull(index);
+    Preconditions.checkNotNull(docnos);
+    Preconditions.checkNotNull(executor);
+    Preconditions.checkArgument(parallelism > 0);
+
+    int[] unique = unique(docnos);
+    int chunk = Math.max(1, (unique.length + parallelism - 1) / parallelism);
+
+    List<Future<List<T>>> futures = Lists.newArrayList();
+    for (int start = 0; start < unique.length; start += chunk) {
+      final int[] range = Arrays.copyOfRange(unique, start, Math.min(unique.length, start + chunk));
+      futures.add(executor.submit(new Callable<List<T>>() {
+        @Override
+        public List<T> call() {
+          return index.getDocuments(range);
+        }
+      }));
+    }
+
+    List<T> fetched = Lists.newArrayListWithCapacity(unique.length);
+    try {
+      for (Future<List<T>> future : futures) {
+        fetched.addAll(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+
+    List<T> docs = Lists.newArrayListWithCapacity(docnos.length);
+    for (int docno : docnos) {
+      docs.add(fetched.get(Arrays.binarySearch(unique, docno)));
+    }
+    return docs;
+  }
+
+  /**
+   * Fetches a batch of documents asynchronously with a single call to
+   * {@link DocumentForwardIndex#getDocuments(int[])} on {@code executor}.
+   *
+   * @param index the forward index
+   * @param docnos docnos of the documents to fetch
+   * @param executor executor to run the fetch on
+   * @return future holding the documents, in the same order as the docnos
+   */
+  public static <T extends Indexable> Future<List<T>> getDocumentsAsync(
+      final DocumentForwardIndex<T> index, final int[] docnos, ExecutorService executor) {
+    Preconditions.checkNotNull(index);
+    Preconditions.checkNotNull(docnos);
+    Preconditions.checkNotNull(executor);
+
+    return executor.submit(new Callable<List<T>>() {
+      @Override
+      public List<T> call() {
+        return index.getDocuments(docnos);
+      }
+    });
+  }
+
+  /**
+   * A collection stored as block-compressed SequenceFiles of records keyed by docno (as an
+   * {@code IntWritable}), in docno order.
+   */
+  public static interface SequenceFileCollection<T extends Writable> {
+    /**
+     * Returns the file with the given number.
+     */
+    Path getFile(short fileno) throws IOException;
+
+    /**
+     * Creates an empty record to deserialize into.
+     */
+    T createValue();
+  }
+
+  /**
+   * Fetches a batch of documents from a {@link SequenceFileCollection}, given the block index of
+   * the collection: for each block, the docno of its first record, its byte offset, and the number
+   * of the file that holds it, all in docno order. Docnos are deduplicated and sorted, which also
+   * sorts them by file and block offset. Each file is then read with a single reader borrowed from
+   * {@code readers}, and all requested documents within a block are read in a single forward scan
+   * from the start of the block; with a block cache, each block is read through the cache instead,
+   * and only if it isn't cached already. Documents are
+   * returned in the same order as the docnos; requesting the same docno more than once yields the
+   * same object, and docnos that aren't in the collection yield {@code null} entries.
+   *
+   * @param collection the collection
+   * @param docnos docno of the first record of each block
+   * @param offsets byte offset of each block
+   * @param fileno file number of each block
+   * @param lastDocno last docno in the collection
+   * @param requested docnos of the documents to fetch
+   * @param cache block cache to read blocks through, or {@code null}
+   * @param readers pool of readers to read blocks with when there's no cache
+   * @param metrics instrumentation to report into
+   * @return the documents, in the same order as the requested docnos
+   */
+  public static <T extends Writable> List<T> getDocuments(SequenceFileCollection<T> collection,
+      int[] docnos, int[] offsets, short[] fileno, int lastDocno, int[] requested,
+      SequenceFileBlockCache cache, SequenceFileReaderPool readers, ForwardIndexMetrics metrics) {
+    Preconditions.checkNotNull(collection);
+    Preconditions.checkNotNull(requested);
+    Preconditions.checkNotNull(readers);
+    Preconditions.checkNotNull(metrics);
+
+    long start = metrics.now();
+    metrics.increment(Counter.REQUESTS, 1);
+
+    int[] sorted = unique(requested);
+    List<T> fetched = Lists.newArrayList(Collections.<T>nCopies(sorted.length, null));
+
+    Path file = null;
+    int fileFileno = -1;
+    SequenceFile.Reader reader = null;
+    Path readerFile = null;
+    int readerFileno = -1;
+    IntWritable key = new IntWritable();
+
+    int i = 0;
+    while (i < sorted.length) {
+      int docno = sorted[i];
+      if (docnos.length == 0 || docno < docnos[0] || docno > lastDocno) {
+        i++;
+        continue;
+      }
+
+      int idx = findBlock(docnos, docno);
+      int end = getEndDocno(docnos, fileno, idx);
+      // The last block of a file ends where the next file begins, not at the end of the file.
+      int limit = idx + 1 < docnos.length ? docnos[idx + 1] : Integer.MAX_VALUE;
+
+      try {
+        if (fileFileno != fileno[idx]) {
+          file = collection.getFile(fileno[idx]);
+          fileFileno = fileno[idx];
+        }
+
+        if (cache != null) {
+          // The cached block holds every record of the block, so there's nothing to scan for if
+          // the docno isn't in it.
+          T value = collection.createValue();
+          if (cache.get(file, offsets[idx], end, docno, value, metrics)) {
+            fetched.set(i, value);
+          }
+          i++;
+          continue;
+        }
+
+        long t = metrics.now();
+
+        if (readerFileno != fileno[idx]) {
+          if (reader != null) {
+            readers.release(readerFile, reader);
+            reader = null;
+          }
+          reader = readers.borrow(file);
+          readerFile = file;
+          readerFileno = fileno[idx];
+        }
+
+        reader.seek(offsets[idx]);
+        t = metrics.recordSince(Phase.SEEK, t);
+        while (i < sorted.length && sorted[i] < limit && reader.next(key)) {
+          // Skip over requested docnos that aren't in the collection.
+          while (i < sorted.length && sorted[i] < key.get()) {
+            i++;
+          }
+          if (i < sorted.length && sorted[i] == key.get()) {
+            t = metrics.recordSince(Phase.DECOMPRESS, t);
+            T value = collection.createValue();
+            reader.getCurrentValue(value);
+            t = metrics.recordSince(Phase.PARSE, t);
+            fetched.set(i++, value);
+          }
+        }
+        metrics.increment(Counter.BYTES_READ, reader.getPosition() - offsets[idx]);
+      } catch (IOException e) {
+        // Give up on this file only; documents in the other files can still be fetched. The reader
+        // may be in any state, so it's closed rather than returned to the pool.
+        metrics.increment(Counter.ERRORS, 1);
+        LOG.warn("Unable to read block at offset " + offsets[idx] + " of file " + fileno[idx]
+            + ", skipping the rest of the file", e);
+        IOUtils.closeStream(reader);
+        reader = null;
+        readerFileno = -1;
+        limit = getNextFileDocno(docnos, fileno, idx);
+      }
+
+      // If we've hit the end of the file, the remaining docnos in the block don't exist.
+      while (i < sorted.length && sorted[i] < limit) {
+        i++;
+      }
+    }
+    if (reader != null) {
+      try {
+        readers.release(readerFile, reader);
+      } catch (IOException e) {
+        LOG.warn("Unable to close reader for " + readerFile, e);
+      }
+    }
+
+    List<T> docs = Lists.newArrayListWithCapacity(requested.length);
+    for (int docno : requested) {
+      docs.add(fetched.get(Arrays.binarySearch(sorted, docno)));
+    }
+
+    int n = 0;
+    for (T doc : fetched) {
+      if (doc != null) {
+        n++;
+      }
+    }
+    metrics.increment(Counter.DOCUMENTS, n);
+    metrics.increment(Counter.MISSES, fetched.size() - n);
+    metrics.recordSince(Phase.FETCH, start);
+    return docs;
+  }
+
+  /**
+   * Returns the index position of the block that holds a docno, given the docno of the first
+   * record of each block.
+   */
+  public static int findBlock(int[] docnos, int docno) {
+    int idx = Arrays.binarySearch(docnos, docno);
+    return idx < 0 ? -idx - 2 : idx;
+  }
+
+  /**
+   * Returns the first docno that isn't stored in the block at index position {@code idx}, or
+   * {@code Integer.MAX_VALUE} if it's the last block of its file.
+   */
+  public static int getEndDocno(int[] docnos, short[] fileno, int idx) {
+    if (idx + 1 < docnos.length && fileno[idx + 1] == fileno[idx]) {
+      return docnos[idx + 1];
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  // Returns the first docno of the file after the one holding the block at index position idx, or
+  // Integer.MAX_VALUE if it's the last file.
+  private static int getNextFileDocno(int[] docnos, short[] fileno, int idx) {
+    for (int i = idx + 1; i < docnos.length; i++) {
+      if (fileno[i] != fileno[idx]) {
+        return docnos[i];
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Returns the distinct values of an array in sorted order.
+   */
+  public static int[] unique(int[] arr) {
+    int[] sorted = Arrays.copyOf(arr, arr.length);
+    Arrays.sort(sorted);
+
+    int n = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (n == 0 || sorted[i] != sorted[n - 1]) {
+        sorted[n++] = sorted[i];
+      }
+    }
+    return Arrays.copyOf(sorted, n);
+  }
+}
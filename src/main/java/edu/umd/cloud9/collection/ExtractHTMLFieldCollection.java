@@ -27,6 +27,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -39,6 +40,7 @@ import org.apache.log4j.Logger;
 import org.htmlparser.Node;
 import org.htmlparser.NodeFilter;
 import org.htmlparser.Parser;
+import org.htmlparser.filters.OrFilter;
 import org.htmlparser.filters.TagNameFilter;
 import org.htmlparser.util.NodeList;
 import org.htmlparser.util.ParserException;
@@ -55,12 +57,26 @@ import edu.umd.cloud9.webgraph.TrecExtractLinks.Map.LinkCounter;
  * document structure and/or field-based retrieval tasks.
  * </p>
  *
+ * <p>
+ * The target tag is either a tag name, a comma-separated list of tag names, or <code>heading</code>
+ * (for <code>h1</code> through <code>h6</code>). By default, the fields are extracted with an
+ * {@link HTMLFieldScanner}, which makes a single pass over each document. Setting
+ * <code>Cloud9.UseDOMParser</code> (or giving <code>dom</code> as the last argument) parses each
+ * document with the htmlparser {@code Parser} instead. Either way, the throughput of the parser is
+ * logged at the end of the job.
+ * </p>
+ *
  * @author fangyue
  * @author metzler
  */
 public class ExtractHTMLFieldCollection extends PowerTool {
   private static final Logger LOG = Logger.getLogger(ExtractHTMLFieldCollection.class);
 
+  public static enum ParserCounter {
+    PARSED_DOCS, // number of documents parsed
+    PARSE_MILLIS // time spent parsing
+  };
+
   public static class MyMapper extends Mapper<LongWritable, Indexable, LongWritable, TextDocument> {
     // TODO: allow this to support user-defined regular expressions, not just the "heading" one pre-defined here
     public static class HeadingTagFilter implements NodeFilter {
@@ -73,27 +89,46 @@ public class ExtractHTMLFieldCollection extends PowerTool {
     }
 
     private static String tag;
+    private static boolean useDOM;
 
     private static final Parser parser = new Parser();
     private static NodeFilter filter;
+    private static HTMLFieldScanner scanner;
+    private static long parseTime;
 
     private static final LongWritable myKey = new LongWritable();
     private static final TextDocument myValue = new TextDocument();
 
-    private static final StringBuffer strBuf = new StringBuffer();
+    private static final StringBuilder strBuf = new StringBuilder();
 
     @Override
     public void setup(Mapper<LongWritable, Indexable, LongWritable, TextDocument>.Context context) throws IOException {
       Configuration conf = context.getConfiguration();
       tag = conf.get("Cloud9.TargetTag");
+      useDOM = conf.getBoolean("Cloud9.UseDOMParser", false);
+      parseTime = 0;
 
-      if (tag.equalsIgnoreCase("heading")) {
+      String[] tags = HTMLFieldScanner.parseTarget(tag);
+      if (!useDOM) {
+        scanner = new HTMLFieldScanner(tags);
+      } else if (tag.equalsIgnoreCase("heading")) {
         filter = new HeadingTagFilter();
+      } else if (tags.length == 1) {
+        filter = new TagNameFilter(tags[0]);
       } else {
-        filter = new TagNameFilter(tag);
+        NodeFilter[] filters = new NodeFilter[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+          filters[i] = new TagNameFilter(tags[i]);
+        }
+        filter = new OrFilter(filters);
       }
     }
 
+    @Override
+    public void cleanup(Mapper<LongWritable, Indexable, LongWritable, TextDocument>.Context context) {
+      context.getCounter(ParserCounter.PARSE_MILLIS).increment(parseTime / 1000000);
+    }
+
     @Override
     public void map(LongWritable key, Indexable doc, Mapper<LongWritable, Indexable, LongWritable, TextDocument>.Context context) throws IOException, InterruptedException {
       context.getCounter(LinkCounter.INPUT_DOCS).increment(1);
@@ -104,35 +139,25 @@ public class ExtractHTMLFieldCollection extends PowerTool {
 
       myKey.set(key.get());
 
-      NodeList nl;
-      try {
-        // initialize HTML parser
-        parser.setInputHTML(doc.getContent());
-
-        // parse the document
-        nl = parser.parse(filter);
-      } catch (ParserException e) {
-        context.getCounter(LinkCounter.PARSER_FAILED).increment(1);
-        myValue.setDocid(doc.getDocid());
-        myValue.setContent("<DOC>\n<DOCNO>" + doc.getDocid() + "</DOCNO>\n<DOC>");
-        context.write(myKey, myValue);
-        return;
-      } catch (StackOverflowError e) {
-        context.getCounter(LinkCounter.PARSER_FAILED).increment(1);
-        myValue.setDocid(doc.getDocid());
-        myValue.setContent("<DOC>\n<DOCNO>" + doc.getDocid() + "</DOCNO>\n<DOC>");
-        context.write(myKey, myValue);
-        return;
-      }
-
       strBuf.setLength(0);
       strBuf.append("<DOC>\n<DOCNO>");
       strBuf.append(doc.getDocid());
       strBuf.append("</DOCNO>\n");
 
-      for (int i = 0; i < nl.size(); i++) {
-        strBuf.append(nl.elementAt(i).toHtml()).append("\n");
+      long startTime = System.nanoTime();
+      if (useDOM) {
+        if (!parseDOM(doc.getContent())) {
+          context.getCounter(LinkCounter.PARSER_FAILED).increment(1);
+          myValue.setDocid(doc.getDocid());
+          myValue.setContent("<DOC>\n<DOCNO>" + doc.getDocid() + "</DOCNO>\n<DOC>");
+          context.write(myKey, myValue);
+          return;
+        }
+      } else {
+        scanner.scan(doc.getContent(), strBuf);
       }
+      parseTime += System.nanoTime() - startTime;
+      context.getCounter(ParserCounter.PARSED_DOCS).increment(1);
       strBuf.append("</DOC>\n");
 
       // create output document
@@ -145,6 +170,27 @@ public class ExtractHTMLFieldCollection extends PowerTool {
       // bookkeeping
       context.getCounter(LinkCounter.OUTPUT_DOCS).increment(1);
     }
+
+    // Appends the matching nodes to strBuf, or returns false if the document can't be parsed.
+    private static boolean parseDOM(String html) {
+      NodeList nl;
+      try {
+        // initialize HTML parser
+        parser.setInputHTML(html);
+
+        // parse the document
+        nl = parser.parse(filter);
+      } catch (ParserException e) {
+        return false;
+      } catch (StackOverflowError e) {
+        return false;
+      }
+
+      for (int i = 0; i < nl.size(); i++) {
+        strBuf.append(nl.elementAt(i).toHtml()).append("\n");
+      }
+      return true;
+    }
   }
 
   public static final String[] RequiredParameters = { "Cloud9.InputPath", "Cloud9.InputFormat", "Cloud9.OutputPath", "Cloud9.TargetTag" };
@@ -167,6 +213,7 @@ public class ExtractHTMLFieldCollection extends PowerTool {
     String inputFormat = conf.get("Cloud9.InputFormat");
     String outputPath = conf.get("Cloud9.OutputPath");
     String tag = conf.get("Cloud9.TargetTag");
+    boolean useDOM = conf.getBoolean("Cloud9.UseDOMParser", false);
 
     job.setJobName("ExtractFieldCollection");
 
@@ -192,8 +239,15 @@ public class ExtractHTMLFieldCollection extends PowerTool {
     LOG.info(" - Input format: " + inputFormat);
     LOG.info(" - Output path: " + outputPath);
     LOG.info(" - Target tag: " + tag);
+    LOG.info(" - Parser: " + (useDOM ? "DOM" : "streaming"));
 
     job.waitForCompletion(true);
+
+    Counters counters = job.getCounters();
+    long docs = counters.findCounter(ParserCounter.PARSED_DOCS).getValue();
+    long millis = counters.findCounter(ParserCounter.PARSE_MILLIS).getValue();
+    LOG.info(String.format("Parsed %d documents in %d ms (%.0f docs/sec) with the %s parser",
+        docs, millis, millis == 0 ? 0.0 : docs * 1000.0 / millis, useDOM ? "DOM" : "streaming"));
     return 0;
   }
 
@@ -224,8 +278,8 @@ public class ExtractHTMLFieldCollection extends PowerTool {
   public static void main(String [] args) throws Exception {
     Configuration conf = new Configuration();
 
-    if(args.length != 4) {
-      System.err.println("Usage: ExtractFieldCollection [input-path] [input-format] [output-path] [target-tag]");
+    if(args.length != 4 && !(args.length == 5 && args[4].equals("dom"))) {
+      System.err.println("Usage: ExtractFieldCollection [input-path] [input-format] [output-path] [target-tag] [dom]");
       System.exit(-1);
     }
 
@@ -233,6 +287,7 @@ public class ExtractHTMLFieldCollection extends PowerTool {
     conf.set("Cloud9.InputFormat", args[1]);
     conf.set("Cloud9.OutputPath", args[2]);
     conf.set("Cloud9.TargetTag", args[3]);
+    conf.setBoolean("Cloud9.UseDOMParser", args.length == 5);
 
     int res = ToolRunner.run(conf, new ExtractHTMLFieldCollection(conf), args);
     System.exit(res);
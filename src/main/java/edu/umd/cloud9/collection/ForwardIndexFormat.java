@@ -0,0 +1,164 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import edu.umd.cloud9.collection.aquaint2.Aquaint2ForwardIndex;
+import edu.umd.cloud9.collection.trec.TrecForwardIndex;
+import edu.umd.cloud9.io.LittleEndianArrays;
+
+/**
+ * <p>
+ * Binary on-disk format for forward index data. All forward index files begin with the name of the
+ * forward index class and the collection path, followed by the number of entries. In the original
+ * format, entries are then written one at a time with {@code DataOutput}, which means they also
+ * have to be read back one value at a time. In the binary format, the count is preceded by the
+ * marker {@link #BINARY}, and each column of the table is stored as a contiguous little-endian
+ * block that is read with bulk transfers, so that even very large indexes load in a fraction of a
+ * second.
+ * </p>
+ *
+ * <p>
+ * Two layouts exist: indexes over block-compressed SequenceFiles (ClueWeb, Wikipedia, anchor text)
+ * store the first docno, offset, and file number of every block; indexes over raw collection
+ * files (TREC, AQUAINT2) store the offset and length of every document. The {@code main} of this
+ * class converts an index from the original format into the binary format.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class ForwardIndexFormat {
+  private static final Logger LOG = Logger.getLogger(ForwardIndexFormat.class);
+
+  /**
+   * Marker that takes the place of the entry count in the binary format. Since it's negative, it
+   * can't be confused with a count.
+   */
+  public static final int BINARY = -2;
+
+  private ForwardIndexFormat() {}
+
+  /**
+   * Reads the block table of an index in the binary format.
+   */
+  public static void readBlocks(DataInput in, int[] docnos, int[] offsets, short[] fileno)
+      throws IOException {
+    LittleEndianArrays.readInts(in, docnos, 0, docnos.length);
+    LittleEndianArrays.readInts(in, offsets, 0, offsets.length);
+    LittleEndianArrays.readShorts(in, fileno, 0, fileno.length);
+  }
+
+  /**
+   * Writes the block table of an index in the binary format.
+   */
+  public static void writeBlocks(DataOutput out, int[] docnos, int[] offsets, short[] fileno)
+      throws IOException {
+    out.writeInt(BINARY);
+    out.writeInt(docnos.length);
+    LittleEndianArrays.writeInts(out, docnos, 0, docnos.length);
+    LittleEndianArrays.writeInts(out, offsets, 0, offsets.length);
+    LittleEndianArrays.writeShorts(out, fileno, 0, fileno.length);
+  }
+
+  /**
+   * Reads the document table of an index in the binary format. Since docnos start at one, entries
+   * are read into index positions one through {@code numDocs}.
+   */
+  public static void readDocuments(DataInput in, long[] offsets, int[] lengths, int numDocs)
+      throws IOException {
+    LittleEndianArrays.readLongs(in, offsets, 1, numDocs);
+    LittleEndianArrays.readInts(in, lengths, 1, numDocs);
+  }
+
+  /**
+   * Writes the document table of an index in the binary format, taking entries from index
+   * positions one through {@code numDocs}.
+   */
+  public static void writeDocuments(DataOutput out, long[] offsets, int[] lengths, int numDocs)
+      throws IOException {
+    out.writeInt(BINARY);
+    out.writeInt(numDocs);
+    LittleEndianArrays.writeLongs(out, offsets, 1, numDocs);
+    LittleEndianArrays.writeInts(out, lengths, 1, numDocs);
+  }
+
+  private static boolean isDocumentIndex(String className) {
+    return className.equals(TrecForwardIndex.class.getCanonicalName())
+        || className.equals(Aquaint2ForwardIndex.class.getCanonicalName());
+  }
+
+  /**
+   * Converts a forward index from the original format into the binary format.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("usage: [input-index-file] [output-index-file]");
+      System.exit(-1);
+    }
+
+    FileSystem fs = FileSystem.get(new Configuration());
+
+    FSDataInputStream in = fs.open(new Path(args[0]));
+    String className = in.readUTF();
+    String collectionPath = in.readUTF();
+    int n = in.readInt();
+    if (n == BINARY) {
+      in.close();
+      System.out.println(args[0] + " is already in the binary format!");
+      return;
+    }
+
+    LOG.info("Reading " + n + " entries from " + args[0]);
+    FSDataOutputStream out = fs.create(new Path(args[1]), true);
+    out.writeUTF(className);
+    out.writeUTF(collectionPath);
+
+    if (isDocumentIndex(className)) {
+      long[] offsets = new long[n + 1];
+      int[] lengths = new int[n + 1];
+      for (int i = 1; i <= n; i++) {
+        offsets[i] = in.readLong();
+        lengths[i] = in.readInt();
+      }
+      writeDocuments(out, offsets, lengths, n);
+    } else {
+      int[] docnos = new int[n];
+      int[] offsets = new int[n];
+      short[] fileno = new short[n];
+      for (int i = 0; i < n; i++) {
+        docnos[i] = in.readInt();
+        offsets[i] = in.readInt();
+        fileno[i] = in.readShort();
+      }
+      writeBlocks(out, docnos, offsets, fileno);
+    }
+
+    in.close();
+    out.close();
+    LOG.info("Wrote " + args[1]);
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+import edu.umd.cloud9.util.LatencyHistogram;
+
+/**
+ * <p>
+ * Instrumentation for {@link DocumentForwardIndex} fetches. Forward indexes report the time spent
+ * in each {@link Phase} of a fetch, along with {@link Counter}s such as the number of bytes read and
+ * block cache hits. By default, all indexes report into a single shared instance (see
+ * {@link #getDefault()}), which is what the HTTP servers expose on their <code>/metrics</code>
+ * endpoint.
+ * </p>
+ *
+ * <p>
+ * This class aggregates values in memory, but it's meant to be pluggable: to forward measurements
+ * elsewhere, override {@link #record(Phase, long)} and {@link #increment(Counter, long)} and
+ * install the subclass with {@link #setDefault(ForwardIndexMetrics)} before loading the index (or
+ * on a particular index with its <code>setMetrics</code> method). Instrumentation can be turned off
+ * completely with {@link #disabled()}.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class ForwardIndexMetrics {
+  /**
+   * Phases of a document fetch.
+   */
+  public static enum Phase {
+    /** Opening a file and seeking to the right position. */
+    SEEK,
+    /** Reading raw bytes. */
+    READ,
+    /** Scanning a compressed block for the requested record. */
+    DECOMPRESS,
+    /** Deserializing or parsing the document. */
+    PARSE,
+    /** The entire fetch, end to end. */
+    FETCH
+  }
+
+  /**
+   * Counters maintained during document fetches.
+   */
+  public static enum Counter {
+    /** Calls to <code>getDocument</code> or <code>getDocuments</code>. */
+    REQUESTS,
+    /** Documents successfully fetched. */
+    DOCUMENTS,
+    /** Documents requested but not found. */
+    MISSES,
+    /** Fetches that failed with an error. */
+    ERRORS,
+    /** Bytes read from the underlying collection. */
+    BYTES_READ,
+    /** Block cache hits. */
+    CACHE_HITS,
+    /** Block cache misses. */
+    CACHE_MISSES
+  }
+
+  private static final ForwardIndexMetrics DISABLED = new ForwardIndexMetrics(false);
+  private static volatile ForwardIndexMetrics DEFAULT = new ForwardIndexMetrics();
+
+  private final boolean enabled;
+  private final Map<Phase, LatencyHistogram> histograms =
+      new EnumMap<Phase, LatencyHistogram>(Phase.class);
+  private final Map<Counter, AtomicLong> counters = new EnumMap<Counter, AtomicLong>(Counter.class);
+
+  public ForwardIndexMetrics() {
+    this(true);
+  }
+
+  private ForwardIndexMetrics(boolean enabled) {
+    this.enabled = enabled;
+    for (Phase phase : Phase.values()) {
+      histograms.put(phase, new LatencyHistogram());
+    }
+    for (Counter counter : Counter.values()) {
+      counters.put(counter, new AtomicLong());
+    }
+  }
+
+  /**
+   * Returns the instance that forward indexes report into unless told otherwise.
+   */
+  public static ForwardIndexMetrics getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Sets the instance that newly-created forward indexes report into.
+   */
+  public static void setDefault(ForwardIndexMetrics metrics) {
+    DEFAULT = Preconditions.checkNotNull(metrics);
+  }
+
+  /**
+   * Returns an instance that discards everything.
+   */
+  public static ForwardIndexMetrics disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Returns whether measurements are recorded at all. Callers can check this to avoid the cost of
+   * reading the clock.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the current time in nanoseconds, or zero if instrumentation is disabled.
+   */
+  public long now() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records time spent in a phase of a fetch.
+   *
+   * @param phase the phase
+   * @param nanos elapsed time in nanoseconds
+   */
+  public void record(Phase phase, long nanos) {
+    if (enabled) {
+      histograms.get(phase).record(nanos);
+    }
+  }
+
+  /**
+   * Records time spent in a phase of a fetch that started at <code>start</code>, as returned by
+   * {@link #now()}, and returns the current time.
+   */
+  public long recordSince(Phase phase, long start) {
+    if (!enabled) {
+      return 0;
+    }
+
+    long end = System.nanoTime();
+    record(phase, end - start);
+    return end;
+  }
+
+  /**
+   * Increments a counter.
+   */
+  public void increment(Counter counter, long delta) {
+    if (enabled) {
+      counters.get(counter).addAndGet(delta);
+    }
+  }
+
+  /**
+   * Returns the value of a counter.
+   */
+  public long getCount(Counter counter) {
+    return counters.get(counter).get();
+  }
+
+  /**
+   * Returns the latency histogram (in nanoseconds) of a phase.
+   */
+  public LatencyHistogram getHistogram(Phase phase) {
+    return histograms.get(phase);
+  }
+
+  /**
+   * Clears all counters and histograms.
+   */
+  public void reset() {
+    for (LatencyHistogram histogram : histograms.values()) {
+      histogram.reset();
+    }
+    for (AtomicLong counter : counters.values()) {
+      counter.set(0);
+    }
+  }
+
+  /**
+   * Writes all counters and histograms in a plain-text format with one <code>name value</code>
+   * pair per line. Latencies are reported in microseconds.
+   */
+  public void write(PrintWriter out) {
+    for (Counter counter : Counter.values()) {
+      out.println(name(counter) + " " + getCount(counter));
+    }
+
+    long hits = getCount(Counter.CACHE_HITS);
+    long lookups = hits + getCount(Counter.CACHE_MISSES);
+    out.println(String.format(Locale.US, "cache_hit_rate %.4f",
+        lookups == 0 ? 0.0 : (double) hits / lookups));
+
+    for (Phase phase : Phase.values()) {
+      LatencyHistogram histogram = getHistogram(phase);
+      String prefix = name(phase) + "_latency_us";
+      out.println(prefix + "_count " + histogram.getCount());
+      out.println(String.format(Locale.US, "%s_mean %.1f", prefix, histogram.getMean() / 1000));
+      out.println(prefix + "_p50 " + histogram.getPercentile(50) / 1000);
+      out.println(prefix + "_p90 " + histogram.getPercentile(90) / 1000);
+      out.println(prefix + "_p99 " + histogram.getPercentile(99) / 1000);
+      out.println(prefix + "_p999 " + histogram.getPercentile(99.9) / 1000);
+      out.println(prefix + "_max " + histogram.getMax() / 1000);
+    }
+  }
+
+  private static String name(Enum<?> e) {
+    return e.name().toLowerCase(Locale.US);
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Extracts the elements with given tag names (e.g., <code>title</code>, <code>h1</code>,
+ * <code>a</code>, <code>meta</code>) from an HTML document in a single forward pass, without
+ * building a DOM tree. Each element is copied out as is, from its start tag through its end tag,
+ * which is what the htmlparser {@code Parser} gives for well-formed documents. Since there's no tree,
+ * there's no recursion, so malformed documents can't overflow the stack; they just yield whatever
+ * elements can be recognized.
+ * </p>
+ *
+ * <p>
+ * The rules are simple:
+ * </p>
+ *
+ * <ul>
+ * <li>Comments, declarations, and the contents of <code>script</code> and <code>style</code>
+ * elements are skipped.</li>
+ * <li>Void elements (e.g., <code>meta</code>) and self-closing tags are elements by
+ * themselves.</li>
+ * <li>Otherwise, an element ends at its end tag, provided that there is one before the next start
+ * tag with the same name. If there isn't, the element is taken to end at the next tag of any kind.
+ * </li>
+ * <li>Elements inside other elements that are extracted are extracted as well.</li>
+ * </ul>
+ *
+ * <p>
+ * Tag names are matched without regard to case.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class HTMLFieldScanner {
+  private static final String[] HEADING_TAGS = { "h1", "h2", "h3", "h4", "h5", "h6" };
+  private static final String[] VOID_TAGS = { "area", "base", "br", "col", "embed", "hr", "img",
+      "input", "link", "meta", "param", "source", "track", "wbr" };
+  private static final String[] RAW_TEXT_TAGS = { "script", "style" };
+
+  private final String[] tags;
+
+  /**
+   * Creates a scanner that extracts the elements with the given tag names.
+   */
+  public HTMLFieldScanner(String... tags) {
+    Preconditions.checkArgument(tags.length > 0);
+    this.tags = new String[tags.length];
+    for (int i = 0; i < tags.length; i++) {
+      this.tags[i] = tags[i].toLowerCase();
+    }
+  }
+
+  /**
+   * Returns the tag names that a target field denotes: either a comma-separated list of tag names,
+   * or <code>heading</code>, which stands for <code>h1</code> through <code>h6</code>.
+   */
+  public static String[] parseTarget(String target) {
+    List<String> tags = Lists.newArrayList();
+    for (String tag : target.split(",")) {
+      tag = tag.trim();
+      if (tag.equalsIgnoreCase("heading")) {
+        for (String heading : HEADING_TAGS) {
+          tags.add(heading);
+        }
+      } else if (tag.length() > 0) {
+        tags.add(tag.toLowerCase());
+      }
+    }
+    return tags.toArray(new String[tags.size()]);
+  }
+
+  /**
+   * Appends the elements to extract from a document to a buffer, each followed by a newline.
+   *
+   * @param html the document
+   * @param out buffer to append to
+   * @return the number of elements appended
+   */
+  public int scan(String html, StringBuilder out) {
+    return scan(html, out, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Appends up to a given number of elements to extract from a document to a buffer, each followed
+   * by a newline. The scan stops once that many have been found.
+   *
+   * @param html the document
+   * @param out buffer to append to
+   * @param max maximum number of elements to append
+   * @return the number of elements appended
+   */
+  public int scan(String html, StringBuilder out, int max) {
+    int n = html.length();
+    int count = 0;
+    int i = html.indexOf('<');
+    while (i >= 0 && i + 1 < n && count < max) {
+      char c = html.charAt(i + 1);
+      if (c == '!' || c == '?') {
+        int end = html.startsWith("<!--", i) ? html.indexOf("-->", i + 4) : html.indexOf('>', i);
+        if (end < 0) {
+          break;
+        }
+        i = html.indexOf('<', end + 1);
+        continue;
+      }
+
+      boolean closing = c == '/';
+      int nameStart = closing ? i + 2 : i + 1;
+      int nameEnd = nameStart;
+      while (nameEnd < n && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+        nameEnd++;
+      }
+      if (nameEnd == nameStart) {
+        // Not a tag, just a stray '<'.
+        i = html.indexOf('<', i + 1);
+        continue;
+      }
+
+      int tagEnd = findTagEnd(html, nameEnd);
+      if (tagEnd < 0) {
+        break;
+      }
+      int next = tagEnd + 1;
+
+      if (!closing) {
+        if (matches(html, nameStart, nameEnd, tags)) {
+          int end;
+          if (html.charAt(tagEnd - 1) == '/' || matches(html, nameStart, nameEnd, VOID_TAGS)) {
+            end = next;
+          } else {
+            end = findElementEnd(html, nameStart, nameEnd, next);
+          }
+          out.append(html, i, end).append('\n');
+          count++;
+        }
+
+        if (matches(html, nameStart, nameEnd, RAW_TEXT_TAGS)) {
+          int close = indexOfTag(html, true, html, nameStart, nameEnd, next);
+          if (close < 0) {
+            break;
+          }
+          next = close;
+        }
+      }
+
+      i = html.indexOf('<', next);
+    }
+
+    return count;
+  }
+
+  // Finds the '>' that ends a tag, skipping over quoted attribute values.
+  private static int findTagEnd(String html, int from) {
+    int n = html.length();
+    for (int i = from; i < n; i++) {
+      char c = html.charAt(i);
+      if (c == '>') {
+        return i;
+      }
+      if ((c == '"' || c == '\'') && html.charAt(i - 1) == '=') {
+        int close = html.indexOf(c, i + 1);
+        if (close < 0) {
+          // Unbalanced quote: give up on quoting.
+          return html.indexOf('>', i);
+        }
+        i = close;
+      }
+    }
+    return -1;
+  }
+
+  // Finds the end of an element whose start tag ends just before 'from'.
+  private static int findElementEnd(String html, int nameStart, int nameEnd, int from) {
+    int close = indexOfTag(html, true, html, nameStart, nameEnd, from);
+    int reopen = indexOfTag(html, false, html, nameStart, nameEnd, from);
+    if (close >= 0 && (reopen < 0 || close < reopen)) {
+      int end = html.indexOf('>', close);
+      return end < 0 ? html.length() : end + 1;
+    }
+
+    int next = html.indexOf('<', from);
+    return next < 0 ? html.length() : next;
+  }
+
+  // Finds the next start (or end) tag with the name name[nameStart, nameEnd).
+  private static int indexOfTag(String html, boolean closing, String name, int nameStart,
+      int nameEnd, int from) {
+    int length = nameEnd - nameStart;
+    int prefix = closing ? 2 : 1;
+    int n = html.length();
+    for (int i = html.indexOf('<', from); i >= 0; i = html.indexOf('<', i + 1)) {
+      if (closing && (i + 1 >= n || html.charAt(i + 1) != '/')) {
+        continue;
+      }
+      int after = i + prefix + length;
+      if (after <= n && html.regionMatches(true, i + prefix, name, nameStart, length)
+          && (after == n || !Character.isLetterOrDigit(html.charAt(after)))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean matches(String html, int start, int end, String[] names) {
+    int length = end - start;
+    for (String name : names) {
+      if (name.length() == length && html.regionMatches(true, start, name, 0, length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
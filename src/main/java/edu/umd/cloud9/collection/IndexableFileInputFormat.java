@@ -16,6 +16,11 @@
 
 package edu.umd.cloud9.collection;
 
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 
 /**
@@ -24,4 +29,14 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
  */
 public abstract class IndexableFileInputFormat<K, V extends Indexable> extends
     FileInputFormat<K, V> {
+
+  /**
+   * Compressed files can only be split if the codec supports it (e.g., bzip2).
+   */
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    CompressionCodec codec =
+        new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+    return codec == null || codec instanceof SplittableCompressionCodec;
+  }
 }
@@ -16,6 +16,11 @@
 
 package edu.umd.cloud9.collection;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapred.FileInputFormat;
 
 /**
@@ -24,4 +29,13 @@ import org.apache.hadoop.mapred.FileInputFormat;
  */
 public abstract class IndexableFileInputFormatOld<K, V extends Indexable> extends
     FileInputFormat<K, V> {
+
+  /**
+   * Compressed files can only be split if the codec supports it (e.g., bzip2).
+   */
+  @Override
+  protected boolean isSplitable(FileSystem fs, Path file) {
+    CompressionCodec codec = new CompressionCodecFactory(fs.getConf()).getCodec(file);
+    return codec == null || codec instanceof SplittableCompressionCodec;
+  }
 }
@@ -0,0 +1,275 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import edu.umd.cloud9.io.MappedFileBuffer;
+
+/**
+ * <p>
+ * Docno mapping that works directly against a memory-mapped binary mappings file, rather than
+ * loading the mappings onto the heap. The file is mapped read-only, so all JVMs on a host that load
+ * the same file share a single copy in the OS page cache, and loading takes constant time regardless
+ * of the size of the collection. Mappings files on a non-local {@code FileSystem} are first copied
+ * to a per-host cache directory (by default, under {@code java.io.tmpdir}), which subsequent tasks
+ * on the same host reuse.
+ * </p>
+ *
+ * <p>
+ * The file consists of a header, a table of {@code long} offsets delimiting each docid, an
+ * open-addressing hash table of docnos for docid lookups, and the UTF-8 bytes of all docids. Files
+ * are created from any other {@link DocnoMapping} with
+ * {@link #writeMappingData(DocnoMapping, int, Path, FileSystem)}; the {@code main} of this class
+ * provides a command-line interface to that method.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class MappedDocnoMapping implements DocnoMapping {
+  private static final Logger LOG = Logger.getLogger(MappedDocnoMapping.class);
+
+  /**
+   * Magic number at the beginning of a mapped mappings file.
+   */
+  public static final int MAGIC = 0xCDD0C1D1;
+
+  /**
+   * System property for the directory where non-local mappings files are cached.
+   */
+  public static final String CACHE_DIR_PROPERTY = "cloud9.mapping.cache.dir";
+
+  private static final int VERSION = 1;
+  // magic, version, number of docs, hash table size
+  private static final int HEADER_SIZE = 16;
+
+  private MappedFileBuffer buffer;
+  private int numDocs;
+  private int mask;
+  private long tableBase;
+  private long dataBase;
+
+  /**
+   * Creates a {@code MappedDocnoMapping} object.
+   */
+  public MappedDocnoMapping() {}
+
+  @Override
+  public int getDocno(String docid) {
+    Preconditions.checkNotNull(docid);
+    byte[] bytes = docid.getBytes(Charsets.UTF_8);
+    int slot = CompactDocidTable.hash(bytes, 0, bytes.length) & mask;
+
+    int docno;
+    while ((docno = buffer.getInt(tableBase + 4L * slot)) != 0) {
+      if (matches(docno, bytes)) {
+        return docno;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  @Override
+  public String getDocid(int docno) {
+    if (docno < 1 || docno > numDocs) {
+      throw new ArrayIndexOutOfBoundsException(docno);
+    }
+
+    long start = getOffset(docno - 1);
+    byte[] bytes = new byte[(int) (getOffset(docno) - start)];
+    buffer.get(dataBase + start, bytes, 0, bytes.length);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Returns the number of documents in the mapping.
+   */
+  public int size() {
+    return numDocs;
+  }
+
+  private long getOffset(int i) {
+    return buffer.getLong(HEADER_SIZE + 8L * i);
+  }
+
+  private boolean matches(int docno, byte[] bytes) {
+    long start = getOffset(docno - 1);
+    if (getOffset(docno) - start != bytes.length) {
+      return false;
+    }
+
+    long pos = dataBase + start;
+    for (int i = 0; i < bytes.length; i++) {
+      if (buffer.get(pos + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void loadMapping(Path p, FileSystem fs) throws IOException {
+    Preconditions.checkNotNull(p);
+    Preconditions.checkNotNull(fs);
+
+    if (MappedFileBuffer.isLocal(fs)) {
+      buffer = MappedFileBuffer.map(p, fs);
+    } else {
+      buffer = new MappedFileBuffer(getLocalCopy(p, fs));
+    }
+
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException(p + " is not a mapped mappings file");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported mapped mappings version: " + buffer.getInt(4));
+    }
+
+    numDocs = buffer.getInt(8);
+    int tableSize = buffer.getInt(12);
+    mask = tableSize - 1;
+    tableBase = HEADER_SIZE + 8L * (numDocs + 1);
+    dataBase = tableBase + 4L * tableSize;
+  }
+
+  // Copies a mappings file to the local cache directory, unless a copy of the same version is there
+  // already. The copy is made under a temporary name and renamed into place, so concurrent tasks on
+  // the same host never see a partial file.
+  private static File getLocalCopy(Path p, FileSystem fs) throws IOException {
+    FileStatus status = fs.getFileStatus(p);
+    File dir = new File(System.getProperty(CACHE_DIR_PROPERTY,
+        System.getProperty("java.io.tmpdir") + File.separator + "cloud9-mappings"));
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Unable to create " + dir);
+    }
+
+    File file = new File(dir, p.getName() + "-" + status.getLen() + "-"
+        + status.getModificationTime());
+    if (file.exists() && file.length() == status.getLen()) {
+      return file;
+    }
+
+    File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+    LOG.info("Copying " + p + " to " + file);
+    fs.copyToLocalFile(false, p, new Path(tmp.getAbsolutePath()), true);
+    if (!tmp.renameTo(file) && !(file.exists() && file.length() == status.getLen())) {
+      tmp.delete();
+      throw new IOException("Unable to create " + file);
+    }
+    tmp.delete();
+
+    return file;
+  }
+
+  @Override
+  public Builder getBuilder() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Writes a mapped mappings file containing the same mappings as another {@code DocnoMapping}.
+   *
+   * @param mapping source of the mappings
+   * @param numDocs number of documents; the source must map docnos one through {@code numDocs}
+   * @param output output mappings file
+   * @param fs {@code FileSystem} to write to
+   * @throws IllegalArgumentException if there are too many documents for the hash table, i.e.,
+   *         more than about 715 million
+   * @throws IOException
+   */
+  public static void writeMappingData(DocnoMapping mapping, int numDocs, Path output,
+      FileSystem fs) throws IOException {
+    Preconditions.checkNotNull(mapping);
+    Preconditions.checkArgument(numDocs >= 0);
+
+    // First pass: docid offsets and hash table. The table is sized before anything is allocated, so
+    // that a collection too large for it fails right away.
+    int tableSize = CompactDocidTable.tableSize(numDocs);
+    long[] offsets = new long[numDocs + 1];
+    int mask = tableSize - 1;
+    int[] table = new int[tableSize];
+
+    for (int docno = 1; docno <= numDocs; docno++) {
+      byte[] bytes = mapping.getDocid(docno).getBytes(Charsets.UTF_8);
+      offsets[docno] = offsets[docno - 1] + bytes.length;
+
+      int slot = CompactDocidTable.hash(bytes, 0, bytes.length) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = docno;
+
+      if (docno % 1000000 == 0) {
+        LOG.info(docno + " docs");
+      }
+    }
+
+    FSDataOutputStream out = fs.create(output, true);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(numDocs);
+    out.writeInt(tableSize);
+    for (int i = 0; i <= numDocs; i++) {
+      out.writeLong(offsets[i]);
+    }
+    for (int i = 0; i < tableSize; i++) {
+      out.writeInt(table[i]);
+    }
+
+    // Second pass: the docids themselves.
+    for (int docno = 1; docno <= numDocs; docno++) {
+      out.write(mapping.getDocid(docno).getBytes(Charsets.UTF_8));
+    }
+    out.close();
+
+    LOG.info(numDocs + " docs total. Done!");
+  }
+
+  /**
+   * Converts an existing mappings file into a mapped mappings file.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 4) {
+      System.out.println("usage: [mapping-class] [input-mapping-file] [num-docs] " +
+          "[output-mapping-file]");
+      System.exit(-1);
+    }
+
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.get(conf);
+
+    DocnoMapping mapping = (DocnoMapping) Class.forName(args[0]).newInstance();
+    LOG.info("Loading " + args[1]);
+    mapping.loadMapping(new Path(args[1]), fs);
+
+    LOG.info("Writing " + args[3]);
+    writeMappingData(mapping, Integer.parseInt(args[2]), new Path(args[3]), fs);
+  }
+}
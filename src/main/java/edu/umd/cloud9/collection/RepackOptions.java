@@ -0,0 +1,392 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.util.NativeCodeLoader;
+import org.apache.hadoop.util.Progressable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Settings for the <code>SequenceFile</code>s written by the tools that repack collections (e.g.,
+ * {@link edu.umd.cloud9.collection.clue.RepackClueWarcRecords},
+ * {@link edu.umd.cloud9.collection.wikipedia.RepackWikipedia}, and
+ * {@link edu.umd.cloud9.collection.trecweb.RepackTrecWebCollection}): the compression type, the
+ * codec, and, for block compression, the size of blocks. Since a forward index has to decompress a
+ * whole block to fetch a single record, the block size trades off the size of the collection and
+ * the speed of scanning it against the latency of random access; see
+ * {@link BenchmarkRepackSettings} for measuring this.
+ * </p>
+ *
+ * <p>
+ * The settings are kept in the job configuration, under the <code>Cloud9.Repack.*</code>
+ * properties, and are used by {@link RepackSequenceFileOutputFormat} and
+ * {@link RepackSequenceFileOutputFormatOld}, which also record them in the metadata of the header of
+ * each file that they write.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class RepackOptions {
+  private static final Logger LOG = Logger.getLogger(RepackOptions.class);
+
+  /**
+   * Configuration property for the compression type: <code>block</code>, <code>record</code>, or
+   * <code>none</code>.
+   */
+  public static final String COMPRESSION_TYPE_PROPERTY = "Cloud9.Repack.CompressionType";
+
+  /**
+   * Configuration property for the codec (see {@link #CODECS}).
+   */
+  public static final String CODEC_PROPERTY = "Cloud9.Repack.Codec";
+
+  /**
+   * Configuration property for the (uncompressed) size in bytes at which blocks are compressed.
+   */
+  public static final String BLOCK_SIZE_PROPERTY = "Cloud9.Repack.BlockSize";
+
+  /**
+   * Configuration property for the maximum number of records in a block; zero means no limit.
+   */
+  public static final String RECORDS_PER_BLOCK_PROPERTY = "Cloud9.Repack.RecordsPerBlock";
+
+  /**
+   * Configuration property for the comma-separated names of the fields to also write as columns
+   * (see {@link DocumentFieldColumns}); none by default.
+   */
+  public static final String COLUMNS_PROPERTY = "Cloud9.Repack.Columns";
+
+  /**
+   * Configuration property for the class that extracts the fields to write as columns, a subclass
+   * of {@link DocumentFieldColumns.FieldExtractor}.
+   */
+  public static final String FIELD_EXTRACTOR_PROPERTY = "Cloud9.Repack.FieldExtractor";
+
+  /**
+   * Names of the codecs that can be used, besides <code>none</code>. Not all of them are
+   * necessarily available: <code>snappy</code> and <code>lz4</code> need the Hadoop native
+   * libraries, and <code>zstd</code> needs a version of Hadoop that has it.
+   */
+  public static final String[] CODECS = { "deflate", "gzip", "bzip2", "snappy", "lz4", "zstd" };
+
+  public static final String DEFAULT_COMPRESSION_TYPE = "block";
+  public static final String DEFAULT_CODEC = "deflate";
+  public static final int DEFAULT_BLOCK_SIZE = 1000000;
+
+  public static final String CODEC_OPTION = "codec";
+  public static final String BLOCK_SIZE_OPTION = "block_size";
+  public static final String RECORDS_PER_BLOCK_OPTION = "records_per_block";
+  public static final String COLUMNS_OPTION = "columns";
+
+  // Keys of the metadata in the header of each file.
+  public static final Text COMPRESSION_TYPE_METADATA = new Text("cloud9.repack.compression_type");
+  public static final Text CODEC_METADATA = new Text("cloud9.repack.codec");
+  public static final Text BLOCK_SIZE_METADATA = new Text("cloud9.repack.block_size");
+  public static final Text RECORDS_PER_BLOCK_METADATA = new Text("cloud9.repack.records_per_block");
+
+  private RepackOptions() {}
+
+  /**
+   * Adds the options for the codec, block size, records per block, and columns to the command-line
+   * options of a tool.
+   */
+  @SuppressWarnings("static-access")
+  public static void addOptions(Options options) {
+    options.addOption(OptionBuilder.withArgName(join(CODECS) + "|none").hasArg()
+        .withDescription("codec (default: " + DEFAULT_CODEC + ")").create(CODEC_OPTION));
+    options.addOption(OptionBuilder.withArgName("bytes").hasArg()
+        .withDescription("block size, for block compression (default: " + DEFAULT_BLOCK_SIZE + ")")
+        .create(BLOCK_SIZE_OPTION));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("maximum number of records per block, for block compression")
+        .create(RECORDS_PER_BLOCK_OPTION));
+    options.addOption(OptionBuilder.withArgName("fields").hasArg()
+        .withDescription("fields to also write as columns, e.g., docid,url,title")
+        .create(COLUMNS_OPTION));
+  }
+
+  /**
+   * Sets the configuration from the command-line options added by {@link #addOptions(Options)} and
+   * the compression type, and checks that the settings are valid.
+   *
+   * @param conf configuration of the job
+   * @param cmdline the command line
+   * @param compressionType <code>block</code>, <code>record</code>, or <code>none</code>
+   * @throws IllegalArgumentException if any setting isn't valid
+   */
+  public static void configure(Configuration conf, CommandLine cmdline, String compressionType) {
+    conf.set(COMPRESSION_TYPE_PROPERTY, compressionType);
+    if (cmdline.hasOption(CODEC_OPTION)) {
+      conf.set(CODEC_PROPERTY, cmdline.getOptionValue(CODEC_OPTION));
+    }
+    if (cmdline.hasOption(BLOCK_SIZE_OPTION)) {
+      conf.setInt(BLOCK_SIZE_PROPERTY, Integer.parseInt(cmdline.getOptionValue(BLOCK_SIZE_OPTION)));
+    }
+    if (cmdline.hasOption(RECORDS_PER_BLOCK_OPTION)) {
+      conf.setInt(RECORDS_PER_BLOCK_PROPERTY,
+          Integer.parseInt(cmdline.getOptionValue(RECORDS_PER_BLOCK_OPTION)));
+    }
+    if (cmdline.hasOption(COLUMNS_OPTION)) {
+      conf.set(COLUMNS_PROPERTY, cmdline.getOptionValue(COLUMNS_OPTION));
+    }
+    configure(conf);
+  }
+
+  /**
+   * Checks the settings in a configuration, and sets the standard output compression properties
+   * of the job to match, so that they are also reported correctly.
+   *
+   * @throws IllegalArgumentException if any setting isn't valid
+   */
+  public static void configure(Configuration conf) {
+    SequenceFile.CompressionType type = getCompressionType(conf);
+    Class<? extends CompressionCodec> codec = getCodecClass(conf);
+    int blockSize = getBlockSize(conf);
+    int recordsPerBlock = getRecordsPerBlock(conf);
+
+    conf.setBoolean("mapreduce.output.fileoutputformat.compress", codec != null);
+    if (codec != null) {
+      conf.set("mapreduce.output.fileoutputformat.compress.type", type.toString());
+      conf.setClass("mapreduce.output.fileoutputformat.compress.codec", codec,
+          CompressionCodec.class);
+    }
+    conf.setInt("io.seqfile.compress.blocksize", blockSize);
+
+    LOG.info(" - compression type: " + type);
+    LOG.info(" - codec: " + (codec == null ? "none" : codec.getName()));
+    if (type == SequenceFile.CompressionType.BLOCK) {
+      LOG.info(" - block size: " + blockSize);
+      LOG.info(" - records per block: " + (recordsPerBlock == 0 ? "no limit" : recordsPerBlock));
+    }
+    String[] columns = getColumns(conf);
+    if (columns.length > 0) {
+      LOG.info(" - columns: " + join(columns));
+    }
+  }
+
+  /**
+   * Returns the compression type, which is <code>NONE</code> if the codec is <code>none</code>.
+   */
+  public static SequenceFile.CompressionType getCompressionType(Configuration conf) {
+    String type = conf.get(COMPRESSION_TYPE_PROPERTY, DEFAULT_COMPRESSION_TYPE);
+    if (!type.equals("block") && !type.equals("record") && !type.equals("none")) {
+      throw new IllegalArgumentException("\"" + type + "\" unknown compression type!");
+    }
+    if (type.equals("none") || getCodecClass(conf) == null) {
+      return SequenceFile.CompressionType.NONE;
+    }
+    return type.equals("block") ? SequenceFile.CompressionType.BLOCK
+        : SequenceFile.CompressionType.RECORD;
+  }
+
+  /**
+   * Returns the class of the codec, or <code>null</code> for no compression.
+   *
+   * @throws IllegalArgumentException if the codec is unknown or unavailable
+   */
+  public static Class<? extends CompressionCodec> getCodecClass(Configuration conf) {
+    if (conf.get(COMPRESSION_TYPE_PROPERTY, DEFAULT_COMPRESSION_TYPE).equals("none")) {
+      return null;
+    }
+    String name = conf.get(CODEC_PROPERTY, DEFAULT_CODEC);
+    if (name.equals("none")) {
+      return null;
+    }
+
+    Class<? extends CompressionCodec> codec = getCodecClass(name);
+    if (!isAvailable(codec, conf)) {
+      throw new IllegalArgumentException("Codec \"" + name + "\" isn't available!");
+    }
+    return codec;
+  }
+
+  /**
+   * Returns the class of a codec, given its name (see {@link #CODECS}).
+   *
+   * @throws IllegalArgumentException if the codec is unknown or isn't in this version of Hadoop
+   */
+  public static Class<? extends CompressionCodec> getCodecClass(String name) {
+    if (name.equals("deflate")) {
+      return DefaultCodec.class;
+    } else if (name.equals("gzip")) {
+      return GzipCodec.class;
+    } else if (name.equals("bzip2")) {
+      return BZip2Codec.class;
+    } else if (name.equals("snappy")) {
+      return SnappyCodec.class;
+    } else if (name.equals("lz4")) {
+      return Lz4Codec.class;
+    } else if (name.equals("zstd")) {
+      try {
+        return Class.forName("org.apache.hadoop.io.compress.ZStandardCodec")
+            .asSubclass(CompressionCodec.class);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalArgumentException("Codec \"zstd\" isn't in this version of Hadoop!");
+      }
+    }
+    throw new IllegalArgumentException("\"" + name + "\" unknown codec!");
+  }
+
+  /**
+   * Checks whether a codec can actually be used, i.e., that the native libraries that it needs (if
+   * any) are loaded. <code>SequenceFile</code>s can only use gzip with the native libraries.
+   */
+  public static boolean isAvailable(Class<? extends CompressionCodec> codec, Configuration conf) {
+    if (codec == GzipCodec.class && !NativeCodeLoader.isNativeCodeLoaded()) {
+      return false;
+    }
+    try {
+      ReflectionUtils.newInstance(codec, conf).createCompressor();
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the names of the codecs that are available.
+   */
+  public static List<String> getAvailableCodecs(Configuration conf) {
+    List<String> codecs = Lists.newArrayList();
+    for (String name : CODECS) {
+      try {
+        if (isAvailable(getCodecClass(name), conf)) {
+          codecs.add(name);
+        }
+      } catch (IllegalArgumentException e) {
+        // Not in this version of Hadoop.
+      }
+    }
+    return codecs;
+  }
+
+  /**
+   * Returns the (uncompressed) size in bytes at which blocks are compressed.
+   */
+  public static int getBlockSize(Configuration conf) {
+    int blockSize = conf.getInt(BLOCK_SIZE_PROPERTY, DEFAULT_BLOCK_SIZE);
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be positive!");
+    }
+    return blockSize;
+  }
+
+  /**
+   * Returns the maximum number of records per block, or zero if there's no limit.
+   */
+  public static int getRecordsPerBlock(Configuration conf) {
+    int records = conf.getInt(RECORDS_PER_BLOCK_PROPERTY, 0);
+    if (records < 0) {
+      throw new IllegalArgumentException("Records per block can't be negative!");
+    }
+    return records;
+  }
+
+  /**
+   * Returns the names of the fields to also write as columns, which may be none.
+   */
+  public static String[] getColumns(Configuration conf) {
+    List<String> columns = Lists.newArrayList();
+    for (String column : conf.getTrimmedStrings(COLUMNS_PROPERTY)) {
+      if (column.length() > 0) {
+        columns.add(column);
+      }
+    }
+    return columns.toArray(new String[columns.size()]);
+  }
+
+  /**
+   * Returns the metadata that records the settings, for the header of a file.
+   */
+  public static SequenceFile.Metadata getMetadata(Configuration conf) {
+    Class<? extends CompressionCodec> codec = getCodecClass(conf);
+    SequenceFile.Metadata metadata = new SequenceFile.Metadata();
+    metadata.set(COMPRESSION_TYPE_METADATA, new Text(getCompressionType(conf).toString()));
+    metadata.set(CODEC_METADATA, new Text(codec == null ? "none" : codec.getName()));
+    metadata.set(BLOCK_SIZE_METADATA, new Text(Integer.toString(getBlockSize(conf))));
+    metadata.set(RECORDS_PER_BLOCK_METADATA, new Text(Integer.toString(getRecordsPerBlock(conf))));
+    return metadata;
+  }
+
+  /**
+   * Creates a writer for a file with the settings in a configuration. The block size is
+   * configured on the writer, but the limit on records per block is up to the caller, by calling
+   * {@code sync()} on the writer.
+   *
+   * @param conf configuration
+   * @param file file to write
+   * @param keyClass class of the keys
+   * @param valueClass class of the values
+   * @param progress reported to while writing, or <code>null</code>
+   * @return the writer
+   * @throws IOException
+   */
+  public static SequenceFile.Writer createWriter(Configuration conf, Path file, Class<?> keyClass,
+      Class<?> valueClass, Progressable progress) throws IOException {
+    Configuration writerConf = new Configuration(conf);
+    writerConf.setInt("io.seqfile.compress.blocksize", getBlockSize(conf));
+
+    Class<? extends CompressionCodec> codec = getCodecClass(conf);
+    List<SequenceFile.Writer.Option> options = Lists.newArrayList(
+        SequenceFile.Writer.file(file),
+        SequenceFile.Writer.keyClass(keyClass),
+        SequenceFile.Writer.valueClass(valueClass),
+        SequenceFile.Writer.metadata(getMetadata(conf)));
+    if (codec == null) {
+      options.add(SequenceFile.Writer.compression(SequenceFile.CompressionType.NONE));
+    } else {
+      options.add(SequenceFile.Writer.compression(getCompressionType(conf),
+          ReflectionUtils.newInstance(codec, writerConf)));
+    }
+    if (progress != null) {
+      options.add(SequenceFile.Writer.progressable(progress));
+    }
+
+    return SequenceFile.createWriter(writerConf,
+        options.toArray(new SequenceFile.Writer.Option[options.size()]));
+  }
+
+  private static String join(String[] names) {
+    StringBuilder sb = new StringBuilder();
+    for (String name : names) {
+      sb.append(sb.length() == 0 ? "" : "|").append(name);
+    }
+    return sb.toString();
+  }
+}
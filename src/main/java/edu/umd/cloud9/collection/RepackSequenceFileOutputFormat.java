@@ -0,0 +1,82 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+/**
+ * <p>
+ * Hadoop {@code OutputFormat} for writing <code>SequenceFile</code>s with the settings of
+ * {@link RepackOptions} (new API). Besides compressing blocks once they reach the configured size,
+ * blocks are also cut after the configured number of records, if any, and the settings are recorded
+ * in the metadata of the header of each file.
+ * </p>
+ *
+ * <p>
+ * If {@link RepackOptions#COLUMNS_PROPERTY} names any fields, they are also written to a column
+ * file for each file, in the {@link DocumentFieldColumns#DIRECTORY} subdirectory of the output.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class RepackSequenceFileOutputFormat<K, V> extends SequenceFileOutputFormat<K, V> {
+
+  @Override
+  public RecordWriter<K, V> getRecordWriter(TaskAttemptContext context) throws IOException,
+      InterruptedException {
+    Configuration conf = context.getConfiguration();
+    Path file = getDefaultWorkFile(context, "");
+    final SequenceFile.Writer out = RepackOptions.createWriter(conf, file,
+        context.getOutputKeyClass(), context.getOutputValueClass(), context);
+    final DocumentFieldColumns.Writer columns = DocumentFieldColumns.createWriter(conf, file);
+    final int recordsPerBlock =
+        RepackOptions.getCompressionType(conf) == SequenceFile.CompressionType.BLOCK
+            ? RepackOptions.getRecordsPerBlock(conf) : 0;
+
+    return new RecordWriter<K, V>() {
+      private int records = 0;
+
+      @Override
+      public void write(K key, V value) throws IOException {
+        out.append(key, value);
+        if (columns != null) {
+          columns.append(key, value);
+        }
+        if (recordsPerBlock > 0 && ++records == recordsPerBlock) {
+          // For a block-compressed file, this compresses and writes out the current block.
+          out.sync();
+          records = 0;
+        }
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        out.close();
+        if (columns != null) {
+          columns.close();
+        }
+      }
+    };
+  }
+}
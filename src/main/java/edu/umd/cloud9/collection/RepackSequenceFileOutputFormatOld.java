@@ -0,0 +1,77 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordWriter;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.util.Progressable;
+
+/**
+ * <p>
+ * Hadoop {@code OutputFormat} for writing <code>SequenceFile</code>s with the settings of
+ * {@link RepackOptions} (old API). See {@link RepackSequenceFileOutputFormat} for details.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class RepackSequenceFileOutputFormatOld<K, V> extends SequenceFileOutputFormat<K, V> {
+
+  @Override
+  public RecordWriter<K, V> getRecordWriter(FileSystem ignored, JobConf job, String name,
+      Progressable progress) throws IOException {
+    Path file = FileOutputFormat.getTaskOutputPath(job, name);
+    final SequenceFile.Writer out = RepackOptions.createWriter(job, file, job.getOutputKeyClass(),
+        job.getOutputValueClass(), progress);
+    final DocumentFieldColumns.Writer columns = DocumentFieldColumns.createWriter(job, file);
+    final int recordsPerBlock =
+        RepackOptions.getCompressionType(job) == SequenceFile.CompressionType.BLOCK
+            ? RepackOptions.getRecordsPerBlock(job) : 0;
+
+    return new RecordWriter<K, V>() {
+      private int records = 0;
+
+      @Override
+      public void write(K key, V value) throws IOException {
+        out.append(key, value);
+        if (columns != null) {
+          columns.append(key, value);
+        }
+        if (recordsPerBlock > 0 && ++records == recordsPerBlock) {
+          // For a block-compressed file, this compresses and writes out the current block.
+          out.sync();
+          records = 0;
+        }
+      }
+
+      @Override
+      public void close(Reporter reporter) throws IOException {
+        out.close();
+        if (columns != null) {
+          columns.close();
+        }
+      }
+    };
+  }
+}
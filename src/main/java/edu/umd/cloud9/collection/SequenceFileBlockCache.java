@@ -0,0 +1,333 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+
+/**
+ * <p>
+ * Cache of decompressed blocks for forward indexes over block-compressed SequenceFiles keyed by
+ * {@code IntWritable} docnos (e.g., {@link edu.umd.cloud9.collection.clue.ClueWarcForwardIndex}
+ * and {@link edu.umd.cloud9.collection.wikipedia.WikipediaForwardIndex}). A block holds the
+ * uncompressed bytes of every record between a block offset recorded in the forward index and the
+ * first docno of the next block, so fetching neighboring docnos only costs deserialization. Blocks
+ * are evicted in least-recently-used order once the total cached bytes exceed the configured
+ * capacity.
+ * </p>
+ *
+ * <p>
+ * A block is read and decompressed in a single pass when it's first requested, and the value is
+ * then deserialized from the cached copy; the cache holds every record of the block, so a docno
+ * that isn't in the cached block isn't in the collection either. The cache also keeps a
+ * {@link SequenceFileReaderPool}, so that misses don't pay for opening the file and reading its
+ * header each time. Hit, miss, and eviction counts are available for monitoring. Instances are
+ * thread-safe.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class SequenceFileBlockCache {
+  private static final Logger LOG = Logger.getLogger(SequenceFileBlockCache.class);
+
+  /**
+   * Configuration property for the capacity of the cache in bytes; zero disables caching.
+   */
+  public static final String CACHE_BYTES_PROPERTY = "Cloud9.ForwardIndexCacheBytes";
+
+  /**
+   * Configuration property for the number of idle readers kept open per file.
+   */
+  public static final String READERS_PER_FILE_PROPERTY =
+      SequenceFileReaderPool.READERS_PER_FILE_PROPERTY;
+
+  private final long capacity;
+  private final SequenceFileReaderPool readers;
+
+  private final LinkedHashMap<String, Block> blocks =
+      new LinkedHashMap<String, Block>(16, 0.75f, true);
+  private long size = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Creates a cache.
+   *
+   * @param conf configuration used to open readers
+   * @param capacity maximum number of uncompressed bytes to hold
+   * @param readersPerFile maximum number of idle readers to keep open per file
+   */
+  public SequenceFileBlockCache(Configuration conf, long capacity, int readersPerFile) {
+    Preconditions.checkArgument(capacity > 0);
+    this.capacity = capacity;
+    this.readers = new SequenceFileReaderPool(conf, readersPerFile);
+  }
+
+  /**
+   * Creates a cache based on {@link #CACHE_BYTES_PROPERTY} and {@link #READERS_PER_FILE_PROPERTY}.
+   *
+   * @param conf configuration
+   * @return the cache, or {@code null} if caching isn't enabled
+   */
+  public static SequenceFileBlockCache fromConfiguration(Configuration conf) {
+    long bytes = conf.getLong(CACHE_BYTES_PROPERTY, 0);
+    if (bytes <= 0) {
+      return null;
+    }
+
+    LOG.info("Caching up to " + bytes + " bytes of decompressed blocks");
+    return new SequenceFileBlockCache(conf, bytes, conf.getInt(READERS_PER_FILE_PROPERTY,
+        SequenceFileReaderPool.DEFAULT_READERS_PER_FILE));
+  }
+
+  /**
+   * Reads the value of the record with a particular docno into {@code value}.
+   *
+   * @param file the SequenceFile
+   * @param offset block offset recorded in the forward index
+   * @param endDocno first docno of the next block in the same file, or
+   *     {@code Integer.MAX_VALUE} if this is the last block of the file
+   * @param docno docno of the record
+   * @param value object to deserialize into
+   * @return {@code true} if the record was found in the block
+   * @throws IOException
+   */
+  public boolean get(Path file, long offset, int endDocno, int docno, Writable value)
+      throws IOException {
+    return get(file, offset, endDocno, docno, value, null);
+  }
+
+  /**
+   * Reads the value of the record with a particular docno into {@code value}, reporting whether
+   * the block was cached, and the cost of reading it if it wasn't, into {@code metrics}.
+   *
+   * @param file the SequenceFile
+   * @param offset block offset recorded in the forward index
+   * @param endDocno first docno of the next block in the same file, or
+   *     {@code Integer.MAX_VALUE} if this is the last block of the file
+   * @param docno docno of the record
+   * @param value object to deserialize into
+   * @param metrics instrumentation to report into, or {@code null}
+   * @return {@code true} if the record was found in the block
+   * @throws IOException
+   */
+  public boolean get(Path file, long offset, int endDocno, int docno, Writable value,
+      ForwardIndexMetrics metrics) throws IOException {
+    String key = file.toString() + "@" + offset;
+
+    Block block;
+    synchronized (this) {
+      block = blocks.get(key);
+    }
+
+    if (block != null) {
+      hits.incrementAndGet();
+      if (metrics != null) {
+        metrics.increment(Counter.CACHE_HITS, 1);
+      }
+    } else {
+      misses.incrementAndGet();
+      if (metrics != null) {
+        metrics.increment(Counter.CACHE_MISSES, 1);
+      }
+      block = load(file, offset, endDocno, metrics);
+      put(key, block);
+    }
+
+    long start = metrics != null ? metrics.now() : 0;
+    boolean found = block.read(docno, value);
+    if (metrics != null && found) {
+      metrics.recordSince(Phase.PARSE, start);
+    }
+    return found;
+  }
+
+  private synchronized void put(String key, Block block) {
+    Block old = blocks.put(key, block);
+    if (old != null) {
+      // Another thread loaded the same block concurrently.
+      size -= old.size();
+    }
+    size += block.size();
+
+    Iterator<Block> iter = blocks.values().iterator();
+    while (size > capacity && blocks.size() > 1 && iter.hasNext()) {
+      Block b = iter.next();
+      if (b == block) {
+        continue;
+      }
+      size -= b.size();
+      iter.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  private Block load(Path file, long offset, int endDocno, ForwardIndexMetrics metrics)
+      throws IOException {
+    long start = metrics != null ? metrics.now() : 0;
+    SequenceFile.Reader reader = readers.borrow(file);
+
+    boolean ok = false;
+    try {
+      reader.seek(offset);
+      if (metrics != null) {
+        start = metrics.recordSince(Phase.SEEK, start);
+      }
+
+      DataOutputBuffer keyBuffer = new DataOutputBuffer();
+      DataOutputBuffer data = new DataOutputBuffer();
+      SequenceFile.ValueBytes valueBytes = reader.createValueBytes();
+
+      int[] keys = new int[64];
+      int[] starts = new int[65];
+      int n = 0;
+
+      while (true) {
+        keyBuffer.reset();
+        if (reader.nextRawKey(keyBuffer) < 0) {
+          break;
+        }
+
+        // The raw bytes of an IntWritable are just the big-endian int.
+        byte[] k = keyBuffer.getData();
+        int docno = ((k[0] & 0xff) << 24) | ((k[1] & 0xff) << 16) | ((k[2] & 0xff) << 8)
+            | (k[3] & 0xff);
+        if (docno >= endDocno) {
+          break;
+        }
+
+        reader.nextRawValue(valueBytes);
+        valueBytes.writeUncompressedBytes(data);
+
+        if (n == keys.length) {
+          keys = Arrays.copyOf(keys, n * 2);
+          starts = Arrays.copyOf(starts, n * 2 + 1);
+        }
+        keys[n++] = docno;
+        starts[n] = data.getLength();
+      }
+
+      if (metrics != null) {
+        metrics.recordSince(Phase.DECOMPRESS, start);
+        metrics.increment(Counter.BYTES_READ, reader.getPosition() - offset);
+      }
+
+      ok = true;
+      return new Block(Arrays.copyOf(keys, n), Arrays.copyOf(starts, n + 1),
+          Arrays.copyOf(data.getData(), data.getLength()));
+    } finally {
+      if (ok) {
+        readers.release(file, reader);
+      } else {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Empties the cache and closes all pooled readers.
+   */
+  public void close() throws IOException {
+    synchronized (this) {
+      blocks.clear();
+      size = 0;
+    }
+
+    readers.close();
+  }
+
+  /**
+   * Returns the number of lookups served from the cache.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of lookups that required reading a block.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of blocks evicted.
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of uncompressed bytes currently cached.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of blocks currently cached.
+   */
+  public synchronized int getBlockCount() {
+    return blocks.size();
+  }
+
+  private static class Block {
+    private final int[] keys;
+    private final int[] starts;
+    private final byte[] data;
+
+    Block(int[] keys, int[] starts, byte[] data) {
+      this.keys = keys;
+      this.starts = starts;
+      this.data = data;
+    }
+
+    long size() {
+      return data.length + 4L * (keys.length + starts.length);
+    }
+
+    boolean read(int docno, Writable value) throws IOException {
+      int idx = Arrays.binarySearch(keys, docno);
+      if (idx < 0) {
+        return false;
+      }
+
+      DataInputBuffer in = new DataInputBuffer();
+      in.reset(data, starts[idx], starts[idx + 1] - starts[idx]);
+      value.readFields(in);
+      return true;
+    }
+  }
+}
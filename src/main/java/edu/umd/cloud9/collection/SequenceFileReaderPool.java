@@ -0,0 +1,133 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Small pool of open {@code SequenceFile.Reader}s per file, so that forward index fetches don't
+ * pay for opening the file and reading its header each time. Readers are borrowed for the duration
+ * of a fetch and then returned; a reader that failed should be closed instead of returned. At most
+ * a fixed number of idle readers are kept open per file. Instances are thread-safe.
+ *
+ * @author Jimmy Lin
+ */
+public class SequenceFileReaderPool {
+  /**
+   * Configuration property for the number of idle readers kept open per file.
+   */
+  public static final String READERS_PER_FILE_PROPERTY = "Cloud9.ForwardIndexReadersPerFile";
+
+  static final int DEFAULT_READERS_PER_FILE = 4;
+
+  private final Configuration conf;
+  private final int readersPerFile;
+  private final Map<Path, LinkedList<SequenceFile.Reader>> readers = Maps.newHashMap();
+
+  /**
+   * Creates a pool.
+   *
+   * @param conf configuration used to open readers
+   * @param readersPerFile maximum number of idle readers to keep open per file
+   */
+  public SequenceFileReaderPool(Configuration conf, int readersPerFile) {
+    Preconditions.checkArgument(readersPerFile >= 0);
+    this.conf = Preconditions.checkNotNull(conf);
+    this.readersPerFile = readersPerFile;
+  }
+
+  /**
+   * Creates a pool based on {@link #READERS_PER_FILE_PROPERTY}.
+   *
+   * @param conf configuration
+   * @return the pool
+   */
+  public static SequenceFileReaderPool fromConfiguration(Configuration conf) {
+    return new SequenceFileReaderPool(conf,
+        conf.getInt(READERS_PER_FILE_PROPERTY, DEFAULT_READERS_PER_FILE));
+  }
+
+  /**
+   * Returns an idle reader for a file, or opens a new one if there are none.
+   */
+  public SequenceFile.Reader borrow(Path file) throws IOException {
+    synchronized (readers) {
+      LinkedList<SequenceFile.Reader> pool = readers.get(file);
+      if (pool != null && !pool.isEmpty()) {
+        return pool.removeFirst();
+      }
+    }
+
+    return new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+  }
+
+  /**
+   * Returns a reader to the pool, or closes it if the pool for its file is full.
+   */
+  public void release(Path file, SequenceFile.Reader reader) throws IOException {
+    synchronized (readers) {
+      LinkedList<SequenceFile.Reader> pool = readers.get(file);
+      if (pool == null) {
+        pool = new LinkedList<SequenceFile.Reader>();
+        readers.put(file, pool);
+      }
+
+      if (pool.size() < readersPerFile) {
+        pool.addFirst(reader);
+        return;
+      }
+    }
+
+    reader.close();
+  }
+
+  /**
+   * Returns the number of idle readers currently open.
+   */
+  public int getIdleCount() {
+    synchronized (readers) {
+      int n = 0;
+      for (LinkedList<SequenceFile.Reader> pool : readers.values()) {
+        n += pool.size();
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Closes all idle readers.
+   */
+  public void close() throws IOException {
+    synchronized (readers) {
+      for (LinkedList<SequenceFile.Reader> pool : readers.values()) {
+        for (SequenceFile.Reader reader : pool) {
+          reader.close();
+        }
+      }
+      readers.clear();
+    }
+  }
+}
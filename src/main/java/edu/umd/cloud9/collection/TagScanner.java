@@ -0,0 +1,292 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Scans an input stream for tags (arbitrary byte sequences), which is how {@link XMLInputFormat}
+ * and {@link XMLInputFormatOld} find document boundaries. Input is read in large blocks, the scanner
+ * skips ahead to the first byte of the tag with a tight loop over the buffer, and partial matches
+ * are extended with the Knuth-Morris-Pratt algorithm, so that no byte is ever examined twice and
+ * tags are found even when they overlap a partial match (e.g., <code>&lt;&lt;DOC&gt;</code>).
+ * Bytes that are to be kept are copied into the output in runs rather than one at a time.
+ * </p>
+ *
+ * <p>
+ * The scanner keeps track of the number of bytes consumed, since positions can't be obtained from
+ * the streams of compressed files.
+ * </p>
+ *
+ * <p>
+ * A scanner can also read one split of a file compressed with a {@link SplittableCompressionCodec}
+ * such as bzip2. The stream must be opened in {@code READ_MODE.BYBLOCK} mode, in which every read
+ * returns bytes from a single compressed block and the position of the stream is that of the block
+ * the bytes came from. A tag then belongs to the split if its first byte comes from a block that
+ * starts no later than the end of the split (the same convention as Hadoop's
+ * {@code LineRecordReader}), and the next split, which starts reading at the first block after
+ * that, picks up from there.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class TagScanner {
+  public static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
+
+  private final InputStream in;
+  private final byte[] buf;
+  private int bufPos = 0;
+  private int bufLen = 0;
+
+  // Position in the stream of the first byte in the buffer.
+  private long base;
+
+  // Only used when reading a split of a compressed file: the end of the split in the compressed
+  // file, and the position in the stream of the first byte past the split, once we know it.
+  private final Seekable splitIn;
+  private final long splitEnd;
+  private long splitLimit = Long.MAX_VALUE;
+
+  /**
+   * Creates a scanner.
+   *
+   * @param in stream to read from
+   * @param pos position in the underlying file of the next byte in the stream
+   */
+  public TagScanner(InputStream in, long pos) {
+    this(in, pos, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a scanner.
+   *
+   * @param in stream to read from
+   * @param pos position in the underlying file of the next byte in the stream
+   * @param bufferSize size of the read buffer
+   */
+  public TagScanner(InputStream in, long pos, int bufferSize) {
+    Preconditions.checkArgument(bufferSize > 0);
+    this.in = Preconditions.checkNotNull(in);
+    this.buf = new byte[bufferSize];
+    this.base = pos;
+    this.splitIn = null;
+    this.splitEnd = Long.MAX_VALUE;
+  }
+
+  /**
+   * Creates a scanner over one split of a file compressed with a splittable codec. Positions count
+   * uncompressed bytes from the start of the split.
+   *
+   * @param in stream opened in {@code READ_MODE.BYBLOCK} mode
+   */
+  public TagScanner(SplitCompressionInputStream in) {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a scanner over one split of a file compressed with a splittable codec. Positions count
+   * uncompressed bytes from the start of the split.
+   *
+   * @param in stream opened in {@code READ_MODE.BYBLOCK} mode
+   * @param bufferSize size of the read buffer
+   */
+  public TagScanner(SplitCompressionInputStream in, int bufferSize) {
+    this(in, in, in.getAdjustedEnd(), bufferSize);
+  }
+
+  /**
+   * Creates a scanner over one split of a file compressed with a splittable codec, read through
+   * another stream (e.g., a {@link edu.umd.cloud9.io.PrefetchingInputStream}) that preserves the
+   * block semantics of the underlying stream. Positions count uncompressed bytes from the start of
+   * the split.
+   *
+   * @param in stream to read from
+   * @param blockPos gives the position in the compressed file of the block that the last read came
+   *     from
+   * @param splitEnd end of the split in the compressed file, as adjusted to block boundaries
+   * @param bufferSize size of the read buffer
+   */
+  public TagScanner(InputStream in, Seekable blockPos, long splitEnd, int bufferSize) {
+    Preconditions.checkArgument(bufferSize > 0);
+    this.in = Preconditions.checkNotNull(in);
+    this.buf = new byte[bufferSize];
+    this.base = 0;
+    this.splitIn = Preconditions.checkNotNull(blockPos);
+    this.splitEnd = splitEnd;
+  }
+
+  /**
+   * Computes the failure function of a tag for use with {@link #readUntilMatch}: entry
+   * <code>k</code> holds the length of the longest proper prefix of <code>tag[0..k]</code> that is
+   * also a suffix of it.
+   */
+  public static int[] failureFunction(byte[] tag) {
+    Preconditions.checkArgument(tag.length > 0);
+
+    int[] failure = new int[tag.length];
+    int k = 0;
+    for (int i = 1; i < tag.length; i++) {
+      while (k > 0 && tag[i] != tag[k]) {
+        k = failure[k - 1];
+      }
+      if (tag[i] == tag[k]) {
+        k++;
+      }
+      failure[i] = k;
+    }
+    return failure;
+  }
+
+  /**
+   * Consumes bytes up to and including the next occurrence of a tag that starts before a given
+   * position and, when reading a split of a compressed file, within the split. Scanning stops as
+   * soon as it's clear that there is no such tag.
+   *
+   * @param tag the tag
+   * @param failure failure function of the tag, as computed by {@link #failureFunction}
+   * @param limit the tag has to start before this position
+   * @return <code>true</code> if the tag was found, or <code>false</code> otherwise
+   * @throws IOException
+   */
+  public boolean readUntilMatch(byte[] tag, int[] failure, long limit) throws IOException {
+    return scan(tag, failure, true, limit, null);
+  }
+
+  /**
+   * Consumes bytes up to and including the next occurrence of a tag, appending them to a buffer.
+   *
+   * @param tag the tag
+   * @param failure failure function of the tag, as computed by {@link #failureFunction}
+   * @param out buffer that consumed bytes are appended to
+   * @return <code>true</code> if the tag was found, or <code>false</code> if the end of the stream
+   *     was reached first
+   * @throws IOException
+   */
+  public boolean readUntilMatch(byte[] tag, int[] failure, DataOutputBuffer out)
+      throws IOException {
+    return scan(tag, failure, false, Long.MAX_VALUE, Preconditions.checkNotNull(out));
+  }
+
+  private boolean scan(byte[] tag, int[] failure, boolean withinSplit, long maxPos,
+      DataOutputBuffer out) throws IOException {
+    byte first = tag[0];
+    int i = 0; // Length of the partial match.
+
+    while (true) {
+      if (bufPos == bufLen && !fill()) {
+        return false;
+      }
+
+      // The end of the split may have become known in the call to fill.
+      long limit = withinSplit ? Math.min(maxPos, splitLimit) : Long.MAX_VALUE;
+      int p = bufPos;
+      int n = bufLen;
+      while (p < n) {
+        if (i == 0) {
+          // Skip ahead to the next byte that could start a match, but not past the limit.
+          int stop = limit - base < n ? (int) Math.max(p, limit - base) : n;
+          while (p < stop && buf[p] != first) {
+            p++;
+          }
+          if (p == stop) {
+            if (stop < n) {
+              consume(p, out);
+              return false;
+            }
+            break;
+          }
+          i = 1;
+          p++;
+        } else {
+          byte b = buf[p++];
+          while (i > 0 && b != tag[i]) {
+            i = failure[i - 1];
+          }
+          if (b == tag[i]) {
+            i++;
+          }
+        }
+
+        if (i == tag.length) {
+          consume(p, out);
+          return true;
+        }
+
+        // See if the current partial match starts at or past the stop point.
+        if (base + p - i >= limit) {
+          consume(p, out);
+          return false;
+        }
+      }
+
+      consume(n, out);
+    }
+  }
+
+  /**
+   * Returns the position in the underlying file (or, when reading a split of a compressed file, in
+   * the split) of the next byte to be consumed.
+   */
+  public long getPos() {
+    return base + bufPos;
+  }
+
+  /**
+   * Closes the underlying stream.
+   */
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private void consume(int p, DataOutputBuffer out) throws IOException {
+    if (out != null) {
+      out.write(buf, bufPos, p - bufPos);
+    }
+    bufPos = p;
+  }
+
+  private boolean fill() throws IOException {
+    base += bufLen;
+    bufPos = 0;
+    bufLen = 0;
+
+    int n;
+    do {
+      n = in.read(buf, 0, buf.length);
+    } while (n == 0);
+
+    if (n < 0) {
+      return false;
+    }
+    bufLen = n;
+
+    // The first block that starts past the end of the split belongs to the next split.
+    if (splitIn != null && splitLimit == Long.MAX_VALUE && splitIn.getPos() > splitEnd) {
+      splitLimit = base;
+    }
+    return true;
+  }
+}
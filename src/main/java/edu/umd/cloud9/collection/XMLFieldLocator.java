@@ -0,0 +1,142 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection;
+
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Locates fields (i.e., elements such as <code>&lt;DOCNO&gt;...&lt;/DOCNO&gt;</code>) in the raw
+ * UTF-8 bytes of a document in a single pass, as opposed to searching the text of the whole
+ * document once per field. Only the offsets of the fields are recorded; the value of a field is
+ * decoded on first access, and only if it's accessed. As with {@link String#indexOf(String)}, the
+ * first occurrence of each field counts, and fields may nest or overlap. The scan stops as soon as
+ * all fields have been found, so fields near the beginning of a long document are cheap to find.
+ * </p>
+ *
+ * <p>
+ * A locator is meant to be reused from one document to the next. It refers to the bytes of the
+ * current document rather than copying them, so they must not be modified until the next call to
+ * {@link #locate(byte[], int, int)}.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class XMLFieldLocator {
+  private final byte[][] startTags;
+  private final byte[][] endTags;
+  private final int[] starts;
+  private final int[] ends;
+  private final String[] values;
+  private byte[] bytes;
+
+  /**
+   * Creates a locator for the fields with the given tag names (e.g., <code>DOCNO</code>). Fields
+   * are referred to by their position in this list.
+   */
+  public XMLFieldLocator(String... tags) {
+    Preconditions.checkArgument(tags.length > 0);
+    startTags = new byte[tags.length][];
+    endTags = new byte[tags.length][];
+    for (int i = 0; i < tags.length; i++) {
+      startTags[i] = ("<" + tags[i] + ">").getBytes(Charsets.UTF_8);
+      endTags[i] = ("</" + tags[i] + ">").getBytes(Charsets.UTF_8);
+    }
+    starts = new int[tags.length];
+    ends = new int[tags.length];
+    values = new String[tags.length];
+  }
+
+  /**
+   * Locates the fields in a document.
+   *
+   * @param bytes buffer holding the document
+   * @param offset offset of the document in the buffer
+   * @param length length of the document
+   */
+  public void locate(byte[] bytes, int offset, int length) {
+    this.bytes = bytes;
+    Arrays.fill(starts, -1);
+    Arrays.fill(ends, -1);
+    Arrays.fill(values, null);
+
+    int remaining = startTags.length;
+    int end = offset + length;
+    for (int i = offset; i < end && remaining > 0; i++) {
+      if (bytes[i] != '<') {
+        continue;
+      }
+      for (int f = 0; f < startTags.length; f++) {
+        if (starts[f] < 0) {
+          if (matches(bytes, i, end, startTags[f])) {
+            starts[f] = i + startTags[f].length;
+          }
+        } else if (ends[f] < 0 && i >= starts[f] && matches(bytes, i, end, endTags[f])) {
+          ends[f] = i;
+          remaining--;
+        }
+      }
+    }
+  }
+
+  private static boolean matches(byte[] bytes, int i, int end, byte[] tag) {
+    if (end - i < tag.length) {
+      return false;
+    }
+    for (int j = 1; j < tag.length; j++) {
+      if (bytes[i + j] != tag[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns <code>true</code> if both the start and end tags of a field were found.
+   */
+  public boolean isFound(int field) {
+    return ends[field] >= 0;
+  }
+
+  /**
+   * Returns the offset of the value of a field (just past its start tag), or -1 if the start tag
+   * wasn't found.
+   */
+  public int getStart(int field) {
+    return starts[field];
+  }
+
+  /**
+   * Returns the offset of the end tag of a field, or -1 if the field wasn't found.
+   */
+  public int getEnd(int field) {
+    return ends[field];
+  }
+
+  /**
+   * Returns the value of a field, or <code>null</code> if the field wasn't found.
+   */
+  public String get(int field) {
+    if (values[field] == null && isFound(field)) {
+      values[field] = new String(bytes, starts[field], ends[field] - starts[field], Charsets.UTF_8);
+    }
+    return values[field];
+  }
+}
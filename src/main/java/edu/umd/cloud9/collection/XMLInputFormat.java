@@ -18,6 +18,7 @@ package edu.umd.cloud9.collection;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -28,7 +29,12 @@ import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CodecPool;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec.READ_MODE;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -36,11 +42,14 @@ import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.io.PrefetchingInputStream;
+
 /**
  * A simple {@link org.apache.hadoop.mapreduce.InputFormat} for XML documents ({@code
  * org.apache.hadoop.mapreduce} API). The class recognizes begin-of-document and end-of-document
  * tags only: everything between those delimiting tags is returned in an uninterpreted {@code Text}
- * object.
+ * object. Compressed input is decompressed on a background thread if
+ * {@link PrefetchingInputStream#ENABLED_KEY} is set.
  *
  * @author Jimmy Lin
  */
@@ -79,6 +88,12 @@ public class XMLInputFormat extends TextInputFormat {
     private long end;
     private long pos;
     private DataInputStream fsin = null;
+    private TagScanner scanner;
+    private SplitCompressionInputStream splitIn = null;
+    private Seekable blockPos = null;
+    private Decompressor decompressor = null;
+    private int[] startTagFailure;
+    private int[] endTagFailure;
     private DataOutputBuffer buffer = new DataOutputBuffer();
 
     private long recordStartPos;
@@ -103,6 +118,8 @@ public class XMLInputFormat extends TextInputFormat {
 
       startTag = conf.get(START_TAG_KEY).getBytes("utf-8");
       endTag = conf.get(END_TAG_KEY).getBytes("utf-8");
+      startTagFailure = TagScanner.failureFunction(startTag);
+      endTagFailure = TagScanner.failureFunction(endTag);
 
       FileSplit split = (FileSplit) input;
       start = split.getStart();
@@ -113,17 +130,36 @@ public class XMLInputFormat extends TextInputFormat {
 
       FileSystem fs = file.getFileSystem(conf);
 
-      if (codec != null) {
+      if (codec instanceof SplittableCompressionCodec) {
+        LOG.info("Reading split of compressed file " + file + "...");
+        decompressor = CodecPool.getDecompressor(codec);
+        splitIn = ((SplittableCompressionCodec) codec).createInputStream(fs.open(file),
+            decompressor, start, start + split.getLength(), READ_MODE.BYBLOCK);
+        InputStream in = PrefetchingInputStream.wrap(splitIn, conf);
+        blockPos = (Seekable) in;
+        fsin = new DataInputStream(in);
+        scanner = new TagScanner(in, blockPos, splitIn.getAdjustedEnd(),
+            TagScanner.DEFAULT_BUFFER_SIZE);
+
+        // Positions in the uncompressed data are relative to the split, and it's up to the scanner
+        // to stop at the end of the split.
+        start = 0;
+        end = Long.MAX_VALUE;
+      } else if (codec != null) {
         LOG.info("Reading compressed file " + file + "...");
-        fsin = new DataInputStream(codec.createInputStream(fs.open(file)));
+        fsin = new DataInputStream(
+            PrefetchingInputStream.wrap(codec.createInputStream(fs.open(file)), conf));
+        scanner = new TagScanner(fsin, start);
 
-        end = Long.MAX_VALUE;
+        // The file can't be split, so if this isn't the first split, another mapper is reading it.
+        end = start == 0 ? Long.MAX_VALUE : start;
       } else {
         LOG.info("Reading uncompressed file " + file + "...");
         FSDataInputStream fileIn = fs.open(file);
 
         fileIn.seek(start);
         fsin = fileIn;
+        scanner = new TagScanner(fsin, start);
 
         end = start + split.getLength();
       }
@@ -145,30 +181,18 @@ public class XMLInputFormat extends TextInputFormat {
     @Override
     public boolean nextKeyValue() throws IOException, InterruptedException {
       if (pos < end) {
-        if (readUntilMatch(startTag, false)) {
-          recordStartPos = pos - startTag.length;
+        if (readUntilMatch(startTag, startTagFailure, false)) {
+          // For a split of a compressed file, we can only tell which block the record is in.
+          recordStartPos = blockPos != null ? blockPos.getPos() : pos - startTag.length;
 
           try {
             buffer.write(startTag);
-            if (readUntilMatch(endTag, true)) {
+            if (readUntilMatch(endTag, endTagFailure, true)) {
               key.set(recordStartPos);
               value.set(buffer.getData(), 0, buffer.getLength());
               return true;
             }
           } finally {
-            // Because input streams of gzipped files are not seekable, we need to keep track of
-            // bytes consumed ourselves.
-
-            // This is a sanity check to make sure our internal computation of bytes consumed is
-            // accurate. This should be removed later for efficiency once we confirm that this code
-            // works correctly.
-
-            if (fsin instanceof Seekable) {
-              if (pos != ((Seekable) fsin).getPos()) {
-                throw new RuntimeException("bytes consumed error!");
-              }
-            }
-
             buffer.reset();
           }
         }
@@ -206,6 +230,10 @@ public class XMLInputFormat extends TextInputFormat {
     @Override
     public void close() throws IOException {
       fsin.close();
+      if (decompressor != null) {
+        CodecPool.returnDecompressor(decompressor);
+        decompressor = null;
+      }
     }
 
     /**
@@ -216,35 +244,23 @@ public class XMLInputFormat extends TextInputFormat {
      */
     @Override
     public float getProgress() throws IOException {
+      if (splitIn != null) {
+        long splitStart = splitIn.getAdjustedStart();
+        long splitEnd = splitIn.getAdjustedEnd();
+        return Math.min(1.0f,
+            ((float) (blockPos.getPos() - splitStart)) / ((float) (splitEnd - splitStart)));
+      }
       return ((float) (pos - start)) / ((float) (end - start));
     }
 
-    private boolean readUntilMatch(byte[] match, boolean withinBlock)
+    private boolean readUntilMatch(byte[] match, int[] failure, boolean withinBlock)
         throws IOException {
-      int i = 0;
-      while (true) {
-        int b = fsin.read();
-        // increment position (bytes consumed)
-        pos++;
-
-        // end of file:
-        if (b == -1)
-          return false;
-        // save to buffer:
-        if (withinBlock)
-          buffer.write(b);
-
-        // check if we're matching:
-        if (b == match[i]) {
-          i++;
-          if (i >= match.length)
-            return true;
-        } else
-          i = 0;
-        // see if we've passed the stop point:
-        if (!withinBlock && i == 0 && pos >= end)
-          return false;
-      }
+      // Within a block, bytes are saved to the buffer and we read past the end of the split if
+      // necessary. Otherwise, the match has to start before the stop point.
+      boolean found = withinBlock ? scanner.readUntilMatch(match, failure, buffer)
+          : scanner.readUntilMatch(match, failure, end);
+      pos = scanner.getPos();
+      return found;
     }
   }
 }
@@ -1,27 +1,63 @@
 package edu.umd.cloud9.collection.aquaint2;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
 
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.log4j.Logger;
 
+import com.google.common.base.Preconditions;
+
 import edu.umd.cloud9.collection.DocumentForwardIndex;
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils;
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+import edu.umd.cloud9.io.MappedFileBuffer;
 
 /**
- * Object representing a document forward index for AQUAINT2 collections.
+ * Object representing a document forward index for AQUAINT2 collections. If constructed in
+ * memory-mapped mode and the index resides on the local disk, both the collection and the offset
+ * table are mapped into memory, and documents are decoded directly out of the mapped collection.
  *
  * @author Jimmy Lin
  */
 public class Aquaint2ForwardIndex implements DocumentForwardIndex<Aquaint2Document> {
 	private static final Logger LOG = Logger.getLogger(Aquaint2ForwardIndex.class);
 
+	// Each index entry is a long offset followed by an int length.
+	private static final int ENTRY_SIZE = 12;
+
+	private int numDocs;
 	private long[] offsets;
 	private int[] lengths;
 	private FSDataInputStream input;
 	private Aquaint2DocnoMapping docnoMapping = new Aquaint2DocnoMapping();
 	private String collectionPath;
+	private final boolean memoryMapped;
+	private ForwardIndexMetrics metrics = ForwardIndexMetrics.getDefault();
+
+	// Only used in memory-mapped mode.
+	private MappedFileBuffer mappedIndex;
+	private long indexBase;
+	private MappedFileBuffer mappedCollection;
+
+	public Aquaint2ForwardIndex() {
+		this(false);
+	}
+
+	/**
+	 * Creates a forward index.
+	 *
+	 * @param memoryMapped whether to memory map the collection if it resides on the local disk
+	 */
+	public Aquaint2ForwardIndex(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
 
 	@Override
 	public int getDocno(String docid) {
@@ -35,7 +71,7 @@ public class Aquaint2ForwardIndex implements DocumentForwardIndex<Aquaint2Docume
 
 	@Override
 	public int getLastDocno() {
-		return offsets.length-1;
+		return numDocs;
 	}
 
 	@Override
@@ -55,24 +91,78 @@ public class Aquaint2ForwardIndex implements DocumentForwardIndex<Aquaint2Docume
 
 	@Override
 	public Aquaint2Document getDocument(int docno) {
-		Aquaint2Document doc = new Aquaint2Document();
+		long start = metrics.now();
+		metrics.increment(Counter.REQUESTS, 1);
 
+		// Trap invalid docnos; in memory-mapped mode they'd read past either end of the offset table.
+		if (!DocumentForwardIndexUtils.isValidDocno(this, docno)) {
+			metrics.increment(Counter.ERRORS, 1);
+			return null;
+		}
+
+		Aquaint2Document doc = new Aquaint2Document();
 		try {
-			LOG.debug("docno " + docno + ": byte offset " + offsets[docno] + ", length "
-					+ lengths[docno]);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("docno " + docno + ": byte offset " + offset(docno) + ", length "
+						+ length(docno));
+			}
+
+			if (mappedCollection != null) {
+				Aquaint2Document.readDocument(doc, Charset.defaultCharset()
+						.decode(mappedCollection.slice(offset(docno), length(docno))).toString());
+				metrics.recordSince(Phase.PARSE, start);
+			} else {
+				byte[] arr = new byte[length(docno)];
+
+				// Positional reads leave the shared stream's file pointer alone, so concurrent fetches are safe.
+				input.readFully(offset(docno), arr);
+				long t = metrics.recordSince(Phase.READ, start);
+
+				Aquaint2Document.readDocument(doc, new String(arr));
+				metrics.recordSince(Phase.PARSE, t);
+			}
+			metrics.increment(Counter.BYTES_READ, length(docno));
+			metrics.increment(Counter.DOCUMENTS, 1);
+		} catch (IOException e) {
+			metrics.increment(Counter.ERRORS, 1);
+			e.printStackTrace();
+		}
 
-			input.seek(offsets[docno]);
+		metrics.recordSince(Phase.FETCH, start);
+		return doc;
+	}
 
-			byte[] arr = new byte[lengths[docno]];
+	/**
+	 * Returns the instrumentation that fetches report into.
+	 */
+	public ForwardIndexMetrics getMetrics() {
+		return metrics;
+	}
 
-			input.read(arr);
+	/**
+	 * Sets the instrumentation that fetches report into.
+	 */
+	public void setMetrics(ForwardIndexMetrics metrics) {
+		this.metrics = Preconditions.checkNotNull(metrics);
+	}
 
-			Aquaint2Document.readDocument(doc, new String(arr));
-		} catch (IOException e) {
-			e.printStackTrace();
+	private long offset(int docno) {
+		if (mappedIndex != null) {
+			return mappedIndex.getLong(indexBase + (docno - 1) * (long) ENTRY_SIZE);
 		}
+		return offsets[docno];
+	}
 
-		return doc;
+	private int length(int docno) {
+		if (mappedIndex != null) {
+			return mappedIndex.getInt(indexBase + (docno - 1) * (long) ENTRY_SIZE + 8);
+		}
+		return lengths[docno];
+	}
+
+	@Override
+	public List<Aquaint2Document> getDocuments(int[] docnos) {
+		return DocumentForwardIndexUtils.getDocuments(this, docnos);
 	}
 
 	@Override
@@ -83,18 +173,46 @@ public class Aquaint2ForwardIndex implements DocumentForwardIndex<Aquaint2Docume
 		in.readUTF();
 		collectionPath = in.readUTF();
 
+		numDocs = in.readInt();
+		boolean binary = numDocs == ForwardIndexFormat.BINARY;
+		if (binary) {
+			numDocs = in.readInt();
+		}
+
+		// As in TrecForwardIndex, only the original format has fixed-size big-endian entries that
+		// can be looked up in place.
+		if (memoryMapped && MappedFileBuffer.isLocal(fs) && !binary) {
+			indexBase = in.getPos();
+			in.close();
+
+			LOG.info("Memory mapping " + index + " and " + collectionPath);
+			mappedIndex = MappedFileBuffer.map(index, fs);
+			mappedCollection = MappedFileBuffer.map(new Path(collectionPath), fs);
+			docnoMapping.loadMapping(mapping, fs);
+			return;
+		}
+
 		// Docnos start at one, so we need an array that's one larger than number of docs.
-		int sz = in.readInt() + 1;
+		int sz = numDocs + 1;
 		offsets = new long[sz];
 		lengths = new int[sz];
 
-		for (int i = 1; i < sz; i++) {
-			offsets[i] = in.readLong();
-			lengths[i] = in.readInt();
+		if (binary) {
+			ForwardIndexFormat.readDocuments(in, offsets, lengths, numDocs);
+		} else {
+			for (int i = 1; i < sz; i++) {
+				offsets[i] = in.readLong();
+				lengths[i] = in.readInt();
+			}
 		}
 		in.close();
 
-		input = fs.open(new Path(collectionPath));
+		if (memoryMapped && MappedFileBuffer.isLocal(fs)) {
+			LOG.info("Memory mapping " + collectionPath);
+			mappedCollection = MappedFileBuffer.map(new Path(collectionPath), fs);
+		} else {
+			input = fs.open(new Path(collectionPath));
+		}
 		docnoMapping.loadMapping(mapping, fs);
 	}
 }
@@ -0,0 +1,215 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.clue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.NLineInputFormat;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Tool for building {@link ClueWarcMemberIndex} sidecar files for ClueWeb WARC files, which allow
+ * {@link SplittableClueWarcInputFormat} to split them. All <code>.warc.gz</code> files under the
+ * input path are indexed by a map-only job, one file per map task, and each index is written next
+ * to its WARC file. Files that already have an up-to-date index are skipped unless
+ * <code>-force</code> is given.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class BuildClueWarcMemberIndex extends Configured implements Tool {
+  private static final Logger LOG = Logger.getLogger(BuildClueWarcMemberIndex.class);
+
+  private static enum Files { INDEXED, MEMBERS };
+
+  private static final String INTERVAL_KEY = "Cloud9.ClueWarcMemberIndexInterval";
+
+  private static class MyMapper extends MapReduceBase implements
+      Mapper<LongWritable, Text, NullWritable, NullWritable> {
+    private JobConf conf;
+
+    @Override
+    public void configure(JobConf job) {
+      conf = job;
+    }
+
+    public void map(LongWritable key, Text value, OutputCollector<NullWritable, NullWritable> output,
+        Reporter reporter) throws IOException {
+      Path path = new Path(value.toString());
+      FileSystem fs = path.getFileSystem(conf);
+      long interval = conf.getLong(INTERVAL_KEY, ClueWarcMemberIndex.DEFAULT_INTERVAL);
+
+      LOG.info("Indexing " + path);
+      FSDataInputStream in = fs.open(path);
+      ClueWarcMemberIndex index;
+      try {
+        index = ClueWarcMemberIndex.build(in, interval, reporter);
+      } finally {
+        in.close();
+      }
+      index.write(fs, ClueWarcMemberIndex.getIndexPath(path));
+
+      reporter.incrCounter(Files.INDEXED, 1);
+      reporter.incrCounter(Files.MEMBERS, index.getOffsets().length);
+    }
+  }
+
+  public static final String INPUT_OPTION = "input";
+  public static final String INTERVAL_OPTION = "interval";
+  public static final String FORCE_OPTION = "force";
+
+  /**
+   * Runs this tool.
+   */
+  @SuppressWarnings("static-access")
+  public int run(String[] args) throws Exception {
+    Options options = new Options();
+    options.addOption(OptionBuilder.withArgName("path").hasArg()
+        .withDescription("WARC file or directory (searched recursively)").create(INPUT_OPTION));
+    options.addOption(OptionBuilder.withArgName("bytes").hasArg()
+        .withDescription("minimum distance between indexed members (default "
+            + ClueWarcMemberIndex.DEFAULT_INTERVAL + ")").create(INTERVAL_OPTION));
+    options.addOption(new Option(FORCE_OPTION, "rebuild indexes that are up to date"));
+
+    CommandLine cmdline;
+    CommandLineParser parser = new GnuParser();
+    try {
+      cmdline = parser.parse(options, args);
+    } catch (ParseException exp) {
+      System.err.println("Error parsing command line: " + exp.getMessage());
+      return -1;
+    }
+
+    if (!cmdline.hasOption(INPUT_OPTION)) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp(this.getClass().getName(), options);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return -1;
+    }
+
+    Path input = new Path(cmdline.getOptionValue(INPUT_OPTION));
+    long interval = cmdline.hasOption(INTERVAL_OPTION) ?
+        Long.parseLong(cmdline.getOptionValue(INTERVAL_OPTION)) : ClueWarcMemberIndex.DEFAULT_INTERVAL;
+    boolean force = cmdline.hasOption(FORCE_OPTION);
+
+    LOG.info("Tool name: " + BuildClueWarcMemberIndex.class.getSimpleName());
+    LOG.info(" - input: " + input);
+    LOG.info(" - interval: " + interval);
+    LOG.info(" - force: " + force);
+
+    FileSystem fs = input.getFileSystem(getConf());
+    List<Path> files = Lists.newArrayList();
+    findFiles(fs, fs.getFileStatus(input), force, files);
+    if (files.isEmpty()) {
+      LOG.info("Nothing to index.");
+      return 0;
+    }
+    LOG.info("Indexing " + files.size() + " files.");
+
+    // Write out the list of files to index, which is the input to the job.
+    Path list = new Path(BuildClueWarcMemberIndex.class.getSimpleName() + "-"
+        + System.currentTimeMillis() + ".txt");
+    FSDataOutputStream out = fs.create(list, true);
+    for (Path file : files) {
+      out.write((file.toString() + "\n").getBytes("UTF-8"));
+    }
+    out.close();
+
+    JobConf conf = new JobConf(getConf(), BuildClueWarcMemberIndex.class);
+    conf.setJobName(BuildClueWarcMemberIndex.class.getSimpleName() + ":" + input);
+    conf.setLong(INTERVAL_KEY, interval);
+    conf.setInt("mapreduce.input.lineinputformat.linespermap", 1);
+
+    conf.setNumReduceTasks(0);
+    conf.setSpeculativeExecution(false);
+
+    FileInputFormat.setInputPaths(conf, list);
+    conf.setInputFormat(NLineInputFormat.class);
+    conf.setOutputFormat(NullOutputFormat.class);
+    conf.setOutputKeyClass(NullWritable.class);
+    conf.setOutputValueClass(NullWritable.class);
+    conf.setMapperClass(MyMapper.class);
+
+    try {
+      JobClient.runJob(conf);
+    } finally {
+      fs.delete(list, false);
+    }
+
+    return 0;
+  }
+
+  private static void findFiles(FileSystem fs, FileStatus status, boolean force, List<Path> files)
+      throws IOException {
+    if (status.isDirectory()) {
+      for (FileStatus child : fs.listStatus(status.getPath())) {
+        findFiles(fs, child, force, files);
+      }
+      return;
+    }
+
+    Path path = status.getPath();
+    if (!path.getName().endsWith(".warc.gz")) {
+      return;
+    }
+    if (!force && ClueWarcMemberIndex.readIfValid(fs, path, status.getLen()) != null) {
+      return;
+    }
+    files.add(path);
+  }
+
+  /**
+   * Dispatches command-line arguments to the tool via the <code>ToolRunner</code>.
+   */
+  public static void main(String[] args) throws Exception {
+    LOG.info("Running " + BuildClueWarcMemberIndex.class.getCanonicalName() + " with args "
+        + Arrays.toString(args));
+    ToolRunner.run(new BuildClueWarcMemberIndex(), args);
+  }
+}
@@ -17,8 +17,6 @@
 package edu.umd.cloud9.collection.clue;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -27,7 +25,6 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.util.LineReader;
 
 import tl.lin.data.map.HMapKI;
-import tl.lin.data.map.MapKI;
 import edu.umd.cloud9.collection.DocnoMapping;
 
 /**
@@ -40,15 +37,27 @@ import edu.umd.cloud9.collection.DocnoMapping;
  * Note that this class needs the data file <a href="docno.mapping"><code>docno.mapping</code></a>,
  * loaded via the {@link #loadMapping(Path, FileSystem)} method.
  * </p>
+ * <p>
+ * In addition to the docid prefix of every file, the section and position within the section of
+ * every file are precomputed when the mapping is loaded, so that {@link #getDocid(int)} amounts to
+ * a binary search over the file offsets plus formatting.
+ * </p>
  *
  * @author Jimmy Lin
  */
 public class ClueWarcDocnoMapping implements DocnoMapping {
-  private static final int[] offets = new int[13217];
-  private static final HMapKI<String> subdirMapping = new HMapKI<String>();
+  private static final int NUM_FILES = 13217;
+
+  // Loaded per instance, so that separate instances can be loaded and used concurrently.
+  private final int[] offets = new int[NUM_FILES];
+  private final HMapKI<String> subdirMapping = new HMapKI<String>();
 
-  private static final NumberFormat FormatW2 = new DecimalFormat("00");
-  private static final NumberFormat FormatW5 = new DecimalFormat("00000");
+  // Reverse lookup tables: the section of each file and its position within the section.
+  private final String[] fileSections = new String[NUM_FILES];
+  private final int[] fileNumbers = new int[NUM_FILES];
+  private int fileCount = 0;
+
+  private static final String PREFIX = "clueweb09-";
 
   /**
    * Creates a {@code ClueWarcDocnoMapping} object
@@ -75,24 +84,58 @@ public class ClueWarcDocnoMapping implements DocnoMapping {
 
   @Override
   public String getDocid(int docno) {
-    int i = 0;
-    for (i = 0; i < offets.length; i++) {
-      if (docno < offets[i]) {
-        break;
-      }
+    return getDocid(docno, new StringBuilder(25));
+  }
+
+  /**
+   * Returns the docids for an array of docnos.
+   *
+   * @param docnos the docnos
+   * @return the docids, in the same order as the docnos
+   */
+  public String[] getDocids(int[] docnos) {
+    String[] docids = new String[docnos.length];
+    StringBuilder sb = new StringBuilder(25);
+    for (int i = 0; i < docnos.length; i++) {
+      docids[i] = getDocid(docnos[i], sb);
     }
-    i--;
-
-    String docid = null;
-    for (MapKI.Entry<String> e : subdirMapping.getEntriesSortedByValue()) {
-      if (e.getValue() <= i) {
-        docid = "clueweb09-" + e.getKey() + "-" + FormatW2.format(i - e.getValue()) + "-"
-            + FormatW5.format(docno - offets[i]);
-        break;
+
+    return docids;
+  }
+
+  private String getDocid(int docno, StringBuilder sb) {
+    // Find the last file whose first docno is at most docno.
+    int lo = 0;
+    int hi = fileCount - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (offets[mid] <= docno) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
       }
     }
+    int i = hi;
+
+    if (i < 0) {
+      return null;
+    }
 
-    return docid;
+    sb.setLength(0);
+    sb.append(PREFIX).append(fileSections[i]).append('-');
+    appendPadded(sb, fileNumbers[i], 2);
+    sb.append('-');
+    appendPadded(sb, docno - offets[i], 5);
+
+    return sb.toString();
+  }
+
+  private static void appendPadded(StringBuilder sb, int n, int width) {
+    int start = sb.length();
+    sb.append(n);
+    for (int len = sb.length() - start; len < width; len++) {
+      sb.insert(start, '0');
+    }
   }
 
   @Override
@@ -107,14 +150,17 @@ public class ClueWarcDocnoMapping implements DocnoMapping {
 
       if (prevSec == null || !arr[0].equals(prevSec)) {
         subdirMapping.put(arr[0], cnt);
+        prevSec = arr[0];
       }
 
       offets[cnt] = Integer.parseInt(arr[3]);
-      prevSec = arr[0];
+      fileSections[cnt] = prevSec;
+      fileNumbers[cnt] = cnt - subdirMapping.get(prevSec);
       cnt++;
     }
 
     reader.close();
+    fileCount = cnt;
   }
 
   @Override
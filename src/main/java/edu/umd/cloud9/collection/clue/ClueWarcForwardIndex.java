@@ -18,17 +18,28 @@ package edu.umd.cloud9.collection.clue;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.Arrays;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.log4j.Logger;
 
+import com.google.common.base.Preconditions;
+
 import edu.umd.cloud9.collection.DocumentForwardIndex;
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils;
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils.SequenceFileCollection;
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+import edu.umd.cloud9.collection.SequenceFileBlockCache;
+import edu.umd.cloud9.collection.SequenceFileReaderPool;
 
 public class ClueWarcForwardIndex implements DocumentForwardIndex<ClueWarcRecord> {
   private static final Logger LOG = Logger.getLogger(ClueWarcForwardIndex.class);
@@ -41,6 +52,9 @@ public class ClueWarcForwardIndex implements DocumentForwardIndex<ClueWarcRecord
   private short[] fileno;
   private String collectionPath;
   private int lastDocno = -1;
+  private SequenceFileBlockCache cache;
+  private SequenceFileReaderPool readers;
+  private ForwardIndexMetrics metrics = ForwardIndexMetrics.getDefault();
 
   private ClueWarcDocnoMapping docnoMapping = new ClueWarcDocnoMapping();
 
@@ -49,6 +63,8 @@ public class ClueWarcForwardIndex implements DocumentForwardIndex<ClueWarcRecord
   @Override
   public void loadIndex(Path index, Path mapping, FileSystem fs) throws IOException {
     this.conf = fs.getConf();
+    this.cache = SequenceFileBlockCache.fromConfiguration(conf);
+    this.readers = SequenceFileReaderPool.fromConfiguration(conf);
 
     LOG.info("Loading forward index: " + index);
     docnoMapping.loadMapping(mapping, fs);
@@ -60,19 +76,27 @@ public class ClueWarcForwardIndex implements DocumentForwardIndex<ClueWarcRecord
     collectionPath = in.readUTF();
 
     int blocks = in.readInt();
+    boolean binary = blocks == ForwardIndexFormat.BINARY;
+    if (binary) {
+      blocks = in.readInt();
+    }
 
     LOG.info(blocks + " blocks expected");
     docnos = new int[blocks];
     offsets = new int[blocks];
     fileno = new short[blocks];
 
-    for (int i = 0; i < blocks; i++) {
-      docnos[i] = in.readInt();
-      offsets[i] = in.readInt();
-      fileno[i] = in.readShort();
+    if (binary) {
+      ForwardIndexFormat.readBlocks(in, docnos, offsets, fileno);
+    } else {
+      for (int i = 0; i < blocks; i++) {
+        docnos[i] = in.readInt();
+        offsets[i] = in.readInt();
+        fileno[i] = in.readShort();
 
-      if (i > 0 && i % 100000 == 0)
-        LOG.info(i + " blocks read");
+        if (i > 0 && i % 100000 == 0)
+          LOG.info(i + " blocks read");
+      }
     }
 
     in.close();
@@ -85,51 +109,130 @@ public class ClueWarcForwardIndex implements DocumentForwardIndex<ClueWarcRecord
 
   @Override
   public ClueWarcRecord getDocument(int docno) {
-    long start = System.currentTimeMillis();
+    long start = metrics.now();
+    metrics.increment(Counter.REQUESTS, 1);
 
     // Trap invalid docnos.
     if (docno < getFirstDocno() || docno > getLastDocno()) {
+      metrics.increment(Counter.MISSES, 1);
       return null;
     }
 
-    int idx = Arrays.binarySearch(docnos, docno);
-
-    if (idx < 0) {
-      idx = -idx - 2;
-    }
+    int idx = DocumentForwardIndexUtils.findBlock(docnos, docno);
 
     DecimalFormat df = new DecimalFormat("00000");
     String file = collectionPath + "/part-" + df.format(fileno[idx]);
 
-    LOG.info("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " + file);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " + file);
+    }
 
     try {
-      SequenceFile.Reader reader =
-          new SequenceFile.Reader(conf, SequenceFile.Reader.file(new Path(file)));
-
-      IntWritable key = new IntWritable();
       ClueWarcRecord value = new ClueWarcRecord();
+      boolean found;
+      if (cache != null) {
+        // The block is read in a single pass if it isn't cached yet; either way, it holds every
+        // record of the block.
+        int end = DocumentForwardIndexUtils.getEndDocno(docnos, fileno, idx);
+        found = cache.get(new Path(file), offsets[idx], end, docno, value, metrics);
+      } else {
+        found = read(new Path(file), offsets[idx], docno, value);
+      }
 
-      reader.seek(offsets[idx]);
+      if (!found) {
+        metrics.increment(Counter.MISSES, 1);
+        return null;
+      }
 
+      metrics.increment(Counter.DOCUMENTS, 1);
+      long duration = metrics.recordSince(Phase.FETCH, start) - start;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(" docno " + docno + " fetched in " + duration / 1000 + "us");
+      }
+      return value;
+    } catch (IOException e) {
+      metrics.increment(Counter.ERRORS, 1);
+      e.printStackTrace();
+    }
+
+    return null;
+  }
+
+  // Scans the block at offset for the record with the given docno, using a pooled reader.
+  private boolean read(Path file, long offset, int docno, ClueWarcRecord value)
+      throws IOException {
+    long t = metrics.now();
+    SequenceFile.Reader reader = readers.borrow(file);
+    try {
+      IntWritable key = new IntWritable();
+      reader.seek(offset);
+      t = metrics.recordSince(Phase.SEEK, t);
+
+      boolean found = false;
       while (reader.next(key)) {
         if (key.get() == docno) {
+          found = true;
           break;
         }
       }
+      t = metrics.recordSince(Phase.DECOMPRESS, t);
 
-      reader.getCurrentValue(value);
-      reader.close();
-
-      long duration = System.currentTimeMillis() - start;
-
-      LOG.info(" docno " + docno + " fetched in " + duration + "ms");
-      return value;
+      if (found) {
+        reader.getCurrentValue(value);
+        metrics.recordSince(Phase.PARSE, t);
+      }
+      metrics.increment(Counter.BYTES_READ, reader.getPosition() - offset);
+      readers.release(file, reader);
+      return found;
     } catch (IOException e) {
-      e.printStackTrace();
+      IOUtils.closeStream(reader);
+      throw e;
     }
+  }
 
-    return null;
+  /**
+   * Fetches a batch of documents, reading all requested documents within a block in a single
+   * forward scan from the start of the block. Documents are returned in the same order as the
+   * docnos; see {@link DocumentForwardIndexUtils} for details.
+   */
+  @Override
+  public List<ClueWarcRecord> getDocuments(int[] requested) {
+    return DocumentForwardIndexUtils.getDocuments(new SequenceFileCollection<ClueWarcRecord>() {
+      @Override
+      public Path getFile(short n) throws IOException {
+        return new Path(collectionPath + String.format("/part-%05d", n));
+      }
+
+      @Override
+      public ClueWarcRecord createValue() {
+        return new ClueWarcRecord();
+      }
+    }, docnos, offsets, fileno, getLastDocno(), requested, cache, readers, metrics);
+  }
+
+  /**
+   * Returns the block cache, or {@code null} if caching isn't enabled. Caching is enabled by
+   * setting {@link SequenceFileBlockCache#CACHE_BYTES_PROPERTY} in the configuration of the
+   * {@code FileSystem} passed to {@link #loadIndex(Path, Path, FileSystem)}.
+   *
+   * @return the block cache
+   */
+  public SequenceFileBlockCache getBlockCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the instrumentation that fetches report into.
+   */
+  public ForwardIndexMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the instrumentation that fetches report into.
+   */
+  public void setMetrics(ForwardIndexMetrics metrics) {
+    this.metrics = Preconditions.checkNotNull(metrics);
   }
 
   @Override
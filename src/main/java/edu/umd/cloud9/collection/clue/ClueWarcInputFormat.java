@@ -50,10 +50,14 @@
 
 package edu.umd.cloud9.collection.clue;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
@@ -66,6 +70,10 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
 
+import com.google.common.collect.Lists;
+
+import edu.umd.cloud9.io.PrefetchingInputStream;
+
 public class ClueWarcInputFormat extends FileInputFormat<LongWritable, ClueWarcRecord> {
 
   /**
@@ -77,6 +85,21 @@ public class ClueWarcInputFormat extends FileInputFormat<LongWritable, ClueWarcR
     return false;
   }
 
+  /**
+   * Leaves out the sidecar files of {@link ClueWarcMemberIndex}, which may live alongside the WARC
+   * files.
+   */
+  @Override
+  protected FileStatus[] listStatus(JobConf job) throws IOException {
+    List<FileStatus> files = Lists.newArrayList();
+    for (FileStatus file : super.listStatus(job)) {
+      if (!ClueWarcMemberIndex.isIndexPath(file.getPath())) {
+        files.add(file);
+      }
+    }
+    return files.toArray(new FileStatus[files.size()]);
+  }
+
   /**
    * Just return the record reader
    */
@@ -85,35 +108,43 @@ public class ClueWarcInputFormat extends FileInputFormat<LongWritable, ClueWarcR
     return new ClueWarcRecordReader(conf, (FileSplit) split);
   }
 
+  /**
+   * Reads the records in a split. Splits must start at a point where decompression can start, i.e.,
+   * at the beginning of the file or, for a splittable file, at a gzip member boundary. Decompression
+   * runs on a background thread if {@link PrefetchingInputStream#ENABLED_KEY} is set.
+   */
   public static class ClueWarcRecordReader implements RecordReader<LongWritable, ClueWarcRecord> {
     private long recordCount = 1;
     private Path path = null;
-    private DataInputStream input = null;
-
-    private long totalNumBytesRead = 0;
+    private ClueWarcReader input = null;
+    private FSDataInputStream fileIn = null;
+    private long start;
+    private long length;
 
     public ClueWarcRecordReader(Configuration conf, FileSplit split) throws IOException {
       FileSystem fs = FileSystem.get(conf);
       path = split.getPath();
+      start = split.getStart();
+      length = split.getLength();
 
       CompressionCodecFactory compressionCodecs = new CompressionCodecFactory(conf);
       CompressionCodec compressionCodec = compressionCodecs.getCodec(path);
-      input = new DataInputStream(compressionCodec.createInputStream(fs.open(path)));
+      fileIn = fs.open(path);
+      fileIn.seek(start);
+      InputStream in = new BoundedInputStream(fileIn, length);
+      if (compressionCodec != null) {
+        in = PrefetchingInputStream.wrap(compressionCodec.createInputStream(in), conf);
+      }
+      input = new ClueWarcReader(in);
     }
 
     @Override
     public boolean next(LongWritable key, ClueWarcRecord value) throws IOException {
-      DataInputStream whichStream = input;
-
-      ClueWarcRecord newRecord = ClueWarcRecord.readNextWarcRecord(whichStream);
-      if (newRecord == null) {
+      if (!input.next(value)) {
         return false;
       }
 
-      totalNumBytesRead += (long) newRecord.getTotalRecordLength();
-      newRecord.setWarcFilePath(path.toString());
-
-      value.set(newRecord);
+      value.setWarcFilePath(path.toString());
       key.set(recordCount);
 
       recordCount++;
@@ -132,7 +163,7 @@ public class ClueWarcInputFormat extends FileInputFormat<LongWritable, ClueWarcR
 
     @Override
     public long getPos() throws IOException {
-      return totalNumBytesRead;
+      return input.getBytesRead();
     }
 
     @Override
@@ -142,7 +173,10 @@ public class ClueWarcInputFormat extends FileInputFormat<LongWritable, ClueWarcR
 
     @Override
     public float getProgress() throws IOException {
-      return (float) recordCount / 40000f;
+      if (length == 0) {
+        return 1.0f;
+      }
+      return Math.min(1.0f, (fileIn.getPos() - start) / (float) length);
     }
   }
 }
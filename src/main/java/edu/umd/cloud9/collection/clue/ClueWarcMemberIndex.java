@@ -0,0 +1,345 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.clue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Progressable;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+
+import edu.umd.cloud9.io.LittleEndianArrays;
+
+/**
+ * <p>
+ * Index of gzip member boundaries in a ClueWeb WARC file. The <code>.warc.gz</code> files in the
+ * ClueWeb collections are concatenations of gzip members, one per WARC record, and decompression
+ * can start at any member boundary. The index records the compressed offsets of members that start
+ * a WARC record, at least a given interval apart, so that {@link SplittableClueWarcInputFormat} can
+ * split files at those points and have several mappers decompress one file concurrently.
+ * </p>
+ *
+ * <p>
+ * Indexes are built in a single pass over each file (see {@link BuildClueWarcMemberIndex}), which
+ * inflates the data but doesn't parse it, and stored as a sidecar file next to the WARC file, with
+ * the suffix {@link #SUFFIX}. The sidecar also records the length of the WARC file, so that indexes
+ * that are out of date can be detected and ignored.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class ClueWarcMemberIndex {
+  private static final Logger LOG = Logger.getLogger(ClueWarcMemberIndex.class);
+
+  /**
+   * Suffix of the sidecar file that holds the index of a WARC file.
+   */
+  public static final String SUFFIX = ".members";
+
+  /**
+   * Default minimum distance, in compressed bytes, between indexed members.
+   */
+  public static final long DEFAULT_INTERVAL = 1024 * 1024;
+
+  private static final int MAGIC = 0x434c4d49; // "CLMI"
+  private static final byte[] WARC_PREFIX = "WARC/".getBytes();
+
+  private final long fileLength;
+  private final long[] offsets;
+
+  private ClueWarcMemberIndex(long fileLength, long[] offsets) {
+    this.fileLength = fileLength;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Returns the length of the compressed file that was indexed.
+   */
+  public long getFileLength() {
+    return fileLength;
+  }
+
+  /**
+   * Returns the compressed offsets of the indexed members, in increasing order. The first offset is
+   * always zero.
+   */
+  public long[] getOffsets() {
+    return offsets;
+  }
+
+  /**
+   * Returns the path of the sidecar file that holds the index of a WARC file.
+   */
+  public static Path getIndexPath(Path file) {
+    return new Path(file.getParent(), file.getName() + SUFFIX);
+  }
+
+  /**
+   * Checks whether a path is that of an index sidecar file.
+   */
+  public static boolean isIndexPath(Path path) {
+    return path.getName().endsWith(SUFFIX);
+  }
+
+  /**
+   * Builds the index of a gzip-compressed WARC file.
+   *
+   * @param in stream of the compressed file, positioned at its beginning
+   * @param interval minimum distance, in compressed bytes, between indexed members
+   * @param progress reported to periodically, or <code>null</code>
+   * @return the index
+   * @throws IOException
+   */
+  public static ClueWarcMemberIndex build(InputStream in, long interval, Progressable progress)
+      throws IOException {
+    Preconditions.checkArgument(interval >= 0);
+    GzipMemberScanner scanner = new GzipMemberScanner(in);
+
+    long[] offsets = new long[16];
+    int n = 0;
+    int members = 0;
+    long start;
+    try {
+      while ((start = scanner.nextMember()) >= 0) {
+        members++;
+        if (n == 0 || (scanner.startsWith(WARC_PREFIX) && start - offsets[n - 1] >= interval)) {
+          if (n == offsets.length) {
+            offsets = Arrays.copyOf(offsets, n * 2);
+          }
+          offsets[n++] = start;
+        }
+        if (progress != null && members % 1000 == 0) {
+          progress.progress();
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+
+    if (n == 0) {
+      // An empty file still gets a single split.
+      offsets[n++] = 0;
+    }
+    return new ClueWarcMemberIndex(scanner.getPos(), Arrays.copyOf(offsets, n));
+  }
+
+  /**
+   * Writes this index to a file.
+   */
+  public void write(FileSystem fs, Path path) throws IOException {
+    FSDataOutputStream out = fs.create(path, true);
+    try {
+      out.writeInt(MAGIC);
+      out.writeLong(fileLength);
+      out.writeInt(offsets.length);
+      LittleEndianArrays.writeLongs(out, offsets, 0, offsets.length);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads an index from a file.
+   */
+  public static ClueWarcMemberIndex read(FileSystem fs, Path path) throws IOException {
+    FSDataInputStream in = fs.open(path);
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(path + " is not a WARC member index!");
+      }
+      long fileLength = in.readLong();
+      long[] offsets = new long[in.readInt()];
+      LittleEndianArrays.readLongs(in, offsets, 0, offsets.length);
+      return new ClueWarcMemberIndex(fileLength, offsets);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the index of a WARC file from its sidecar file, if it exists and matches the file.
+   *
+   * @param fs file system
+   * @param file the WARC file
+   * @param fileLength length of the WARC file
+   * @return the index, or <code>null</code> if there's no valid index
+   */
+  public static ClueWarcMemberIndex readIfValid(FileSystem fs, Path file, long fileLength)
+      throws IOException {
+    Path path = getIndexPath(file);
+    if (!fs.exists(path)) {
+      return null;
+    }
+
+    ClueWarcMemberIndex index = read(fs, path);
+    if (index.getFileLength() != fileLength) {
+      LOG.warn("Ignoring out-of-date member index " + path + ": indexed " + index.getFileLength()
+          + " bytes, but the file has " + fileLength);
+      return null;
+    }
+    return index;
+  }
+
+  /**
+   * Walks over the members of a gzip file, inflating them to find where each one ends.
+   */
+  private static class GzipMemberScanner {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] buf = new byte[64 * 1024];
+    private final byte[] out = new byte[64 * 1024];
+    private int pos = 0;
+    private int len = 0;
+    private long base = 0; // Position in the file of buf[0].
+
+    // The first few uncompressed bytes of the current member.
+    private final byte[] head = new byte[16];
+    private int headLen = 0;
+
+    GzipMemberScanner(InputStream in) {
+      this.in = in;
+    }
+
+    long getPos() {
+      return base + pos;
+    }
+
+    void close() {
+      inflater.end();
+    }
+
+    boolean startsWith(byte[] prefix) {
+      if (headLen < prefix.length) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+        if (head[i] != prefix[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // Reads over the next member, returning its offset, or -1 at the end of the file.
+    long nextMember() throws IOException {
+      long start = getPos();
+      int b = read();
+      if (b < 0) {
+        return -1;
+      }
+
+      if (b != 0x1f || readOrFail() != 0x8b || readOrFail() != 8) {
+        throw new IOException("Not in gzip format at offset " + start);
+      }
+      int flags = readOrFail();
+      skip(6); // Modification time, extra flags, and OS.
+      if ((flags & FEXTRA) != 0) {
+        skip(readOrFail() | (readOrFail() << 8));
+      }
+      if ((flags & FNAME) != 0) {
+        while (readOrFail() != 0) {}
+      }
+      if ((flags & FCOMMENT) != 0) {
+        while (readOrFail() != 0) {}
+      }
+      if ((flags & FHCRC) != 0) {
+        skip(2);
+      }
+
+      inflater.reset();
+      headLen = 0;
+      try {
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            if (pos == len && !fill()) {
+              throw new EOFException("Unexpected end of gzip member at offset " + start);
+            }
+            inflater.setInput(buf, pos, len - pos);
+            pos = len;
+          }
+          int n = inflater.inflate(out);
+          if (headLen < head.length && n > 0) {
+            int k = Math.min(n, head.length - headLen);
+            System.arraycopy(out, 0, head, headLen, k);
+            headLen += k;
+          }
+          if (n == 0 && inflater.needsDictionary()) {
+            throw new IOException("Unexpected dictionary in gzip member at offset " + start);
+          }
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupt gzip member at offset " + start, e);
+      }
+
+      // Give back the input that the inflater didn't use, then skip over the CRC and size.
+      pos = len - inflater.getRemaining();
+      skip(8);
+      return start;
+    }
+
+    private boolean fill() throws IOException {
+      base += len;
+      pos = 0;
+      len = 0;
+      int n;
+      do {
+        n = in.read(buf, 0, buf.length);
+      } while (n == 0);
+      if (n < 0) {
+        return false;
+      }
+      len = n;
+      return true;
+    }
+
+    private int read() throws IOException {
+      if (pos == len && !fill()) {
+        return -1;
+      }
+      return buf[pos++] & 0xff;
+    }
+
+    private int readOrFail() throws IOException {
+      int b = read();
+      if (b < 0) {
+        throw new EOFException("Unexpected end of gzip file at offset " + getPos());
+      }
+      return b;
+    }
+
+    private void skip(int n) throws IOException {
+      for (int i = 0; i < n; i++) {
+        readOrFail();
+      }
+    }
+  }
+}
@@ -255,7 +255,9 @@ public class ClueWarcRecord extends Indexable {
 	}
 
 	/**
-	 * Reads in a WARC record from a data input stream
+	 * Reads in a WARC record from a data input stream. This reads the stream a
+	 * byte at a time so as not to read past the end of the record; use
+	 * {@link ClueWarcReader} to read a stream of records much faster.
 	 * 
 	 * @param in
 	 *            the input stream
@@ -38,23 +38,25 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.Counters;
 import org.apache.hadoop.mapred.FileInputFormat;
-import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.hadoop.mapred.RunningJob;
 import org.apache.hadoop.mapred.SequenceFileInputFormat;
 import org.apache.hadoop.mapred.lib.NullOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.mapred.ForkJoinJobRunner;
+
 /**
  * <p>
  * Simple demo program to count the number of records in the ClueWeb09 collection, from either the
- * original source WARC files or repacked SequenceFiles.
+ * original source WARC files or repacked SequenceFiles. With
+ * <code>-D Cloud9.LocalThreads=<i>n</i></code>, the job runs in this JVM with <i>n</i> threads
+ * instead of on the cluster (see {@link ForkJoinJobRunner}).
  * </p>
  *
  * @author Jimmy Lin
@@ -192,14 +194,13 @@ public class CountClueWarcRecords extends Configured implements Tool {
     if (repacked) {
       conf.setInputFormat(SequenceFileInputFormat.class);
     } else {
-      conf.setInputFormat(ClueWarcInputFormat.class);
+      conf.setInputFormat(SplittableClueWarcInputFormat.class);
     }
 
     conf.setOutputFormat(NullOutputFormat.class);
     conf.setMapperClass(MyMapper.class);
 
-    RunningJob job = JobClient.runJob(conf);
-    Counters counters = job.getCounters();
+    Counters counters = ForkJoinJobRunner.runJob(conf);
     int numDocs = (int) counters.findCounter(Records.PAGES).getCounter();
 
     LOG.info("Read " + numDocs + " docs.");
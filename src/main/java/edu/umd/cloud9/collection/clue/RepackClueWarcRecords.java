@@ -24,7 +24,6 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
@@ -36,6 +35,11 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.collection.DocumentFieldColumns;
+import edu.umd.cloud9.collection.Indexable;
+import edu.umd.cloud9.collection.RepackOptions;
+import edu.umd.cloud9.collection.RepackSequenceFileOutputFormatOld;
+
 /**
  * <p>
  * Program to uncompress the ClueWeb09 collection from the original distribution WARC files and
@@ -55,6 +59,14 @@ import org.apache.log4j.Logger;
  * </ul>
  *
  * <p>
+ * The codec, block size, and maximum number of records per block can be set with the
+ * <code>Cloud9.Repack.*</code> properties of {@link RepackOptions}, as generic options (e.g.,
+ * <code>-D Cloud9.Repack.Codec=snappy</code>). In particular,
+ * <code>-D Cloud9.Repack.Columns=docid,url,title</code> also writes those fields as columns (see
+ * {@link DocumentFieldColumns}).
+ * </p>
+ *
+ * <p>
  * Here's a sample invocation:
  * </p>
  *
@@ -71,6 +83,19 @@ public class RepackClueWarcRecords extends Configured implements Tool {
 
   private static enum Records { TOTAL, PAGES };
 
+  /**
+   * Extracts fields of WARC records to write as columns; the URL of a record is its target URI.
+   */
+  public static class ClueWarcFieldExtractor extends DocumentFieldColumns.FieldExtractor {
+    @Override
+    public String extract(Indexable doc, String field) {
+      if (field.equals("url") && doc instanceof ClueWarcRecord) {
+        return ((ClueWarcRecord) doc).getHeaderMetadataItem("WARC-Target-URI");
+      }
+      return super.extract(doc, field);
+    }
+  }
+
   private static class MyMapper extends MapReduceBase implements
       Mapper<LongWritable, ClueWarcRecord, IntWritable, ClueWarcRecord> {
 
@@ -133,10 +158,7 @@ public class RepackClueWarcRecords extends Configured implements Tool {
       System.exit(-1);
     }
 
-    // Default block size.
-    int blocksize = 1000000;
-
-    JobConf conf = new JobConf(RepackClueWarcRecords.class);
+    JobConf conf = new JobConf(getConf(), RepackClueWarcRecords.class);
     conf.setJobName("RepackClueWarcRecords:segment" + segment);
 
     conf.set("DocnoMappingDataFile", data);
@@ -146,10 +168,15 @@ public class RepackClueWarcRecords extends Configured implements Tool {
     LOG.info(" - output path: " + outputPath);
     LOG.info(" - segment number: " + segment);
     LOG.info(" - docno mapping data file: " + data);
-    LOG.info(" - compression type: " + compressionType);
 
-    if (compressionType.equals("block")) {
-      LOG.info(" - block size: " + blocksize);
+    conf.set(RepackOptions.COMPRESSION_TYPE_PROPERTY, compressionType);
+    conf.setClass(RepackOptions.FIELD_EXTRACTOR_PROPERTY, ClueWarcFieldExtractor.class,
+        DocumentFieldColumns.FieldExtractor.class);
+    try {
+      RepackOptions.configure(conf);
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      return -1;
     }
 
     int mapTasks = 10;
@@ -161,22 +188,8 @@ public class RepackClueWarcRecords extends Configured implements Tool {
 
     SequenceFileOutputFormat.setOutputPath(conf, new Path(outputPath));
 
-    if (compressionType.equals("none")) {
-      SequenceFileOutputFormat.setCompressOutput(conf, false);
-    } else {
-      SequenceFileOutputFormat.setCompressOutput(conf, true);
-
-      if (compressionType.equals("record")) {
-        SequenceFileOutputFormat
-            .setOutputCompressionType(conf, SequenceFile.CompressionType.RECORD);
-      } else {
-        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
-        conf.setInt("io.seqfile.compress.blocksize", blocksize);
-      }
-    }
-
-    conf.setInputFormat(ClueWarcInputFormat.class);
-    conf.setOutputFormat(SequenceFileOutputFormat.class);
+    conf.setInputFormat(SplittableClueWarcInputFormat.class);
+    conf.setOutputFormat(RepackSequenceFileOutputFormatOld.class);
     conf.setOutputKeyClass(IntWritable.class);
     conf.setOutputValueClass(ClueWarcRecord.class);
 
@@ -0,0 +1,109 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.clue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Hadoop {@code InputFormat} for ClueWeb WARC files that splits each file at gzip member boundaries,
+ * so that a single large file can be decompressed and processed by several mappers at once (or,
+ * since splits are independent, by several threads of a local process). Member boundaries come from
+ * the sidecar index built by {@link BuildClueWarcMemberIndex}; see {@link ClueWarcMemberIndex}.
+ * Files without a valid index are read whole by a single mapper, exactly as with
+ * {@link ClueWarcInputFormat}.
+ * </p>
+ *
+ * <p>
+ * Splits are sized the same way as with {@code FileInputFormat}: roughly the total input size
+ * divided by the requested number of map tasks, but no larger than a file system block and no
+ * smaller than <code>mapreduce.input.fileinputformat.split.minsize</code>. Keys are the ordinals of
+ * records within their split.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class SplittableClueWarcInputFormat extends ClueWarcInputFormat {
+  private static final Logger LOG = Logger.getLogger(SplittableClueWarcInputFormat.class);
+
+  @Override
+  protected boolean isSplitable(FileSystem fs, Path filename) {
+    return true;
+  }
+
+  @Override
+  public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+    FileStatus[] files = listStatus(job);
+
+    long totalSize = 0;
+    for (FileStatus file : files) {
+      totalSize += file.getLen();
+    }
+    long goalSize = totalSize / (numSplits == 0 ? 1 : numSplits);
+    long minSize = Math.max(job.getLong(
+        org.apache.hadoop.mapreduce.lib.input.FileInputFormat.SPLIT_MINSIZE, 1), 1);
+
+    List<InputSplit> splits = Lists.newArrayList();
+    for (FileStatus file : files) {
+      Path path = file.getPath();
+      FileSystem fs = path.getFileSystem(job);
+      long length = file.getLen();
+      BlockLocation[] blocks = fs.getFileBlockLocations(file, 0, length);
+
+      ClueWarcMemberIndex index = ClueWarcMemberIndex.readIfValid(fs, path, length);
+      if (index == null || length == 0) {
+        splits.add(createSplit(path, 0, length, blocks));
+        continue;
+      }
+
+      long splitSize = computeSplitSize(goalSize, minSize, file.getBlockSize());
+      long start = 0;
+      int n = 0;
+      for (long offset : index.getOffsets()) {
+        if (offset - start >= splitSize) {
+          splits.add(createSplit(path, start, offset - start, blocks));
+          start = offset;
+          n++;
+        }
+      }
+      splits.add(createSplit(path, start, length - start, blocks));
+      LOG.debug("Split " + path + " into " + (n + 1) + " splits");
+    }
+
+    LOG.info("Total # of splits: " + splits.size());
+    return splits.toArray(new InputSplit[splits.size()]);
+  }
+
+  private FileSplit createSplit(Path path, long start, long length, BlockLocation[] blocks)
+      throws IOException {
+    String[] hosts = blocks.length == 0 ? new String[0]
+        : blocks[getBlockIndex(blocks, start)].getHosts();
+    return new FileSplit(path, start, length, hosts);
+  }
+}
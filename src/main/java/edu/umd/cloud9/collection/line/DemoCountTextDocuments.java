@@ -24,7 +24,6 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapred.FileInputFormat;
-import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
@@ -35,6 +34,8 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.mapred.ForkJoinJobRunner;
+
 public class DemoCountTextDocuments extends Configured implements Tool {
 
 	private static final Logger sLogger = Logger.getLogger(DemoCountTextDocuments.class);
@@ -81,7 +82,7 @@ public class DemoCountTextDocuments extends Configured implements Tool {
 
 		sLogger.info("input: " + inputPath);
 
-		JobConf conf = new JobConf(DemoCountTextDocuments.class);
+		JobConf conf = new JobConf(getConf(), DemoCountTextDocuments.class);
 		conf.setJobName("DemoCountTextDocuments");
 
 		conf.setNumReduceTasks(0);
@@ -92,7 +93,7 @@ public class DemoCountTextDocuments extends Configured implements Tool {
 		conf.setOutputFormat(NullOutputFormat.class);
 		conf.setMapperClass(MyMapper.class);
 
-		JobClient.runJob(conf);
+		ForkJoinJobRunner.runJob(conf);
 
 		return 0;
 	}
@@ -18,7 +18,6 @@ package edu.umd.cloud9.collection.line;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
@@ -30,6 +29,7 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.util.LineReader;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.collection.CompactDocidTable;
 import edu.umd.cloud9.collection.DocnoMapping;
 import edu.umd.cloud9.collection.trec.TrecDocnoMappingBuilder;
 
@@ -38,6 +38,11 @@ import edu.umd.cloud9.collection.trec.TrecDocnoMappingBuilder;
  * Object that maps between docids (String identifiers) to docnos
  * (sequentially-numbered ints) for regular text documents.
  * </p>
+ *
+ * <p>
+ * Mappings are held in memory in a {@link CompactDocidTable}, which also accepts
+ * mappings files in its compact format.
+ * </p>
 
  * 
  * @author Jimmy Lin
@@ -46,7 +51,7 @@ public class TextDocnoMapping implements DocnoMapping {
 
 	private static final Logger sLogger = Logger.getLogger(TextDocnoMapping.class);
 
-	private String[] mDocids;
+	private CompactDocidTable mDocids;
 
 	/**
 	 * Creates a <code>TrecDocnoMapping</code> object
@@ -55,15 +60,15 @@ public class TextDocnoMapping implements DocnoMapping {
 	}
 
 	public int getDocno(String docid) {
-		return Arrays.binarySearch(mDocids, docid);
+		return mDocids.getDocno(docid);
 	}
 
 	public String getDocid(int docno) {
-		return mDocids[docno];
+		return mDocids.getDocid(docno);
 	}
 
 	public void loadMapping(Path p, FileSystem fs) throws IOException {
-		mDocids = TextDocnoMapping.readDocnoData(p, fs);
+		mDocids = CompactDocidTable.read(p, fs);
 	}
 
 	/**
@@ -170,8 +175,8 @@ public class TextDocnoMapping implements DocnoMapping {
 		mapping.loadMapping(new Path(args[1]), fs);
 
 		if (args[0].equals("list")) {
-			for (int i = 1; i < mapping.mDocids.length; i++) {
-				System.out.println(i + "\t" + mapping.mDocids[i]);
+			for (int i = 1; i <= mapping.mDocids.size(); i++) {
+				System.out.println(i + "\t" + mapping.mDocids.getDocid(i));
 			}
 		} else if (args[0].equals("getDocno")) {
 			System.out.println("looking up docno for \"" + args[2] + "\"");
@@ -22,12 +22,16 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.WritableUtils;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 
 import edu.umd.cloud9.collection.Indexable;
+import edu.umd.cloud9.collection.XMLFieldLocator;
 
 /**
- * Object representing a MEDLINE citation.
+ * Object representing a MEDLINE citation. The PMID, title, and abstract are located in the raw
+ * bytes of the citation in a single pass when it's read, and decoded only when they're asked for.
+ * Objects can be reused from one citation to the next.
  *
  * @author Jimmy Lin
  */
@@ -44,6 +48,15 @@ public class MedlineCitation extends Indexable {
    */
   public static final String XML_END_TAG = "</MedlineCitation>";
 
+  private static final int PMID = 0;
+  private static final int TITLE = 1;
+  private static final int ABSTRACT = 2;
+
+  private final XMLFieldLocator locator =
+      new XMLFieldLocator("PMID", "ArticleTitle", "AbstractText");
+  private byte[] bytes = new byte[0];
+  private int length;
+
   private String pmid;
   private String citation;
   private String title;
@@ -59,9 +72,8 @@ public class MedlineCitation extends Indexable {
    * Deserializes this object.
    */
   public void write(DataOutput out) throws IOException {
-    byte[] bytes = citation.getBytes();
-    WritableUtils.writeVInt(out, bytes.length);
-    out.write(bytes, 0, bytes.length);
+    WritableUtils.writeVInt(out, length);
+    out.write(bytes, 0, length);
   }
 
   /**
@@ -69,9 +81,24 @@ public class MedlineCitation extends Indexable {
    */
   public void readFields(DataInput in) throws IOException {
     int length = WritableUtils.readVInt(in);
-    byte[] bytes = new byte[length];
+    ensureCapacity(length);
     in.readFully(bytes, 0, length);
-    MedlineCitation.readCitation(this, new String(bytes));
+    this.length = length;
+    reset();
+  }
+
+  private void ensureCapacity(int length) {
+    if (bytes.length < length) {
+      bytes = new byte[Math.max(length, 2 * bytes.length)];
+    }
+  }
+
+  private void reset() {
+    locator.locate(bytes, 0, length);
+    citation = null;
+    pmid = null;
+    title = null;
+    abstractText = null;
   }
 
   /**
@@ -93,13 +120,10 @@ public class MedlineCitation extends Indexable {
    */
   public String getPmid() {
     if (pmid == null) {
-      int start = citation.indexOf("<PMID>");
+      pmid = locator.get(PMID);
 
-      if (start == -1) {
+      if (pmid == null) {
         throw new RuntimeException(getRawXML());
-      } else {
-        int end = citation.indexOf("</PMID>", start);
-        pmid = citation.substring(start + 6, end);
       }
     }
 
@@ -111,14 +135,7 @@ public class MedlineCitation extends Indexable {
    */
   public String getTitle() {
     if (title == null) {
-      int start = citation.indexOf("<ArticleTitle>");
-
-      if (start == -1) {
-        title = "";
-      } else {
-        int end = citation.indexOf("</ArticleTitle>", start);
-        title = citation.substring(start + 14, end);
-      }
+      title = locator.isFound(TITLE) ? locator.get(TITLE) : "";
     }
 
     return title;
@@ -129,14 +146,7 @@ public class MedlineCitation extends Indexable {
    */
   public String getAbstract() {
     if (abstractText == null) {
-      int start = citation.indexOf("<AbstractText>");
-
-      if (start == -1) {
-        abstractText = "";
-      } else {
-        int end = citation.indexOf("</AbstractText>", start);
-        abstractText = citation.substring(start + 14, end);
-      }
+      abstractText = locator.isFound(ABSTRACT) ? locator.get(ABSTRACT) : "";
     }
 
     return abstractText;
@@ -146,6 +156,9 @@ public class MedlineCitation extends Indexable {
    * Returns the raw XML of this citation.
    */
   public String getRawXML() {
+    if (citation == null) {
+      citation = new String(bytes, 0, length, Charsets.UTF_8);
+    }
     return citation;
   }
 
@@ -159,9 +172,28 @@ public class MedlineCitation extends Indexable {
     Preconditions.checkNotNull(citation);
     Preconditions.checkNotNull(s);
 
+    byte[] bytes = s.getBytes(Charsets.UTF_8);
+    readCitation(citation, bytes, 0, bytes.length);
     citation.citation = s;
-    citation.pmid = null;
-    citation.title = null;
-    citation.abstractText = null;
+  }
+
+  /**
+   * Reads the raw UTF-8 bytes of a citation into a {@code MedlineCitation} object. The bytes are
+   * copied, so the buffer may be reused afterwards.
+   *
+   * @param citation the {@code MedlineCitation} object
+   * @param buffer buffer holding the citation
+   * @param offset offset of the citation in the buffer
+   * @param length length of the citation
+   */
+  public static void readCitation(MedlineCitation citation, byte[] buffer, int offset,
+      int length) {
+    Preconditions.checkNotNull(citation);
+    Preconditions.checkNotNull(buffer);
+
+    citation.ensureCapacity(length);
+    System.arraycopy(buffer, offset, citation.bytes, 0, length);
+    citation.length = length;
+    citation.reset();
   }
 }
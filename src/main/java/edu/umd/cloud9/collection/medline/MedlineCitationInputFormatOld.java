@@ -22,7 +22,9 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
@@ -56,7 +58,8 @@ public class MedlineCitationInputFormatOld extends
 
   @Override
   protected boolean isSplitable(FileSystem fs, Path file) {
-    return compressionCodecs.getCodec(file) == null;
+    CompressionCodec codec = compressionCodecs.getCodec(file);
+    return codec == null || codec instanceof SplittableCompressionCodec;
   }
 
   /**
@@ -93,7 +96,7 @@ public class MedlineCitationInputFormatOld extends
       if (reader.next(pos, text) == false)
         return false;
       key.set(pos.get());
-      MedlineCitation.readCitation(value, text.toString());
+      MedlineCitation.readCitation(value, text.getBytes(), 0, text.getLength());
       return true;
     }
 
@@ -0,0 +1,213 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.trec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.NLineInputFormat;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Tool for building {@link TrecDocumentIndex} sidecar files for the files of a TREC collection,
+ * which allow {@link IndexedTrecDocumentInputFormat} to read documents without scanning for them.
+ * All files under the input path are indexed by a map-only job, one file per map task, and each
+ * index is written next to its file. Files that already have an up-to-date index are skipped unless
+ * <code>-force</code> is given.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class BuildTrecDocumentIndex extends Configured implements Tool {
+  private static final Logger LOG = Logger.getLogger(BuildTrecDocumentIndex.class);
+
+  private static enum Files { INDEXED, DOCUMENTS };
+
+  private static class MyMapper extends MapReduceBase implements
+      Mapper<LongWritable, Text, NullWritable, NullWritable> {
+    private JobConf conf;
+
+    @Override
+    public void configure(JobConf job) {
+      conf = job;
+    }
+
+    public void map(LongWritable key, Text value, OutputCollector<NullWritable, NullWritable> output,
+        Reporter reporter) throws IOException {
+      Path path = new Path(value.toString());
+      FileSystem fs = path.getFileSystem(conf);
+      long length = fs.getFileStatus(path).getLen();
+      CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(path);
+
+      LOG.info("Indexing " + path);
+      InputStream in = codec == null ? fs.open(path) : codec.createInputStream(fs.open(path));
+      TrecDocumentIndex index;
+      try {
+        index = TrecDocumentIndex.build(in, length, reporter);
+      } finally {
+        in.close();
+      }
+      index.write(fs, TrecDocumentIndex.getIndexPath(path));
+
+      reporter.incrCounter(Files.INDEXED, 1);
+      reporter.incrCounter(Files.DOCUMENTS, index.size());
+    }
+  }
+
+  public static final String INPUT_OPTION = "input";
+  public static final String FORCE_OPTION = "force";
+
+  /**
+   * Runs this tool.
+   */
+  @SuppressWarnings("static-access")
+  public int run(String[] args) throws Exception {
+    Options options = new Options();
+    options.addOption(OptionBuilder.withArgName("path").hasArg()
+        .withDescription("collection file or directory (searched recursively)")
+        .create(INPUT_OPTION));
+    options.addOption(new Option(FORCE_OPTION, "rebuild indexes that are up to date"));
+
+    CommandLine cmdline;
+    CommandLineParser parser = new GnuParser();
+    try {
+      cmdline = parser.parse(options, args);
+    } catch (ParseException exp) {
+      System.err.println("Error parsing command line: " + exp.getMessage());
+      return -1;
+    }
+
+    if (!cmdline.hasOption(INPUT_OPTION)) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp(this.getClass().getName(), options);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return -1;
+    }
+
+    Path input = new Path(cmdline.getOptionValue(INPUT_OPTION));
+    boolean force = cmdline.hasOption(FORCE_OPTION);
+
+    LOG.info("Tool name: " + BuildTrecDocumentIndex.class.getSimpleName());
+    LOG.info(" - input: " + input);
+    LOG.info(" - force: " + force);
+
+    FileSystem fs = input.getFileSystem(getConf());
+    List<Path> files = Lists.newArrayList();
+    findFiles(fs, fs.getFileStatus(input), force, files);
+    if (files.isEmpty()) {
+      LOG.info("Nothing to index.");
+      return 0;
+    }
+    LOG.info("Indexing " + files.size() + " files.");
+
+    // Write out the list of files to index, which is the input to the job.
+    Path list = new Path(BuildTrecDocumentIndex.class.getSimpleName() + "-"
+        + System.currentTimeMillis() + ".txt");
+    FSDataOutputStream out = fs.create(list, true);
+    for (Path file : files) {
+      out.write((file.toString() + "\n").getBytes("UTF-8"));
+    }
+    out.close();
+
+    JobConf conf = new JobConf(getConf(), BuildTrecDocumentIndex.class);
+    conf.setJobName(BuildTrecDocumentIndex.class.getSimpleName() + ":" + input);
+    conf.setInt("mapreduce.input.lineinputformat.linespermap", 1);
+
+    conf.setNumReduceTasks(0);
+    conf.setSpeculativeExecution(false);
+
+    FileInputFormat.setInputPaths(conf, list);
+    conf.setInputFormat(NLineInputFormat.class);
+    conf.setOutputFormat(NullOutputFormat.class);
+    conf.setOutputKeyClass(NullWritable.class);
+    conf.setOutputValueClass(NullWritable.class);
+    conf.setMapperClass(MyMapper.class);
+
+    try {
+      JobClient.runJob(conf);
+    } finally {
+      fs.delete(list, false);
+    }
+
+    return 0;
+  }
+
+  private static void findFiles(FileSystem fs, FileStatus status, boolean force, List<Path> files)
+      throws IOException {
+    Path path = status.getPath();
+    if (path.getName().startsWith("_") || path.getName().startsWith(".")) {
+      return;
+    }
+
+    if (status.isDirectory()) {
+      for (FileStatus child : fs.listStatus(path)) {
+        findFiles(fs, child, force, files);
+      }
+      return;
+    }
+
+    if (TrecDocumentIndex.isIndexPath(path)) {
+      return;
+    }
+    if (!force && TrecDocumentIndex.readIfValid(fs, path, status.getLen()) != null) {
+      return;
+    }
+    files.add(path);
+  }
+
+  /**
+   * Dispatches command-line arguments to the tool via the <code>ToolRunner</code>.
+   */
+  public static void main(String[] args) throws Exception {
+    LOG.info("Running " + BuildTrecDocumentIndex.class.getCanonicalName() + " with args "
+        + Arrays.toString(args));
+    ToolRunner.run(new BuildTrecDocumentIndex(), args);
+  }
+}
@@ -46,10 +46,12 @@ import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
 import edu.umd.cloud9.collection.DocnoMapping;
+import edu.umd.cloud9.mapreduce.ForkJoinJobRunner;
 
 /**
  * Simple demo program that counts all the documents in the TREC collection. Run without any
- * arguments for help.
+ * arguments for help. With <code>-D Cloud9.LocalThreads=<i>n</i></code>, the job runs in this JVM
+ * with <i>n</i> threads instead of on the cluster (see {@link ForkJoinJobRunner}).
  *
  * @author Jimmy Lin
  */
@@ -58,8 +60,9 @@ public class CountTrecDocuments extends Configured implements Tool {
   private static enum Count { DOCS };
 
   private static class MyMapper extends Mapper<LongWritable, TrecDocument, Text, IntWritable> {
-    private static final Text docid = new Text();
-    private static final IntWritable one = new IntWritable(1);
+    // Per instance, since mappers may run concurrently in the same JVM (see ForkJoinJobRunner).
+    private final Text docid = new Text();
+    private final IntWritable one = new IntWritable(1);
     private DocnoMapping docMapping;
 
     @Override
@@ -158,7 +161,7 @@ public class CountTrecDocuments extends Configured implements Tool {
     FileOutputFormat.setOutputPath(job, new Path(outputPath));
     FileOutputFormat.setCompressOutput(job, false);
 
-    job.setInputFormatClass(TrecDocumentInputFormat.class);
+    job.setInputFormatClass(IndexedTrecDocumentInputFormat.class);
     job.setOutputKeyClass(Text.class);
     job.setOutputValueClass(IntWritable.class);
 
@@ -167,9 +170,7 @@ public class CountTrecDocuments extends Configured implements Tool {
     // Delete the output directory if it exists already.
     FileSystem.get(job.getConfiguration()).delete(new Path(outputPath), true);
 
-    job.waitForCompletion(true);
-
-    Counters counters = job.getCounters();
+    Counters counters = ForkJoinJobRunner.runJob(job);
     int numDocs = (int) counters.findCounter(Count.DOCS).getValue();
     LOG.info("Read " + numDocs + " docs.");
 
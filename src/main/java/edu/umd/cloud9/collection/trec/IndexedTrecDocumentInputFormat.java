@@ -0,0 +1,227 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.trec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+import edu.umd.cloud9.collection.WebDocument;
+
+/**
+ * <p>
+ * Hadoop {@code InputFormat} for TREC collections that reads documents using the sidecar indexes
+ * built by {@link BuildTrecDocumentIndex} (see {@link TrecDocumentIndex}), rather than by scanning
+ * the text for <code>&lt;DOC&gt;</code> tags. Uncompressed files are split exactly on document
+ * boundaries, and each document is read with a single positional read. Compressed files are read
+ * whole, by skipping straight from one document to the next. Keys and values are the same as with
+ * {@link TrecDocumentInputFormat}, which is also how files without a valid index are read.
+ * </p>
+ *
+ * <p>
+ * Splits are sized the same way as with {@code FileInputFormat}.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class IndexedTrecDocumentInputFormat extends TrecDocumentInputFormat {
+  private static final Logger LOG = Logger.getLogger(IndexedTrecDocumentInputFormat.class);
+
+  // Same as in FileInputFormat: the last split may be this much larger than the others.
+  private static final double SPLIT_SLOP = 1.1;
+
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    long minSize = Math.max(getFormatMinSplitSize(), getMinSplitSize(job));
+    long maxSize = getMaxSplitSize(job);
+
+    List<InputSplit> splits = Lists.newArrayList();
+    for (FileStatus file : listStatus(job)) {
+      Path path = file.getPath();
+      FileSystem fs = path.getFileSystem(conf);
+      long length = file.getLen();
+      BlockLocation[] blocks = fs.getFileBlockLocations(file, 0, length);
+      long splitSize = computeSplitSize(file.getBlockSize(), minSize, maxSize);
+      boolean compressed = new CompressionCodecFactory(conf).getCodec(path) != null;
+      TrecDocumentIndex index = TrecDocumentIndex.readIfValid(fs, path, length);
+
+      long start = 0;
+      if (index != null && !compressed) {
+        for (long offset : index.getOffsets()) {
+          if (offset - start >= splitSize) {
+            splits.add(createSplit(path, start, offset - start, blocks));
+            start = offset;
+          }
+        }
+      } else if (index == null && isSplitable(job, path)) {
+        // Split the way FileInputFormat does, and let the record reader scan for documents.
+        while (((double) (length - start)) / splitSize > SPLIT_SLOP) {
+          splits.add(createSplit(path, start, splitSize, blocks));
+          start += splitSize;
+        }
+      }
+      splits.add(createSplit(path, start, length - start, blocks));
+    }
+
+    LOG.info("Total # of splits: " + splits.size());
+    return splits;
+  }
+
+  private FileSplit createSplit(Path path, long start, long length, BlockLocation[] blocks)
+      throws IOException {
+    String[] hosts = blocks.length == 0 ? new String[0]
+        : blocks[getBlockIndex(blocks, start)].getHosts();
+    return new FileSplit(path, start, length, hosts);
+  }
+
+  @Override
+  public RecordReader<LongWritable, WebDocument> createRecordReader(InputSplit split,
+      TaskAttemptContext context) throws IOException, InterruptedException {
+    return new IndexedTrecDocumentRecordReader();
+  }
+
+  /**
+   * Record reader that reads the documents whose offsets fall within a split, as given by the index
+   * of the file. Files without a valid index are read by a {@link TrecDocumentRecordReader}.
+   */
+  public static class IndexedTrecDocumentRecordReader extends
+      RecordReader<LongWritable, WebDocument> {
+    private final LongWritable key = new LongWritable();
+    private final TrecDocument doc = new TrecDocument();
+    private TrecDocumentRecordReader fallback;
+
+    private TrecDocumentIndex index;
+    private FSDataInputStream fileIn; // For positional reads of uncompressed files.
+    private InputStream in; // For reading compressed files straight through.
+    private long pos = 0; // Position in the uncompressed data of a compressed file.
+    private byte[] buffer = new byte[64 * 1024];
+    private int first;
+    private int last;
+    private int next;
+
+    @Override
+    public void initialize(InputSplit input, TaskAttemptContext context)
+        throws IOException, InterruptedException {
+      Configuration conf = context.getConfiguration();
+      FileSplit split = (FileSplit) input;
+      Path path = split.getPath();
+      FileSystem fs = path.getFileSystem(conf);
+
+      index = TrecDocumentIndex.readIfValid(fs, path, fs.getFileStatus(path).getLen());
+      if (index == null) {
+        LOG.info("No valid index for " + path + ", scanning for documents...");
+        fallback = new TrecDocumentRecordReader();
+        fallback.initialize(split, context);
+        return;
+      }
+
+      CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(path);
+      if (codec == null) {
+        fileIn = fs.open(path);
+        first = index.findFirst(split.getStart());
+        last = index.findFirst(split.getStart() + split.getLength());
+      } else {
+        // Compressed files aren't split, so if this isn't the first split, it's empty.
+        in = codec.createInputStream(fs.open(path));
+        first = 0;
+        last = split.getStart() == 0 ? index.size() : 0;
+      }
+      next = first;
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      if (fallback != null) {
+        return fallback.nextKeyValue();
+      }
+      if (next >= last) {
+        return false;
+      }
+
+      long offset = index.getOffsets()[next];
+      int length = index.getLengths()[next];
+      next++;
+      if (buffer.length < length) {
+        buffer = new byte[Math.max(length, 2 * buffer.length)];
+      }
+
+      if (fileIn != null) {
+        fileIn.readFully(offset, buffer, 0, length);
+      } else {
+        IOUtils.skipFully(in, offset - pos);
+        IOUtils.readFully(in, buffer, 0, length);
+        pos = offset + length;
+      }
+
+      key.set(offset);
+      TrecDocument.readDocument(doc, new String(buffer, 0, length, Charsets.UTF_8));
+      return true;
+    }
+
+    @Override
+    public LongWritable getCurrentKey() throws IOException, InterruptedException {
+      return fallback != null ? fallback.getCurrentKey() : key;
+    }
+
+    @Override
+    public WebDocument getCurrentValue() throws IOException, InterruptedException {
+      return fallback != null ? fallback.getCurrentValue() : doc;
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      if (fallback != null) {
+        return fallback.getProgress();
+      }
+      return last == first ? 1.0f : ((float) (next - first)) / ((float) (last - first));
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (fallback != null) {
+        fallback.close();
+      }
+      if (fileIn != null) {
+        fileIn.close();
+      }
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+}
@@ -17,7 +17,6 @@
 package edu.umd.cloud9.collection.trec;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
@@ -32,6 +31,7 @@ import org.apache.log4j.Logger;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import edu.umd.cloud9.collection.CompactDocidTable;
 import edu.umd.cloud9.collection.DocnoMapping;
 
 /**
@@ -46,12 +46,18 @@ import edu.umd.cloud9.collection.DocnoMapping;
  * <li>[docid/docno]: the docid or docno (optional)</li>
  * </ul>
  *
+ * <p>
+ * Mappings are held in memory in a {@link CompactDocidTable}, which answers lookups in both
+ * directions in constant time. Mappings files in the compact format written by that class are
+ * also accepted.
+ * </p>
+ *
  * @author Jimmy Lin
  */
 public class TrecDocnoMapping implements DocnoMapping {
   private static final Logger LOG = Logger.getLogger(TrecDocnoMapping.class);
 
-  private String[] docids;
+  private CompactDocidTable docids;
 
   /**
    * Creates a {@code TrecDocnoMapping} object.
@@ -61,19 +67,19 @@ public class TrecDocnoMapping implements DocnoMapping {
   @Override
   public int getDocno(String docid) {
     Preconditions.checkNotNull(docid);
-    return Arrays.binarySearch(docids, docid);
+    return docids.getDocno(docid);
   }
 
   @Override
   public String getDocid(int docno) {
-    return docids[docno];
+    return docids.getDocid(docno);
   }
 
   @Override
   public void loadMapping(Path p, FileSystem fs) throws IOException {
     Preconditions.checkNotNull(p);
     Preconditions.checkNotNull(fs);
-    docids = TrecDocnoMapping.readMappingData(p, fs);
+    docids = CompactDocidTable.read(p, fs);
   }
 
   /**
@@ -175,8 +181,8 @@ public class TrecDocnoMapping implements DocnoMapping {
     mapping.loadMapping(new Path(args[1]), fs);
 
     if (args[0].equals("list")) {
-      for (int i = 1; i < mapping.docids.length; i++) {
-        System.out.println(i + "\t" + mapping.docids[i]);
+      for (int i = 1; i <= mapping.docids.size(); i++) {
+        System.out.println(i + "\t" + mapping.docids.getDocid(i));
       }
     } else if (args[0].equals("getDocno")) {
       System.out.println("looking up docno for \"" + args[2] + "\"");
@@ -116,7 +116,7 @@ public class TrecDocnoMappingBuilder extends Configured implements Tool, DocnoMa
     FileOutputFormat.setOutputPath(job, new Path(tmpDir));
     FileOutputFormat.setCompressOutput(job, false);
 
-    job.setInputFormatClass(TrecDocumentInputFormat.class);
+    job.setInputFormatClass(IndexedTrecDocumentInputFormat.class);
     job.setOutputKeyClass(Text.class);
     job.setOutputValueClass(IntWritable.class);
     job.setOutputFormatClass(TextOutputFormat.class);
@@ -0,0 +1,281 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.trec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.util.Progressable;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Charsets;
+
+import edu.umd.cloud9.collection.TagScanner;
+import edu.umd.cloud9.io.LittleEndianArrays;
+
+/**
+ * <p>
+ * Index of the documents in a file of a TREC collection: the docno, offset, and length of each
+ * document, in the order in which they appear in the file. Offsets and lengths are in bytes of
+ * uncompressed data, and cover a document from its <code>&lt;DOC&gt;</code> tag through its
+ * <code>&lt;/DOC&gt;</code> tag, so that {@link IndexedTrecDocumentInputFormat} can split files
+ * exactly on document boundaries and read each document with a single positional read, instead of
+ * scanning all of the text for tags every time the collection is processed.
+ * </p>
+ *
+ * <p>
+ * Indexes are built in a single pass over each file (see {@link BuildTrecDocumentIndex}), and stored
+ * as a sidecar file next to it, with the suffix {@link #SUFFIX}. The sidecar also records the length
+ * of the file, so that indexes that are out of date can be detected and ignored.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class TrecDocumentIndex {
+  private static final Logger LOG = Logger.getLogger(TrecDocumentIndex.class);
+
+  /**
+   * Suffix of the sidecar file that holds the index of a file.
+   */
+  public static final String SUFFIX = ".docs";
+
+  private static final int MAGIC = 0x54524449; // "TRDI"
+
+  private static final byte[] START_TAG = TrecDocument.XML_START_TAG.getBytes(Charsets.UTF_8);
+  private static final byte[] END_TAG = TrecDocument.XML_END_TAG.getBytes(Charsets.UTF_8);
+  private static final byte[] DOCNO_START = "<DOCNO>".getBytes(Charsets.UTF_8);
+  private static final byte[] DOCNO_END = "</DOCNO>".getBytes(Charsets.UTF_8);
+
+  private final long fileLength;
+  private final long[] offsets;
+  private final int[] lengths;
+  private final String[] docnos;
+
+  private TrecDocumentIndex(long fileLength, long[] offsets, int[] lengths, String[] docnos) {
+    this.fileLength = fileLength;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.docnos = docnos;
+  }
+
+  /**
+   * Returns the length of the file that was indexed, as stored (i.e., compressed, if it is).
+   */
+  public long getFileLength() {
+    return fileLength;
+  }
+
+  /**
+   * Returns the number of documents in the file.
+   */
+  public int size() {
+    return offsets.length;
+  }
+
+  /**
+   * Returns the offsets of the documents, in increasing order.
+   */
+  public long[] getOffsets() {
+    return offsets;
+  }
+
+  /**
+   * Returns the lengths of the documents.
+   */
+  public int[] getLengths() {
+    return lengths;
+  }
+
+  /**
+   * Returns the docnos of the documents (empty if a document has none).
+   */
+  public String[] getDocnos() {
+    return docnos;
+  }
+
+  /**
+   * Returns the position of the first document that starts at or after an offset, which is
+   * {@link #size()} if there's none.
+   */
+  public int findFirst(long offset) {
+    int i = Arrays.binarySearch(offsets, offset);
+    return i >= 0 ? i : -i - 1;
+  }
+
+  /**
+   * Returns the path of the sidecar file that holds the index of a file.
+   */
+  public static Path getIndexPath(Path file) {
+    return new Path(file.getParent(), file.getName() + SUFFIX);
+  }
+
+  /**
+   * Checks whether a path is that of an index sidecar file.
+   */
+  public static boolean isIndexPath(Path path) {
+    return path.getName().endsWith(SUFFIX);
+  }
+
+  /**
+   * Builds the index of a file.
+   *
+   * @param in stream of the uncompressed contents of the file, positioned at its beginning
+   * @param fileLength length of the file, as stored
+   * @param progress reported to periodically, or <code>null</code>
+   * @return the index
+   * @throws IOException
+   */
+  public static TrecDocumentIndex build(InputStream in, long fileLength, Progressable progress)
+      throws IOException {
+    TagScanner scanner = new TagScanner(in, 0);
+    int[] startFailure = TagScanner.failureFunction(START_TAG);
+    int[] endFailure = TagScanner.failureFunction(END_TAG);
+    DataOutputBuffer buffer = new DataOutputBuffer();
+
+    long[] offsets = new long[1024];
+    int[] lengths = new int[1024];
+    String[] docnos = new String[1024];
+    int n = 0;
+    while (scanner.readUntilMatch(START_TAG, startFailure, Long.MAX_VALUE)) {
+      long offset = scanner.getPos() - START_TAG.length;
+      buffer.reset();
+      buffer.write(START_TAG);
+      if (!scanner.readUntilMatch(END_TAG, endFailure, buffer)) {
+        break;
+      }
+
+      if (n == offsets.length) {
+        offsets = Arrays.copyOf(offsets, 2 * n);
+        lengths = Arrays.copyOf(lengths, 2 * n);
+        docnos = Arrays.copyOf(docnos, 2 * n);
+      }
+      offsets[n] = offset;
+      lengths[n] = buffer.getLength();
+      docnos[n] = findDocno(buffer.getData(), buffer.getLength());
+      n++;
+
+      if (progress != null && n % 1000 == 0) {
+        progress.progress();
+      }
+    }
+
+    return new TrecDocumentIndex(fileLength, Arrays.copyOf(offsets, n), Arrays.copyOf(lengths, n),
+        Arrays.copyOf(docnos, n));
+  }
+
+  // Finds the docno the same way as TrecDocument.getDocid.
+  private static String findDocno(byte[] bytes, int length) {
+    int start = indexOf(bytes, length, DOCNO_START, 0);
+    if (start < 0) {
+      return "";
+    }
+    start += DOCNO_START.length;
+    int end = indexOf(bytes, length, DOCNO_END, start);
+    if (end < 0) {
+      return "";
+    }
+    return new String(bytes, start, end - start, Charsets.UTF_8).trim();
+  }
+
+  private static int indexOf(byte[] bytes, int length, byte[] pattern, int from) {
+    int max = length - pattern.length;
+    for (int i = from; i <= max; i++) {
+      int j = 0;
+      while (j < pattern.length && bytes[i + j] == pattern[j]) {
+        j++;
+      }
+      if (j == pattern.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Writes this index to a file.
+   */
+  public void write(FileSystem fs, Path path) throws IOException {
+    FSDataOutputStream out = fs.create(path, true);
+    try {
+      out.writeInt(MAGIC);
+      out.writeLong(fileLength);
+      out.writeInt(offsets.length);
+      LittleEndianArrays.writeLongs(out, offsets, 0, offsets.length);
+      LittleEndianArrays.writeInts(out, lengths, 0, lengths.length);
+      for (String docno : docnos) {
+        out.writeUTF(docno);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads an index from a file.
+   */
+  public static TrecDocumentIndex read(FileSystem fs, Path path) throws IOException {
+    FSDataInputStream in = fs.open(path);
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(path + " is not a TREC document index!");
+      }
+      long fileLength = in.readLong();
+      int n = in.readInt();
+      long[] offsets = new long[n];
+      int[] lengths = new int[n];
+      String[] docnos = new String[n];
+      LittleEndianArrays.readLongs(in, offsets, 0, n);
+      LittleEndianArrays.readInts(in, lengths, 0, n);
+      for (int i = 0; i < n; i++) {
+        docnos[i] = in.readUTF();
+      }
+      return new TrecDocumentIndex(fileLength, offsets, lengths, docnos);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the index of a file from its sidecar file, if it exists and matches the file.
+   *
+   * @param fs file system
+   * @param file the indexed file
+   * @param fileLength length of the file
+   * @return the index, or <code>null</code> if there's no valid index
+   */
+  public static TrecDocumentIndex readIfValid(FileSystem fs, Path file, long fileLength)
+      throws IOException {
+    Path path = getIndexPath(file);
+    if (!fs.exists(path)) {
+      return null;
+    }
+
+    TrecDocumentIndex index = read(fs, path);
+    if (index.getFileLength() != fileLength) {
+      LOG.warn("Ignoring out-of-date document index " + path + ": indexed " + index.getFileLength()
+          + " bytes, but the file has " + fileLength);
+      return null;
+    }
+    return index;
+  }
+}
@@ -17,13 +17,18 @@
 package edu.umd.cloud9.collection.trec;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
+import com.google.common.collect.Lists;
+
 import edu.umd.cloud9.collection.IndexableFileInputFormat;
 import edu.umd.cloud9.collection.WebDocument;
 import edu.umd.cloud9.collection.XMLInputFormat;
@@ -32,6 +37,21 @@ import edu.umd.cloud9.collection.XMLInputFormat.XMLRecordReader;
 public class TrecDocumentInputFormat extends
     IndexableFileInputFormat<LongWritable, WebDocument> {
 
+  /**
+   * Leaves out the sidecar files of {@link TrecDocumentIndex}, which may live alongside the files
+   * of the collection.
+   */
+  @Override
+  protected List<FileStatus> listStatus(JobContext job) throws IOException {
+    List<FileStatus> files = Lists.newArrayList();
+    for (FileStatus file : super.listStatus(job)) {
+      if (!TrecDocumentIndex.isIndexPath(file.getPath())) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
   @Override
   public RecordReader<LongWritable, WebDocument> createRecordReader(
       InputSplit split, TaskAttemptContext context) throws IOException,
@@ -17,7 +17,9 @@
 package edu.umd.cloud9.collection.trec;
 
 import java.io.IOException;
+import java.util.List;
 
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.FileSplit;
@@ -27,6 +29,8 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
 
+import com.google.common.collect.Lists;
+
 import edu.umd.cloud9.collection.IndexableFileInputFormatOld;
 import edu.umd.cloud9.collection.XMLInputFormatOld;
 import edu.umd.cloud9.collection.XMLInputFormatOld.XMLRecordReader;
@@ -38,6 +42,21 @@ import edu.umd.cloud9.collection.XMLInputFormatOld.XMLRecordReader;
  */
 public class TrecDocumentInputFormatOld extends IndexableFileInputFormatOld<LongWritable, TrecDocument> {
 
+  /**
+   * Leaves out the sidecar files of {@link TrecDocumentIndex}, which may live alongside the files
+   * of the collection.
+   */
+  @Override
+  protected FileStatus[] listStatus(JobConf job) throws IOException {
+    List<FileStatus> files = Lists.newArrayList();
+    for (FileStatus file : super.listStatus(job)) {
+      if (!TrecDocumentIndex.isIndexPath(file.getPath())) {
+        files.add(file);
+      }
+    }
+    return files.toArray(new FileStatus[files.size()]);
+  }
+
   /**
    * Returns a {@code RecordReader} for this {@code InputFormat}.
    */
@@ -17,6 +17,10 @@
 package edu.umd.cloud9.collection.trec;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -27,20 +31,69 @@ import org.apache.log4j.Logger;
 import com.google.common.base.Preconditions;
 
 import edu.umd.cloud9.collection.DocumentForwardIndex;
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils;
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+import edu.umd.cloud9.io.MappedFileBuffer;
 
 /**
- * A document forward index for TREC collections.
+ * A document forward index for TREC collections. Documents are fetched with positional reads
+ * against a single shared stream, so an instance can safely be used by multiple threads once
+ * {@link #loadIndex(Path, Path, FileSystem)} has returned.
+ *
+ * <p>
+ * When constructed in memory-mapped mode and the index resides on the local disk, both the
+ * collection and the offset table are mapped into memory instead of being read through
+ * {@code FileSystem} streams, so a fetch amounts to decoding a slice of the mapped file. On other
+ * filesystems the flag is ignored.
+ * </p>
  *
  * @author Jimmy Lin
  */
 public class TrecForwardIndex implements DocumentForwardIndex<TrecDocument> {
   private static final Logger LOG = Logger.getLogger(TrecForwardIndex.class);
 
+  // When fetching a batch of documents, neighboring documents separated by at most this many bytes
+  // are fetched with a single read...
+  static final int MAX_COALESCE_GAP = 64 * 1024;
+  // ...as long as the resulting read doesn't exceed this many bytes.
+  static final int MAX_COALESCE_SPAN = 4 * 1024 * 1024;
+
+  // Each index entry is a long offset followed by an int length.
+  private static final int ENTRY_SIZE = 12;
+
+  private final boolean memoryMapped;
+
+  private int numDocs;
   private long[] offsets;
   private int[] lengths;
   private FSDataInputStream input;
   private TrecDocnoMapping docnoMapping = new TrecDocnoMapping();
   private String path;
+  private ForwardIndexMetrics metrics = ForwardIndexMetrics.getDefault();
+
+  // Only used in memory-mapped mode.
+  private MappedFileBuffer mappedIndex;
+  private long indexBase;
+  private MappedFileBuffer mappedCollection;
+
+  /**
+   * Creates a forward index that reads documents through {@code FileSystem} streams.
+   */
+  public TrecForwardIndex() {
+    this(false);
+  }
+
+  /**
+   * Creates a forward index.
+   *
+   * @param memoryMapped whether to memory map the collection if it resides on the local disk
+   */
+  public TrecForwardIndex(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
 
   @Override
   public int getDocno(String docid) {
@@ -55,7 +108,7 @@ public class TrecForwardIndex implements DocumentForwardIndex<TrecDocument> {
 
   @Override
   public int getLastDocno() {
-    return offsets.length - 1;
+    return numDocs;
   }
 
   @Override
@@ -75,26 +128,181 @@ public class TrecForwardIndex implements DocumentForwardIndex<TrecDocument> {
 
   @Override
   public TrecDocument getDocument(int docno) {
-    TrecDocument doc = new TrecDocument();
+    long start = metrics.now();
+    metrics.increment(Counter.REQUESTS, 1);
 
-    try {
-      LOG.info(String.format("docno %d: byte offset %d, length %d",
-          docno, offsets[docno], lengths[docno]));
+    // Trap invalid docnos; in memory-mapped mode they'd read past either end of the offset table.
+    if (!DocumentForwardIndexUtils.isValidDocno(this, docno)) {
+      metrics.increment(Counter.ERRORS, 1);
+      return null;
+    }
 
-      input.seek(offsets[docno]);
+    TrecDocument doc = new TrecDocument();
+    try {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("docno %d: byte offset %d, length %d",
+            docno, offset(docno), length(docno)));
+      }
 
-      byte[] arr = new byte[lengths[docno]];
+      if (mappedCollection != null) {
+        readMapped(doc, docno);
+      } else {
+        byte[] arr = new byte[length(docno)];
 
-      input.read(arr);
+        // Positional reads don't touch the stream's file pointer, which is what makes concurrent
+        // fetches safe.
+        input.readFully(offset(docno), arr);
+        long t = metrics.recordSince(Phase.READ, start);
+        metrics.increment(Counter.BYTES_READ, arr.length);
 
-      TrecDocument.readDocument(doc, new String(arr));
+        TrecDocument.readDocument(doc, new String(arr));
+        metrics.recordSince(Phase.PARSE, t);
+      }
+      metrics.increment(Counter.DOCUMENTS, 1);
     } catch (IOException e) {
+      metrics.increment(Counter.ERRORS, 1);
       e.printStackTrace();
     }
 
+    metrics.recordSince(Phase.FETCH, start);
     return doc;
   }
 
+  private void readMapped(TrecDocument doc, int docno) {
+    long start = metrics.now();
+
+    // Decode straight out of the mapped pages; no bytes are copied onto the heap first.
+    TrecDocument.readDocument(doc, Charset.defaultCharset()
+        .decode(mappedCollection.slice(offset(docno), length(docno))).toString());
+    metrics.recordSince(Phase.PARSE, start);
+    metrics.increment(Counter.BYTES_READ, length(docno));
+  }
+
+  /**
+   * Fetches a batch of documents. Requests are sorted by byte offset so that documents lying close
+   * together in the collection are fetched with a single read. Documents are returned in the same
+   * order as the docnos passed in; an invalid docno yields a {@code null} entry.
+   *
+   * @param docnos docnos of the documents to fetch
+   * @return the document objects
+   */
+  @Override
+  public List<TrecDocument> getDocuments(int[] docnos) {
+    Preconditions.checkNotNull(docnos);
+    long fetchStart = metrics.now();
+    metrics.increment(Counter.REQUESTS, 1);
+    List<TrecDocument> docs = Arrays.asList(new TrecDocument[docnos.length]);
+
+    // Invalid docnos are left as null entries, and take no part in the reads below.
+    Integer[] order = new Integer[docnos.length];
+    int numValid = 0;
+    for (int i = 0; i < docnos.length; i++) {
+      if (DocumentForwardIndexUtils.isValidDocno(this, docnos[i])) {
+        order[numValid++] = i;
+      }
+    }
+    if (numValid < docnos.length) {
+      metrics.increment(Counter.MISSES, docnos.length - numValid);
+      order = Arrays.copyOf(order, numValid);
+    }
+
+    // With a mapped collection there are no reads to coalesce.
+    if (mappedCollection != null) {
+      for (int i : order) {
+        TrecDocument doc = new TrecDocument();
+        readMapped(doc, docnos[i]);
+        docs.set(i, doc);
+      }
+      metrics.increment(Counter.DOCUMENTS, order.length);
+      metrics.recordSince(Phase.FETCH, fetchStart);
+      return docs;
+    }
+
+    final int[] requested = docnos;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        long x = offset(requested[a]);
+        long y = offset(requested[b]);
+        return x < y ? -1 : (x == y ? 0 : 1);
+      }
+    });
+
+    int i = 0;
+    while (i < order.length) {
+      // Grow the current run as long as the next document is close enough.
+      long start = offset(docnos[order[i]]);
+      long end = start + length(docnos[order[i]]);
+      int j = i + 1;
+      while (j < order.length) {
+        int docno = docnos[order[j]];
+        long nextEnd = Math.max(end, offset(docno) + length(docno));
+        if (offset(docno) - end > MAX_COALESCE_GAP || nextEnd - start > MAX_COALESCE_SPAN) {
+          break;
+        }
+        end = nextEnd;
+        j++;
+      }
+
+      try {
+        long t = metrics.now();
+        byte[] buf = new byte[(int) (end - start)];
+        input.readFully(start, buf);
+        t = metrics.recordSince(Phase.READ, t);
+        metrics.increment(Counter.BYTES_READ, buf.length);
+
+        for (int k = i; k < j; k++) {
+          int docno = docnos[order[k]];
+          TrecDocument doc = new TrecDocument();
+          TrecDocument.readDocument(doc,
+              new String(buf, (int) (offset(docno) - start), length(docno)));
+          t = metrics.recordSince(Phase.PARSE, t);
+          docs.set(order[k], doc);
+        }
+        metrics.increment(Counter.DOCUMENTS, j - i);
+      } catch (IOException e) {
+        metrics.increment(Counter.ERRORS, 1);
+        e.printStackTrace();
+        for (int k = i; k < j; k++) {
+          docs.set(order[k], new TrecDocument());
+        }
+      }
+
+      i = j;
+    }
+
+    metrics.recordSince(Phase.FETCH, fetchStart);
+    return docs;
+  }
+
+  /**
+   * Returns the instrumentation that fetches report into.
+   */
+  public ForwardIndexMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the instrumentation that fetches report into.
+   */
+  public void setMetrics(ForwardIndexMetrics metrics) {
+    this.metrics = Preconditions.checkNotNull(metrics);
+  }
+
+  private long offset(int docno) {
+    if (mappedIndex != null) {
+      return mappedIndex.getLong(indexBase + (docno - 1) * (long) ENTRY_SIZE);
+    }
+    return offsets[docno];
+  }
+
+  private int length(int docno) {
+    if (mappedIndex != null) {
+      return mappedIndex.getInt(indexBase + (docno - 1) * (long) ENTRY_SIZE + 8);
+    }
+    return lengths[docno];
+  }
+
   @Override
   public void loadIndex(Path index, Path mapping, FileSystem fs) throws IOException {
     FSDataInputStream in = fs.open(index);
@@ -103,18 +311,47 @@ public class TrecForwardIndex implements DocumentForwardIndex<TrecDocument> {
     in.readUTF();
     path = in.readUTF();
 
+    numDocs = in.readInt();
+    boolean binary = numDocs == ForwardIndexFormat.BINARY;
+    if (binary) {
+      numDocs = in.readInt();
+    }
+
+    // Only the original format is laid out as fixed-size big-endian entries that can be looked up
+    // in place; an index in the binary format loads quickly enough anyway.
+    if (memoryMapped && MappedFileBuffer.isLocal(fs) && !binary) {
+      // Entries are read directly out of the mapped index file, so there's nothing else to load.
+      indexBase = in.getPos();
+      in.close();
+
+      LOG.info("Memory mapping " + index + " and " + path);
+      mappedIndex = MappedFileBuffer.map(index, fs);
+      mappedCollection = MappedFileBuffer.map(new Path(path), fs);
+      docnoMapping.loadMapping(mapping, fs);
+      return;
+    }
+
     // Docnos start at one, so we need an array that's one larger than number of docs.
-    int sz = in.readInt() + 1;
+    int sz = numDocs + 1;
     offsets = new long[sz];
     lengths = new int[sz];
 
-    for (int i = 1; i < sz; i++) {
-      offsets[i] = in.readLong();
-      lengths[i] = in.readInt();
+    if (binary) {
+      ForwardIndexFormat.readDocuments(in, offsets, lengths, numDocs);
+    } else {
+      for (int i = 1; i < sz; i++) {
+        offsets[i] = in.readLong();
+        lengths[i] = in.readInt();
+      }
     }
     in.close();
 
-    input = fs.open(new Path(path));
+    if (memoryMapped && MappedFileBuffer.isLocal(fs)) {
+      LOG.info("Memory mapping " + path);
+      mappedCollection = MappedFileBuffer.map(new Path(path), fs);
+    } else {
+      input = fs.open(new Path(path));
+    }
     docnoMapping.loadMapping(mapping, fs);
   }
 
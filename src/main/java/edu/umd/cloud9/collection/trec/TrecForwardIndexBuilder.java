@@ -168,7 +168,7 @@ public class TrecForwardIndexBuilder extends Configured implements Tool {
     FileOutputFormat.setOutputPath(job, new Path(tmpDir));
     FileOutputFormat.setCompressOutput(job, false);
 
-    job.setInputFormatClass(TrecDocumentInputFormat.class);
+    job.setInputFormatClass(IndexedTrecDocumentInputFormat.class);
     job.setOutputKeyClass(IntWritable.class);
     job.setOutputValueClass(Text.class);
 
@@ -37,14 +37,18 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.collection.RepackOptions;
+import edu.umd.cloud9.collection.RepackSequenceFileOutputFormat;
+
 /**
  * Tool to repack TREC web collections (wt10g, gov2) into {@link SequenceFile}s. Run without any
- * arguments for help. The guava jar must be included using {@code -libjar}.
+ * arguments for help. The codec, block size, and fields to also write as columns (see
+ * {@link edu.umd.cloud9.collection.DocumentFieldColumns}) can be chosen with the options of
+ * {@link RepackOptions}. The guava jar must be included using {@code -libjar}.
  *
  * @author Jimmy Lin
  */
@@ -82,6 +86,7 @@ public class RepackTrecWebCollection extends Configured implements Tool {
     options.addOption(OptionBuilder.withArgName("type").hasArg()
         .withDescription("(required) compression type: 'block', 'record', or 'none'")
         .create(COMPRESSION_OPTION));
+    RepackOptions.addOptions(options);
 
     CommandLine cmdline;
     CommandLineParser parser = new GnuParser();
@@ -110,9 +115,6 @@ public class RepackTrecWebCollection extends Configured implements Tool {
       System.exit(-1);
     }
 
-    // This is the default block size.
-    int blocksize = 1000000;
-
     Job job = new Job(getConf(),
         RepackTrecWebCollection.class.getSimpleName() + ":" + collection);
     FileSystem fs = FileSystem.get(job.getConfiguration());
@@ -122,10 +124,12 @@ public class RepackTrecWebCollection extends Configured implements Tool {
     LOG.info("Tool name: " + RepackTrecWebCollection.class.getCanonicalName());
     LOG.info(" - collection path: " + collection);
     LOG.info(" - output path: " + output);
-    LOG.info(" - compression type: " + compressionType);
 
-    if (compressionType.equals("block")) {
-      LOG.info(" - block size: " + blocksize);
+    try {
+      RepackOptions.configure(job.getConfiguration(), cmdline, compressionType);
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      return -1;
     }
 
     Path collectionPath = new Path(collection);
@@ -151,21 +155,8 @@ public class RepackTrecWebCollection extends Configured implements Tool {
 
     FileOutputFormat.setOutputPath(job, new Path(output));
 
-    if (compressionType.equals("none")) {
-      SequenceFileOutputFormat.setCompressOutput(job, false);
-    } else {
-      SequenceFileOutputFormat.setCompressOutput(job, true);
-
-      if (compressionType.equals("record")) {
-        SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.RECORD);
-      } else {
-        SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
-        job.getConfiguration().setInt("io.seqfile.compress.blocksize", blocksize);
-      }
-    }
-
     job.setInputFormatClass(TrecWebDocumentInputFormat.class);
-    job.setOutputFormatClass(SequenceFileOutputFormat.class);
+    job.setOutputFormatClass(RepackSequenceFileOutputFormat.class);
     job.setOutputKeyClass(LongWritable.class);
     job.setOutputValueClass(TrecWebDocument.class);
 
@@ -24,8 +24,17 @@ import java.io.IOException;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.WritableUtils;
 
+import com.google.common.base.Charsets;
+
 import edu.umd.cloud9.collection.WebDocument;
+import edu.umd.cloud9.collection.XMLFieldLocator;
 
+/**
+ * Object representing a document in a TREC web collection (e.g., wt10g, gov2). Fields are located
+ * in the raw bytes of the document in a single pass when it's read, but the docid, URL, and content
+ * are only decoded when they're asked for. Objects can be reused from one document to the next,
+ * without allocating anything besides the strings that are asked for.
+ */
 public class TrecWebDocument extends WebDocument {
 
   /**
@@ -38,6 +47,18 @@ public class TrecWebDocument extends WebDocument {
    */
   public static final String XML_END_TAG = "</DOC>";
 
+  private static final int DOCNO = 0;
+  private static final int DOCHDR = 1;
+  private static final int END_TAG_LENGTH = XML_END_TAG.length();
+  private static final int DOCHDR_END_TAG_LENGTH = "</DOCHDR>".length();
+
+  private final XMLFieldLocator locator = new XMLFieldLocator("DOCNO", "DOCHDR");
+  private byte[] bytes = new byte[0];
+  private int contentStart;
+  private int contentEnd;
+  private int urlStart = -1;
+  private int urlEnd;
+
   private String docid;
   private String content;
   private String url;
@@ -58,10 +79,9 @@ public class TrecWebDocument extends WebDocument {
    * Deserializes this object.
    */
   public void write(DataOutput out) throws IOException {
-    out.writeUTF(docid);
-    byte[] bytes = content.getBytes("UTF-8");
-    WritableUtils.writeVInt(out, bytes.length);
-    out.write(bytes, 0, bytes.length);
+    out.writeUTF(getDocid());
+    WritableUtils.writeVInt(out, contentEnd - contentStart);
+    out.write(bytes, contentStart, contentEnd - contentStart);
   }
 
   /**
@@ -70,9 +90,19 @@ public class TrecWebDocument extends WebDocument {
   public void readFields(DataInput in) throws IOException {
     docid = in.readUTF();
     int length = WritableUtils.readVInt(in);
-    byte[] bytes = new byte[length];
+    ensureCapacity(length);
     in.readFully(bytes, 0, length);
-    content = new String(bytes, "UTF-8");
+    contentStart = 0;
+    contentEnd = length;
+    urlStart = -1;
+    content = null;
+    url = null;
+  }
+
+  private void ensureCapacity(int length) {
+    if (bytes.length < length) {
+      bytes = new byte[Math.max(length, 2 * bytes.length)];
+    }
   }
 
   /**
@@ -80,6 +110,9 @@ public class TrecWebDocument extends WebDocument {
    */
   @Override
   public String getDocid() {
+    if (docid == null) {
+      docid = locator.get(DOCNO);
+    }
     return docid;
   }
 
@@ -88,11 +121,17 @@ public class TrecWebDocument extends WebDocument {
    */
   @Override
   public String getContent() {
+    if (content == null) {
+      content = new String(bytes, contentStart, contentEnd - contentStart, Charsets.UTF_8);
+    }
     return content;
   }
 
   @Override
   public String getURL() {
+    if (url == null && urlStart >= 0) {
+      url = new String(bytes, urlStart, urlEnd - urlStart, Charsets.UTF_8);
+    }
     return url;
   }
 
@@ -107,37 +146,54 @@ public class TrecWebDocument extends WebDocument {
       throw new RuntimeException("Error, can't read null string!");
     }
 
-    int start = s.indexOf("<DOCNO>");
+    byte[] bytes = s.getBytes(Charsets.UTF_8);
+    readDocument(doc, bytes, 0, bytes.length);
+  }
 
-    if (start == -1) {
+  /**
+   * Reads the raw UTF-8 bytes of a document into a {@code TrecWebDocument} object. The bytes are
+   * copied, so the buffer may be reused afterwards.
+   *
+   * @param doc the {@code TrecWebDocument} object
+   * @param buffer buffer holding the document
+   * @param offset offset of the document in the buffer
+   * @param length length of the document
+   */
+  public static void readDocument(TrecWebDocument doc, byte[] buffer, int offset, int length) {
+    doc.ensureCapacity(length);
+    System.arraycopy(buffer, offset, doc.bytes, 0, length);
+    doc.docid = null;
+    doc.content = null;
+    doc.url = null;
+
+    byte[] bytes = doc.bytes;
+    XMLFieldLocator locator = doc.locator;
+    locator.locate(bytes, 0, length);
+
+    if (!locator.isFound(DOCNO)) {
       throw new RuntimeException("Unable to find DOCNO tag!");
-    } else {
-      int end = s.indexOf("</DOCNO>", start);
-
-      doc.docid = s.substring(start + 7, end);
     }
-    
-    start = s.indexOf("<DOCHDR>");
-    
-    if (start == -1) {
+    if (!locator.isFound(DOCHDR)) {
       throw new RuntimeException("Unable to find DOCHDR tag!");
     }
-    else {
-      int end = s.indexOf(" ", start);
 
-      doc.url = s.substring(start + 9, end);
+    // The URL starts on the line after the DOCHDR tag, and ends at the first space.
+    int start = locator.getStart(DOCHDR) + 1;
+    while (start < length && (bytes[start] & 0xC0) == 0x80) {
+      start++;
     }
-    
-    start = s.indexOf("</DOCHDR>");
-
-    if (start == -1) {
-      throw new RuntimeException("Unable to find DOCHDR tag!");
-    } else {
-      int end = s.length() - 6;
-
-      doc.content = s.substring(start + 9, end);
+    int end = start;
+    while (end < length && bytes[end] != ' ') {
+      end++;
     }
+    if (end == length) {
+      throw new RuntimeException("Unable to find end of URL!");
+    }
+    doc.urlStart = start;
+    doc.urlEnd = end;
 
+    doc.contentStart = locator.getEnd(DOCHDR) + DOCHDR_END_TAG_LENGTH;
+    doc.contentEnd = Math.max(doc.contentStart, length - END_TAG_LENGTH);
   }
 
   private static DataInputStream fsin;
@@ -153,9 +209,7 @@ public class TrecWebDocument extends WebDocument {
       try {
         buffer.write(startTag);
         if (readUntilMatch(endTag, true)) {
-          String s = new String(buffer.getData());
-
-          readDocument(doc, s);
+          readDocument(doc, buffer.getData(), 0, buffer.getLength());
 
           return true;
         }
@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -44,7 +45,8 @@ public class TrecWebDocumentInputFormat extends
 
     @Override
     public WebDocument getCurrentValue() throws IOException, InterruptedException {
-      TrecWebDocument.readDocument(doc, reader.getCurrentValue().toString());
+      Text text = reader.getCurrentValue();
+      TrecWebDocument.readDocument(doc, text.getBytes(), 0, text.getLength());
       return doc;
     }
 
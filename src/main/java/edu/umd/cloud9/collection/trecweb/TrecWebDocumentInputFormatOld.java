@@ -80,7 +80,7 @@ public class TrecWebDocumentInputFormatOld extends
         return false;
       }
       key.set(inputKey.get());
-      TrecWebDocument.readDocument(value, text.toString());
+      TrecWebDocument.readDocument(value, text.getBytes(), 0, text.getLength());
       return true;
     }
 
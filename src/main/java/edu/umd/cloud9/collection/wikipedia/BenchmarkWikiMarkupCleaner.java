@@ -0,0 +1,139 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.wikipedia;
+
+import java.util.regex.Pattern;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+import edu.umd.cloud9.collection.wikipedia.language.WikipediaPageFactory;
+
+/**
+ * <p>
+ * Program that compares extracting the text of articles in a bz2-compressed Wikipedia dump with
+ * Bliki (the default for {@link WikipediaPage#getContent()}) and with {@link WikiMarkupCleaner}.
+ * It reports the throughput of each, as well as how much the two agree, which is the fraction of
+ * tokens (maximal runs of letters and digits, ignoring case) that the texts have in common.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class BenchmarkWikiMarkupCleaner {
+  private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private BenchmarkWikiMarkupCleaner() {}
+
+  private static Multiset<String> tokenize(String s) {
+    Multiset<String> tokens = HashMultiset.create();
+    for (String token : TOKEN_SEPARATOR.split(s.toLowerCase())) {
+      if (token.length() > 0) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  private static final String INPUT_OPTION = "input";
+  private static final String LANGUAGE_OPTION = "wiki_language";
+  private static final String MAX_OPTION = "max";
+
+  @SuppressWarnings("static-access")
+  public static void main(String[] args) throws Exception {
+    Options options = new Options();
+    options.addOption(OptionBuilder.withArgName("path").hasArg()
+        .withDescription("bz2-compressed XML dump file").create(INPUT_OPTION));
+    options.addOption(OptionBuilder.withArgName("en|sv|de|cs|es|zh|ar|tr").hasArg()
+        .withDescription("two-letter language code").create(LANGUAGE_OPTION));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("maximum number of articles").create(MAX_OPTION));
+
+    CommandLine cmdline = null;
+    CommandLineParser parser = new GnuParser();
+    try {
+      cmdline = parser.parse(options, args);
+    } catch (ParseException exp) {
+      System.err.println("Error parsing command line: " + exp.getMessage());
+      System.exit(-1);
+    }
+
+    if (!cmdline.hasOption(INPUT_OPTION)) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp(BenchmarkWikiMarkupCleaner.class.getCanonicalName(), options);
+      System.exit(-1);
+    }
+
+    String lang = cmdline.hasOption(LANGUAGE_OPTION) ? cmdline.getOptionValue(LANGUAGE_OPTION)
+        : "en";
+    int max = cmdline.hasOption(MAX_OPTION) ? Integer.parseInt(cmdline.getOptionValue(MAX_OPTION))
+        : Integer.MAX_VALUE;
+
+    WikipediaPage page = WikipediaPageFactory.createWikipediaPage(lang);
+    WikipediaPagesBz2InputStream stream =
+        new WikipediaPagesBz2InputStream(cmdline.getOptionValue(INPUT_OPTION));
+
+    int articles = 0;
+    long markupChars = 0;
+    long blikiTime = 0;
+    long cleanerTime = 0;
+    long blikiTokens = 0;
+    long cleanerTokens = 0;
+    long commonTokens = 0;
+    while (articles < max && stream.readNext(page)) {
+      if (!page.isArticle() || page.isRedirect() || page.isEmpty()) {
+        continue;
+      }
+      articles++;
+      markupChars += page.getWikiMarkup().length();
+
+      page.setFastContent(false);
+      long start = System.nanoTime();
+      String bliki = page.getContent();
+      blikiTime += System.nanoTime() - start;
+
+      page.setFastContent(true);
+      start = System.nanoTime();
+      String cleaner = page.getContent();
+      cleanerTime += System.nanoTime() - start;
+
+      Multiset<String> a = tokenize(bliki);
+      Multiset<String> b = tokenize(cleaner);
+      blikiTokens += a.size();
+      cleanerTokens += b.size();
+      commonTokens += Multisets.intersection(a, b).size();
+    }
+    stream.close();
+
+    System.out.println(String.format("%d articles, %d chars of markup", articles, markupChars));
+    System.out.println(String.format("Bliki:   %.1f ms, %.0f articles/s, %.2f MB/s",
+        blikiTime / 1e6, articles / (blikiTime / 1e9), markupChars / (blikiTime / 1e3)));
+    System.out.println(String.format("Cleaner: %.1f ms, %.0f articles/s, %.2f MB/s",
+        cleanerTime / 1e6, articles / (cleanerTime / 1e9), markupChars / (cleanerTime / 1e3)));
+    System.out.println(String.format("Tokens: %d (Bliki), %d (cleaner), %d in common (%.1f%%)",
+        blikiTokens, cleanerTokens, commonTokens,
+        200.0 * commonTokens / (blikiTokens + cleanerTokens)));
+  }
+}
@@ -38,12 +38,16 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.mapreduce.ForkJoinJobRunner;
+
 /**
  * Tool for counting the number of pages in a particular Wikipedia XML dump file. This program keeps
  * track of total number of pages, redirect pages, disambiguation pages, empty pages, actual
  * articles (including stubs), stubs, and non-articles ("File:", "Category:", "Wikipedia:", etc.).
  * This also provides a skeleton for MapReduce programs to process the collection. Specify input
- * path to the Wikipedia XML dump file with the {@code -input} flag.
+ * path to the Wikipedia XML dump file with the {@code -input} flag. With
+ * <code>-D Cloud9.LocalThreads=<i>n</i></code>, the job runs in this JVM with <i>n</i> threads
+ * instead of on the cluster (see {@link ForkJoinJobRunner}).
  *
  * @author Jimmy Lin
  * @author Peter Exner
@@ -141,7 +145,7 @@ public class CountWikipediaPages extends Configured implements Tool {
 
     job.setMapperClass(MyMapper.class);
 
-    job.waitForCompletion(true);
+    ForkJoinJobRunner.runJob(job);
 
     return 0;
   }
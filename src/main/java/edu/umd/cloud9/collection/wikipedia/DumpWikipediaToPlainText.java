@@ -22,6 +22,7 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.GnuParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
@@ -53,14 +54,23 @@ public class DumpWikipediaToPlainText extends Configured implements Tool {
     TOTAL, REDIRECT, DISAMBIGUATION, EMPTY, ARTICLE, STUB, OTHER
   };
 
+  private static final String FAST_CONTENT_KEY = "Cloud9.WikipediaFastContent";
+
   private static class MyMapper extends Mapper<LongWritable, WikipediaPage, Text, Text> {
     private static final Text articleName = new Text();
     private static final Text articleContent = new Text();
+    private boolean fastContent;
+
+    @Override
+    public void setup(Context context) {
+      fastContent = context.getConfiguration().getBoolean(FAST_CONTENT_KEY, false);
+    }
 
     @Override
     public void map(LongWritable key, WikipediaPage p, Context context)
         throws IOException, InterruptedException {
       context.getCounter(PageTypes.TOTAL).increment(1);
+      p.setFastContent(fastContent);
 
       if (p.isRedirect()) {
         context.getCounter(PageTypes.REDIRECT).increment(1);
@@ -88,6 +98,7 @@ public class DumpWikipediaToPlainText extends Configured implements Tool {
   private static final String INPUT_OPTION = "input";
   private static final String OUTPUT_OPTION = "output";
   private static final String LANGUAGE_OPTION = "wiki_language";
+  private static final String FAST_OPTION = "fast";
 
   @SuppressWarnings("static-access")
   @Override
@@ -99,6 +110,8 @@ public class DumpWikipediaToPlainText extends Configured implements Tool {
         .withDescription("output path").create(OUTPUT_OPTION));
     options.addOption(OptionBuilder.withArgName("en|sv|de|cs|es|zh|ar|tr").hasArg()
         .withDescription("two-letter language code").create(LANGUAGE_OPTION));
+    options.addOption(new Option(FAST_OPTION,
+        "extract text with WikiMarkupCleaner instead of rendering with Bliki"));
 
     CommandLine cmdline;
     CommandLineParser parser = new GnuParser();
@@ -132,6 +145,7 @@ public class DumpWikipediaToPlainText extends Configured implements Tool {
     LOG.info(" - XML dump file: " + inputPath);
     LOG.info(" - output path: " + outputPath);
     LOG.info(" - language: " + language);
+    LOG.info(" - fast: " + cmdline.hasOption(FAST_OPTION));
 
     Job job = Job.getInstance(getConf());
     job.setJarByClass(DumpWikipediaToPlainText.class);
@@ -146,6 +160,7 @@ public class DumpWikipediaToPlainText extends Configured implements Tool {
     if (language != null) {
       job.getConfiguration().set("wiki.language", language);
     }
+    job.getConfiguration().setBoolean(FAST_CONTENT_KEY, cmdline.hasOption(FAST_OPTION));
 
     job.setInputFormatClass(WikipediaPageInputFormat.class);
     job.setOutputFormatClass(TextOutputFormat.class);
@@ -30,7 +30,6 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
@@ -39,10 +38,16 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.umd.cloud9.collection.DocumentFieldColumns;
+import edu.umd.cloud9.collection.Indexable;
+import edu.umd.cloud9.collection.RepackOptions;
+import edu.umd.cloud9.collection.RepackSequenceFileOutputFormat;
 import edu.umd.cloud9.collection.wikipedia.language.WikipediaPageFactory;
 
 /**
- * Tool for repacking Wikipedia XML dumps into <code>SequenceFiles</code>.
+ * Tool for repacking Wikipedia XML dumps into <code>SequenceFiles</code>. The codec, block size,
+ * and fields to also write as columns (see {@link DocumentFieldColumns}) can be chosen with the
+ * options of {@link RepackOptions}.
  *
  * @author Jimmy Lin
  * @author Peter Exner
@@ -91,6 +96,20 @@ public class RepackWikipedia extends Configured implements Tool {
     }
   }
 
+  /**
+   * Extracts fields of Wikipedia pages to write as columns; the title of a page is its title in
+   * Wikipedia.
+   */
+  public static class WikipediaFieldExtractor extends DocumentFieldColumns.FieldExtractor {
+    @Override
+    public String extract(Indexable doc, String field) {
+      if (field.equals("title") && doc instanceof WikipediaPage) {
+        return ((WikipediaPage) doc).getTitle();
+      }
+      return super.extract(doc, field);
+    }
+  }
+
   private static final String DOCNO_MAPPING_FIELD = "DocnoMappingDataFile";
 
   private static final String INPUT_OPTION = "input";
@@ -112,6 +131,7 @@ public class RepackWikipedia extends Configured implements Tool {
         .withDescription("compression type").create(COMPRESSION_TYPE_OPTION));
     options.addOption(OptionBuilder.withArgName("en|sv|de").hasArg()
         .withDescription("two-letter language code").create(LANGUAGE_OPTION));
+    RepackOptions.addOptions(options);
 
     CommandLine cmdline;
     CommandLineParser parser = new GnuParser();
@@ -149,9 +169,6 @@ public class RepackWikipedia extends Configured implements Tool {
       }
     }
 
-    // this is the default block size
-    int blocksize = 1000000;
-
     Job job = Job.getInstance(getConf());
     job.setJarByClass(RepackWikipedia.class);
     job.setJobName(String.format("RepackWikipedia[%s: %s, %s: %s, %s: %s, %s: %s]",
@@ -159,16 +176,22 @@ public class RepackWikipedia extends Configured implements Tool {
         compressionType, LANGUAGE_OPTION, language));
 
     job.getConfiguration().set(DOCNO_MAPPING_FIELD, mappingFile);
+    job.getConfiguration().setClass(RepackOptions.FIELD_EXTRACTOR_PROPERTY,
+        WikipediaFieldExtractor.class, DocumentFieldColumns.FieldExtractor.class);
+    // Pages are only passed through, and only read with accessors, so they can be read lazily.
+    job.getConfiguration().setBoolean(WikipediaPage.LAZY_PROPERTY, true);
 
     LOG.info("Tool name: " + this.getClass().getName());
     LOG.info(" - XML dump file: " + inputPath);
     LOG.info(" - output path: " + outputPath);
     LOG.info(" - docno mapping data file: " + mappingFile);
-    LOG.info(" - compression type: " + compressionType);
     LOG.info(" - language: " + language);
 
-    if ("block".equals(compressionType)) {
-      LOG.info(" - block size: " + blocksize);
+    try {
+      RepackOptions.configure(job.getConfiguration(), cmdline, compressionType);
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      return -1;
     }
 
     job.setNumReduceTasks(0);
@@ -176,25 +199,12 @@ public class RepackWikipedia extends Configured implements Tool {
     SequenceFileInputFormat.addInputPath(job, new Path(inputPath));
     SequenceFileOutputFormat.setOutputPath(job, new Path(outputPath));
 
-    if ("none".equals(compressionType)) {
-      SequenceFileOutputFormat.setCompressOutput(job, false);
-    } else {
-      SequenceFileOutputFormat.setCompressOutput(job, true);
-
-      if ("record".equals(compressionType)) {
-        SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.RECORD);
-      } else {
-        SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
-        job.getConfiguration().setInt("io.seqfile.compress.blocksize", blocksize);
-      }
-    }
-
     if (language != null) {
       job.getConfiguration().set("wiki.language", language);
     }
 
     job.setInputFormatClass(WikipediaPageInputFormat.class);
-    job.setOutputFormatClass(SequenceFileOutputFormat.class);
+    job.setOutputFormatClass(RepackSequenceFileOutputFormat.class);
     job.setOutputKeyClass(IntWritable.class);
     job.setOutputValueClass(WikipediaPageFactory.getWikipediaPageClass(language));
 
@@ -0,0 +1,516 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.collection.wikipedia;
+
+import java.util.Map;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Turns the wiki markup of a page into plain text in a single pass, without rendering it. This is
+ * much faster than {@link WikipediaPage#getContent()}, which renders the markup with Bliki and then
+ * cleans up the result with a chain of regular expressions, and produces essentially the same text:
+ * </p>
+ *
+ * <ul>
+ * <li>templates (<code>{{...}}</code>, nested or not), references, HTML comments and tags,
+ * category, file, and inter-language links, and URLs are removed;</li>
+ * <li>internal links are replaced with their anchor text, and external links with their
+ * description;</li>
+ * <li>bold and italic quotes, heading, list, and table markup are removed, but the text of
+ * headings, list items, and table cells is kept;</li>
+ * <li>HTML entities are unescaped.</li>
+ * </ul>
+ *
+ * <p>
+ * Removed markup is replaced by a space so that words on either side of it aren't run together.
+ * The input is the wiki markup as it appears in the XML dump (i.e., as returned by
+ * {@link WikipediaPage#getWikiMarkup()}), which is first unescaped into a buffer that is reused
+ * from page to page. A cleaner isn't thread-safe.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class WikiMarkupCleaner {
+  // HTML entities, built from the escaping table of commons-lang so that they're unescaped the same
+  // way as by StringEscapeUtils.unescapeHtml.
+  private static final Map<String, Character> ENTITIES = Maps.newHashMap();
+
+  static {
+    for (char c = 0; c < 0x3000; c++) {
+      String escaped = StringEscapeUtils.escapeHtml(String.valueOf(c));
+      if (escaped.length() > 2 && escaped.charAt(0) == '&' && escaped.charAt(1) != '#') {
+        ENTITIES.put(escaped.substring(1, escaped.length() - 1), c);
+      }
+    }
+  }
+
+  private char[] m = new char[1024];
+  private final StringBuilder out = new StringBuilder(1024);
+
+  /**
+   * Returns the plain text of a page: its title, followed by a newline and the text of its wiki
+   * markup.
+   *
+   * @param title title of the page
+   * @param markup wiki markup of the page, as it appears in the XML dump
+   */
+  public String clean(String title, String markup) {
+    out.setLength(0);
+    if (title != null) {
+      out.append(title).append('\n');
+    }
+    if (markup != null) {
+      clean(0, unescapeXml(markup), true);
+    }
+    return out.toString();
+  }
+
+  // Unescapes the XML entities in the markup into the buffer, returning the length of the result.
+  private int unescapeXml(String s) {
+    int n = s.length();
+    if (m.length < n) {
+      m = new char[Math.max(n, 2 * m.length)];
+    }
+
+    int j = 0;
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (c == '&') {
+        if (s.startsWith("lt;", i + 1)) {
+          c = '<';
+          i += 3;
+        } else if (s.startsWith("gt;", i + 1)) {
+          c = '>';
+          i += 3;
+        } else if (s.startsWith("amp;", i + 1)) {
+          i += 4;
+        } else if (s.startsWith("quot;", i + 1)) {
+          c = '"';
+          i += 5;
+        } else if (s.startsWith("apos;", i + 1)) {
+          c = '\'';
+          i += 5;
+        }
+      }
+      m[j++] = c;
+    }
+    return j;
+  }
+
+  // Cleans the markup between two positions, appending the text to the output. This is called
+  // recursively for the anchor text of links.
+  private void clean(int from, int to, boolean lineStart) {
+    boolean heading = false;
+    int tableDepth = 0;
+    boolean cell = false;
+    int cellStart = 0;
+
+    int i = from;
+    while (i < to) {
+      char c = m[i];
+
+      if (lineStart) {
+        lineStart = false;
+        if (c == '=') {
+          heading = true;
+          i = skipRun(i, to, '=');
+          continue;
+        }
+        if (c == '*' || c == '#' || c == ':' || c == ';') {
+          while (i < to && (m[i] == '*' || m[i] == '#' || m[i] == ':' || m[i] == ';')) {
+            i++;
+          }
+          continue;
+        }
+        if (startsWith(i, to, "----")) {
+          i = skipRun(i, to, '-');
+          continue;
+        }
+        if (startsWith(i, to, "{|")) {
+          tableDepth++;
+          i = endOfLine(i, to);
+          continue;
+        }
+        if (tableDepth > 0) {
+          if (startsWith(i, to, "|}")) {
+            tableDepth--;
+            i = endOfLine(i, to);
+            continue;
+          }
+          if (startsWith(i, to, "|-") || startsWith(i, to, "|+")) {
+            i = endOfLine(i, to);
+            continue;
+          }
+          if (c == '|' || c == '!') {
+            cell = true;
+            cellStart = out.length();
+            i++;
+            continue;
+          }
+        }
+      }
+
+      switch (c) {
+      case '\n':
+        heading = false;
+        cell = false;
+        lineStart = true;
+        out.append('\n');
+        i++;
+        break;
+
+      case '=':
+        if (heading) {
+          i = skipRun(i, to, '=');
+          out.append(' ');
+        } else {
+          out.append(c);
+          i++;
+        }
+        break;
+
+      case '\'':
+        if (startsWith(i, to, "''")) {
+          i = skipRun(i, to, '\'');
+        } else {
+          out.append(c);
+          i++;
+        }
+        break;
+
+      case '|':
+      case '!':
+        if (cell && startsWith(i + 1, to, c == '|' ? "|" : "!")) {
+          // Next cell on the same line.
+          out.append(' ');
+          cellStart = out.length();
+          i += 2;
+        } else if (cell && c == '|' && cellStart >= 0) {
+          // What came before was the cell's attributes.
+          out.setLength(cellStart);
+          cellStart = -1;
+          i++;
+        } else {
+          out.append(c);
+          i++;
+        }
+        break;
+
+      case '{':
+        if (startsWith(i, to, "{{")) {
+          int end = findClose(i, to, '{', '}');
+          if (end >= 0) {
+            out.append(' ');
+            i = end;
+            break;
+          }
+        }
+        out.append(c);
+        i++;
+        break;
+
+      case '[':
+        i = link(i, to);
+        break;
+
+      case '<':
+        i = tag(i, to);
+        break;
+
+      case '&':
+        i = entity(i, to);
+        break;
+
+      case 'h':
+      case 'f':
+        if ((startsWith(i, to, "http://") || startsWith(i, to, "https://")
+            || startsWith(i, to, "ftp://")) && (i == from || !Character.isLetterOrDigit(m[i - 1]))) {
+          while (i < to && !Character.isWhitespace(m[i]) && m[i] != '<' && m[i] != '|'
+              && m[i] != ']') {
+            i++;
+          }
+          out.append(' ');
+        } else {
+          out.append(c);
+          i++;
+        }
+        break;
+
+      case '_':
+        // Magic words such as __TOC__.
+        if (startsWith(i, to, "__")) {
+          int j = i + 2;
+          while (j < to && m[j] >= 'A' && m[j] <= 'Z') {
+            j++;
+          }
+          if (j > i + 2 && startsWith(j, to, "__")) {
+            i = j + 2;
+            break;
+          }
+        }
+        out.append(c);
+        i++;
+        break;
+
+      default:
+        out.append(c);
+        i++;
+      }
+    }
+  }
+
+  // Handles internal and external links, returning the position past the link.
+  private int link(int i, int to) {
+    if (startsWith(i, to, "[[")) {
+      int end = findClose(i, to, '[', ']');
+      if (end < 0) {
+        out.append('[');
+        return i + 1;
+      }
+
+      // Find the end of the target (i.e., the first pipe that isn't inside a nested link or
+      // template), and the colon of its namespace, if any.
+      int start = i + 2;
+      int close = end - 2;
+      int pipe = -1;
+      int colon = -1;
+      int depth = 0;
+      for (int j = start; j < close; j++) {
+        char c = m[j];
+        if (c == '[' || c == '{') {
+          depth++;
+        } else if (c == ']' || c == '}') {
+          depth--;
+        } else if (depth == 0 && c == '|') {
+          pipe = j;
+          break;
+        } else if (depth == 0 && c == ':' && colon < 0) {
+          colon = j;
+        }
+      }
+
+      if (colon > start && isHiddenNamespace(start, colon)) {
+        out.append(' ');
+      } else if (pipe >= 0) {
+        clean(pipe + 1, close, false);
+      } else {
+        clean(m[start] == ':' ? start + 1 : start, close, false);
+      }
+      return end;
+    }
+
+    // External links, which show their description, if any.
+    int j = i + 1;
+    while (j < to && m[j] == ' ') {
+      j++;
+    }
+    if (startsWith(j, to, "http://") || startsWith(j, to, "https://") || startsWith(j, to, "ftp://")
+        || startsWith(j, to, "//")) {
+      int end = j;
+      while (end < to && m[end] != ']' && m[end] != '\n') {
+        end++;
+      }
+      if (end < to && m[end] == ']') {
+        int space = j;
+        while (space < end && m[space] != ' ') {
+          space++;
+        }
+        out.append(' ');
+        if (space < end) {
+          clean(space + 1, end, false);
+        }
+        return end + 1;
+      }
+    }
+
+    out.append('[');
+    return i + 1;
+  }
+
+  // Whether links to a namespace don't show up in the text: categories, files, and other languages.
+  private boolean isHiddenNamespace(int start, int end) {
+    if (equalsIgnoreCase(start, end, "category") || equalsIgnoreCase(start, end, "file")
+        || equalsIgnoreCase(start, end, "image")) {
+      return true;
+    }
+
+    // Inter-language links, e.g., [[de:Alan Turing]].
+    for (int j = start; j < end; j++) {
+      if (!(m[j] >= 'a' && m[j] <= 'z') && m[j] != '-') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Handles comments, references, and HTML tags, returning the position past them.
+  private int tag(int i, int to) {
+    if (startsWith(i, to, "<!--")) {
+      int end = indexOf("-->", i + 4, to);
+      out.append(' ');
+      return end < 0 ? to : end + 3;
+    }
+
+    int j = i + 1;
+    boolean closing = j < to && m[j] == '/';
+    if (closing) {
+      j++;
+    }
+    if (j >= to || !Character.isLetter(m[j])) {
+      out.append('<');
+      return i + 1;
+    }
+
+    int end = indexOf(">", j, to);
+    if (end < 0) {
+      out.append('<');
+      return i + 1;
+    }
+    end++;
+    out.append(' ');
+
+    // References are removed along with their contents, unless they're empty (<ref ... />).
+    if (!closing && equalsIgnoreCase(j, Math.min(j + 3, to), "ref")
+        && (j + 3 == to || m[j + 3] == '>' || m[j + 3] == '/' || Character.isWhitespace(m[j + 3]))
+        && m[end - 2] != '/') {
+      int close = indexOfIgnoreCase("</ref", end, to);
+      if (close >= 0) {
+        int gt = indexOf(">", close, to);
+        return gt < 0 ? to : gt + 1;
+      }
+    }
+    return end;
+  }
+
+  // Unescapes an HTML entity, returning the position past it.
+  private int entity(int i, int to) {
+    int semicolon = -1;
+    for (int j = i + 1; j < to && j < i + 12; j++) {
+      if (m[j] == ';') {
+        semicolon = j;
+        break;
+      }
+    }
+
+    if (semicolon > i + 1) {
+      if (m[i + 1] == '#') {
+        try {
+          int code = m[i + 2] == 'x' || m[i + 2] == 'X'
+              ? Integer.parseInt(new String(m, i + 3, semicolon - i - 3), 16)
+              : Integer.parseInt(new String(m, i + 2, semicolon - i - 2));
+          if (Character.isValidCodePoint(code)) {
+            out.appendCodePoint(code);
+            return semicolon + 1;
+          }
+        } catch (NumberFormatException e) {
+          // Not an entity.
+        }
+      } else {
+        Character value = ENTITIES.get(new String(m, i + 1, semicolon - i - 1));
+        if (value != null) {
+          out.append(value.charValue());
+          return semicolon + 1;
+        }
+      }
+    }
+
+    out.append('&');
+    return i + 1;
+  }
+
+  // Returns the position past the bracket that closes the one at i (e.g., the "}}" that matches
+  // "{{"), or -1 if there is none.
+  private int findClose(int i, int to, char open, char close) {
+    int depth = 0;
+    int j = i;
+    while (j + 1 < to) {
+      if (m[j] == open && m[j + 1] == open) {
+        depth++;
+        j += 2;
+      } else if (m[j] == close && m[j + 1] == close) {
+        depth--;
+        j += 2;
+        if (depth == 0) {
+          return j;
+        }
+      } else {
+        j++;
+      }
+    }
+    return -1;
+  }
+
+  private int skipRun(int i, int to, char c) {
+    while (i < to && m[i] == c) {
+      i++;
+    }
+    return i;
+  }
+
+  private int endOfLine(int i, int to) {
+    while (i < to && m[i] != '\n') {
+      i++;
+    }
+    return i;
+  }
+
+  private boolean startsWith(int i, int to, String s) {
+    if (i < 0 || i + s.length() > to) {
+      return false;
+    }
+    for (int k = 0; k < s.length(); k++) {
+      if (m[i + k] != s.charAt(k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean equalsIgnoreCase(int start, int end, String s) {
+    if (end - start != s.length()) {
+      return false;
+    }
+    for (int k = 0; k < s.length(); k++) {
+      if (Character.toLowerCase(m[start + k]) != s.charAt(k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(String s, int from, int to) {
+    for (int i = from; i <= to - s.length(); i++) {
+      if (startsWith(i, to, s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOfIgnoreCase(String s, int from, int to) {
+    for (int i = from; i <= to - s.length(); i++) {
+      if (equalsIgnoreCase(i, i + s.length(), s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -2,12 +2,13 @@ package edu.umd.cloud9.collection.wikipedia;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.Arrays;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.log4j.Logger;
@@ -15,6 +16,14 @@ import org.apache.log4j.Logger;
 import com.google.common.base.Preconditions;
 
 import edu.umd.cloud9.collection.DocumentForwardIndex;
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils;
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils.SequenceFileCollection;
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+import edu.umd.cloud9.collection.SequenceFileBlockCache;
+import edu.umd.cloud9.collection.SequenceFileReaderPool;
 import edu.umd.cloud9.collection.wikipedia.language.WikipediaPageFactory;
 
 /**
@@ -33,6 +42,9 @@ public class WikipediaForwardIndex implements DocumentForwardIndex<WikipediaPage
   private short[] fileno;
   private String collectionPath;
   private int lastDocno = -1;
+  private SequenceFileBlockCache cache;
+  private SequenceFileReaderPool readers;
+  private ForwardIndexMetrics metrics = ForwardIndexMetrics.getDefault();
 
   private WikipediaDocnoMapping docnoMapping = new WikipediaDocnoMapping();
 
@@ -47,6 +59,8 @@ public class WikipediaForwardIndex implements DocumentForwardIndex<WikipediaPage
   @Override
   public void loadIndex(Path index, Path mapping, FileSystem fs) throws IOException {
     LOG.info("Loading forward index: " + index);
+    cache = SequenceFileBlockCache.fromConfiguration(conf);
+    readers = SequenceFileReaderPool.fromConfiguration(conf);
     docnoMapping.loadMapping(mapping, fs);
 
     FSDataInputStream in = fs.open(index);
@@ -56,19 +70,27 @@ public class WikipediaForwardIndex implements DocumentForwardIndex<WikipediaPage
     collectionPath = in.readUTF();
 
     int blocks = in.readInt();
+    boolean binary = blocks == ForwardIndexFormat.BINARY;
+    if (binary) {
+      blocks = in.readInt();
+    }
 
     LOG.info(blocks + " blocks expected");
     docnos = new int[blocks];
     offsets = new int[blocks];
     fileno = new short[blocks];
 
-    for (int i = 0; i < blocks; i++) {
-      docnos[i] = in.readInt();
-      offsets[i] = in.readInt();
-      fileno[i] = in.readShort();
+    if (binary) {
+      ForwardIndexFormat.readBlocks(in, docnos, offsets, fileno);
+    } else {
+      for (int i = 0; i < blocks; i++) {
+        docnos[i] = in.readInt();
+        offsets[i] = in.readInt();
+        fileno[i] = in.readShort();
 
-      if (i > 0 && i % 100000 == 0)
-        LOG.info(i + " blocks read");
+        if (i > 0 && i % 100000 == 0)
+          LOG.info(i + " blocks read");
+      }
     }
 
     in.close();
@@ -81,52 +103,141 @@ public class WikipediaForwardIndex implements DocumentForwardIndex<WikipediaPage
 
   @Override
   public WikipediaPage getDocument(int docno) {
-    long start = System.currentTimeMillis();
+    long start = metrics.now();
+    metrics.increment(Counter.REQUESTS, 1);
 
     // trap invalid docnos
-    if (docno < getFirstDocno() || docno > getLastDocno())
+    if (docno < getFirstDocno() || docno > getLastDocno()) {
+      metrics.increment(Counter.MISSES, 1);
       return null;
-
-    int idx = Arrays.binarySearch(docnos, docno);
-
-    if (idx < 0) {
-      idx = -idx - 2;
     }
 
+    int idx = DocumentForwardIndexUtils.findBlock(docnos, docno);
+
     try {
-      FileSystem fs = FileSystem.get(conf);
-      DecimalFormat df = new DecimalFormat("00000");
-      Path file = new Path(collectionPath + "/part-m-" + df.format(fileno[idx]));
-      // Try the old file naming convention.
-      if (!fs.exists(file)) {
-        file = new Path(collectionPath + "/part-" + df.format(fileno[idx]));
+      Path file = getPartFile(fileno[idx]);
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " + file);
       }
 
-      LOG.info("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " + file);
+      WikipediaPage value = WikipediaPageFactory.createWikipediaPage(conf.get("wiki.language"));
+      boolean found;
+      if (cache != null) {
+        // The block is read in a single pass if it isn't cached yet; either way, it holds every
+        // record of the block.
+        int end = DocumentForwardIndexUtils.getEndDocno(docnos, fileno, idx);
+        found = cache.get(file, offsets[idx], end, docno, value, metrics);
+      } else {
+        found = read(file, offsets[idx], docno, value);
+      }
 
-      SequenceFile.Reader reader = new SequenceFile.Reader(conf,
-          SequenceFile.Reader.file(file));
+      if (!found) {
+        metrics.increment(Counter.MISSES, 1);
+        return null;
+      }
 
-      IntWritable key = new IntWritable();
-      WikipediaPage value = WikipediaPageFactory.createWikipediaPage(conf.get("wiki.language"));
+      metrics.increment(Counter.DOCUMENTS, 1);
+      long duration = metrics.recordSince(Phase.FETCH, start) - start;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(" docno " + docno + " fetched in " + duration / 1000 + "us");
+      }
+      return value;
+    } catch (IOException e) {
+      metrics.increment(Counter.ERRORS, 1);
+      e.printStackTrace();
+    }
 
-      reader.seek(offsets[idx]);
+    return null;
+  }
 
+  // Scans the block at offset for the record with the given docno, using a pooled reader.
+  private boolean read(Path file, long offset, int docno, WikipediaPage value)
+      throws IOException {
+    long t = metrics.now();
+    SequenceFile.Reader reader = readers.borrow(file);
+    try {
+      IntWritable key = new IntWritable();
+      reader.seek(offset);
+      t = metrics.recordSince(Phase.SEEK, t);
+
+      boolean found = false;
       while (reader.next(key)) {
-        if (key.get() == docno)
+        if (key.get() == docno) {
+          found = true;
           break;
+        }
       }
-      reader.getCurrentValue(value);
-      reader.close();
-      long duration = System.currentTimeMillis() - start;
+      t = metrics.recordSince(Phase.DECOMPRESS, t);
 
-      LOG.info(" docno " + docno + " fetched in " + duration + "ms");
-      return value;
+      if (found) {
+        reader.getCurrentValue(value);
+        metrics.recordSince(Phase.PARSE, t);
+      }
+      metrics.increment(Counter.BYTES_READ, reader.getPosition() - offset);
+      readers.release(file, reader);
+      return found;
     } catch (IOException e) {
-      e.printStackTrace();
+      IOUtils.closeStream(reader);
+      throw e;
     }
+  }
 
-    return null;
+  /**
+   * Fetches a batch of documents, reading all requested documents within a block in a single
+   * forward scan from the start of the block. Documents are returned in the same order as the
+   * docnos; see {@link DocumentForwardIndexUtils} for details.
+   */
+  @Override
+  public List<WikipediaPage> getDocuments(int[] requested) {
+    return DocumentForwardIndexUtils.getDocuments(new SequenceFileCollection<WikipediaPage>() {
+      @Override
+      public Path getFile(short n) throws IOException {
+        return getPartFile(n);
+      }
+
+      @Override
+      public WikipediaPage createValue() {
+        return WikipediaPageFactory.createWikipediaPage(conf.get("wiki.language"));
+      }
+    }, docnos, offsets, fileno, getLastDocno(), requested, cache, readers, metrics);
+  }
+
+  private Path getPartFile(short fileno) throws IOException {
+    FileSystem fs = FileSystem.get(conf);
+    DecimalFormat df = new DecimalFormat("00000");
+    Path file = new Path(collectionPath + "/part-m-" + df.format(fileno));
+    // Try the old file naming convention.
+    if (!fs.exists(file)) {
+      file = new Path(collectionPath + "/part-" + df.format(fileno));
+    }
+
+    return file;
+  }
+
+  /**
+   * Returns the block cache, or {@code null} if caching isn't enabled. Caching is enabled by
+   * setting {@link SequenceFileBlockCache#CACHE_BYTES_PROPERTY} in the configuration passed to the
+   * constructor.
+   *
+   * @return the block cache
+   */
+  public SequenceFileBlockCache getBlockCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the instrumentation that fetches report into.
+   */
+  public ForwardIndexMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the instrumentation that fetches report into.
+   */
+  public void setMetrics(ForwardIndexMetrics metrics) {
+    this.metrics = Preconditions.checkNotNull(metrics);
   }
 
   @Override
@@ -160,13 +271,7 @@ public class WikipediaForwardIndex implements DocumentForwardIndex<WikipediaPage
     int idx = docnos.length - 1;
 
     try {
-      FileSystem fs = FileSystem.get(conf);
-      DecimalFormat df = new DecimalFormat("00000");
-      Path file = new Path(collectionPath + "/part-m-" + df.format(fileno[idx]));
-      // Try the old file naming convention.
-      if (!fs.exists(file)) {
-        file = new Path(collectionPath + "/part-" + df.format(fileno[idx]));
-      }
+      Path file = getPartFile(fileno[idx]);
 
       SequenceFile.Reader reader = new SequenceFile.Reader(conf,
           SequenceFile.Reader.file(file));
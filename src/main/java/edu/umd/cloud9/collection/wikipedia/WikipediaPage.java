@@ -25,19 +25,36 @@ import java.io.IOException;
 import java.util.List;
 import java.util.regex.Pattern;
 
-import javax.annotation.Nullable;
-
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.hadoop.io.WritableUtils;
 
-import com.google.common.base.Function;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 
 import edu.umd.cloud9.collection.Indexable;
 
 /**
+ * <p>
  * A page from Wikipedia.
- * 
+ * </p>
+ *
+ * <p>
+ * Pages can be read lazily (see {@link #setLazy(boolean)}): {@link #readFields(DataInput)} and
+ * {@link #readPage(WikipediaPage, byte[], int, int)} then only copy the raw UTF-8 bytes of the page
+ * into a buffer that is reused from page to page. The docid, title, and wiki markup are decoded
+ * straight from the bytes when they are asked for, the rest of the page is decoded and parsed only
+ * when something else is needed (e.g., whether the page is a redirect), and
+ * {@link #write(DataOutput)} copies the raw bytes through. Jobs that just shuffle pages around
+ * (e.g., repacking) thus never decode most of the text. Lazy reading is off by default, since the
+ * protected fields of a lazily read page are stale until it is parsed; it can be turned on for
+ * input formats with {@link #LAZY_PROPERTY}.
+ * </p>
+ *
+ * <p>
+ * {@link #getContent()} renders the wiki markup with Bliki, which is slow. With
+ * {@link #setFastContent(boolean)}, the text is extracted with a {@link WikiMarkupCleaner} instead.
+ * </p>
+ *
  * @author Jimmy Lin
  * @author Peter Exner
  */
@@ -52,6 +69,11 @@ public abstract class WikipediaPage extends Indexable {
    */
   public static final String XML_END_TAG = "</page>";
 
+  /**
+   * Configuration property for whether the Wikipedia input formats read pages lazily.
+   */
+  public static final String LAZY_PROPERTY = "Cloud9.WikipediaPageLazy";
+
   /**
    * Start delimiter of the title, which is &lt;<code>title</code>&gt;.
    */
@@ -92,6 +114,15 @@ public abstract class WikipediaPage extends Indexable {
    */
   protected static final String XML_END_TAG_TEXT = "</text>";
 
+  private static final byte[] TITLE_START = XML_START_TAG_TITLE.getBytes(Charsets.UTF_8);
+  private static final byte[] TITLE_END = XML_END_TAG_TITLE.getBytes(Charsets.UTF_8);
+  private static final byte[] ID_START = XML_START_TAG_ID.getBytes(Charsets.UTF_8);
+  private static final byte[] ID_END = XML_END_TAG_ID.getBytes(Charsets.UTF_8);
+  private static final byte[] TEXT_START = XML_START_TAG_TEXT.getBytes(Charsets.UTF_8);
+  private static final byte[] TEXT_END = XML_END_TAG_TEXT.getBytes(Charsets.UTF_8);
+  private static final byte[] LINK_START = "[[".getBytes(Charsets.UTF_8);
+  private static final byte[] LINK_END = "]]".getBytes(Charsets.UTF_8);
+
   protected String page;
   protected String title;
   protected String mId;
@@ -105,6 +136,19 @@ public abstract class WikipediaPage extends Indexable {
 
   private WikiModel wikiModel;
   private PlainTextConverter textConverter;
+  private WikiMarkupCleaner cleaner;
+  private boolean fastContent = false;
+
+  // Raw UTF-8 bytes of the page (length is -1 if the page was read from a string), and whether
+  // they have been decoded and parsed yet.
+  private byte[] bytes = new byte[0];
+  private int length = -1;
+  private boolean parsed = true;
+  private boolean lazy = false;
+
+  // The language set by processPage, which doesn't depend on the page, so that lazily read pages
+  // don't have to be parsed just for that.
+  private String parsedLanguage;
 
   /**
    * Creates an empty <code>WikipediaPage</code> object.
@@ -115,30 +159,80 @@ public abstract class WikipediaPage extends Indexable {
   }
 
   /**
-   * Deserializes this object.
+   * Serializes this object.
    */
   public void write(DataOutput out) throws IOException {
-    byte[] bytes = page.getBytes("UTF-8");
-    WritableUtils.writeVInt(out, bytes.length);
-    out.write(bytes, 0, bytes.length);
+    String language = getLanguage();
+    if (length >= 0) {
+      WritableUtils.writeVInt(out, length);
+      out.write(bytes, 0, length);
+    } else {
+      byte[] bytes = page.getBytes("UTF-8");
+      WritableUtils.writeVInt(out, bytes.length);
+      out.write(bytes, 0, bytes.length);
+    }
     out.writeUTF(language == null ? "unk" : language);
   }
 
   /**
-   * Serializes this object.
+   * Deserializes this object.
    */
   public void readFields(DataInput in) throws IOException {
     int length = WritableUtils.readVInt(in);
-    byte[] bytes = new byte[length];
+    setBytes(length);
     in.readFully(bytes, 0, length);
-    WikipediaPage.readPage(this, new String(bytes, "UTF-8"));
     language = in.readUTF();
+    if (!lazy) {
+      parse();
+    }
+  }
+
+  /**
+   * Sets whether pages are read lazily. By default, pages are parsed as soon as they are read. A
+   * lazily read page is only parsed when one of its accessors needs it, so subclasses must not
+   * rely on the protected fields of a lazily read page.
+   */
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+  }
+
+  /**
+   * Returns whether pages are read lazily.
+   */
+  public boolean isLazy() {
+    return lazy;
+  }
+
+  /**
+   * Sets whether {@link #getContent()} extracts the text in a single pass over the wiki markup
+   * with a {@link WikiMarkupCleaner}, instead of rendering it with Bliki. The text is essentially
+   * the same, but it's much faster to get. Off by default.
+   */
+  public void setFastContent(boolean fastContent) {
+    this.fastContent = fastContent;
+  }
+
+  /**
+   * Returns whether {@link #getContent()} extracts the text with a {@link WikiMarkupCleaner}.
+   */
+  public boolean isFastContent() {
+    return fastContent;
   }
 
   /**
    * Returns the article title (i.e., the docid).
    */
   public String getDocid() {
+    if (mId == null && !parsed) {
+      // The first </id> in the page, like processPage.
+      int start = indexOf(ID_START, 0);
+      int end = indexOf(ID_END, 0);
+      if (start >= 0 && end >= start + ID_START.length) {
+        mId = decode(start + ID_START.length, end);
+      } else {
+        parse();
+      }
+    }
     return mId;
   }
 
@@ -148,6 +242,9 @@ public abstract class WikipediaPage extends Indexable {
   }
 
   public String getLanguage() {
+    if (language == null && !parsed) {
+      parse();
+    }
     return this.language;
   }
 
@@ -171,6 +268,13 @@ public abstract class WikipediaPage extends Indexable {
    * Returns the contents of this page (title + text).
    */
   public String getContent() {
+    if (fastContent) {
+      if (cleaner == null) {
+        cleaner = new WikiMarkupCleaner();
+      }
+      return cleaner.clean(getTitle(), getWikiMarkup());
+    }
+
     String s = getWikiMarkup();
 
     // Bliki doesn't seem to properly handle inter-language links, so remove manually.
@@ -215,6 +319,7 @@ public abstract class WikipediaPage extends Indexable {
    * Returns the raw XML of this page.
    */
   public String getRawXML() {
+    parse();
     return page;
   }
 
@@ -222,6 +327,18 @@ public abstract class WikipediaPage extends Indexable {
    * Returns the text of this page.
    */
   public String getWikiMarkup() {
+    if (!parsed) {
+      int start = indexOf(TEXT_START, 0);
+      if (start < 0)
+        return null;
+
+      int end = indexOf(TEXT_END, start);
+      if (end >= 0)
+        return decode(start + TEXT_START.length, end);
+
+      parse();
+    }
+
     if (textStart == -1)
       return null;
 
@@ -232,6 +349,15 @@ public abstract class WikipediaPage extends Indexable {
    * Returns the title of this page.
    */
   public String getTitle() {
+    if (title == null && !parsed) {
+      int start = indexOf(TITLE_START, 0);
+      int end = start < 0 ? -1 : indexOf(TITLE_END, start);
+      if (end >= start + TITLE_START.length) {
+        title = StringEscapeUtils.unescapeHtml(decode(start + TITLE_START.length, end));
+      } else {
+        parse();
+      }
+    }
     return title;
   }
 
@@ -242,6 +368,7 @@ public abstract class WikipediaPage extends Indexable {
    * @return <code>true</code> if this page is a disambiguation page
    */
   public boolean isDisambiguation() {
+    parse();
     return isDisambig;
   }
 
@@ -252,6 +379,7 @@ public abstract class WikipediaPage extends Indexable {
    * @return <code>true</code> if this page is a redirect page
    */
   public boolean isRedirect() {
+    parse();
     return isRedirect;
   }
 
@@ -262,6 +390,7 @@ public abstract class WikipediaPage extends Indexable {
    * @return <code>true</code> if this page is an empty page
    */
   public boolean isEmpty() {
+    parse();
     return textStart == -1;
   }
 
@@ -272,6 +401,7 @@ public abstract class WikipediaPage extends Indexable {
    * @return <code>true</code> if this article is a stub
    */
   public boolean isStub() {
+    parse();
     return isStub;
   }
 
@@ -282,6 +412,7 @@ public abstract class WikipediaPage extends Indexable {
    * @return <code>true</code> if this page is an actual article
    */
   public boolean isArticle() {
+    parse();
     return isArticle;
   }
 
@@ -293,6 +424,7 @@ public abstract class WikipediaPage extends Indexable {
    *         otherwise
    */
   public String findInterlanguageLink(String lang) {
+    parse();
     int start = page.indexOf("[[" + lang + ":");
 
     if (start < 0)
@@ -343,73 +475,125 @@ public abstract class WikipediaPage extends Indexable {
     }
   }
 
-  public List<Link> extractLinks() {
-    int start = 0;
-    List<Link> links = Lists.newArrayList();
+  /**
+   * Receives the links in a page from {@link WikipediaPage#visitLinks(LinkVisitor)}, as offsets
+   * into a buffer that holds the raw UTF-8 bytes of the page. Nothing is decoded or allocated for
+   * the links, so visitors can decode just what they need.
+   */
+  public static interface LinkVisitor {
+    /**
+     * Called for each link, in the order in which they appear in the page. The buffer belongs to
+     * the page, and is only valid until the page is read into again.
+     *
+     * @param bytes buffer that holds the page
+     * @param anchorStart offset of the anchor text
+     * @param anchorEnd offset past the anchor text
+     * @param targetStart offset of the title of the target article
+     * @param targetEnd offset past the title of the target article
+     * @throws IOException
+     */
+    void visitLink(byte[] bytes, int anchorStart, int anchorEnd, int targetStart, int targetEnd)
+        throws IOException;
+  }
 
-    while (true) {
-      start = page.indexOf("[[", start);
+  /**
+   * Finds the links to other articles in this page, and passes them to a visitor. These are the
+   * same links as returned by {@link #extractLinks()}: special links (e.g., to categories or other
+   * languages) and links within the page are skipped, and the target excludes the section, if any.
+   * The links are found by scanning the raw bytes of the page, which don't need to be decoded (or,
+   * for pages read from a string, are encoded first).
+   *
+   * @param visitor the visitor
+   * @throws IOException if the visitor throws it
+   */
+  public void visitLinks(LinkVisitor visitor) throws IOException {
+    byte[] b = bytes;
+    int n = length;
+    if (n < 0) {
+      b = page.getBytes(Charsets.UTF_8);
+      n = b.length;
+    }
 
+    int start = 0;
+    while (true) {
+      start = indexOf(b, n, LINK_START, start);
       if (start < 0) {
         break;
       }
 
-      int end = page.indexOf("]]", start);
-
+      int end = indexOf(b, n, LINK_END, start);
       if (end < 0) {
         break;
       }
 
-      String text = page.substring(start + 2, end);
-      String anchor = null;
-
-      // skip empty links
-      if (text.length() == 0) {
-        start = end + 1;
-        continue;
-      }
+      int linkStart = start + 2;
+      int linkEnd = end;
+      start = end + 1;
 
-      // skip special links
-      if (text.indexOf(":") != -1) {
-        start = end + 1;
+      // Skip empty and special links.
+      if (linkEnd == linkStart || indexOf(b, ':', linkStart, linkEnd) >= 0) {
         continue;
       }
 
-      // if there is anchor text, get only article title
-      int a;
-      if ((a = text.indexOf("|")) != -1) {
-        anchor = text.substring(a + 1, text.length());
-        text = text.substring(0, a);
+      // If there is anchor text, get only the article title.
+      int anchorStart = linkStart;
+      int anchorEnd = linkEnd;
+      int a = indexOf(b, '|', linkStart, linkEnd);
+      if (a >= 0) {
+        anchorStart = a + 1;
+        linkEnd = a;
       }
 
-      if ((a = text.indexOf("#")) != -1) {
-        text = text.substring(0, a);
+      if ((a = indexOf(b, '#', linkStart, linkEnd)) >= 0) {
+        linkEnd = a;
       }
 
-      // ignore article-internal links, e.g., [[#section|here]]
-      if (text.length() == 0) {
-        start = end + 1;
+      // Ignore article-internal links, e.g., [[#section|here]].
+      if (linkEnd == linkStart) {
         continue;
       }
 
-      if (anchor == null) {
-        anchor = text;
+      if (anchorStart == linkStart) {
+        anchorEnd = linkEnd;
       }
-      links.add(new Link(anchor, text));
-
-      start = end + 1;
+      visitor.visitLink(b, anchorStart, anchorEnd, linkStart, linkEnd);
     }
+  }
 
+  public List<Link> extractLinks() {
+    final List<Link> links = Lists.newArrayList();
+    try {
+      visitLinks(new LinkVisitor() {
+        @Override
+        public void visitLink(byte[] bytes, int anchorStart, int anchorEnd, int targetStart,
+            int targetEnd) {
+          links.add(new Link(new String(bytes, anchorStart, anchorEnd - anchorStart,
+              Charsets.UTF_8), new String(bytes, targetStart, targetEnd - targetStart,
+              Charsets.UTF_8)));
+        }
+      });
+    } catch (IOException e) {
+      // Can't happen, since the visitor doesn't throw it.
+      throw new AssertionError(e);
+    }
     return links;
   }
 
   public List<String> extractLinkTargets() {
-    return Lists.transform(extractLinks(), new Function<Link, String>() {
-      @Override @Nullable
-      public String apply(@Nullable Link link) {
-        return link.getTarget();
-      }
-    });
+    final List<String> targets = Lists.newArrayList();
+    try {
+      visitLinks(new LinkVisitor() {
+        @Override
+        public void visitLink(byte[] bytes, int anchorStart, int anchorEnd, int targetStart,
+            int targetEnd) {
+          targets.add(new String(bytes, targetStart, targetEnd - targetStart, Charsets.UTF_8));
+        }
+      });
+    } catch (IOException e) {
+      // Can't happen, since the visitor doesn't throw it.
+      throw new AssertionError(e);
+    }
+    return targets;
   }
 
   /**
@@ -419,8 +603,94 @@ public abstract class WikipediaPage extends Indexable {
    * @param s raw XML string
    */
   public static void readPage(WikipediaPage page, String s) {
+    page.length = -1;
+    page.parsed = true;
     page.page = s;
     page.processPage(s);
+    page.parsedLanguage = page.language;
+  }
+
+  /**
+   * Reads raw XML, encoded in UTF-8, into a <code>WikipediaPage</code> object. The bytes are
+   * copied, so the array can be reused once this method returns.
+   *
+   * @param page the <code>WikipediaPage</code> object
+   * @param bytes raw XML
+   * @param offset offset of the page in <code>bytes</code>
+   * @param length length of the page in bytes
+   */
+  public static void readPage(WikipediaPage page, byte[] bytes, int offset, int length) {
+    page.setBytes(length);
+    System.arraycopy(bytes, offset, page.bytes, 0, length);
+    page.language = page.parsedLanguage;
+    if (!page.lazy) {
+      page.parse();
+    }
+  }
+
+  // Prepares to hold a new page of the given length in the buffer, which is grown if necessary.
+  private void setBytes(int length) {
+    if (bytes.length < length) {
+      bytes = new byte[Math.max(length, bytes.length * 2)];
+    }
+    this.length = length;
+    parsed = false;
+    page = null;
+    title = null;
+    mId = null;
+  }
+
+  // Decodes and parses the raw bytes of the page, if that hasn't happened yet.
+  private void parse() {
+    if (parsed) {
+      return;
+    }
+
+    String language = this.language;
+    page = decode(0, length);
+    processPage(page);
+    parsedLanguage = this.language;
+    if (language != null) {
+      // Keep the language that the page was serialized with.
+      this.language = language;
+    }
+    parsed = true;
+  }
+
+  private String decode(int start, int end) {
+    return new String(bytes, start, end - start, Charsets.UTF_8);
+  }
+
+  // Finds the first occurrence of a pattern in the raw bytes of the page.
+  private int indexOf(byte[] pattern, int from) {
+    return indexOf(bytes, length, pattern, from);
+  }
+
+  private static int indexOf(byte[] bytes, int length, byte[] pattern, int from) {
+    byte first = pattern[0];
+    int max = length - pattern.length;
+    for (int i = from; i <= max; i++) {
+      if (bytes[i] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < pattern.length && bytes[i + j] == pattern[j]) {
+        j++;
+      }
+      if (j == pattern.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOf(byte[] bytes, char c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] == c) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   /**
@@ -20,6 +20,7 @@ import java.io.IOException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -57,6 +58,7 @@ public class WikipediaPageInputFormat extends IndexableFileInputFormat<LongWrita
 			
 			language = conf.get("wiki.language", "en"); // Assume 'en' by default.
 			page = WikipediaPageFactory.createWikipediaPage(language);
+			page.setLazy(conf.getBoolean(WikipediaPage.LAZY_PROPERTY, false));
 
       reader.initialize(split, context);
 		}
@@ -68,7 +70,8 @@ public class WikipediaPageInputFormat extends IndexableFileInputFormat<LongWrita
 
     @Override
     public WikipediaPage getCurrentValue() throws IOException, InterruptedException {
-      WikipediaPage.readPage(page, reader.getCurrentValue().toString());
+      Text text = reader.getCurrentValue();
+      WikipediaPage.readPage(page, text.getBytes(), 0, text.getLength());
       return page;
     }
 
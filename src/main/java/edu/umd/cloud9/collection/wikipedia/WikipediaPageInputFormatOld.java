@@ -52,6 +52,7 @@ public class WikipediaPageInputFormatOld extends IndexableFileInputFormatOld<Lon
 		private Text text = new Text();
 		private LongWritable offset = new LongWritable();
 		private String language;
+		private boolean lazy;
 		
 		/**
 		 * Creates a {@code WikipediaPageRecordReader}.
@@ -61,6 +62,7 @@ public class WikipediaPageInputFormatOld extends IndexableFileInputFormatOld<Lon
 			conf.set(XMLInputFormatOld.END_TAG_KEY, WikipediaPage.XML_END_TAG);
 			
 			language = conf.get("wiki.language", "en"); // Assume 'en' by default.
+			lazy = conf.getBoolean(WikipediaPage.LAZY_PROPERTY, false);
 			reader = new XMLRecordReader(split, conf);
 		}
 
@@ -72,7 +74,7 @@ public class WikipediaPageInputFormatOld extends IndexableFileInputFormatOld<Lon
         return false;
       }
 			key.set(offset.get());
-			WikipediaPage.readPage(value, text.toString());
+			WikipediaPage.readPage(value, text.getBytes(), 0, text.getLength());
 			return true;
 		}
 
@@ -87,7 +89,9 @@ public class WikipediaPageInputFormatOld extends IndexableFileInputFormatOld<Lon
 		 * Creates an object for the value.
 		 */
 		public WikipediaPage createValue() {
-			return WikipediaPageFactory.createWikipediaPage(language);
+			WikipediaPage page = WikipediaPageFactory.createWikipediaPage(language);
+			page.setLazy(lazy);
+			return page;
 		}
 
 		/**
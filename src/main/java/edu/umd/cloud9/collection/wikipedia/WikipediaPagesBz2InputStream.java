@@ -16,34 +16,107 @@
 
 package edu.umd.cloud9.collection.wikipedia;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.GnuParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec.READ_MODE;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.tools.bzip2.CBZip2InputStream;
 
+import com.google.common.base.Preconditions;
+
+import edu.umd.cloud9.collection.TagScanner;
 import edu.umd.cloud9.collection.wikipedia.language.WikipediaPageFactory;
+import edu.umd.cloud9.io.PrefetchingInputStream;
 
 /**
+ * <p>
  * Class for working with bz2-compressed Wikipedia article dump files on local disk.
+ * </p>
+ *
+ * <p>
+ * Pages are found by scanning the decompressed bytes for the <code>&lt;page&gt;</code> and
+ * <code>&lt;/page&gt;</code> tags with a {@link TagScanner}, and each page is copied into a buffer
+ * that is reused from page to page, so no strings are built until the page is parsed.
+ * </p>
+ *
+ * <p>
+ * With more than one thread, the dump file is cut into ranges of compressed bytes, which are
+ * decompressed and scanned in parallel, in the same way as splits of the file are read by
+ * {@link WikipediaPageInputFormat}. Pages are still returned in the order in which they appear in
+ * the file.
+ * </p>
  *
  * @author Jimmy Lin
  * @author Peter Exner
  */
 public class WikipediaPagesBz2InputStream {
-  private static int DEFAULT_STRINGBUFFER_CAPACITY = 1024;
+  /**
+   * Default number of compressed bytes that each thread decompresses at a time.
+   */
+  public static final int DEFAULT_RANGE_SIZE = 4 * 1024 * 1024;
+
+  private static final byte[] START_TAG = WikipediaPage.XML_START_TAG.getBytes();
+  private static final byte[] END_TAG = WikipediaPage.XML_END_TAG.getBytes();
+  private static final int[] START_TAG_FAILURE = TagScanner.failureFunction(START_TAG);
+  private static final int[] END_TAG_FAILURE = TagScanner.failureFunction(END_TAG);
 
-  private BufferedReader br;
-  private FileInputStream fis;
+  // The pages found in one range of the file, back to back in a buffer.
+  private static class Pages {
+    final DataOutputBuffer buffer = new DataOutputBuffer();
+    int[] ends = new int[64];
+    int count = 0;
+
+    void add() {
+      if (count == ends.length) {
+        ends = Arrays.copyOf(ends, 2 * count);
+      }
+      ends[count++] = buffer.getLength();
+    }
+  }
+
+  // Used when reading with a single thread.
+  private TagScanner scanner;
+  private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+  // Used when reading with several threads.
+  private ExecutorService executor;
+  private final Deque<Future<Pages>> pending = new ArrayDeque<Future<Pages>>();
+  private Path path;
+  private long length;
+  private long nextRange = 0;
+  private int rangeSize;
+  private Pages pages;
+  private int nextPage = 0;
 
   /**
    * Creates an input stream for reading Wikipedia articles from a bz2-compressed dump file.
@@ -52,12 +125,124 @@ public class WikipediaPagesBz2InputStream {
    * @throws IOException
    */
   public WikipediaPagesBz2InputStream(String file) throws IOException {
-    br = null;
-    fis = new FileInputStream(file);
-    byte[] ignoreBytes = new byte[2];
-    fis.read(ignoreBytes); // "B", "Z" bytes from commandline tools
-    br = new BufferedReader(new InputStreamReader(new CBZip2InputStream(fis)));
+    this(file, false);
+  }
+
+  /**
+   * Creates an input stream for reading Wikipedia articles from a bz2-compressed dump file,
+   * optionally decompressing on a background thread so that decompression and parsing overlap.
+   *
+   * @param file path to dump file
+   * @param prefetch whether to decompress on a background thread
+   * @throws IOException
+   */
+  public WikipediaPagesBz2InputStream(String file, boolean prefetch) throws IOException {
+    InputStream in = new CBZip2InputStream(skipHeader(file));
+    if (prefetch) {
+      in = new PrefetchingInputStream(in);
+    }
+    scanner = new TagScanner(in, 0);
+  }
 
+  /**
+   * Creates an input stream for reading Wikipedia articles from a bz2-compressed dump file with
+   * several threads, each of which decompresses {@link #DEFAULT_RANGE_SIZE} compressed bytes at a
+   * time.
+   *
+   * @param file path to dump file
+   * @param threads number of threads
+   * @throws IOException
+   */
+  public WikipediaPagesBz2InputStream(String file, int threads) throws IOException {
+    this(file, threads, DEFAULT_RANGE_SIZE);
+  }
+
+  /**
+   * Creates an input stream for reading Wikipedia articles from a bz2-compressed dump file with
+   * several threads. Each thread decompresses a range of the file at a time, and holds on to the
+   * pages in it until they're read, so the range size bounds the memory used.
+   *
+   * @param file path to dump file
+   * @param threads number of threads
+   * @param rangeSize number of compressed bytes that each thread decompresses at a time
+   * @throws IOException
+   */
+  public WikipediaPagesBz2InputStream(String file, int threads, int rangeSize)
+      throws IOException {
+    Preconditions.checkArgument(threads > 0);
+    Preconditions.checkArgument(rangeSize > 0);
+    if (threads == 1) {
+      scanner = new TagScanner(new CBZip2InputStream(skipHeader(file)), 0);
+      return;
+    }
+
+    this.path = new Path(new File(file).getAbsolutePath());
+    this.length = new File(file).length();
+    this.rangeSize = rangeSize;
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, WikipediaPagesBz2InputStream.class.getSimpleName());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    // Keep every thread busy, with as many ranges again decompressed and waiting to be read.
+    for (int i = 0; i < 2 * threads; i++) {
+      submitNextRange();
+    }
+  }
+
+  private static InputStream skipHeader(String file) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+    in.read(new byte[2]); // "B", "Z" bytes from commandline tools
+    return in;
+  }
+
+  private void submitNextRange() {
+    if (nextRange >= length) {
+      return;
+    }
+
+    final long start = nextRange;
+    final long end = Math.min(length, start + rangeSize);
+    nextRange = end;
+    pending.add(executor.submit(new Callable<Pages>() {
+      @Override
+      public Pages call() throws IOException {
+        return readRange(start, end);
+      }
+    }));
+  }
+
+  // Reads the pages that start in a range of the file, following the same conventions as
+  // WikipediaPageInputFormat does for splits: the range is adjusted to bzip2 block boundaries, and
+  // the last page may extend past the end of the range.
+  private Pages readRange(long start, long end) throws IOException {
+    Configuration conf = new Configuration();
+    BZip2Codec codec = ReflectionUtils.newInstance(BZip2Codec.class, conf);
+    FileSystem fs = FileSystem.getLocal(conf).getRaw();
+    Decompressor decompressor = CodecPool.getDecompressor(codec);
+    SplitCompressionInputStream in = null;
+    try {
+      in = codec.createInputStream(fs.open(path), decompressor, start, end, READ_MODE.BYBLOCK);
+      TagScanner scanner = new TagScanner(in);
+      Pages pages = new Pages();
+      while (scanner.readUntilMatch(START_TAG, START_TAG_FAILURE, Long.MAX_VALUE)) {
+        pages.buffer.write(START_TAG);
+        if (!scanner.readUntilMatch(END_TAG, END_TAG_FAILURE, pages.buffer)) {
+          break;
+        }
+        pages.add();
+      }
+      return pages;
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+      CodecPool.returnDecompressor(decompressor);
+    }
   }
 
   /**
@@ -68,36 +253,78 @@ public class WikipediaPagesBz2InputStream {
    * @throws IOException
    */
   public boolean readNext(WikipediaPage page) throws IOException {
-    String s = null;
-    StringBuffer sb = new StringBuffer(DEFAULT_STRINGBUFFER_CAPACITY);
+    if (executor != null) {
+      return readNextParallel(page);
+    }
 
-    while ((s = br.readLine()) != null) {
-      if (s.endsWith("<page>"))
-        break;
+    if (scanner == null) {
+      return false;
     }
 
-    if (s == null) {
-      fis.close();
-      br.close();
+    buffer.reset();
+    if (!scanner.readUntilMatch(START_TAG, START_TAG_FAILURE, Long.MAX_VALUE)) {
+      close();
       return false;
     }
 
-    sb.append(s + "\n");
+    buffer.write(START_TAG);
+    scanner.readUntilMatch(END_TAG, END_TAG_FAILURE, buffer);
+    WikipediaPage.readPage(page, buffer.getData(), 0, buffer.getLength());
 
-    while ((s = br.readLine()) != null) {
-      sb.append(s + "\n");
+    return true;
+  }
+
+  private boolean readNextParallel(WikipediaPage page) throws IOException {
+    while (pages == null || nextPage == pages.count) {
+      if (pending.isEmpty()) {
+        close();
+        return false;
+      }
 
-      if (s.endsWith("</page>"))
-        break;
+      try {
+        pages = pending.remove().get();
+      } catch (InterruptedException e) {
+        close();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        close();
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+      nextPage = 0;
+      submitNextRange();
     }
 
-    WikipediaPage.readPage(page, sb.toString());
+    int start = nextPage == 0 ? 0 : pages.ends[nextPage - 1];
+    int end = pages.ends[nextPage++];
+    WikipediaPage.readPage(page, pages.buffer.getData(), start, end - start);
 
     return true;
   }
 
+  /**
+   * Closes the input stream, which happens automatically once the last page has been read.
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException {
+    if (scanner != null) {
+      scanner.close();
+      scanner = null;
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+      pending.clear();
+      pages = null;
+    }
+  }
+
   private static final String INPUT_OPTION = "input";
   private static final String LANGUAGE_OPTION = "output";
+  private static final String PREFETCH_OPTION = "prefetch";
+  private static final String THREADS_OPTION = "threads";
 
   @SuppressWarnings("static-access")
   public static void main(String[] args) throws Exception {
@@ -106,6 +333,9 @@ public class WikipediaPagesBz2InputStream {
         .withDescription("gzipped XML dump file").create(INPUT_OPTION));
     options.addOption(OptionBuilder.withArgName("lang").hasArg()
         .withDescription("output location").create(LANGUAGE_OPTION));
+    options.addOption(new Option(PREFETCH_OPTION, "decompress on a background thread"));
+    options.addOption(OptionBuilder.withArgName("num").hasArg()
+        .withDescription("number of decompression threads").create(THREADS_OPTION));
 
     CommandLine cmdline = null;
     CommandLineParser parser = new GnuParser();
@@ -128,7 +358,10 @@ public class WikipediaPagesBz2InputStream {
         : "en";
     WikipediaPage p = WikipediaPageFactory.createWikipediaPage(lang);
 
-    WikipediaPagesBz2InputStream stream = new WikipediaPagesBz2InputStream(path);
+    WikipediaPagesBz2InputStream stream = cmdline.hasOption(THREADS_OPTION)
+        ? new WikipediaPagesBz2InputStream(path,
+            Integer.parseInt(cmdline.getOptionValue(THREADS_OPTION)))
+        : new WikipediaPagesBz2InputStream(path, cmdline.hasOption(PREFETCH_OPTION));
     while (stream.readNext(p)) {
       System.out.println(p.getTitle() + "\t" + p.getDocid());
     }
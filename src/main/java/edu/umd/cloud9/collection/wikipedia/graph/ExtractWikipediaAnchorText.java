@@ -53,8 +53,11 @@ import tl.lin.data.map.HMapStIW;
 import tl.lin.data.pair.PairOfIntString;
 import tl.lin.data.pair.PairOfStringInt;
 import tl.lin.data.pair.PairOfStrings;
+
+import com.google.common.base.Charsets;
+
 import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
-import edu.umd.cloud9.collection.wikipedia.WikipediaPage.Link;
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage.LinkVisitor;
 
 /**
  * Tool for extracting anchor text out of Wikipedia.
@@ -73,6 +76,20 @@ public class ExtractWikipediaAnchorText extends Configured implements Tool {
     private static final PairOfStringInt KEYPAIR = new PairOfStringInt();
     private static final PairOfStrings VALUEPAIR = new PairOfStrings();
 
+    private OutputCollector<PairOfStringInt, PairOfStrings> output;
+    private String docid;
+    private final LinkVisitor visitor = new LinkVisitor() {
+      @Override
+      public void visitLink(byte[] bytes, int anchorStart, int anchorEnd, int targetStart,
+          int targetEnd) throws IOException {
+        KEYPAIR.set(new String(bytes, targetStart, targetEnd - targetStart, Charsets.UTF_8), 1);
+        VALUEPAIR.set(docid, new String(bytes, anchorStart, anchorEnd - anchorStart,
+            Charsets.UTF_8));
+
+        output.collect(KEYPAIR, VALUEPAIR);
+      }
+    };
+
     // Basic algorithm:
     // Emit: key = (link target article name, 0), value = (link target docid, "");
     // Emit: key = (link target article name, 1), value = (src docid, anchor text)
@@ -115,12 +132,9 @@ public class ExtractWikipediaAnchorText extends Configured implements Tool {
         reporter.incrCounter(PageTypes.NON_ARTICLE, 1);
       }
 
-      for (Link link : p.extractLinks()) {
-        KEYPAIR.set(link.getTarget(), 1);
-        VALUEPAIR.set(p.getDocid(), link.getAnchorText());
-
-        output.collect(KEYPAIR, VALUEPAIR);
-      }
+      this.output = output;
+      docid = p.getDocid();
+      p.visitLinks(visitor);
     }
   }
 
@@ -50,7 +50,11 @@ import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
 import tl.lin.data.pair.PairOfStringInt;
+
+import com.google.common.base.Charsets;
+
 import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage.LinkVisitor;
 
 /**
  * Tool for extracting the link graph out of Wikipedia.
@@ -69,6 +73,17 @@ public class ExtractWikipediaLinkGraph extends Configured implements Tool {
     private static Text text = new Text();
     private static PairOfStringInt pair = new PairOfStringInt();
 
+    // Emits (link target article name, 1) -> src docid for each link; the docid is already in text.
+    private OutputCollector<PairOfStringInt, Text> output;
+    private final LinkVisitor visitor = new LinkVisitor() {
+      @Override
+      public void visitLink(byte[] bytes, int anchorStart, int anchorEnd, int targetStart,
+          int targetEnd) throws IOException {
+        pair.set(new String(bytes, targetStart, targetEnd - targetStart, Charsets.UTF_8), 1);
+        output.collect(pair, text);
+      }
+    };
+
     public void map(IntWritable key, WikipediaPage p,
         OutputCollector<PairOfStringInt, Text> output, Reporter reporter) throws IOException {
       reporter.incrCounter(PageTypes.TOTAL, 1);
@@ -107,12 +122,8 @@ public class ExtractWikipediaLinkGraph extends Configured implements Tool {
         reporter.incrCounter(PageTypes.NON_ARTICLE, 1);
       }
 
-      for (String t : p.extractLinkTargets()) {
-        pair.set(t, 1);
-        text.set(p.getDocid());
-
-        output.collect(pair, text);
-      }
+      this.output = output;
+      p.visitLinks(visitor);
     }
   }
 
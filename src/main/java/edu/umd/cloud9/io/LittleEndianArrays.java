@@ -0,0 +1,136 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Utility methods for reading and writing arrays of primitives as contiguous little-endian blocks.
+ * Instead of decoding values one at a time through {@code DataInput}, bytes are read in large
+ * chunks and copied into the destination array with bulk {@code IntBuffer}, {@code LongBuffer},
+ * and {@code ShortBuffer} transfers.
+ *
+ * @author Jimmy Lin
+ */
+public class LittleEndianArrays {
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  private LittleEndianArrays() {}
+
+  /**
+   * Reads {@code len} ints into {@code dst}, starting at index position {@code off}.
+   */
+  public static void readInts(DataInput in, int[] dst, int off, int len) throws IOException {
+    ByteBuffer buf = newBuffer(len, 4);
+    while (len > 0) {
+      int n = Math.min(len, buf.capacity() / 4);
+      fill(in, buf, n * 4);
+      buf.asIntBuffer().get(dst, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Reads {@code len} longs into {@code dst}, starting at index position {@code off}.
+   */
+  public static void readLongs(DataInput in, long[] dst, int off, int len) throws IOException {
+    ByteBuffer buf = newBuffer(len, 8);
+    while (len > 0) {
+      int n = Math.min(len, buf.capacity() / 8);
+      fill(in, buf, n * 8);
+      buf.asLongBuffer().get(dst, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Reads {@code len} shorts into {@code dst}, starting at index position {@code off}.
+   */
+  public static void readShorts(DataInput in, short[] dst, int off, int len) throws IOException {
+    ByteBuffer buf = newBuffer(len, 2);
+    while (len > 0) {
+      int n = Math.min(len, buf.capacity() / 2);
+      fill(in, buf, n * 2);
+      buf.asShortBuffer().get(dst, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes {@code len} ints from {@code src}, starting at index position {@code off}.
+   */
+  public static void writeInts(DataOutput out, int[] src, int off, int len) throws IOException {
+    ByteBuffer buf = newBuffer(len, 4);
+    while (len > 0) {
+      int n = Math.min(len, buf.capacity() / 4);
+      buf.clear();
+      buf.asIntBuffer().put(src, off, n);
+      out.write(buf.array(), 0, n * 4);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes {@code len} longs from {@code src}, starting at index position {@code off}.
+   */
+  public static void writeLongs(DataOutput out, long[] src, int off, int len) throws IOException {
+    ByteBuffer buf = newBuffer(len, 8);
+    while (len > 0) {
+      int n = Math.min(len, buf.capacity() / 8);
+      buf.clear();
+      buf.asLongBuffer().put(src, off, n);
+      out.write(buf.array(), 0, n * 8);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes {@code len} shorts from {@code src}, starting at index position {@code off}.
+   */
+  public static void writeShorts(DataOutput out, short[] src, int off, int len)
+      throws IOException {
+    ByteBuffer buf = newBuffer(len, 2);
+    while (len > 0) {
+      int n = Math.min(len, buf.capacity() / 2);
+      buf.clear();
+      buf.asShortBuffer().put(src, off, n);
+      out.write(buf.array(), 0, n * 2);
+      off += n;
+      len -= n;
+    }
+  }
+
+  private static ByteBuffer newBuffer(int len, int width) {
+    int size = (int) Math.min(CHUNK_SIZE, Math.max(width, (long) len * width));
+    return ByteBuffer.allocate(size - size % width).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void fill(DataInput in, ByteBuffer buf, int n) throws IOException {
+    buf.clear();
+    in.readFully(buf.array(), 0, n);
+    buf.limit(n);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Read-only memory mapping of a local file. Since a single {@link MappedByteBuffer} can only
+ * address 2GB, large files are mapped as a sequence of fixed-size chunks. All accessors use
+ * absolute positions and never modify shared buffer state, so an instance can be used by multiple
+ * threads concurrently.
+ *
+ * @author Jimmy Lin
+ */
+public class MappedFileBuffer {
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final MappedByteBuffer[] chunks;
+  private final long length;
+
+  /**
+   * Maps a local file.
+   *
+   * @param file the file to map
+   * @throws IOException
+   */
+  public MappedFileBuffer(File file) throws IOException {
+    Preconditions.checkNotNull(file);
+
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      length = channel.size();
+
+      int n = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+      chunks = new MappedByteBuffer[n];
+      for (int i = 0; i < n; i++) {
+        long start = (long) i << CHUNK_BITS;
+        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(CHUNK_SIZE, length - start));
+      }
+    } finally {
+      // The mapping remains valid after the channel is closed.
+      raf.close();
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code fs} is backed by the local disk, i.e., its files can be mapped.
+   */
+  public static boolean isLocal(FileSystem fs) {
+    return fs instanceof LocalFileSystem || fs instanceof RawLocalFileSystem;
+  }
+
+  /**
+   * Maps a file residing on a local {@code FileSystem}.
+   *
+   * @param path path of the file
+   * @param fs a local {@code FileSystem}
+   * @return the mapping
+   * @throws IOException
+   */
+  public static MappedFileBuffer map(Path path, FileSystem fs) throws IOException {
+    Preconditions.checkArgument(isLocal(fs), "Not a local FileSystem: " + fs.getUri());
+
+    File file = fs instanceof LocalFileSystem ?
+        ((LocalFileSystem) fs).pathToFile(path) : ((RawLocalFileSystem) fs).pathToFile(path);
+    return new MappedFileBuffer(file);
+  }
+
+  /**
+   * Returns the length of the mapped file in bytes.
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Returns a view of {@code len} bytes starting at {@code pos}. If the range lies within a single
+   * chunk, the view shares the mapped memory and no bytes are copied; otherwise, the bytes are
+   * copied into a new heap buffer.
+   */
+  public ByteBuffer slice(long pos, int len) {
+    checkRange(pos, len);
+
+    int chunk = (int) (pos >>> CHUNK_BITS);
+    int off = (int) (pos & CHUNK_MASK);
+    if (off + len <= chunks[chunk].limit()) {
+      ByteBuffer b = chunks[chunk].duplicate();
+      b.position(off);
+      b.limit(off + len);
+      return b.slice();
+    }
+
+    byte[] arr = new byte[len];
+    get(pos, arr, 0, len);
+    return ByteBuffer.wrap(arr);
+  }
+
+  /**
+   * Copies {@code len} bytes starting at {@code pos} into {@code dst}.
+   */
+  public void get(long pos, byte[] dst, int dstOffset, int len) {
+    checkRange(pos, len);
+
+    while (len > 0) {
+      int chunk = (int) (pos >>> CHUNK_BITS);
+      int off = (int) (pos & CHUNK_MASK);
+      int n = Math.min(len, chunks[chunk].limit() - off);
+
+      ByteBuffer b = chunks[chunk].duplicate();
+      b.position(off);
+      b.get(dst, dstOffset, n);
+
+      pos += n;
+      dstOffset += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Returns the byte at {@code pos}.
+   */
+  public byte get(long pos) {
+    checkRange(pos, 1);
+    return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+  }
+
+  /**
+   * Returns the big-endian int at {@code pos}.
+   */
+  public int getInt(long pos) {
+    checkRange(pos, 4);
+    int chunk = (int) (pos >>> CHUNK_BITS);
+    int off = (int) (pos & CHUNK_MASK);
+    if (off + 4 <= chunks[chunk].limit()) {
+      return chunks[chunk].getInt(off);
+    }
+
+    return ((get(pos) & 0xff) << 24) | ((get(pos + 1) & 0xff) << 16) |
+        ((get(pos + 2) & 0xff) << 8) | (get(pos + 3) & 0xff);
+  }
+
+  /**
+   * Returns the big-endian long at {@code pos}.
+   */
+  public long getLong(long pos) {
+    checkRange(pos, 8);
+    int chunk = (int) (pos >>> CHUNK_BITS);
+    int off = (int) (pos & CHUNK_MASK);
+    if (off + 8 <= chunks[chunk].limit()) {
+      return chunks[chunk].getLong(off);
+    }
+
+    return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xffffffffL);
+  }
+
+  private void checkRange(long pos, int len) {
+    if (pos < 0 || len < 0 || pos + len > length) {
+      throw new IndexOutOfBoundsException("pos " + pos + ", len " + len + ", file length " + length);
+    }
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Seekable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Input stream that reads ahead of the consumer on a background thread, so that, for example,
+ * decompression runs on one core while records are parsed on another. The background thread reads
+ * from the underlying stream into a bounded ring of buffers, which are handed to the consumer and
+ * then recycled. The underlying stream must not be used by anyone else once it's wrapped.
+ * </p>
+ *
+ * <p>
+ * Each read returns bytes from a single read of the underlying stream. If the underlying stream is
+ * {@link Seekable} (e.g., a decompressor stream), {@link #getPos()} returns the position that it
+ * reported after that read, so that stream positions mean the same thing with or without
+ * prefetching. In particular, this preserves the block semantics of splittable codecs read in
+ * {@code READ_MODE.BYBLOCK} mode. The stream implements {@link Seekable} only so that it can stand
+ * in for the underlying stream as a source of positions; it can't seek, since the background
+ * thread has already read ahead.
+ * </p>
+ *
+ * <p>
+ * Record readers enable prefetching with the {@link #ENABLED_KEY} setting; see
+ * {@link #wrap(InputStream, Configuration)}.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class PrefetchingInputStream extends InputStream implements Seekable {
+  /**
+   * Setting that turns on prefetching in record readers that support it.
+   */
+  public static final String ENABLED_KEY = "Cloud9.Prefetch";
+
+  /**
+   * Setting for the number of buffers in the ring.
+   */
+  public static final String BUFFERS_KEY = "Cloud9.PrefetchBuffers";
+
+  /**
+   * Setting for the size of each buffer, in bytes.
+   */
+  public static final String BUFFER_SIZE_KEY = "Cloud9.PrefetchBufferSize";
+
+  public static final int DEFAULT_BUFFERS = 4;
+  public static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
+
+  private static class Chunk {
+    final byte[] data;
+    int length;
+    long pos;
+    Throwable error;
+
+    Chunk(int size) {
+      data = new byte[size];
+    }
+  }
+
+  private final InputStream in;
+  private final Seekable seekable;
+  private final BlockingQueue<Chunk> empty;
+  private final BlockingQueue<Chunk> full;
+  private final Thread thread;
+  private volatile boolean closed = false;
+
+  // The chunk being consumed, and the offset of the next byte in it. A chunk with a negative length
+  // marks the end of the stream (or an error).
+  private Chunk current;
+  private int offset;
+  private long pos = 0;
+
+  /**
+   * Wraps a stream with the default number and size of buffers.
+   *
+   * @param in the stream to read ahead of
+   */
+  public PrefetchingInputStream(InputStream in) {
+    this(in, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Wraps a stream.
+   *
+   * @param in the stream to read ahead of
+   * @param numBuffers number of buffers in the ring
+   * @param bufferSize size of each buffer
+   */
+  public PrefetchingInputStream(InputStream in, int numBuffers, int bufferSize) {
+    Preconditions.checkArgument(numBuffers > 0);
+    Preconditions.checkArgument(bufferSize > 0);
+    this.in = Preconditions.checkNotNull(in);
+    this.seekable = in instanceof Seekable ? (Seekable) in : null;
+
+    // One more slot than buffers in the full queue, for the end-of-stream marker.
+    empty = new ArrayBlockingQueue<Chunk>(numBuffers);
+    full = new ArrayBlockingQueue<Chunk>(numBuffers + 1);
+    for (int i = 0; i < numBuffers; i++) {
+      empty.add(new Chunk(bufferSize));
+    }
+
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        prefetch();
+      }
+    }, "PrefetchingInputStream");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Wraps a stream if prefetching is enabled in the configuration, and returns it unchanged
+   * otherwise.
+   */
+  public static InputStream wrap(InputStream in, Configuration conf) {
+    if (!conf.getBoolean(ENABLED_KEY, false)) {
+      return in;
+    }
+    return new PrefetchingInputStream(in, conf.getInt(BUFFERS_KEY, DEFAULT_BUFFERS),
+        conf.getInt(BUFFER_SIZE_KEY, DEFAULT_BUFFER_SIZE));
+  }
+
+  private void prefetch() {
+    Chunk chunk = null;
+    try {
+      while (!closed) {
+        chunk = empty.take();
+        int n;
+        do {
+          n = in.read(chunk.data, 0, chunk.data.length);
+        } while (n == 0);
+
+        chunk.length = n;
+        if (n < 0) {
+          full.put(chunk);
+          return;
+        }
+        chunk.pos = seekable != null ? seekable.getPos() : -1;
+        full.put(chunk);
+        chunk = null;
+      }
+    } catch (InterruptedException e) {
+      // We're being closed.
+    } catch (Throwable t) {
+      if (!closed && chunk != null) {
+        chunk.length = -1;
+        chunk.error = t;
+        full.offer(chunk);
+      }
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureData()) {
+      return -1;
+    }
+    return current.data[offset++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Preconditions.checkPositionIndexes(off, off + len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureData()) {
+      return -1;
+    }
+
+    int n = Math.min(len, current.length - offset);
+    System.arraycopy(current.data, offset, b, off, n);
+    offset += n;
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return current == null || current.length < 0 ? 0 : current.length - offset;
+  }
+
+  // Makes sure there are bytes left in the current chunk, returning false at the end of the stream.
+  private boolean ensureData() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (current != null) {
+      if (current.length < 0) {
+        return checkError();
+      }
+      if (offset < current.length) {
+        return true;
+      }
+      empty.add(current);
+    }
+
+    try {
+      current = full.take();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+    offset = 0;
+    if (current.length < 0) {
+      return checkError();
+    }
+    pos = current.pos;
+    return true;
+  }
+
+  private boolean checkError() throws IOException {
+    Throwable error = current.error;
+    if (error == null) {
+      return false;
+    }
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+    throw new IOException(error);
+  }
+
+  /**
+   * Returns the position that the underlying stream reported after the read that produced the last
+   * bytes returned by this stream.
+   *
+   * @throws IOException if the underlying stream isn't {@link Seekable}
+   */
+  @Override
+  public long getPos() throws IOException {
+    if (seekable == null) {
+      throw new IOException("Underlying stream doesn't have a position");
+    }
+    return pos;
+  }
+
+  /**
+   * Not supported; the stream can only be read sequentially.
+   *
+   * @throws IOException always
+   */
+  @Override
+  public void seek(long pos) throws IOException {
+    throw new IOException("seek not supported");
+  }
+
+  /**
+   * Not supported; always returns <code>false</code>.
+   */
+  @Override
+  public boolean seekToNewSource(long targetPos) throws IOException {
+    return false;
+  }
+
+  /**
+   * Stops the background thread and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    in.close();
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.mapred;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.FileOutputCommitter;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobContext;
+import org.apache.hadoop.mapred.JobContextImpl;
+import org.apache.hadoop.mapred.JobID;
+import org.apache.hadoop.mapred.JobStatus;
+import org.apache.hadoop.mapred.MapRunnable;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.OutputCommitter;
+import org.apache.hadoop.mapred.OutputFormat;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.RecordWriter;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.TaskAttemptContext;
+import org.apache.hadoop.mapred.TaskAttemptContextImpl;
+import org.apache.hadoop.mapred.TaskAttemptID;
+import org.apache.hadoop.mapred.TaskID;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Runs map-only jobs ({@code org.apache.hadoop.mapred} API) in this JVM, processing splits in
+ * parallel in a {@link ForkJoinPool}. See {@link edu.umd.cloud9.mapreduce.ForkJoinJobRunner} for
+ * details; tools call {@link #runJob(JobConf)} instead of {@code JobClient.runJob}.
+ *
+ * @author Jimmy Lin
+ */
+public class ForkJoinJobRunner {
+  private static final Logger LOG = Logger.getLogger(ForkJoinJobRunner.class);
+
+  /**
+   * Configuration property for the number of threads to run jobs locally with; jobs are submitted
+   * as usual unless this is positive.
+   */
+  public static final String THREADS_PROPERTY =
+      edu.umd.cloud9.mapreduce.ForkJoinJobRunner.THREADS_PROPERTY;
+
+  private ForkJoinJobRunner() {}
+
+  /**
+   * Runs a job, locally if {@link #THREADS_PROPERTY} is set, and otherwise by submitting it and
+   * waiting for it to complete.
+   *
+   * @return the counters of the job
+   * @throws IOException if the job fails
+   */
+  public static Counters runJob(JobConf conf) throws IOException {
+    int threads = conf.getInt(THREADS_PROPERTY, 0);
+    if (threads > 0) {
+      return run(conf, threads);
+    }
+    return JobClient.runJob(conf).getCounters();
+  }
+
+  /**
+   * Runs a map-only job locally.
+   *
+   * @param job the job
+   * @param threads number of splits to process at a time
+   * @return the counters of the job
+   * @throws IOException if the job fails
+   */
+  public static Counters run(JobConf job, int threads) throws IOException {
+    Preconditions.checkArgument(threads > 0);
+    Preconditions.checkArgument(job.getNumReduceTasks() == 0, "Only map-only jobs can run locally!");
+
+    JobConf conf = new JobConf(job);
+    edu.umd.cloud9.mapreduce.ForkJoinJobRunner.localizeCacheFiles(conf);
+    JobID jobId = new JobID("local" + System.currentTimeMillis(), 1);
+    JobContext jobContext = new JobContextImpl(conf, jobId);
+
+    conf.getOutputFormat().checkOutputSpecs(FileSystem.get(conf), conf);
+
+    // Largest splits first, so that the small ones fill in at the end.
+    InputSplit[] splits = conf.getInputFormat().getSplits(conf, threads);
+    Arrays.sort(splits, new Comparator<InputSplit>() {
+      @Override
+      public int compare(InputSplit s1, InputSplit s2) {
+        try {
+          return Long.compare(s2.getLength(), s1.getLength());
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+
+    LOG.info("Running " + conf.getJobName() + " locally: " + splits.length + " splits, "
+        + threads + " threads");
+    long startTime = System.currentTimeMillis();
+
+    OutputCommitter committer = conf.getOutputCommitter();
+    committer.setupJob(jobContext);
+
+    Counters counters = new Counters();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<Counters>> results = Lists.newArrayList();
+      for (int i = 0; i < splits.length; i++) {
+        results.add(pool.submit(new MapTask(conf, jobId, i, splits[i])));
+      }
+      for (ForkJoinTask<Counters> result : results) {
+        counters.incrAllCounters(result.get());
+      }
+    } catch (InterruptedException e) {
+      committer.abortJob(jobContext, JobStatus.KILLED);
+      throw new IOException("Job interrupted!", e);
+    } catch (ExecutionException e) {
+      committer.abortJob(jobContext, JobStatus.FAILED);
+      throw new IOException("Job failed!", getTaskFailure(e));
+    } finally {
+      pool.shutdownNow();
+    }
+    committer.commitJob(jobContext);
+
+    LOG.info("Job finished in " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+    LOG.info(counters);
+    return counters;
+  }
+
+  // Returns what a task failed with, unwrapped from the exceptions it was passed up in.
+  private static Throwable getTaskFailure(ExecutionException e) {
+    Throwable cause = e.getCause();
+    while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+
+  // Processes one split, and returns its counters.
+  @SuppressWarnings("serial")
+  private static class MapTask extends RecursiveTask<Counters> {
+    private final JobConf conf;
+    private final JobID jobId;
+    private final int index;
+    private final InputSplit split;
+
+    public MapTask(JobConf conf, JobID jobId, int index, InputSplit split) {
+      this.conf = conf;
+      this.jobId = jobId;
+      this.index = index;
+      this.split = split;
+    }
+
+    @Override
+    protected Counters compute() {
+      try {
+        return runTask();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private Counters runTask() throws IOException {
+      TaskAttemptID attemptId = new TaskAttemptID(new TaskID(jobId, TaskType.MAP, index), 0);
+      JobConf taskConf = new JobConf(conf);
+      taskConf.set(MRJobConfig.TASK_ATTEMPT_ID, attemptId.toString());
+      taskConf.setInt(MRJobConfig.TASK_PARTITION, index);
+      taskConf.setBoolean(MRJobConfig.TASK_ISMAP, true);
+      if (split instanceof FileSplit) {
+        taskConf.set(MRJobConfig.MAP_INPUT_FILE, ((FileSplit) split).getPath().toString());
+        taskConf.setLong(MRJobConfig.MAP_INPUT_START, ((FileSplit) split).getStart());
+        // Despite its name, this is the length of the split.
+        taskConf.setLong(MRJobConfig.MAP_INPUT_PATH, ((FileSplit) split).getLength());
+      }
+
+      TaskAttemptContext taskContext = new TaskAttemptContextImpl(taskConf, attemptId);
+      OutputCommitter committer = taskConf.getOutputCommitter();
+      if (FileOutputFormat.getOutputPath(taskConf) != null) {
+        // Where FileOutputFormat.getTaskOutputPath puts the output of the task.
+        Path workPath = committer instanceof FileOutputCommitter
+            ? ((FileOutputCommitter) committer).getTaskAttemptPath(taskContext)
+            : FileOutputFormat.getOutputPath(taskConf);
+        taskConf.set(MRJobConfig.TASK_OUTPUT_DIR, workPath.toString());
+      }
+      committer.setupTask(taskContext);
+
+      CountersReporter reporter = new CountersReporter(split);
+      InputFormat inputFormat = taskConf.getInputFormat();
+      OutputFormat outputFormat = taskConf.getOutputFormat();
+      final RecordReader reader = inputFormat.getRecordReader(split, taskConf, reporter);
+      final RecordWriter writer = outputFormat.getRecordWriter(FileSystem.get(taskConf),
+          taskConf, String.format("part-%05d", index), reporter);
+      MapRunnable runner = ReflectionUtils.newInstance(taskConf.getMapRunnerClass(), taskConf);
+
+      try {
+        runner.run(new CountingRecordReader(reader, reporter), new OutputCollector() {
+          @Override
+          public void collect(Object key, Object value) throws IOException {
+            writer.write(key, value);
+          }
+        }, reporter);
+        reader.close();
+        writer.close(reporter);
+        if (committer.needsTaskCommit(taskContext)) {
+          committer.commitTask(taskContext);
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.error("Task for split " + split + " failed!", e);
+        closeQuietly(reader, writer, reporter);
+        committer.abortTask(taskContext);
+        throw e;
+      }
+
+      return reporter.counters;
+    }
+  }
+
+  // Closes the reader and writer of a failed task, so that its files aren't left open. Errors are
+  // only logged, so as not to hide what the task failed with.
+  private static void closeQuietly(RecordReader<?, ?> reader, RecordWriter<?, ?> writer,
+      Reporter reporter) {
+    try {
+      reader.close();
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Error closing the input of a failed task", e);
+    }
+    try {
+      writer.close(reporter);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Error closing the output of a failed task", e);
+    }
+  }
+
+  // Counts the records read, like the framework does.
+  private static class CountingRecordReader<K, V> implements RecordReader<K, V> {
+    private final RecordReader<K, V> reader;
+    private final Reporter reporter;
+
+    public CountingRecordReader(RecordReader<K, V> reader, Reporter reporter) {
+      this.reader = reader;
+      this.reporter = reporter;
+    }
+
+    @Override
+    public boolean next(K key, V value) throws IOException {
+      if (reader.next(key, value)) {
+        reporter.incrCounter(TaskCounter.MAP_INPUT_RECORDS, 1);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public K createKey() {
+      return reader.createKey();
+    }
+
+    @Override
+    public V createValue() {
+      return reader.createValue();
+    }
+
+    @Override
+    public long getPos() throws IOException {
+      return reader.getPos();
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+      return reader.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  // Keeps the counters of a task; each task has its own, so there's no contention.
+  private static class CountersReporter implements Reporter {
+    private final Counters counters = new Counters();
+    private final InputSplit split;
+
+    public CountersReporter(InputSplit split) {
+      this.split = split;
+    }
+
+    @Override
+    public Counters.Counter getCounter(Enum<?> name) {
+      return counters.findCounter(name);
+    }
+
+    @Override
+    public Counters.Counter getCounter(String group, String name) {
+      return counters.findCounter(group, name);
+    }
+
+    @Override
+    public void incrCounter(Enum<?> key, long amount) {
+      counters.incrCounter(key, amount);
+    }
+
+    @Override
+    public void incrCounter(String group, String counter, long amount) {
+      counters.incrCounter(group, counter, amount);
+    }
+
+    @Override
+    public InputSplit getInputSplit() {
+      return split;
+    }
+
+    @Override
+    public void progress() {}
+
+    @Override
+    public float getProgress() {
+      return 0.0f;
+    }
+
+    @Override
+    public void setStatus(String status) {}
+  }
+}
@@ -0,0 +1,401 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.mapreduce;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * <p>
+ * Runs map-only jobs ({@code org.apache.hadoop.mapreduce} API) in this JVM, without submitting
+ * them to a cluster. The job's {@code InputFormat} computes the splits, as usual, and each split is
+ * then processed by a task in a {@link ForkJoinPool}, with its own record reader, mapper, and
+ * record writer; largest splits go first. Output is committed with the job's
+ * {@code OutputCommitter}, and the counters of the tasks are summed up into the counters of the
+ * job, so tools get the same results as from a cluster run. Files in the distributed cache are
+ * read in place if they're local, and copied to a local temporary directory otherwise.
+ * </p>
+ *
+ * <p>
+ * This is meant for iterating quickly on collections on a local disk (or for comparing against
+ * cluster runs); tools call {@link #runJob(Job)} instead of {@code Job.waitForCompletion}, and
+ * run locally when {@link #THREADS_PROPERTY} is set, e.g., with
+ * <code>-D Cloud9.LocalThreads=16</code>. See {@link edu.umd.cloud9.mapred.ForkJoinJobRunner}
+ * for the {@code org.apache.hadoop.mapred} API.
+ * </p>
+ *
+ * <p>
+ * Unlike on a cluster, tasks share a JVM, so mappers (and the classes they use) must not keep
+ * mutable state in static fields, such as the reusable output {@code Writable}s that mappers
+ * often hold.
+ * </p>
+ *
+ * @author Jimmy Lin
+ */
+public class ForkJoinJobRunner {
+  private static final Logger LOG = Logger.getLogger(ForkJoinJobRunner.class);
+
+  /**
+   * Configuration property for the number of threads to run jobs locally with; jobs are submitted
+   * as usual unless this is positive.
+   */
+  public static final String THREADS_PROPERTY = "Cloud9.LocalThreads";
+
+  private ForkJoinJobRunner() {}
+
+  /**
+   * Runs a job, locally if {@link #THREADS_PROPERTY} is set, and otherwise by submitting it and
+   * waiting for it to complete.
+   *
+   * @return the counters of the job
+   */
+  public static Counters runJob(Job job) throws IOException, InterruptedException,
+      ClassNotFoundException {
+    int threads = job.getConfiguration().getInt(THREADS_PROPERTY, 0);
+    if (threads > 0) {
+      return run(job, threads);
+    }
+
+    job.waitForCompletion(true);
+    return job.getCounters();
+  }
+
+  /**
+   * Runs a map-only job locally.
+   *
+   * @param job the job
+   * @param threads number of splits to process at a time
+   * @return the counters of the job
+   * @throws IOException if the job fails
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  public static Counters run(Job job, int threads) throws IOException, InterruptedException,
+      ClassNotFoundException {
+    Preconditions.checkArgument(threads > 0);
+    Preconditions.checkArgument(job.getNumReduceTasks() == 0, "Only map-only jobs can run locally!");
+
+    Configuration conf = new Configuration(job.getConfiguration());
+    localizeCacheFiles(conf);
+    JobID jobId = new JobID("local" + System.currentTimeMillis(), 1);
+    JobContext jobContext = new JobContextImpl(conf, jobId);
+
+    InputFormat<?, ?> inputFormat =
+        ReflectionUtils.newInstance(jobContext.getInputFormatClass(), conf);
+    OutputFormat<?, ?> outputFormat =
+        ReflectionUtils.newInstance(jobContext.getOutputFormatClass(), conf);
+    outputFormat.checkOutputSpecs(jobContext);
+
+    List<MapTask> tasks = Lists.newArrayList();
+    for (InputSplit split : inputFormat.getSplits(jobContext)) {
+      tasks.add(new MapTask(conf, jobId, split));
+    }
+    Collections.sort(tasks, new Comparator<MapTask>() {
+      @Override
+      public int compare(MapTask t1, MapTask t2) {
+        return Long.compare(t2.length, t1.length);
+      }
+    });
+    for (int i = 0; i < tasks.size(); i++) {
+      tasks.get(i).index = i;
+    }
+
+    LOG.info("Running " + job.getJobName() + " locally: " + tasks.size() + " splits, "
+        + threads + " threads");
+    long startTime = System.currentTimeMillis();
+
+    OutputCommitter committer = outputFormat.getOutputCommitter(
+        new TaskAttemptContextImpl(conf, new TaskAttemptID(new TaskID(jobId, TaskType.MAP, 0), 0)));
+    committer.setupJob(jobContext);
+
+    Counters counters = new Counters();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<Counters>> results = Lists.newArrayList();
+      for (MapTask task : tasks) {
+        results.add(pool.submit(task));
+      }
+      for (ForkJoinTask<Counters> result : results) {
+        counters.incrAllCounters(result.get());
+      }
+    } catch (ExecutionException e) {
+      committer.abortJob(jobContext, JobStatus.State.FAILED);
+      throw new IOException("Job failed!", getTaskFailure(e));
+    } finally {
+      pool.shutdownNow();
+    }
+    committer.commitJob(jobContext);
+
+    LOG.info("Job finished in " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+    LOG.info(counters);
+    return counters;
+  }
+
+  /**
+   * Makes the files in the distributed cache available as local files to tasks that run in this
+   * JVM (i.e., through {@code DistributedCache.getLocalCacheFiles}).
+   */
+  @SuppressWarnings("deprecation")
+  public static void localizeCacheFiles(Configuration conf) throws IOException {
+    URI[] files = DistributedCache.getCacheFiles(conf);
+    if (files == null || conf.get(MRJobConfig.CACHE_LOCALFILES) != null) {
+      return;
+    }
+
+    File dir = null;
+    String[] localFiles = new String[files.length];
+    for (int i = 0; i < files.length; i++) {
+      Path path = new Path(files[i].getScheme(), files[i].getAuthority(), files[i].getPath());
+      FileSystem fs = path.getFileSystem(conf);
+      if (fs.getUri().getScheme().equals("file")) {
+        localFiles[i] = path.toUri().getPath();
+        continue;
+      }
+
+      if (dir == null) {
+        dir = Files.createTempDir();
+        dir.deleteOnExit();
+      }
+      File file = new File(dir, i + "-" + path.getName());
+      LOG.info("Copying " + path + " to " + file);
+      fs.copyToLocalFile(path, new Path(file.getPath()));
+      file.deleteOnExit();
+      localFiles[i] = file.getPath();
+    }
+    conf.setStrings(MRJobConfig.CACHE_LOCALFILES, localFiles);
+  }
+
+  // Returns what a task failed with, unwrapped from the exceptions it was passed up in.
+  private static Throwable getTaskFailure(ExecutionException e) {
+    Throwable cause = e.getCause();
+    while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+
+  // Processes one split, and returns its counters.
+  @SuppressWarnings({ "rawtypes", "unchecked", "serial" })
+  private static class MapTask extends RecursiveTask<Counters> {
+    private final Configuration conf;
+    private final JobID jobId;
+    private final InputSplit split;
+    private final long length;
+    private int index;
+
+    public MapTask(Configuration conf, JobID jobId, InputSplit split) throws IOException,
+        InterruptedException {
+      this.conf = conf;
+      this.jobId = jobId;
+      this.split = split;
+      this.length = split.getLength();
+    }
+
+    @Override
+    protected Counters compute() {
+      try {
+        return runTask();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      } catch (ClassNotFoundException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private Counters runTask() throws IOException, InterruptedException,
+        ClassNotFoundException {
+      TaskAttemptID attemptId = new TaskAttemptID(new TaskID(jobId, TaskType.MAP, index), 0);
+      Configuration taskConf = new Configuration(conf);
+      taskConf.set(MRJobConfig.TASK_ATTEMPT_ID, attemptId.toString());
+      taskConf.setInt(MRJobConfig.TASK_PARTITION, index);
+      taskConf.setBoolean(MRJobConfig.TASK_ISMAP, true);
+      if (split instanceof FileSplit) {
+        taskConf.set(MRJobConfig.MAP_INPUT_FILE, ((FileSplit) split).getPath().toString());
+        taskConf.setLong(MRJobConfig.MAP_INPUT_START, ((FileSplit) split).getStart());
+        // Despite its name, this is the length of the split.
+        taskConf.setLong(MRJobConfig.MAP_INPUT_PATH, ((FileSplit) split).getLength());
+      }
+
+      CountersReporter reporter = new CountersReporter();
+      TaskAttemptContext taskContext = new TaskAttemptContextImpl(taskConf, attemptId, reporter);
+
+      // Each task has its own instances, since, e.g., FileOutputFormat keeps its committer.
+      InputFormat inputFormat =
+          ReflectionUtils.newInstance(taskContext.getInputFormatClass(), taskConf);
+      OutputFormat outputFormat =
+          ReflectionUtils.newInstance(taskContext.getOutputFormatClass(), taskConf);
+      OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+      committer.setupTask(taskContext);
+
+      RecordReader reader = new CountingRecordReader(
+          inputFormat.createRecordReader(split, taskContext), reporter.getCounter(
+              TaskCounter.MAP_INPUT_RECORDS));
+      RecordWriter writer = outputFormat.getRecordWriter(taskContext);
+      Mapper.Context context = new WrappedMapper().getMapContext(new MapContextImpl(taskConf,
+          attemptId, reader, writer, committer, reporter, split));
+      Mapper mapper = ReflectionUtils.newInstance(taskContext.getMapperClass(), taskConf);
+
+      try {
+        reader.initialize(split, context);
+        mapper.run(context);
+        reader.close();
+        writer.close(taskContext);
+        if (committer.needsTaskCommit(taskContext)) {
+          committer.commitTask(taskContext);
+        }
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        LOG.error("Task for split " + split + " failed!", e);
+        IOUtils.closeStream(reader);
+        closeQuietly(writer, taskContext);
+        committer.abortTask(taskContext);
+        throw e;
+      }
+
+      return reporter.counters;
+    }
+  }
+
+  // Closes the writer of a failed task, so that its output file isn't left open. Errors are only
+  // logged, so as not to hide what the task failed with.
+  private static void closeQuietly(RecordWriter<?, ?> writer, TaskAttemptContext context) {
+    try {
+      writer.close(context);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Error closing the output of a failed task", e);
+    }
+  }
+
+  // Counts the records read, like the framework does.
+  private static class CountingRecordReader<K, V> extends RecordReader<K, V> {
+    private final RecordReader<K, V> reader;
+    private final Counter counter;
+
+    public CountingRecordReader(RecordReader<K, V> reader, Counter counter) {
+      this.reader = reader;
+      this.counter = counter;
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException,
+        InterruptedException {
+      reader.initialize(split, context);
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      if (reader.nextKeyValue()) {
+        counter.increment(1);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public K getCurrentKey() throws IOException, InterruptedException {
+      return reader.getCurrentKey();
+    }
+
+    @Override
+    public V getCurrentValue() throws IOException, InterruptedException {
+      return reader.getCurrentValue();
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      return reader.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  // Keeps the counters of a task; each task has its own, so there's no contention.
+  private static class CountersReporter extends StatusReporter {
+    private final Counters counters = new Counters();
+
+    @Override
+    public Counter getCounter(Enum<?> name) {
+      return counters.findCounter(name);
+    }
+
+    @Override
+    public Counter getCounter(String group, String name) {
+      return counters.findCounter(group, name);
+    }
+
+    @Override
+    public void progress() {}
+
+    @Override
+    public float getProgress() {
+      return 0.0f;
+    }
+
+    @Override
+    public void setStatus(String status) {}
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Cloud9: A Hadoop toolkit for working with big data
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package edu.umd.cloud9.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Thread-safe histogram of latencies (or any other non-negative values) in the style of
+ * HdrHistogram: values below 32 get a bucket each, and every power-of-two range above that is
+ * split into 16 linear sub-buckets, so all values are tracked to within about 6% using a fixed
+ * 8KB of counters. Recording a value is a handful of arithmetic operations and an atomic increment,
+ * which makes it cheap enough to call on every fetch.
+ *
+ * @author Jimmy Lin
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int LINEAR_COUNT = 2 * SUB_COUNT;
+  private static final int NUM_BUCKETS = LINEAR_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as zero.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+
+    long m;
+    while (value > (m = max.get())) {
+      if (max.compareAndSet(m, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of recorded values.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the sum of all recorded values.
+   */
+  public long getSum() {
+    return sum.get();
+  }
+
+  /**
+   * Returns the largest recorded value.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the mean of all recorded values, or zero if nothing has been recorded.
+   */
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0.0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Returns the value at a given percentile (between 0 and 100), to within the precision of the
+   * histogram, or zero if nothing has been recorded.
+   */
+  public long getPercentile(double percentile) {
+    Preconditions.checkArgument(percentile >= 0.0 && percentile <= 100.0);
+
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Clears all recorded values.
+   */
+  public void reset() {
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  static int bucket(long value) {
+    if (value < LINEAR_COUNT) {
+      return (int) value;
+    }
+
+    // Shift the value so that it falls in [SUB_COUNT, 2 * SUB_COUNT).
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return LINEAR_COUNT + (shift - 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+  }
+
+  static long lowestEquivalentValue(int bucket) {
+    if (bucket < LINEAR_COUNT) {
+      return bucket;
+    }
+
+    int shift = (bucket - LINEAR_COUNT) / SUB_COUNT + 1;
+    long sub = (bucket - LINEAR_COUNT) % SUB_COUNT + SUB_COUNT;
+    return sub << shift;
+  }
+
+  static long highestEquivalentValue(int bucket) {
+    return bucket + 1 < NUM_BUCKETS ? lowestEquivalentValue(bucket + 1) - 1 : Long.MAX_VALUE;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p999=%d max=%d", getCount(),
+        getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getPercentile(99.9),
+        getMax());
+  }
+}
@@ -19,6 +19,7 @@ package edu.umd.cloud9.webgraph.data;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -28,8 +29,16 @@ import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.SequenceFile;
 
 import tl.lin.data.array.ArrayListWritable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
 import edu.umd.cloud9.collection.DocnoMapping;
 import edu.umd.cloud9.collection.DocumentForwardIndex;
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
 
 public class IndexableAnchorTextForwardIndex implements DocumentForwardIndex<IndexableAnchorText> {
 	
@@ -45,6 +54,7 @@ public class IndexableAnchorTextForwardIndex implements DocumentForwardIndex<Ind
 	private String collectionPath;
 
 	private DocnoMapping docnoMapping;
+	private ForwardIndexMetrics metrics = ForwardIndexMetrics.getDefault();
 
 	public IndexableAnchorTextForwardIndex(DocnoMapping docnoMapping) {
 		this.docnoMapping = docnoMapping; 
@@ -61,15 +71,23 @@ public class IndexableAnchorTextForwardIndex implements DocumentForwardIndex<Ind
 		collectionPath = in.readUTF();
 
 		int blocks = in.readInt();
+		boolean binary = blocks == ForwardIndexFormat.BINARY;
+		if (binary) {
+			blocks = in.readInt();
+		}
 
 		docnos = new int[blocks];
 		offsets = new int[blocks];
 		filenos = new short[blocks];
 
-		for (int i = 0; i < blocks; i++) {
-			docnos[i] = in.readInt();
-			offsets[i] = in.readInt();
-			filenos[i] = in.readShort();
+		if (binary) {
+			ForwardIndexFormat.readBlocks(in, docnos, offsets, filenos);
+		} else {
+			for (int i = 0; i < blocks; i++) {
+				docnos[i] = in.readInt();
+				offsets[i] = in.readInt();
+				filenos[i] = in.readShort();
+			}
 		}
 
 		in.close();
@@ -80,6 +98,63 @@ public class IndexableAnchorTextForwardIndex implements DocumentForwardIndex<Ind
 	}
 
 	public IndexableAnchorText getDocument(int docno) {
+		long start = metrics.now();
+		metrics.increment(Counter.REQUESTS, 1);
+
+		ArrayListWritable<AnchorText> value = readAnchors(docno);
+		if (value == null) {
+			metrics.increment(Counter.MISSES, 1);
+			return null;
+		}
+
+		indexableAnchorText.createHTML(value);
+		metrics.increment(Counter.DOCUMENTS, 1);
+		metrics.recordSince(Phase.FETCH, start);
+		return indexableAnchorText;
+	}
+
+	/**
+	 * Fetches a batch of documents. Unlike {@link #getDocument(int)}, which reuses a single object,
+	 * each document in the batch is a separate object.
+	 */
+	@Override
+	public List<IndexableAnchorText> getDocuments(int[] docnos) {
+		long start = metrics.now();
+		metrics.increment(Counter.REQUESTS, 1);
+
+		List<IndexableAnchorText> docs = Lists.newArrayListWithCapacity(docnos.length);
+		for (int docno : docnos) {
+			ArrayListWritable<AnchorText> value = readAnchors(docno);
+			if (value == null) {
+				metrics.increment(Counter.MISSES, 1);
+				docs.add(null);
+			} else {
+				IndexableAnchorText doc = new IndexableAnchorText();
+				doc.createHTML(value);
+				metrics.increment(Counter.DOCUMENTS, 1);
+				docs.add(doc);
+			}
+		}
+
+		metrics.recordSince(Phase.FETCH, start);
+		return docs;
+	}
+
+	/**
+	 * Returns the instrumentation that fetches report into.
+	 */
+	public ForwardIndexMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the instrumentation that fetches report into.
+	 */
+	public void setMetrics(ForwardIndexMetrics metrics) {
+		this.metrics = Preconditions.checkNotNull(metrics);
+	}
+
+	private ArrayListWritable<AnchorText> readAnchors(int docno) {
 		int idx = Arrays.binarySearch(docnos, docno);
 
 		if (idx < 0)
@@ -89,6 +164,7 @@ public class IndexableAnchorTextForwardIndex implements DocumentForwardIndex<Ind
 		String file = collectionPath + "/part-" + df.format(filenos[idx]);
 		
 		try {
+			long t = metrics.now();
 
 			SequenceFile.Reader reader = new SequenceFile.Reader(fs, new Path(file), conf);
 
@@ -96,18 +172,22 @@ public class IndexableAnchorTextForwardIndex implements DocumentForwardIndex<Ind
 			ArrayListWritable<AnchorText> value = new ArrayListWritable<AnchorText>();
 
 			reader.seek(offsets[idx]);
+			t = metrics.recordSince(Phase.SEEK, t);
 
 			while (reader.next(key)) {
 				if (key.get() == docno)
 					break;
 			}
+			t = metrics.recordSince(Phase.DECOMPRESS, t);
 
 			reader.getCurrentValue(value);
+			metrics.recordSince(Phase.PARSE, t);
+			metrics.increment(Counter.BYTES_READ, reader.getPosition() - offsets[idx]);
 			reader.close();
-			
-			indexableAnchorText.createHTML(value);
-			return indexableAnchorText;
+
+			return value;
 		} catch (IOException e) {
+			metrics.increment(Counter.ERRORS, 1);
 			e.printStackTrace();
 		}
 
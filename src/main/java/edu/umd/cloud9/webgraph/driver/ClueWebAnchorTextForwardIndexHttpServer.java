@@ -42,6 +42,7 @@ import org.mortbay.jetty.servlet.Context;
 import org.mortbay.jetty.servlet.ServletHolder;
 
 import edu.umd.cloud9.collection.DocumentForwardIndex;
+import edu.umd.cloud9.collection.DocumentForwardIndexHttpServer;
 import edu.umd.cloud9.collection.Indexable;
 import edu.umd.cloud9.collection.clue.ClueWarcDocnoMapping;
 import edu.umd.cloud9.mapred.NullInputFormat;
@@ -138,6 +139,8 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 			root.addServlet(new ServletHolder(new FetchDocidServlet()), "/fetch_docid");
 			root.addServlet(new ServletHolder(new FetchDocnoServlet()), "/fetch_docno");
 			root.addServlet(new ServletHolder(new FetchDocContentServlet()), "/fetch_content");
+			root.addServlet(new ServletHolder(new DocumentForwardIndexHttpServer.MetricsServlet()),
+					"/metrics");
 			root.addServlet(new ServletHolder(new HomeServlet()), "/");
 
 			FSDataOutputStream out = FileSystem.get(conf).create(tmpPath, true);
@@ -261,7 +264,7 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 
 		public void doPost(HttpServletRequest req, HttpServletResponse res)
 				throws ServletException, IOException {
-			LOG.info("triggered servlet for fetching document content");
+			LOG.debug("triggered servlet for fetching document content");
 
 			int docno = 0;
 			try {
@@ -279,7 +282,9 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 					}
 
 				if (doc != null) {
-					LOG.info("fetched: " + doc.getDocid() + " = docno " + docno);
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("fetched: " + doc.getDocid() + " = docno " + docno);
+					}
 					res.setContentType(doc.getDisplayContentType());
 
 					PrintWriter out = res.getWriter();
@@ -315,7 +320,7 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 
 		public void doPost(HttpServletRequest req, HttpServletResponse res)
 				throws ServletException, IOException {
-			LOG.info("triggered servlet for fetching document by docid");
+			LOG.debug("triggered servlet for fetching document by docid");
 			String docid = null;
 
 			try {
@@ -326,7 +331,9 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 				Indexable doc = sForwardIndex.getDocument(docid);
 				
 				if (doc != null) {
-					LOG.info("fetched: " + doc.getDocid());
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("fetched: " + doc.getDocid());
+					}
 					res.setContentType(doc.getDisplayContentType());
 
 					PrintWriter out = res.getWriter();
@@ -364,7 +371,7 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 
 		public void doPost(HttpServletRequest req, HttpServletResponse res)
 				throws ServletException, IOException {
-			LOG.info("triggered servlet for fetching document by docno");
+			LOG.debug("triggered servlet for fetching document by docno");
 
 			int docno = 0;
 			try {
@@ -375,7 +382,9 @@ public class ClueWebAnchorTextForwardIndexHttpServer {
 				Indexable doc = sForwardIndex.getDocument(docno);
 	
 				if (doc != null) {
-					LOG.info("fetched: " + doc.getDocid() + " = docno " + docno);
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("fetched: " + doc.getDocid() + " = docno " + docno);
+					}
 					res.setContentType(doc.getDisplayContentType());
 					
 					PrintWriter out = res.getWriter();
@@ -0,0 +1,91 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+public class CompactDocidTableTest {
+  private static final String[] DOCIDS =
+      { "", "FBIS3-1", "FBIS3-10", "FT911-1", "LA010189-0001", "LA010189-0002", "été-1" };
+
+  @Test
+  public void testLookups() throws Exception {
+    CompactDocidTable table = CompactDocidTable.fromArray(DOCIDS);
+
+    assertEquals(DOCIDS.length - 1, table.size());
+    for (int i = 1; i < DOCIDS.length; i++) {
+      assertEquals(i, table.getDocno(DOCIDS[i]));
+      assertEquals(DOCIDS[i], table.getDocid(i));
+    }
+
+    assertEquals(-1, table.getDocno("FBIS3-2"));
+    assertEquals(-1, table.getDocno(""));
+  }
+
+  @Test
+  public void testFormats() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+
+    // Traditional format.
+    File legacy = File.createTempFile("legacy", ".mapping");
+    legacy.deleteOnExit();
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(legacy));
+    out.writeInt(DOCIDS.length - 1);
+    for (int i = 1; i < DOCIDS.length; i++) {
+      out.writeUTF(DOCIDS[i]);
+    }
+    out.close();
+
+    CompactDocidTable table = CompactDocidTable.read(new Path(legacy.getAbsolutePath()), fs);
+    assertEquals(DOCIDS.length - 1, table.size());
+    assertEquals(4, table.getDocno("LA010189-0001"));
+
+    // Compact format.
+    File compact = File.createTempFile("compact", ".mapping");
+    compact.deleteOnExit();
+    out = new DataOutputStream(new FileOutputStream(compact));
+    table.write(out);
+    out.close();
+
+    table = CompactDocidTable.read(new Path(compact.getAbsolutePath()), fs);
+    assertEquals(DOCIDS.length - 1, table.size());
+    for (int i = 1; i < DOCIDS.length; i++) {
+      assertEquals(i, table.getDocno(DOCIDS[i]));
+      assertEquals(DOCIDS[i], table.getDocid(i));
+    }
+  }
+
+  @Test
+  public void testTableSize() {
+    assertEquals(2, CompactDocidTable.tableSize(0));
+    assertEquals(2, CompactDocidTable.tableSize(1));
+    assertEquals(4, CompactDocidTable.tableSize(2));
+    assertEquals(4, CompactDocidTable.tableSize(3));
+    assertEquals(8, CompactDocidTable.tableSize(4));
+    assertEquals(1 << 21, CompactDocidTable.tableSize(1000000));
+
+    // n * 1.5 overflows an int well before n does.
+    assertEquals(CompactDocidTable.MAX_TABLE_SIZE, CompactDocidTable.tableSize(715827883));
+    for (int n : new int[] { 715827884, 1000000000, Integer.MAX_VALUE }) {
+      try {
+        CompactDocidTable.tableSize(n);
+        fail("Sized a table for " + n + " docids");
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(CompactDocidTableTest.class);
+  }
+}
@@ -0,0 +1,161 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+import edu.umd.cloud9.collection.line.TextDocument;
+
+public class DocumentFieldColumnsTest {
+  private static final int NUM_DOCS = 2 * DocumentFieldColumns.ROWS_PER_GROUP + 100;
+
+  private static String title(int i) {
+    return i % 3 == 0 ? null : "Document  number\n" + i + " \u00e9";
+  }
+
+  // Writes a collection with the repack output format, and returns the file that it wrote.
+  private static Path write(Configuration conf) throws Exception {
+    File dir = Files.createTempDir();
+    conf.set(FileOutputFormat.OUTDIR, new File(dir, "out").toURI().toString());
+    conf.setClass("mapreduce.job.output.key.class", IntWritable.class, Object.class);
+    conf.setClass("mapreduce.job.output.value.class", TextDocument.class, Object.class);
+    TaskAttemptContext context =
+        new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.MAP, 0, 0));
+
+    RecordWriter<IntWritable, TextDocument> writer =
+        new RepackSequenceFileOutputFormat<IntWritable, TextDocument>().getRecordWriter(context);
+    TextDocument doc = new TextDocument();
+    for (int i = 0; i < NUM_DOCS; i++) {
+      doc.setDocid("doc-" + i);
+      String title = title(i);
+      doc.setContent("<html><head>" + (title == null ? "" : "<TITLE>" + title + "</TITLE>")
+          + "</head><body>body of " + i + "</body></html>");
+      writer.write(new IntWritable(i + 1), doc);
+    }
+    writer.close(context);
+
+    return findFile(FileSystem.getLocal(conf), new Path(dir.toURI()));
+  }
+
+  private static Path findFile(FileSystem fs, Path path) throws Exception {
+    for (FileStatus status : fs.listStatus(path)) {
+      if (status.isDirectory()) {
+        Path file = findFile(fs, status.getPath());
+        if (file != null) {
+          return file;
+        }
+      } else if (status.getPath().getName().startsWith("part-")
+          && !status.getPath().getParent().getName().equals(DocumentFieldColumns.DIRECTORY)) {
+        return status.getPath();
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testReadAllFields() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(RepackOptions.COLUMNS_PROPERTY, "docid, url,title");
+    Path file = write(conf);
+
+    DocumentFieldColumns.Reader reader = new DocumentFieldColumns.Reader(conf,
+        DocumentFieldColumns.getColumnsPath(file), null);
+    assertArrayEquals(new String[] { "docid", "url", "title" }, reader.getFileFields());
+
+    LongWritable key = new LongWritable();
+    DocumentFields fields = new DocumentFields();
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertTrue(reader.next(key, fields));
+      assertEquals(i + 1, key.get());
+      assertEquals("doc-" + i, fields.get("docid"));
+      assertNull(fields.get("url"));
+      String title = title(i);
+      assertEquals(title == null ? null : title.replaceAll("\\s+", " "), fields.get(2));
+    }
+    assertFalse(reader.next(key, fields));
+    reader.close();
+  }
+
+  @Test
+  public void testInputFormat() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(RepackOptions.COLUMNS_PROPERTY, "docid,url,title");
+    Path file = write(conf);
+
+    // The file of the collection, and the directory that holds it, both lead to the columns.
+    for (Path input : new Path[] { file, file.getParent() }) {
+      Job job = Job.getInstance(conf);
+      FileInputFormat.setInputPaths(job, input);
+      DocumentFieldColumnsInputFormat.setColumns(job, "title", "docid");
+
+      DocumentFieldColumnsInputFormat format = new DocumentFieldColumnsInputFormat();
+      List<InputSplit> splits = format.getSplits(job);
+      assertEquals(1, splits.size());
+
+      TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(),
+          new TaskAttemptID("test", 2, TaskType.MAP, 0, 0));
+      RecordReader<LongWritable, DocumentFields> reader =
+          format.createRecordReader(splits.get(0), context);
+      reader.initialize(splits.get(0), context);
+
+      int n = 0;
+      while (reader.nextKeyValue()) {
+        DocumentFields fields = reader.getCurrentValue();
+        assertEquals(n + 1, reader.getCurrentKey().get());
+        assertArrayEquals(new String[] { "title", "docid" }, fields.getNames());
+        assertEquals("doc-" + n, fields.get(1));
+        assertEquals(n % 3 == 0, fields.get(0) == null);
+        n++;
+      }
+      assertEquals(1.0f, reader.getProgress(), 0.0f);
+      reader.close();
+      assertEquals(NUM_DOCS, n);
+    }
+  }
+
+  @Test
+  public void testNoColumns() throws Exception {
+    Configuration conf = new Configuration();
+    Path file = write(conf);
+    assertFalse(FileSystem.getLocal(conf).exists(DocumentFieldColumns.getColumnsPath(file)));
+  }
+
+  @Test(expected = java.io.IOException.class)
+  public void testUnknownField() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(RepackOptions.COLUMNS_PROPERTY, "docid");
+    Path file = write(conf);
+    new DocumentFieldColumns.Reader(conf, DocumentFieldColumns.getColumnsPath(file),
+        new String[] { "title" });
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(DocumentFieldColumnsTest.class);
+  }
+}
@@ -0,0 +1,129 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import edu.umd.cloud9.collection.DocumentForwardIndexHttpServer.FetchDocnosServlet;
+
+public class DocumentForwardIndexHttpServerTest {
+
+  @Test
+  public void testParseDocnos() {
+    assertArrayEquals(new int[] { 42 }, DocumentForwardIndexHttpServer.parseDocnos("42"));
+    assertArrayEquals(new int[] { 1, 5, 42, 5 },
+        DocumentForwardIndexHttpServer.parseDocnos("1,5,42,5"));
+    assertArrayEquals(new int[] { 1, 5, 42 },
+        DocumentForwardIndexHttpServer.parseDocnos(" 1 ,5,\t42\n"));
+    assertArrayEquals(new int[] { -1, 0, Integer.MAX_VALUE },
+        DocumentForwardIndexHttpServer.parseDocnos("-1,0,2147483647"));
+  }
+
+  @Test
+  public void testParseInvalidDocnos() {
+    String[] invalid = { null, "", "  ", "\t\n", ",", "1,", ",1", "1,,2", "1, ,2", "a", "1,b",
+        "1 2", "1;2", "1.5", "0x10", "2147483648", "-99999999999" };
+    for (String ids : invalid) {
+      try {
+        DocumentForwardIndexHttpServer.parseDocnos(ids);
+        fail("Parsed \"" + ids + "\"");
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+  }
+
+  private static String toJsonString(String s) {
+    StringWriter sw = new StringWriter();
+    PrintWriter out = new PrintWriter(sw);
+    DocumentForwardIndexHttpServer.writeJsonString(out, s);
+    out.flush();
+    return sw.toString();
+  }
+
+  @Test
+  public void testWriteJsonString() {
+    assertEquals("null", toJsonString(null));
+    assertEquals("\"\"", toJsonString(""));
+    assertEquals("\"plain text\"", toJsonString("plain text"));
+    assertEquals("\"say \\\"hi\\\"\"", toJsonString("say \"hi\""));
+    assertEquals("\"C:\\\\dir\\\\\"", toJsonString("C:\\dir\\"));
+    assertEquals("\"\\\\\\\"\"", toJsonString("\\\""));
+    assertEquals("\"a\\nb\\r\\nc\\td\"", toJsonString("a\nb\r\nc\td"));
+    assertEquals("\"\\u0000\\u0001\\u0008\\u000c\\u001b\\u001f\"",
+        toJsonString("\u0000\u0001\b\f\u001b\u001f"));
+
+    // Everything else passes through as is, including characters that don't need escaping in
+    // JSON, and non-ASCII characters (the response is in UTF-8).
+    assertEquals("\" /'<>&\u007f\"", toJsonString(" /'<>&\u007f"));
+    assertEquals("\"Caf\u00e9 \u4e2d\u6587 \ud83d\ude00\"",
+        toJsonString("Caf\u00e9 \u4e2d\u6587 \ud83d\ude00"));
+  }
+
+  // Response that records the status of an error, and fails on anything else.
+  private static class ErrorRecorder implements InvocationHandler {
+    int status;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      if (method.getName().equals("sendError") && args.length == 2) {
+        status = (Integer) args[0];
+        return null;
+      }
+      throw new UnsupportedOperationException(method.getName());
+    }
+  }
+
+  // Sends a request for the given docnos, and returns the status of the error it fails with.
+  private static int fetch(final String ids) throws Exception {
+    HttpServletRequest req = (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getParameter") && args[0].equals("ids")) {
+              return ids;
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    ErrorRecorder recorder = new ErrorRecorder();
+    HttpServletResponse res = (HttpServletResponse) Proxy.newProxyInstance(
+        HttpServletResponse.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class },
+        recorder);
+
+    // No index is loaded, so a request that gets past validation fails with an exception.
+    new FetchDocnosServlet().doGet(req, res);
+    return recorder.status;
+  }
+
+  @Test
+  public void testBadRequests() throws Exception {
+    String[] invalid = { null, "", "   ", "1,,2", "1,", "1,x", "1 2", "99999999999" };
+    for (String ids : invalid) {
+      assertEquals(HttpServletResponse.SC_BAD_REQUEST, fetch(ids));
+    }
+
+    StringBuilder ids = new StringBuilder("1");
+    for (int i = 0; i < DocumentForwardIndexHttpServer.MAX_BATCH_SIZE; i++) {
+      ids.append(",1");
+    }
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, fetch(ids.toString()));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(DocumentForwardIndexHttpServerTest.class);
+  }
+}
@@ -0,0 +1,304 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import edu.umd.cloud9.collection.DocumentForwardIndexUtils.SequenceFileCollection;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+import edu.umd.cloud9.collection.line.TextDocument;
+
+public class DocumentForwardIndexUtilsTest {
+
+  // Forward index over docnos 1 through 100, where the content of each document is its docno.
+  private static class FakeIndex implements DocumentForwardIndex<TextDocument> {
+    @Override
+    public int getDocno(String docid) {
+      return Integer.parseInt(docid);
+    }
+
+    @Override
+    public String getDocid(int docno) {
+      return Integer.toString(docno);
+    }
+
+    @Override
+    public TextDocument getDocument(int docno) {
+      if (docno < getFirstDocno() || docno > getLastDocno()) {
+        return null;
+      }
+      TextDocument doc = new TextDocument();
+      doc.setDocid(getDocid(docno));
+      return doc;
+    }
+
+    @Override
+    public TextDocument getDocument(String docid) {
+      return getDocument(getDocno(docid));
+    }
+
+    @Override
+    public List<TextDocument> getDocuments(int[] docnos) {
+      return DocumentForwardIndexUtils.getDocuments(this, docnos);
+    }
+
+    @Override
+    public int getFirstDocno() {
+      return 1;
+    }
+
+    @Override
+    public int getLastDocno() {
+      return 100;
+    }
+
+    @Override
+    public void loadIndex(Path index, Path mapping, FileSystem fs) {}
+
+    @Override
+    public String getCollectionPath() {
+      return null;
+    }
+  }
+
+  @Test
+  public void testUnique() {
+    assertArrayEquals(new int[] { 1, 3, 7 },
+        DocumentForwardIndexUtils.unique(new int[] { 7, 1, 3, 7, 1 }));
+    assertArrayEquals(new int[0], DocumentForwardIndexUtils.unique(new int[0]));
+  }
+
+  @Test
+  public void testInvalidDocnos() {
+    // Like indexes backed by arrays, this one fails on docnos that it doesn't hold.
+    FakeIndex index = new FakeIndex() {
+      @Override
+      public TextDocument getDocument(int docno) {
+        if (docno < getFirstDocno() || docno > getLastDocno()) {
+          throw new ArrayIndexOutOfBoundsException(docno);
+        }
+        return super.getDocument(docno);
+      }
+    };
+
+    int[] docnos = { 5, 0, -3, 100, 101, 1 };
+    List<TextDocument> docs = DocumentForwardIndexUtils.getDocuments(index, docnos);
+    assertEquals(docnos.length, docs.size());
+    assertEquals("5", docs.get(0).getDocid());
+    assertNull(docs.get(1));
+    assertNull(docs.get(2));
+    assertEquals("100", docs.get(3).getDocid());
+    assertNull(docs.get(4));
+    assertEquals("1", docs.get(5).getDocid());
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    int[] docnos = { 50, 3, 99, 3, 101, 17, 42, 88, 1 };
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    List<TextDocument> docs =
+        DocumentForwardIndexUtils.getDocuments(new FakeIndex(), docnos, executor, 3);
+    assertEquals(docnos.length, docs.size());
+    for (int i = 0; i < docnos.length; i++) {
+      if (docnos[i] == 101) {
+        assertNull(docs.get(i));
+      } else {
+        assertEquals(Integer.toString(docnos[i]), docs.get(i).getDocid());
+      }
+    }
+
+    docs = DocumentForwardIndexUtils.getDocumentsAsync(new FakeIndex(), docnos, executor).get();
+    assertEquals(docnos.length, docs.size());
+    assertEquals("50", docs.get(0).getDocid());
+
+    executor.shutdown();
+  }
+
+  // Collection of two files, holding docnos 1 through 50 and 51 through 100, in blocks of ten
+  // records; docno 37 is missing. The block index is read back from the files.
+  private static class BlockCollection implements SequenceFileCollection<Text> {
+    private final Configuration conf = new Configuration();
+    private final File dir = Files.createTempDir();
+    private int[] docnos;
+    private int[] offsets;
+    private short[] fileno;
+    private final SequenceFileReaderPool readers = new SequenceFileReaderPool(conf, 1);
+
+    public BlockCollection() throws Exception {
+      for (short n = 0; n < 2; n++) {
+        SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+            SequenceFile.Writer.file(getFile(n)),
+            SequenceFile.Writer.keyClass(IntWritable.class),
+            SequenceFile.Writer.valueClass(Text.class),
+            SequenceFile.Writer.compression(SequenceFile.CompressionType.BLOCK));
+        for (int i = 50 * n + 1; i <= 50 * (n + 1); i++) {
+          if (i != 37) {
+            writer.append(new IntWritable(i), new Text("doc" + i));
+          }
+          if (i % 10 == 0) {
+            writer.sync();
+          }
+        }
+        writer.close();
+      }
+
+      List<int[]> blocks = Lists.newArrayList();
+      for (short n = 0; n < 2; n++) {
+        SequenceFile.Reader reader =
+            new SequenceFile.Reader(conf, SequenceFile.Reader.file(getFile(n)));
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        long pos = reader.getPosition();
+        boolean first = true;
+        // Values have to be read too, or the position isn't at the end of the block.
+        while (reader.next(key, value)) {
+          if (first || reader.syncSeen()) {
+            blocks.add(new int[] { key.get(), (int) pos, n });
+          }
+          first = false;
+          pos = reader.getPosition();
+        }
+        reader.close();
+      }
+      docnos = new int[blocks.size()];
+      offsets = new int[blocks.size()];
+      fileno = new short[blocks.size()];
+      for (int i = 0; i < blocks.size(); i++) {
+        docnos[i] = blocks.get(i)[0];
+        offsets[i] = blocks.get(i)[1];
+        fileno[i] = (short) blocks.get(i)[2];
+      }
+    }
+
+    public Configuration getConf() {
+      return conf;
+    }
+
+    @Override
+    public Path getFile(short n) {
+      return new Path(new File(dir, "part-0000" + n).toURI());
+    }
+
+    @Override
+    public Text createValue() {
+      return new Text();
+    }
+
+    public List<Text> getDocuments(int[] requested, SequenceFileBlockCache cache,
+        ForwardIndexMetrics metrics) {
+      return DocumentForwardIndexUtils.getDocuments(this, docnos, offsets, fileno, 100, requested,
+          cache, readers, metrics);
+    }
+  }
+
+  @Test
+  public void testSequenceFileBlocks() throws Exception {
+    BlockCollection collection = new BlockCollection();
+    assertEquals(10, collection.docnos.length);
+    assertEquals(41, DocumentForwardIndexUtils.getEndDocno(collection.docnos, collection.fileno, 3));
+    assertEquals(Integer.MAX_VALUE,
+        DocumentForwardIndexUtils.getEndDocno(collection.docnos, collection.fileno, 4));
+    assertEquals(1, DocumentForwardIndexUtils.findBlock(collection.docnos, 15));
+    assertEquals(5, DocumentForwardIndexUtils.findBlock(collection.docnos, 51));
+
+    int[] requested = { 42, 15, 3, 0, 99, 12, 37, 15, 101, 11, 55, -1, 50, 51 };
+    String[] expected = { "doc42", "doc15", "doc3", null, "doc99", "doc12", null, "doc15", null,
+        "doc11", "doc55", null, "doc50", "doc51" };
+
+    SequenceFileBlockCache cache =
+        new SequenceFileBlockCache(collection.getConf(), 1024 * 1024, 1);
+    SequenceFileBlockCache[] caches = { null, null, cache, cache };
+    for (int pass = 0; pass < caches.length; pass++) {
+      SequenceFileBlockCache c = caches[pass];
+      ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+      List<Text> docs = collection.getDocuments(requested, c, metrics);
+      assertEquals(requested.length, docs.size());
+      for (int i = 0; i < requested.length; i++) {
+        assertEquals(expected[i], docs.get(i) == null ? null : docs.get(i).toString());
+      }
+      assertSame(docs.get(1), docs.get(7));
+
+      // Distinct docnos: nine in the collection, and four that aren't.
+      assertEquals(9, metrics.getCount(Counter.DOCUMENTS));
+      assertEquals(4, metrics.getCount(Counter.MISSES));
+      // One scan for each block with requested docnos: 1-10, 11-20, 31-40, 41-50, 51-60, 91-100.
+      // Through the cache, each block is read once, even for docnos that aren't in it, and then
+      // not at all.
+      assertEquals(pass == 3 ? 0 : 6, metrics.getHistogram(Phase.SEEK).getCount());
+      if (c != null) {
+        assertEquals(pass == 2 ? 6 : 0, metrics.getCount(Counter.CACHE_MISSES));
+        assertEquals(pass == 2 ? 4 : 10, metrics.getCount(Counter.CACHE_HITS));
+      }
+    }
+    assertEquals(0, cache.getEvictions());
+    assertEquals(6, cache.getMisses());
+    cache.close();
+  }
+
+  @Test
+  public void testReaderReuse() throws Exception {
+    BlockCollection collection = new BlockCollection();
+    int[] requested = { 3, 42, 55, 99 };
+
+    // Without a cache, batches return their readers to the pool for the next batch.
+    collection.getDocuments(requested, null, new ForwardIndexMetrics());
+    assertEquals(2, collection.readers.getIdleCount());
+
+    Path file = collection.getFile((short) 0);
+    SequenceFile.Reader reader = collection.readers.borrow(file);
+    collection.readers.release(file, reader);
+    List<Text> docs = collection.getDocuments(requested, null, new ForwardIndexMetrics());
+    assertEquals("doc3", docs.get(0).toString());
+    assertEquals("doc99", docs.get(3).toString());
+    assertSame(reader, collection.readers.borrow(file));
+    collection.readers.close();
+  }
+
+  @Test
+  public void testUnreadableFile() throws Exception {
+    BlockCollection collection = new BlockCollection();
+    new File(collection.getFile((short) 0).toUri()).delete();
+
+    int[] requested = { 42, 3, 99, 15, 55 };
+    String[] expected = { null, null, "doc99", null, "doc55" };
+
+    SequenceFileBlockCache cache =
+        new SequenceFileBlockCache(collection.getConf(), 1024 * 1024, 1);
+    for (SequenceFileBlockCache c : new SequenceFileBlockCache[] { null, cache }) {
+      ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+      List<Text> docs = collection.getDocuments(requested, c, metrics);
+      for (int i = 0; i < requested.length; i++) {
+        assertEquals(expected[i], docs.get(i) == null ? null : docs.get(i).toString());
+      }
+
+      // The first failure gives up on the file, but not on the files after it.
+      assertEquals(1, metrics.getCount(Counter.ERRORS));
+      assertEquals(2, metrics.getCount(Counter.DOCUMENTS));
+    }
+    cache.close();
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(DocumentForwardIndexUtilsTest.class);
+  }
+}
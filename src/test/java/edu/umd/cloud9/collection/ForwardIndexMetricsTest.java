@@ -0,0 +1,117 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+
+public class ForwardIndexMetricsTest {
+
+  @Test
+  public void testCounters() {
+    ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+    for (Counter counter : Counter.values()) {
+      assertEquals(0, metrics.getCount(counter));
+    }
+
+    metrics.increment(Counter.REQUESTS, 1);
+    metrics.increment(Counter.REQUESTS, 1);
+    metrics.increment(Counter.BYTES_READ, 4096);
+    metrics.increment(Counter.BYTES_READ, 100);
+    assertEquals(2, metrics.getCount(Counter.REQUESTS));
+    assertEquals(4196, metrics.getCount(Counter.BYTES_READ));
+    assertEquals(0, metrics.getCount(Counter.ERRORS));
+
+    metrics.reset();
+    assertEquals(0, metrics.getCount(Counter.REQUESTS));
+    assertEquals(0, metrics.getCount(Counter.BYTES_READ));
+  }
+
+  @Test
+  public void testRecordSince() throws Exception {
+    ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+    long start = metrics.now();
+    Thread.sleep(2);
+    long mid = metrics.recordSince(Phase.SEEK, start);
+    long end = metrics.recordSince(Phase.PARSE, mid);
+
+    // Each call records the time since the previous one, and returns the time it stopped at.
+    assertTrue(mid - start >= 2000000);
+    assertTrue(end >= mid);
+    assertEquals(1, metrics.getHistogram(Phase.SEEK).getCount());
+    assertEquals(mid - start, metrics.getHistogram(Phase.SEEK).getMax());
+    assertEquals(1, metrics.getHistogram(Phase.PARSE).getCount());
+    assertEquals(end - mid, metrics.getHistogram(Phase.PARSE).getMax());
+    assertEquals(0, metrics.getHistogram(Phase.FETCH).getCount());
+  }
+
+  @Test
+  public void testDisabled() {
+    ForwardIndexMetrics metrics = ForwardIndexMetrics.disabled();
+    assertFalse(metrics.isEnabled());
+    assertEquals(0, metrics.now());
+    assertEquals(0, metrics.recordSince(Phase.FETCH, System.nanoTime()));
+    metrics.increment(Counter.REQUESTS, 1);
+    assertEquals(0, metrics.getCount(Counter.REQUESTS));
+    assertEquals(0, metrics.getHistogram(Phase.FETCH).getCount());
+  }
+
+  // Renders the metrics, and parses them back into name-value pairs.
+  private static Map<String, String> render(ForwardIndexMetrics metrics) {
+    StringWriter sw = new StringWriter();
+    PrintWriter out = new PrintWriter(sw);
+    metrics.write(out);
+    out.flush();
+
+    Map<String, String> values = Maps.newLinkedHashMap();
+    for (String line : sw.toString().split("\n")) {
+      String[] parts = line.trim().split(" ");
+      assertEquals(line, 2, parts.length);
+      values.put(parts[0], parts[1]);
+    }
+    return values;
+  }
+
+  @Test
+  public void testWrite() {
+    ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+    Map<String, String> values = render(metrics);
+    assertEquals(Counter.values().length + 1 + 7 * Phase.values().length, values.size());
+    assertEquals("0", values.get("requests"));
+    assertEquals("0.0000", values.get("cache_hit_rate"));
+    assertEquals("0", values.get("fetch_latency_us_count"));
+    assertEquals("0.0", values.get("fetch_latency_us_mean"));
+
+    metrics.increment(Counter.DOCUMENTS, 5);
+    metrics.increment(Counter.CACHE_HITS, 3);
+    metrics.increment(Counter.CACHE_MISSES, 1);
+    metrics.record(Phase.FETCH, 2000000);
+    metrics.record(Phase.FETCH, 4000000);
+
+    values = render(metrics);
+    assertEquals("5", values.get("documents"));
+    assertEquals("3", values.get("cache_hits"));
+    assertEquals("1", values.get("cache_misses"));
+    assertEquals("0.7500", values.get("cache_hit_rate"));
+    assertEquals("2", values.get("fetch_latency_us_count"));
+    assertEquals("3000.0", values.get("fetch_latency_us_mean"));
+    assertEquals("4000", values.get("fetch_latency_us_max"));
+    assertEquals("4000", values.get("fetch_latency_us_p999"));
+    assertEquals("0", values.get("seek_latency_us_count"));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(ForwardIndexMetricsTest.class);
+  }
+}
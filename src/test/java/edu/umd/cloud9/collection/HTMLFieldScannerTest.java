@@ -0,0 +1,98 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import junit.framework.JUnit4TestAdapter;
+
+import org.htmlparser.NodeFilter;
+import org.htmlparser.Parser;
+import org.htmlparser.filters.OrFilter;
+import org.htmlparser.filters.TagNameFilter;
+import org.htmlparser.util.NodeList;
+import org.junit.Test;
+
+public class HTMLFieldScannerTest {
+  private static final String HTML = "<!DOCTYPE html>\n<html><head>\n"
+      + "<TITLE>The title</TITLE>\n"
+      + "<meta name=\"keywords\" content=\"a, b > c\">\n"
+      + "<script type=\"text/javascript\">var s = '<h1>not a heading</h1>';</script>\n"
+      + "<style>h1 { color: red; }</style>\n"
+      + "</head><body>\n"
+      + "<!-- <h2>commented out</h2> -->\n"
+      + "<h1 class='main'>First <a href=\"/x\">link</a> heading</h1>\n"
+      + "<p>Some text with <a href=\"http://example.com/?a=1&b=2\">another link</a>.</p>\n"
+      + "<H2>Second heading</H2>\n"
+      + "<h10>not a heading</h10>\n"
+      + "</body></html>\n";
+
+  private static String scan(String html, String target) {
+    StringBuilder sb = new StringBuilder();
+    new HTMLFieldScanner(HTMLFieldScanner.parseTarget(target)).scan(html, sb);
+    return sb.toString();
+  }
+
+  private static String parse(String html, String target) throws Exception {
+    String[] tags = HTMLFieldScanner.parseTarget(target);
+    NodeFilter[] filters = new NodeFilter[tags.length];
+    for (int i = 0; i < tags.length; i++) {
+      filters[i] = new TagNameFilter(tags[i]);
+    }
+    Parser parser = new Parser();
+    parser.setInputHTML(html);
+    NodeList nl = parser.parse(new OrFilter(filters));
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < nl.size(); i++) {
+      sb.append(nl.elementAt(i).toHtml()).append("\n");
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testParseTarget() {
+    assertArrayEquals(new String[] { "title" }, HTMLFieldScanner.parseTarget("TITLE"));
+    assertArrayEquals(new String[] { "h1", "h2", "h3", "h4", "h5", "h6", "a" },
+        HTMLFieldScanner.parseTarget("heading, a"));
+  }
+
+  @Test
+  public void testFields() {
+    assertEquals("<TITLE>The title</TITLE>\n", scan(HTML, "title"));
+    assertEquals("<meta name=\"keywords\" content=\"a, b > c\">\n", scan(HTML, "meta"));
+    assertEquals("<h1 class='main'>First <a href=\"/x\">link</a> heading</h1>\n"
+        + "<H2>Second heading</H2>\n", scan(HTML, "heading"));
+    assertEquals("<h1 class='main'>First <a href=\"/x\">link</a> heading</h1>\n"
+        + "<a href=\"/x\">link</a>\n"
+        + "<a href=\"http://example.com/?a=1&b=2\">another link</a>\n", scan(HTML, "h1,a"));
+  }
+
+  @Test
+  public void testSameAsDOM() throws Exception {
+    for (String target : new String[] { "title", "meta", "heading", "a", "title,h1,a" }) {
+      assertEquals(target, parse(HTML, target), scan(HTML, target));
+    }
+  }
+
+  @Test
+  public void testMalformed() {
+    // Unclosed elements end at the next tag.
+    assertEquals("<h1>One\n<h1>Two\n", scan("<h1>One<h1>Two", "h1"));
+    assertEquals("<title>Title\n", scan("<title>Title<body>Text</body>", "title"));
+    // Unterminated tags, comments, and scripts end the document.
+    assertEquals("", scan("<title", "title"));
+    assertEquals("", scan("<!-- <title>Title</title>", "title"));
+    assertEquals("", scan("<script><title>Title</title>", "title"));
+    assertEquals("<a>x</a>\n", scan("a < b <a>x</a> <", "a"));
+
+    // Deeply nested documents are no problem.
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      sb.append("<div>");
+    }
+    sb.append("<h3>Deep</h3>");
+    assertEquals("<h3>Deep</h3>\n", scan(sb.toString(), "heading"));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(HTMLFieldScannerTest.class);
+  }
+}
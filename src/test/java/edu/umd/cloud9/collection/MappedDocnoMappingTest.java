@@ -0,0 +1,77 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+import edu.umd.cloud9.collection.trec.TrecDocnoMapping;
+
+public class MappedDocnoMappingTest {
+  private static final String[] DOCIDS =
+      { "", "FBIS3-1", "FBIS3-10", "FT911-1", "LA010189-0001", "LA010189-0002", "été-1" };
+
+  @Test
+  public void testMapping() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+
+    File legacy = File.createTempFile("legacy", ".mapping");
+    legacy.deleteOnExit();
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(legacy));
+    out.writeInt(DOCIDS.length - 1);
+    for (int i = 1; i < DOCIDS.length; i++) {
+      out.writeUTF(DOCIDS[i]);
+    }
+    out.close();
+
+    TrecDocnoMapping source = new TrecDocnoMapping();
+    source.loadMapping(new Path(legacy.getAbsolutePath()), fs);
+
+    File mapped = File.createTempFile("mapped", ".mapping");
+    mapped.deleteOnExit();
+    MappedDocnoMapping.writeMappingData(source, DOCIDS.length - 1,
+        new Path(mapped.getAbsolutePath()), fs);
+
+    MappedDocnoMapping mapping = new MappedDocnoMapping();
+    mapping.loadMapping(new Path(mapped.getAbsolutePath()), fs);
+
+    assertEquals(DOCIDS.length - 1, mapping.size());
+    for (int i = 1; i < DOCIDS.length; i++) {
+      assertEquals(i, mapping.getDocno(DOCIDS[i]));
+      assertEquals(DOCIDS[i], mapping.getDocid(i));
+    }
+    assertEquals(-1, mapping.getDocno("FBIS3-2"));
+  }
+
+  @Test
+  public void testTooManyDocs() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    File mapped = new File(Files.createTempDir(), "mapped.mapping");
+
+    // Rejected up front, before the mapping is read or anything is allocated or written.
+    try {
+      MappedDocnoMapping.writeMappingData(new TrecDocnoMapping(), 800000000,
+          new Path(mapped.getAbsolutePath()), fs);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().startsWith("Too many docids"));
+    }
+    assertFalse(mapped.exists());
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(MappedDocnoMappingTest.class);
+  }
+}
@@ -0,0 +1,124 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class RepackSequenceFileOutputFormatTest {
+
+  private static Path write(Configuration conf, int numRecords) throws Exception {
+    File dir = Files.createTempDir();
+    conf.set(FileOutputFormat.OUTDIR, new File(dir, "out").toURI().toString());
+    conf.setClass("mapreduce.job.output.key.class", IntWritable.class, Object.class);
+    conf.setClass("mapreduce.job.output.value.class", Text.class, Object.class);
+    TaskAttemptContext context =
+        new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.MAP, 0, 0));
+
+    RecordWriter<IntWritable, Text> writer =
+        new RepackSequenceFileOutputFormat<IntWritable, Text>().getRecordWriter(context);
+    for (int i = 0; i < numRecords; i++) {
+      writer.write(new IntWritable(i), new Text("record " + i));
+    }
+    writer.close(context);
+
+    return findFile(FileSystem.getLocal(conf), new Path(dir.toURI()));
+  }
+
+  private static Path findFile(FileSystem fs, Path path) throws Exception {
+    for (FileStatus status : fs.listStatus(path)) {
+      if (status.isDirectory()) {
+        Path file = findFile(fs, status.getPath());
+        if (file != null) {
+          return file;
+        }
+      } else if (status.getPath().getName().startsWith("part-")) {
+        return status.getPath();
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testRecordsPerBlock() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(RepackOptions.COMPRESSION_TYPE_PROPERTY, "block");
+    conf.set(RepackOptions.CODEC_PROPERTY, "deflate");
+    conf.setInt(RepackOptions.RECORDS_PER_BLOCK_PROPERTY, 10);
+    Path file = write(conf, 95);
+
+    SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+    assertTrue(reader.isBlockCompressed());
+    assertEquals(DefaultCodec.class, reader.getCompressionCodec().getClass());
+
+    SequenceFile.Metadata metadata = reader.getMetadata();
+    assertEquals("BLOCK", metadata.get(RepackOptions.COMPRESSION_TYPE_METADATA).toString());
+    assertEquals(DefaultCodec.class.getName(),
+        metadata.get(RepackOptions.CODEC_METADATA).toString());
+    assertEquals(Integer.toString(RepackOptions.DEFAULT_BLOCK_SIZE),
+        metadata.get(RepackOptions.BLOCK_SIZE_METADATA).toString());
+    assertEquals("10", metadata.get(RepackOptions.RECORDS_PER_BLOCK_METADATA).toString());
+
+    IntWritable key = new IntWritable();
+    Text value = new Text();
+    int records = 0;
+    int blocks = 0;
+    while (reader.next(key, value)) {
+      assertEquals(records, key.get());
+      assertEquals("record " + records, value.toString());
+      if (reader.syncSeen()) {
+        blocks++;
+      }
+      records++;
+    }
+    reader.close();
+    assertEquals(95, records);
+    assertEquals(10, blocks);
+  }
+
+  @Test
+  public void testNoCompression() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(RepackOptions.COMPRESSION_TYPE_PROPERTY, "block");
+    conf.set(RepackOptions.CODEC_PROPERTY, "none");
+    Path file = write(conf, 10);
+
+    SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+    assertNull(reader.getCompressionCodec());
+    assertEquals("NONE", reader.getMetadata().get(RepackOptions.COMPRESSION_TYPE_METADATA)
+        .toString());
+    assertEquals("none", reader.getMetadata().get(RepackOptions.CODEC_METADATA).toString());
+    reader.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownCodec() {
+    Configuration conf = new Configuration();
+    conf.set(RepackOptions.CODEC_PROPERTY, "lzma");
+    RepackOptions.configure(conf);
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(RepackSequenceFileOutputFormatTest.class);
+  }
+}
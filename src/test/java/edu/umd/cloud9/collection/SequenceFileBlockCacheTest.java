@@ -0,0 +1,127 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+
+public class SequenceFileBlockCacheTest {
+
+  @Test
+  public void testCache() throws Exception {
+    Configuration conf = new Configuration();
+    Path file = createFile(conf);
+
+    SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+    long offset = reader.getPosition();
+    reader.close();
+
+    SequenceFileBlockCache cache = new SequenceFileBlockCache(conf, 1024 * 1024, 2);
+    Text value = new Text();
+
+    assertTrue(cache.get(file, offset, Integer.MAX_VALUE, 42, value));
+    assertEquals("doc42", value.toString());
+    assertEquals(0, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    assertTrue(cache.get(file, offset, Integer.MAX_VALUE, 43, value));
+    assertEquals("doc43", value.toString());
+    assertTrue(cache.get(file, offset, Integer.MAX_VALUE, 100, value));
+    assertEquals("doc100", value.toString());
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getBlockCount());
+
+    assertEquals(0, cache.getEvictions());
+    cache.close();
+
+    // Records at or beyond the end docno aren't part of the block.
+    cache = new SequenceFileBlockCache(conf, 1024 * 1024, 2);
+    assertFalse(cache.get(file, offset, 50, 60, value));
+    assertTrue(cache.get(file, offset, 50, 49, value));
+    assertEquals("doc49", value.toString());
+    cache.close();
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    Configuration conf = new Configuration();
+    Path file = createFile(conf);
+
+    SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+    long offset = reader.getPosition();
+    reader.close();
+
+    SequenceFileBlockCache cache = new SequenceFileBlockCache(conf, 1024 * 1024, 2);
+    ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+    Text value = new Text();
+
+    // The block is read once, on the first lookup, whether or not the docno is in it.
+    assertFalse(cache.get(file, offset, 50, 60, value, metrics));
+    assertTrue(cache.get(file, offset, 50, 42, value, metrics));
+    assertEquals("doc42", value.toString());
+    assertEquals(1, metrics.getCount(Counter.CACHE_MISSES));
+    assertEquals(1, metrics.getCount(Counter.CACHE_HITS));
+    assertEquals(1, metrics.getHistogram(Phase.SEEK).getCount());
+    assertEquals(1, metrics.getHistogram(Phase.DECOMPRESS).getCount());
+    assertEquals(1, metrics.getHistogram(Phase.PARSE).getCount());
+    assertTrue(metrics.getCount(Counter.BYTES_READ) > 0);
+    cache.close();
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    Configuration conf = new Configuration();
+    Path file = createFile(conf);
+    Path other = createFile(conf);
+
+    SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+    long offset = reader.getPosition();
+    reader.close();
+
+    // Room for only one block at a time.
+    SequenceFileBlockCache cache = new SequenceFileBlockCache(conf, 1200, 1);
+    Text value = new Text();
+
+    assertTrue(cache.get(file, offset, Integer.MAX_VALUE, 1, value));
+    assertTrue(cache.get(other, offset, Integer.MAX_VALUE, 2, value));
+    assertEquals("doc2", value.toString());
+    assertEquals(1, cache.getEvictions());
+    assertEquals(1, cache.getBlockCount());
+
+    cache.close();
+  }
+
+  private static Path createFile(Configuration conf) throws Exception {
+    File tmp = File.createTempFile("blocks", ".seq");
+    tmp.deleteOnExit();
+    Path file = new Path(tmp.getAbsolutePath());
+
+    SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(file),
+        SequenceFile.Writer.keyClass(IntWritable.class),
+        SequenceFile.Writer.valueClass(Text.class),
+        SequenceFile.Writer.compression(SequenceFile.CompressionType.BLOCK));
+    for (int i = 1; i <= 100; i++) {
+      writer.append(new IntWritable(i), new Text("doc" + i));
+    }
+    writer.close();
+
+    return file;
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(SequenceFileBlockCacheTest.class);
+  }
+}
@@ -0,0 +1,146 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TagScannerTest {
+  private static final byte[] START = "<DOC>".getBytes();
+  private static final byte[] END = "</DOC>".getBytes();
+
+  // Records (start offset and content) found by the original byte-at-a-time matcher in the
+  // record reader, for input in [start, end).
+  private static List<String> naive(byte[] data, long start, long end) {
+    List<String> records = Lists.newArrayList();
+    int[] pos = { (int) start };
+    while (pos[0] < end) {
+      if (!naiveMatch(data, pos, START, false, end, null)) {
+        break;
+      }
+      int recordStart = pos[0] - START.length;
+      StringBuilder sb = new StringBuilder(new String(START));
+      if (!naiveMatch(data, pos, END, true, end, sb)) {
+        break;
+      }
+      records.add(recordStart + ":" + sb);
+    }
+    return records;
+  }
+
+  private static boolean naiveMatch(byte[] data, int[] pos, byte[] match, boolean withinBlock,
+      long end, StringBuilder sb) {
+    int i = 0;
+    while (true) {
+      int b = pos[0] < data.length ? data[pos[0]] : -1;
+      pos[0]++;
+      if (b == -1) {
+        return false;
+      }
+      if (withinBlock) {
+        sb.append((char) b);
+      }
+      if (b == match[i]) {
+        i++;
+        if (i >= match.length) {
+          return true;
+        }
+      } else {
+        i = 0;
+      }
+      if (!withinBlock && i == 0 && pos[0] >= end) {
+        return false;
+      }
+    }
+  }
+
+  private static List<String> scan(byte[] data, long start, long end, int bufferSize)
+      throws IOException {
+    ByteArrayInputStream in = new ByteArrayInputStream(data);
+    in.skip(start);
+    TagScanner scanner = new TagScanner(in, start, bufferSize);
+    int[] startFailure = TagScanner.failureFunction(START);
+    int[] endFailure = TagScanner.failureFunction(END);
+
+    List<String> records = Lists.newArrayList();
+    DataOutputBuffer buffer = new DataOutputBuffer();
+    while (scanner.getPos() < end) {
+      if (!scanner.readUntilMatch(START, startFailure, end)) {
+        break;
+      }
+      long recordStart = scanner.getPos() - START.length;
+      buffer.reset();
+      buffer.write(START);
+      if (!scanner.readUntilMatch(END, endFailure, buffer)) {
+        break;
+      }
+      records.add(recordStart + ":" + new String(buffer.getData(), 0, buffer.getLength()));
+    }
+    return records;
+  }
+
+  @Test
+  public void testMatchesNaiveScanner() throws IOException {
+    Random r = new Random(17);
+    String[] pieces = { "<DOC>", "</DOC>", "<", "</", "D", "O", "C", ">", "x", "yz", "\n" };
+
+    for (int trial = 0; trial < 200; trial++) {
+      StringBuilder sb = new StringBuilder();
+      int n = r.nextInt(300);
+      for (int i = 0; i < n; i++) {
+        sb.append(pieces[r.nextInt(pieces.length)]);
+      }
+      // Drop partial tags followed by '<' (e.g., "<<DOC>"), where the naive matcher misses tags.
+      String s = sb.toString();
+      String t;
+      while (!(t = s.replaceAll("</?(D(OC?)?)?(?=<)", "")).equals(s)) {
+        s = t;
+      }
+      byte[] data = s.getBytes();
+
+      int split = data.length == 0 ? 0 : r.nextInt(data.length);
+      for (int bufferSize : new int[] { 1, 3, 7, 4096 }) {
+        assertEquals(naive(data, 0, data.length), scan(data, 0, data.length, bufferSize));
+        assertEquals(naive(data, 0, split), scan(data, 0, split, bufferSize));
+        if (split < data.length) {
+          assertEquals(naive(data, split, data.length), scan(data, split, data.length, bufferSize));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testOverlappingPrefix() throws IOException {
+    byte[] data = "<<DOC>a<</DOC>x</DOC>".getBytes();
+    assertEquals(Lists.newArrayList("1:<DOC>a<</DOC>"), scan(data, 0, data.length, 4));
+  }
+
+  @Test
+  public void testLimit() throws IOException {
+    byte[] data = "xx<DOC>a</DOC>".getBytes();
+    int[] failure = TagScanner.failureFunction(START);
+
+    TagScanner scanner = new TagScanner(new ByteArrayInputStream(data), 0, 4);
+    assertFalse(scanner.readUntilMatch(START, failure, 2));
+    assertEquals(2, scanner.getPos());
+
+    // A tag that starts before the limit is found even if it ends past it.
+    scanner = new TagScanner(new ByteArrayInputStream(data), 0, 4);
+    assertTrue(scanner.readUntilMatch(START, failure, 3));
+    assertEquals(7, scanner.getPos());
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(TagScannerTest.class);
+  }
+}
@@ -0,0 +1,46 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class XMLFieldLocatorTest {
+
+  @Test
+  public void testLocate() {
+    XMLFieldLocator locator = new XMLFieldLocator("A", "B", "C");
+    byte[] bytes = "xx<A>café <B>b</B></A><A>second</A><C>unclosed".getBytes(Charsets.UTF_8);
+    locator.locate(bytes, 2, bytes.length - 2);
+
+    assertTrue(locator.isFound(0));
+    assertEquals("café <B>b</B>", locator.get(0));
+    assertEquals(5, locator.getStart(0));
+    assertEquals("b", locator.get(1));
+    assertFalse(locator.isFound(2));
+    assertNull(locator.get(2));
+    assertEquals(-1, locator.getEnd(2));
+
+    // Reuse, with the document starting in the middle of a buffer.
+    bytes = "<C>c</C><A>a</A>".getBytes(Charsets.UTF_8);
+    locator.locate(bytes, 8, 8);
+    assertEquals("a", locator.get(0));
+    assertFalse(locator.isFound(1));
+    assertFalse(locator.isFound(2));
+
+    // A truncated end tag doesn't count.
+    bytes = "<A>a</A".getBytes(Charsets.UTF_8);
+    locator.locate(bytes, 0, bytes.length);
+    assertEquals(3, locator.getStart(0));
+    assertFalse(locator.isFound(0));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(XMLFieldLocatorTest.class);
+  }
+}
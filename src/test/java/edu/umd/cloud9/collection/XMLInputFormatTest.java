@@ -0,0 +1,87 @@
+package edu.umd.cloud9.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import edu.umd.cloud9.collection.XMLInputFormat.XMLRecordReader;
+import edu.umd.cloud9.io.PrefetchingInputStream;
+
+public class XMLInputFormatTest {
+
+  @Test
+  public void testSplitBzip2() throws Exception {
+    int numPages = 10000;
+    Random r = new Random(42);
+
+    File file = File.createTempFile("pages", ".xml.bz2");
+    file.deleteOnExit();
+    OutputStream out = new FileOutputStream(file);
+    out.write("BZ".getBytes());
+    // Use the smallest block size (100KB) so that the file spans many blocks.
+    CBZip2OutputStream bzip = new CBZip2OutputStream(out, 1);
+    bzip.write("<mediawiki>\n".getBytes());
+    for (int i = 0; i < numPages; i++) {
+      StringBuilder sb = new StringBuilder("  <page>\n    <id>" + i + "</id>\n");
+      int n = r.nextInt(300);
+      for (int j = 0; j < n; j++) {
+        sb.append((char) ('a' + r.nextInt(26)));
+      }
+      sb.append("\n  </page>\n");
+      bzip.write(sb.toString().getBytes());
+    }
+    bzip.write("</mediawiki>\n".getBytes());
+    bzip.close();
+
+    // Try a few different numbers of splits, including ones that are smaller than a block, with and
+    // without prefetching.
+    for (int numSplits : new int[] { 1, 3, 7, 100 }) {
+      Configuration conf = new Configuration();
+      conf.set(XMLInputFormat.START_TAG_KEY, "<page>");
+      conf.set(XMLInputFormat.END_TAG_KEY, "</page>");
+      conf.setBoolean(PrefetchingInputStream.ENABLED_KEY, numSplits % 2 == 1);
+      conf.setInt(PrefetchingInputStream.BUFFER_SIZE_KEY, 4096);
+      TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+      int[] counts = new int[numPages];
+      long length = file.length();
+      long splitSize = (length + numSplits - 1) / numSplits;
+      for (long start = 0; start < length; start += splitSize) {
+        FileSplit split = new FileSplit(new Path(file.toURI()), start,
+            Math.min(splitSize, length - start), null);
+        XMLRecordReader reader = new XMLRecordReader();
+        reader.initialize(split, context);
+        while (reader.nextKeyValue()) {
+          String page = reader.getCurrentValue().toString();
+          assertTrue(page.startsWith("<page>"));
+          assertTrue(page.endsWith("</page>"));
+          int id = Integer.parseInt(page.substring(page.indexOf("<id>") + 4, page.indexOf("</id>")));
+          counts[id]++;
+        }
+        reader.close();
+      }
+
+      for (int i = 0; i < numPages; i++) {
+        assertEquals("page " + i + " with " + numSplits + " splits", 1, counts[i]);
+      }
+    }
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(XMLInputFormatTest.class);
+  }
+}
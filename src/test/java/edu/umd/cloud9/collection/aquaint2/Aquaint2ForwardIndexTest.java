@@ -0,0 +1,152 @@
+package edu.umd.cloud9.collection.aquaint2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+
+public class Aquaint2ForwardIndexTest {
+  private static final int NUM_DOCS = 101;
+
+  private static String docid(int docno) {
+    return String.format("APW_ENG_2005%07d", docno);
+  }
+
+  // Writes a collection along with its forward index and docno mapping, and returns the directory
+  // that holds them.
+  private static File writeCollection(boolean binary) throws Exception {
+    File dir = Files.createTempDir();
+    File collection = new File(dir, "docs.xml");
+
+    StringBuilder sb = new StringBuilder();
+    long[] offsets = new long[NUM_DOCS + 1];
+    int[] lengths = new int[NUM_DOCS + 1];
+    for (int i = 1; i <= NUM_DOCS; i++) {
+      offsets[i] = sb.length();
+      sb.append("<DOC id=\"" + docid(i) + "\" type=\"story\" >\n<HEADLINE>\nHeadline " + i
+          + "\n</HEADLINE>\n<TEXT>\n<P>\n");
+      for (int j = 0; j < i; j++) {
+        sb.append("word").append(j).append(j % 10 == 9 ? '\n' : ' ');
+      }
+      sb.append("\n</P>\n</TEXT>\n</DOC>");
+      lengths[i] = (int) (sb.length() - offsets[i]);
+      sb.append('\n');
+    }
+    Files.write(sb.toString(), collection, Charsets.US_ASCII);
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(dir, "index")));
+    out.writeUTF(Aquaint2DocumentInputFormat.class.getCanonicalName());
+    out.writeUTF(new Path(collection.toURI()).toString());
+    if (binary) {
+      ForwardIndexFormat.writeDocuments(out, offsets, lengths, NUM_DOCS);
+    } else {
+      out.writeInt(NUM_DOCS);
+      for (int i = 1; i <= NUM_DOCS; i++) {
+        out.writeLong(offsets[i]);
+        out.writeInt(lengths[i]);
+      }
+    }
+    out.close();
+
+    out = new DataOutputStream(new FileOutputStream(new File(dir, "mapping")));
+    out.writeInt(NUM_DOCS);
+    for (int i = 1; i <= NUM_DOCS; i++) {
+      out.writeUTF(docid(i));
+    }
+    out.close();
+
+    return dir;
+  }
+
+  private static Aquaint2ForwardIndex loadIndex(File dir, boolean memoryMapped) throws Exception {
+    Aquaint2ForwardIndex index = new Aquaint2ForwardIndex(memoryMapped);
+    index.loadIndex(new Path(new File(dir, "index").toURI()),
+        new Path(new File(dir, "mapping").toURI()), FileSystem.getLocal(new Configuration()));
+    return index;
+  }
+
+  @Test
+  public void testMappedMode() throws Exception {
+    for (boolean binary : new boolean[] { false, true }) {
+      // An index in the binary format can't be looked up in place, so only the collection is
+      // mapped; mapping the index anyway would yield garbage offsets.
+      File dir = writeCollection(binary);
+      Aquaint2ForwardIndex heap = loadIndex(dir, false);
+      Aquaint2ForwardIndex mapped = loadIndex(dir, true);
+      assertEquals(NUM_DOCS, mapped.getLastDocno());
+      assertEquals(heap.getLastDocno(), mapped.getLastDocno());
+
+      int[] docnos = { 1, 51, NUM_DOCS };
+      List<Aquaint2Document> docs = mapped.getDocuments(docnos);
+      for (int i = 0; i < docnos.length; i++) {
+        Aquaint2Document expected = heap.getDocument(docnos[i]);
+        assertEquals(docid(docnos[i]), expected.getDocid());
+        assertEquals("Headline " + docnos[i], expected.getHeadline());
+        assertEquals(docid(docnos[i]), mapped.getDocument(docnos[i]).getDocid());
+        assertEquals(expected.getContent(), mapped.getDocument(docnos[i]).getContent());
+        assertEquals(expected.getContent(), docs.get(i).getContent());
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDocnos() throws Exception {
+    File dir = writeCollection(false);
+    int[] docnos = { 3, 0, NUM_DOCS, -1, NUM_DOCS + 1, 1 };
+
+    for (boolean memoryMapped : new boolean[] { false, true }) {
+      List<Aquaint2Document> docs = loadIndex(dir, memoryMapped).getDocuments(docnos);
+      assertEquals(docnos.length, docs.size());
+      for (int i = 0; i < docnos.length; i++) {
+        if (docnos[i] < 1 || docnos[i] > NUM_DOCS) {
+          assertNull(docs.get(i));
+        } else {
+          assertEquals(docid(docnos[i]), docs.get(i).getDocid());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDocno() throws Exception {
+    File dir = writeCollection(false);
+    int[] invalid = { 0, -1, NUM_DOCS + 1, NUM_DOCS + 2, Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+    for (boolean memoryMapped : new boolean[] { false, true }) {
+      Aquaint2ForwardIndex index = loadIndex(dir, memoryMapped);
+      ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+      index.setMetrics(metrics);
+
+      // In memory-mapped mode, these would otherwise be looked up outside of the offset table.
+      for (int docno : invalid) {
+        assertNull(index.getDocument(docno));
+      }
+      assertEquals(invalid.length, metrics.getCount(Counter.ERRORS));
+      assertEquals(0, metrics.getCount(Counter.DOCUMENTS));
+
+      assertEquals(docid(1), index.getDocument(1).getDocid());
+      assertEquals(docid(NUM_DOCS), index.getDocument(NUM_DOCS).getDocid());
+      assertEquals(invalid.length, metrics.getCount(Counter.ERRORS));
+    }
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(Aquaint2ForwardIndexTest.class);
+  }
+}
@@ -3,11 +3,16 @@ package edu.umd.cloud9.collection.clue;
 import static org.junit.Assert.assertEquals;
 import junit.framework.JUnit4TestAdapter;
 
+import java.io.File;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
 public class ClueWarcDocnoMappingTest {
 
   @Test
@@ -44,6 +49,46 @@ public class ClueWarcDocnoMappingTest {
     assertEquals("clueweb09-en0133-99-55739", mapping.getDocid(503903810));
   }
 
+  @Test
+  public void testBulkDocnoToDocid() throws Exception {
+    ClueWarcDocnoMapping mapping = new ClueWarcDocnoMapping();
+
+    mapping.loadMapping(new Path("src/test/resources/Clue-English-docno.mapping"),
+        FileSystem.get(new Configuration()));
+
+    String[] docids = mapping.getDocids(new int[] { 503903810, 1, 28378419, 28378418 });
+    assertEquals(4, docids.length);
+    assertEquals("clueweb09-en0133-99-55739", docids[0]);
+    assertEquals("clueweb09-en0000-00-00000", docids[1]);
+    assertEquals("clueweb09-en0007-92-00000", docids[2]);
+    assertEquals("clueweb09-en0007-91-43238", docids[3]);
+
+    for (int docno : new int[] { 2, 35000, 28378417, 44262894, 50220425, 140950355 }) {
+      assertEquals(docno, mapping.getDocno(mapping.getDocid(docno)));
+    }
+  }
+
+  @Test
+  public void testSeparateInstances() throws Exception {
+    File dir = Files.createTempDir();
+    File first = new File(dir, "first.mapping");
+    Files.write("en0000,0,100,1\nen0000,1,100,101\n", first, Charsets.US_ASCII);
+    File second = new File(dir, "second.mapping");
+    Files.write("en0000,0,50,1\nen0001,0,50,51\n", second, Charsets.US_ASCII);
+
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    ClueWarcDocnoMapping mapping1 = new ClueWarcDocnoMapping();
+    mapping1.loadMapping(new Path(first.getAbsolutePath()), fs);
+    ClueWarcDocnoMapping mapping2 = new ClueWarcDocnoMapping();
+    mapping2.loadMapping(new Path(second.getAbsolutePath()), fs);
+
+    // Loading the second mapping leaves the first one alone.
+    assertEquals(101, mapping1.getDocno("clueweb09-en0000-01-00000"));
+    assertEquals("clueweb09-en0000-00-00060", mapping1.getDocid(61));
+    assertEquals(51, mapping2.getDocno("clueweb09-en0001-00-00000"));
+    assertEquals("clueweb09-en0001-00-00010", mapping2.getDocid(61));
+  }
+
   public static junit.framework.Test suite() {
     return new JUnit4TestAdapter(ClueWarcDocnoMappingTest.class);
   }
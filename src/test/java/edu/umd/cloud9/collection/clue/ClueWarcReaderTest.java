@@ -0,0 +1,111 @@
+package edu.umd.cloud9.collection.clue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ClueWarcReaderTest {
+
+  private static byte[] createWarc(Random r, int numRecords) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write("WARC/0.18\nWARC-Type: warcinfo\nContent-Type: application/warc-fields\n".getBytes());
+    out.write("WARC-Number-of-Documents: 3\nContent-Length: 10\n\nsoftware: \n".getBytes());
+
+    for (int i = 0; i < numRecords; i++) {
+      StringBuilder content = new StringBuilder("HTTP/1.1 200 OK\nContent-Type: text/html\n");
+      content.append("Content-Length: 100\n\n<html>café ");
+      int n = r.nextInt(5000);
+      for (int j = 0; j < n; j++) {
+        content.append(r.nextInt(10) == 0 ? '\n' : (char) ('a' + r.nextInt(26)));
+      }
+      content.append("</html>\n");
+      byte[] bytes = content.toString().getBytes("UTF-8");
+
+      String header = "WARC/0.18\n"
+          + "WARC-Type: response\n"
+          + "WARC-Target-URI: http://example.com/" + i + "\n"
+          + "WARC-Warcinfo-ID: 993d3969-9643-4934-b1c6-68d4dbe55b83\n"
+          + "WARC-Date: 2009-03-65T08:43:19-0800\n"
+          + "WARC-Record-ID: <urn:uuid:67f7cabd-146c-41cf-bd01-04f5fa7d5229>\n"
+          + "WARC-TREC-ID: clueweb09-en0000-00-" + String.format("%05d", i) + "\n"
+          + "Content-Type: application/http;msgtype=response\n"
+          + "WARC-Identified-Payload-Type: \n"
+          + "Content-Length: " + bytes.length + "\n";
+      out.write(header.getBytes("UTF-8"));
+      out.write(bytes);
+      out.write("\n".getBytes());
+    }
+    return out.toByteArray();
+  }
+
+  private static void assertSameRecord(ClueWarcRecord expected, ClueWarcRecord actual) {
+    assertEquals(expected.getHeaderString(), actual.getHeaderString());
+    assertEquals(expected.getDocid(), actual.getDocid());
+    assertArrayEquals(expected.getByteContent(), actual.getByteContent());
+  }
+
+  @Test
+  public void testMatchesReadNextWarcRecord() throws IOException {
+    byte[] warc = createWarc(new Random(42), 200);
+
+    for (int bufferSize : new int[] { 1, 7, 1024, ClueWarcReader.DEFAULT_BUFFER_SIZE }) {
+      DataInputStream expected = new DataInputStream(new ByteArrayInputStream(warc));
+      ClueWarcReader reader = new ClueWarcReader(new ByteArrayInputStream(warc), bufferSize);
+      ClueWarcRecord record = new ClueWarcRecord();
+
+      int count = 0;
+      ClueWarcRecord e;
+      while ((e = ClueWarcRecord.readNextWarcRecord(expected)) != null) {
+        ClueWarcRecord actual = reader.next();
+        assertSameRecord(e, actual);
+        count++;
+      }
+      assertNull(reader.next());
+      assertFalse(reader.next(record));
+      assertEquals(201, count);
+      assertEquals(warc.length, reader.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testReuseRecord() throws IOException {
+    byte[] warc = createWarc(new Random(7), 10);
+    DataInputStream expected = new DataInputStream(new ByteArrayInputStream(warc));
+    ClueWarcReader reader = new ClueWarcReader(new ByteArrayInputStream(warc), 64);
+
+    ClueWarcRecord record = new ClueWarcRecord();
+    while (reader.next(record)) {
+      assertSameRecord(ClueWarcRecord.readNextWarcRecord(expected), record);
+    }
+    assertNull(ClueWarcRecord.readNextWarcRecord(expected));
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    byte[] warc = createWarc(new Random(1), 2);
+    byte[] truncated = new byte[warc.length - 20];
+    System.arraycopy(warc, 0, truncated, 0, truncated.length);
+
+    ClueWarcReader reader = new ClueWarcReader(new ByteArrayInputStream(truncated), 16);
+    DataInputStream expected = new DataInputStream(new ByteArrayInputStream(truncated));
+    for (int i = 0; i < 2; i++) {
+      assertSameRecord(ClueWarcRecord.readNextWarcRecord(expected), reader.next());
+    }
+    assertNull(ClueWarcRecord.readNextWarcRecord(expected));
+    assertNull(reader.next());
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(ClueWarcReaderTest.class);
+  }
+}
@@ -0,0 +1,139 @@
+package edu.umd.cloud9.collection.clue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class SplittableClueWarcInputFormatTest {
+  private static final int NUM_RECORDS = 300;
+
+  // Writes a WARC file with one gzip member per record, like the ClueWeb distribution.
+  private static void writeWarc(File file) throws IOException {
+    Random r = new Random(42);
+    OutputStream out = new FileOutputStream(file);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      StringBuilder content = new StringBuilder("HTTP/1.1 200 OK\n\n<html>");
+      int n = r.nextInt(2000);
+      for (int j = 0; j < n; j++) {
+        content.append((char) ('a' + r.nextInt(26)));
+      }
+      content.append("</html>\n");
+
+      String record = "WARC/0.18\n"
+          + "WARC-Type: response\n"
+          + "WARC-TREC-ID: clueweb09-en0000-00-" + String.format("%05d", i) + "\n"
+          + "Content-Type: application/http;msgtype=response\n"
+          + "Content-Length: " + content.length() + "\n" + content + "\n";
+      GZIPOutputStream gzip = new GZIPOutputStream(out) {
+        @Override
+        public void close() throws IOException {
+          finish(); // Don't close the underlying stream.
+        }
+      };
+      gzip.write(record.getBytes("UTF-8"));
+      gzip.close();
+    }
+    out.close();
+  }
+
+  private static List<String> readAll(JobConf conf, InputSplit[] splits) throws IOException {
+    SplittableClueWarcInputFormat format = new SplittableClueWarcInputFormat();
+    List<String> docids = Lists.newArrayList();
+    for (InputSplit split : splits) {
+      RecordReader<LongWritable, ClueWarcRecord> reader =
+          format.getRecordReader(split, conf, Reporter.NULL);
+      LongWritable key = reader.createKey();
+      ClueWarcRecord value = reader.createValue();
+      while (reader.next(key, value)) {
+        docids.add(value.getDocid());
+      }
+      assertEquals(1.0f, reader.getProgress(), 1e-6);
+      reader.close();
+    }
+    return docids;
+  }
+
+  @Test
+  public void testSplits() throws IOException {
+    File dir = Files.createTempDir();
+    File file = new File(dir, "00.warc.gz");
+    writeWarc(file);
+
+    JobConf conf = new JobConf();
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path path = new Path(file.getAbsolutePath());
+    FileInputFormat.setInputPaths(conf, new Path(dir.getAbsolutePath()));
+    SplittableClueWarcInputFormat format = new SplittableClueWarcInputFormat();
+
+    // Without an index, the file is a single split.
+    InputSplit[] splits = format.getSplits(conf, 10);
+    assertEquals(1, splits.length);
+    List<String> expected = readAll(conf, splits);
+    assertEquals(NUM_RECORDS, expected.size());
+
+    ClueWarcMemberIndex index = ClueWarcMemberIndex.build(fs.open(path), 0, null);
+    assertEquals(NUM_RECORDS, index.getOffsets().length);
+    assertEquals(file.length(), index.getFileLength());
+
+    index = ClueWarcMemberIndex.build(fs.open(path), 10000, null);
+    long[] offsets = index.getOffsets();
+    assertEquals(0, offsets[0]);
+    for (int i = 1; i < offsets.length; i++) {
+      assertTrue(offsets[i] - offsets[i - 1] >= 10000);
+    }
+    index.write(fs, ClueWarcMemberIndex.getIndexPath(path));
+
+    // The sidecar is not an input file, and the WARC file is now split.
+    for (int numSplits : new int[] { 1, 5, 17, 1000 }) {
+      splits = format.getSplits(conf, numSplits);
+      if (numSplits > 1) {
+        assertTrue(splits.length > 1);
+      }
+      long start = 0;
+      for (InputSplit split : splits) {
+        assertEquals(path.getName(), ((FileSplit) split).getPath().getName());
+        assertEquals(start, ((FileSplit) split).getStart());
+        start += split.getLength();
+      }
+      assertEquals(file.length(), start);
+      assertEquals(expected, readAll(conf, splits));
+    }
+
+    // An index that doesn't match the file (here, because a record was appended) is ignored.
+    OutputStream out = new FileOutputStream(file, true);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write("WARC/0.18\nWARC-TREC-ID: extra\nContent-Length: 1\nx\n".getBytes("UTF-8"));
+    gzip.close();
+    splits = format.getSplits(conf, 10);
+    assertEquals(1, splits.length);
+    assertEquals(NUM_RECORDS + 1, readAll(conf, splits).size());
+
+    fs.delete(new Path(dir.getAbsolutePath()), true);
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(SplittableClueWarcInputFormatTest.class);
+  }
+}
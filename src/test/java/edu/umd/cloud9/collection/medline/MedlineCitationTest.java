@@ -0,0 +1,118 @@
+package edu.umd.cloud9.collection.medline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class MedlineCitationTest {
+  private static final String CITATION1 = "<MedlineCitation Owner=\"NLM\" Status=\"MEDLINE\">\n"
+      + "<PMID>10540283</PMID>\n<Article>\n"
+      + "<ArticleTitle>Caf\u00e9 au lait spots in \u03b2-thalassemia.</ArticleTitle>\n"
+      + "<Abstract>\n<AbstractText>Na\u00efve patients (n = 12) were \u2265 5 years old; "
+      + "see <i>et al.</i> \u4e2d\u6587.</AbstractText>\n</Abstract>\n"
+      + "</Article>\n</MedlineCitation>";
+  private static final String CITATION2 = "<MedlineCitation Owner=\"NLM\">\n"
+      + "<PMID>7</PMID>\n<Article>\n<ArticleTitle>Short.</ArticleTitle>\n</Article>\n"
+      + "</MedlineCitation>";
+  private static final String CITATION3 = "<MedlineCitation>\n<PMID>42</PMID>\n"
+      + "</MedlineCitation>";
+
+  // How fields used to be extracted, with String.indexOf over the whole citation.
+  private static String extract(String citation, String tag, String missing) {
+    int start = citation.indexOf("<" + tag + ">");
+    if (start == -1) {
+      return missing;
+    }
+    int end = citation.indexOf("</" + tag + ">", start);
+    return citation.substring(start + tag.length() + 2, end);
+  }
+
+  private static void assertFields(String expected, MedlineCitation citation) {
+    assertEquals(extract(expected, "PMID", null), citation.getPmid());
+    assertEquals(extract(expected, "PMID", null), citation.getDocid());
+    assertEquals(extract(expected, "ArticleTitle", ""), citation.getTitle());
+    assertEquals(extract(expected, "AbstractText", ""), citation.getAbstract());
+    assertEquals(citation.getTitle() + "\n\n" + citation.getAbstract(), citation.getContent());
+    assertEquals(expected, citation.getRawXML());
+  }
+
+  @Test
+  public void testReadCitation() {
+    for (String s : new String[] { CITATION1, CITATION2, CITATION3 }) {
+      MedlineCitation citation = new MedlineCitation();
+      MedlineCitation.readCitation(citation, s);
+      assertFields(s, citation);
+    }
+
+    MedlineCitation citation = new MedlineCitation();
+    MedlineCitation.readCitation(citation, CITATION1);
+    assertEquals("10540283", citation.getPmid());
+    assertEquals("Caf\u00e9 au lait spots in \u03b2-thalassemia.", citation.getTitle());
+    assertEquals("Na\u00efve patients (n = 12) were \u2265 5 years old; see <i>et al.</i> "
+        + "\u4e2d\u6587.", citation.getAbstract());
+  }
+
+  @Test
+  public void testReuse() {
+    MedlineCitation citation = new MedlineCitation();
+
+    // Fields are accessed in between, so that they're cached when the object is recycled.
+    MedlineCitation.readCitation(citation, CITATION1);
+    assertFields(CITATION1, citation);
+
+    // A shorter citation without an abstract, read from the middle of a buffer.
+    byte[] bytes = ("junk" + CITATION2 + "junk").getBytes(Charsets.UTF_8);
+    MedlineCitation.readCitation(citation, bytes, 4, CITATION2.length());
+    assertFields(CITATION2, citation);
+
+    MedlineCitation.readCitation(citation, CITATION3);
+    assertFields(CITATION3, citation);
+
+    MedlineCitation.readCitation(citation, CITATION1);
+    assertFields(CITATION1, citation);
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    MedlineCitation citation = new MedlineCitation();
+    DataOutputBuffer out = new DataOutputBuffer();
+    for (String s : new String[] { CITATION1, CITATION2, CITATION3 }) {
+      MedlineCitation.readCitation(citation, s);
+      citation.write(out);
+    }
+
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    MedlineCitation copy = new MedlineCitation();
+    for (String s : new String[] { CITATION1, CITATION2, CITATION3 }) {
+      copy.readFields(in);
+      assertFields(s, copy);
+    }
+  }
+
+  @Test
+  public void testMissingPmid() {
+    String s = "<MedlineCitation>\n<ArticleTitle>No PMID.</ArticleTitle>\n</MedlineCitation>";
+    MedlineCitation citation = new MedlineCitation();
+    MedlineCitation.readCitation(citation, s);
+    assertEquals("No PMID.", citation.getTitle());
+
+    try {
+      citation.getPmid();
+      fail();
+    } catch (RuntimeException e) {
+      // As before, the message is the raw XML of the citation.
+      assertEquals(s, e.getMessage());
+    }
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(MedlineCitationTest.class);
+  }
+}
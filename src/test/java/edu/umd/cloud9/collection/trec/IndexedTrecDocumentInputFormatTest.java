@@ -0,0 +1,138 @@
+package edu.umd.cloud9.collection.trec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import edu.umd.cloud9.collection.WebDocument;
+
+public class IndexedTrecDocumentInputFormatTest {
+
+  private static String createDocuments(int numDocs, Random r) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < numDocs; i++) {
+      sb.append("<DOC>\n<DOCNO> DOC-" + i + " </DOCNO>\n<TEXT>\n");
+      int n = r.nextInt(500);
+      for (int j = 0; j < n; j++) {
+        sb.append(j % 60 == 59 ? '\n' : (char) ('a' + r.nextInt(26)));
+      }
+      sb.append("\n</TEXT>\n</DOC>\n");
+    }
+    return sb.toString();
+  }
+
+  private static List<String> readAll(InputFormat<?, WebDocument> format, Path path, long splitSize,
+      boolean keys) throws Exception {
+    Configuration conf = new Configuration();
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, path);
+    FileInputFormat.setMaxInputSplitSize(job, splitSize);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+    List<String> docs = Lists.newArrayList();
+    for (InputSplit split : format.getSplits(job)) {
+      RecordReader<?, WebDocument> reader = format.createRecordReader(split, context);
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        WebDocument doc = reader.getCurrentValue();
+        docs.add((keys ? reader.getCurrentKey() + " " : "") + doc.getDocid() + " "
+            + doc.getContent());
+      }
+      reader.close();
+    }
+    return docs;
+  }
+
+  @Test
+  public void testUncompressed() throws Exception {
+    File dir = Files.createTempDir();
+    File file = new File(dir, "docs.txt");
+    Files.write(createDocuments(2000, new Random(42)), file, Charsets.UTF_8);
+
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path path = new Path(file.toURI());
+    TrecDocumentIndex index = TrecDocumentIndex.build(fs.open(path), file.length(), null);
+    index.write(fs, TrecDocumentIndex.getIndexPath(path));
+    assertEquals(2000, index.size());
+    assertEquals("DOC-1234", index.getDocnos()[1234]);
+
+    List<String> expected = readAll(new TrecDocumentInputFormat(), path, Long.MAX_VALUE, true);
+    assertEquals(2000, expected.size());
+
+    // The sidecar is skipped when the input is a directory, and splits smaller than a document
+    // work too.
+    for (long splitSize : new long[] { 100, 10000, 77777, Long.MAX_VALUE }) {
+      assertEquals(expected, readAll(new IndexedTrecDocumentInputFormat(),
+          new Path(dir.toURI()), splitSize, true));
+      assertEquals(expected, readAll(new TrecDocumentInputFormat(),
+          new Path(dir.toURI()), splitSize, true));
+    }
+
+    // Once the file changes, the index is ignored.
+    OutputStream out = new FileOutputStream(file, true);
+    out.write("<DOC>\n<DOCNO> DOC-2000 </DOCNO>\n</DOC>\n".getBytes(Charsets.UTF_8));
+    out.close();
+    assertNull(TrecDocumentIndex.readIfValid(fs, path, file.length()));
+    for (long splitSize : new long[] { 10000, Long.MAX_VALUE }) {
+      List<String> docs = readAll(new IndexedTrecDocumentInputFormat(), path, splitSize, true);
+      assertEquals(2001, docs.size());
+      assertEquals(expected, docs.subList(0, 2000));
+    }
+  }
+
+  @Test
+  public void testCompressed() throws Exception {
+    File file = File.createTempFile("docs", ".txt.gz");
+    file.deleteOnExit();
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+    out.write(createDocuments(1000, new Random(7)).getBytes(Charsets.UTF_8));
+    out.close();
+
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path path = new Path(file.toURI());
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(path);
+    TrecDocumentIndex index =
+        TrecDocumentIndex.build(codec.createInputStream(fs.open(path)), file.length(), null);
+    Path indexPath = TrecDocumentIndex.getIndexPath(path);
+    index.write(fs, indexPath);
+    new File(indexPath.toUri()).deleteOnExit();
+    assertNotNull(TrecDocumentIndex.readIfValid(fs, path, file.length()));
+
+    List<String> expected = readAll(new TrecDocumentInputFormat(), path, Long.MAX_VALUE, false);
+    assertEquals(1000, expected.size());
+    assertEquals(expected, readAll(new IndexedTrecDocumentInputFormat(), path, 1000, false));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(IndexedTrecDocumentInputFormatTest.class);
+  }
+}
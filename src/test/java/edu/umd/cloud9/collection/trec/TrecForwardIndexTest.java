@@ -0,0 +1,211 @@
+package edu.umd.cloud9.collection.trec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import edu.umd.cloud9.collection.ForwardIndexFormat;
+import edu.umd.cloud9.collection.ForwardIndexMetrics;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Counter;
+import edu.umd.cloud9.collection.ForwardIndexMetrics.Phase;
+
+public class TrecForwardIndexTest {
+
+  // Writes a collection with documents of the given sizes (in bytes of text), along with its
+  // forward index and docno mapping, and returns the directory that holds them.
+  static File writeCollection(int[] sizes, boolean binary) throws Exception {
+    File dir = Files.createTempDir();
+    File collection = new File(dir, "docs.txt");
+    Random r = new Random(42);
+
+    StringBuilder sb = new StringBuilder();
+    long[] offsets = new long[sizes.length + 1];
+    int[] lengths = new int[sizes.length + 1];
+    for (int i = 0; i < sizes.length; i++) {
+      offsets[i + 1] = sb.length();
+      sb.append("<DOC>\n<DOCNO> DOC-" + (i + 1) + " </DOCNO>\n<TEXT>\n");
+      for (int j = 0; j < sizes[i]; j++) {
+        sb.append(j % 60 == 59 ? '\n' : (char) ('a' + r.nextInt(26)));
+      }
+      sb.append("\n</TEXT>\n</DOC>");
+      lengths[i + 1] = (int) (sb.length() - offsets[i + 1]);
+      sb.append('\n');
+    }
+    Files.write(sb.toString(), collection, Charsets.US_ASCII);
+
+    DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(new File(dir, "index")));
+    out.writeUTF(TrecDocumentInputFormat.class.getCanonicalName());
+    out.writeUTF(new Path(collection.toURI()).toString());
+    if (binary) {
+      ForwardIndexFormat.writeDocuments(out, offsets, lengths, sizes.length);
+    } else {
+      out.writeInt(sizes.length);
+      for (int i = 1; i <= sizes.length; i++) {
+        out.writeLong(offsets[i]);
+        out.writeInt(lengths[i]);
+      }
+    }
+    out.close();
+
+    out = new DataOutputStream(new FileOutputStream(new File(dir, "mapping")));
+    out.writeInt(sizes.length);
+    for (int i = 1; i <= sizes.length; i++) {
+      out.writeUTF("DOC-" + i);
+    }
+    out.close();
+
+    return dir;
+  }
+
+  static File writeCollection(int numDocs, boolean binary) throws Exception {
+    Random r = new Random(numDocs);
+    int[] sizes = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      sizes[i] = r.nextInt(500);
+    }
+    return writeCollection(sizes, binary);
+  }
+
+  static TrecForwardIndex loadIndex(File dir, boolean memoryMapped) throws Exception {
+    TrecForwardIndex index = new TrecForwardIndex(memoryMapped);
+    index.loadIndex(new Path(new File(dir, "index").toURI()),
+        new Path(new File(dir, "mapping").toURI()), FileSystem.getLocal(new Configuration()));
+    return index;
+  }
+
+  @Test
+  public void testMappedMode() throws Exception {
+    for (boolean binary : new boolean[] { false, true }) {
+      // An index in the binary format can't be looked up in place, so only the collection is
+      // mapped; mapping the index anyway would yield garbage offsets.
+      File dir = writeCollection(101, binary);
+      TrecForwardIndex heap = loadIndex(dir, false);
+      TrecForwardIndex mapped = loadIndex(dir, true);
+      assertEquals(101, mapped.getLastDocno());
+      assertEquals(heap.getLastDocno(), mapped.getLastDocno());
+
+      int[] docnos = { 1, 51, 101 };
+      List<TrecDocument> docs = mapped.getDocuments(docnos);
+      for (int i = 0; i < docnos.length; i++) {
+        String content = heap.getDocument(docnos[i]).getContent();
+        assertEquals("DOC-" + docnos[i], mapped.getDocument(docnos[i]).getDocid());
+        assertEquals(content, mapped.getDocument(docnos[i]).getContent());
+        assertEquals(content, docs.get(i).getContent());
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDocnos() throws Exception {
+    File dir = writeCollection(20, false);
+    int[] docnos = { 3, 0, 20, -1, 21, 1, Integer.MIN_VALUE, 3, Integer.MAX_VALUE };
+
+    for (boolean memoryMapped : new boolean[] { false, true }) {
+      TrecForwardIndex index = loadIndex(dir, memoryMapped);
+      List<TrecDocument> docs = index.getDocuments(docnos);
+      assertEquals(docnos.length, docs.size());
+      for (int i = 0; i < docnos.length; i++) {
+        if (docnos[i] < 1 || docnos[i] > 20) {
+          assertNull(docs.get(i));
+        } else {
+          assertEquals("DOC-" + docnos[i], docs.get(i).getDocid());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDocno() throws Exception {
+    File dir = writeCollection(20, false);
+    int[] invalid = { 0, -1, 21, 22, Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+    for (boolean memoryMapped : new boolean[] { false, true }) {
+      TrecForwardIndex index = loadIndex(dir, memoryMapped);
+      ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+      index.setMetrics(metrics);
+
+      // In memory-mapped mode, these would otherwise be looked up outside of the offset table.
+      for (int docno : invalid) {
+        assertNull(index.getDocument(docno));
+      }
+      assertEquals(invalid.length, metrics.getCount(Counter.ERRORS));
+      assertEquals(0, metrics.getCount(Counter.DOCUMENTS));
+
+      assertEquals("DOC-1", index.getDocument(1).getDocid());
+      assertEquals("DOC-20", index.getDocument(20).getDocid());
+      assertEquals(invalid.length, metrics.getCount(Counter.ERRORS));
+    }
+  }
+
+  // Fetches a batch of documents, checks them against documents fetched one at a time, and
+  // returns the number of reads that the batch took.
+  private static long fetch(TrecForwardIndex index, int... docnos) {
+    ForwardIndexMetrics metrics = new ForwardIndexMetrics();
+    index.setMetrics(metrics);
+    List<TrecDocument> docs = index.getDocuments(docnos);
+    long reads = metrics.getHistogram(Phase.READ).getCount();
+
+    assertEquals(docnos.length, docs.size());
+    for (int i = 0; i < docnos.length; i++) {
+      assertEquals("DOC-" + docnos[i], docs.get(i).getDocid());
+      assertEquals(index.getDocument(docnos[i]).getContent(), docs.get(i).getContent());
+    }
+    return reads;
+  }
+
+  @Test
+  public void testCoalescing() throws Exception {
+    TrecForwardIndex index = loadIndex(writeCollection(30, false), false);
+
+    // Small documents close together: unsorted and duplicate docnos all come from one read.
+    assertEquals(1, fetch(index, 7, 3, 5, 3, 1, 30, 2, 7));
+    assertEquals(1, fetch(index, 12));
+    assertEquals(0, fetch(index));
+  }
+
+  @Test
+  public void testCoalesceGap() throws Exception {
+    int gap = TrecForwardIndex.MAX_COALESCE_GAP;
+    File dir = writeCollection(new int[] { 100, gap + 1000, 100, gap - 1000, 100 }, false);
+    TrecForwardIndex index = loadIndex(dir, false);
+
+    // Documents 1 and 3 are too far apart, unless document 2 in between is fetched too.
+    assertEquals(2, fetch(index, 3, 1));
+    assertEquals(1, fetch(index, 3, 1, 2));
+
+    // Documents 3 and 5 are just close enough.
+    assertEquals(1, fetch(index, 5, 3));
+    assertEquals(2, fetch(index, 5, 1, 3));
+  }
+
+  @Test
+  public void testCoalesceSpan() throws Exception {
+    int size = TrecForwardIndex.MAX_COALESCE_SPAN * 3 / 8;
+    File dir = writeCollection(new int[] { size, size, size, size, 100 }, false);
+    TrecForwardIndex index = loadIndex(dir, false);
+
+    // Adjacent documents, but a single read for all of them would be too large.
+    assertEquals(1, fetch(index, 2, 1));
+    assertEquals(2, fetch(index, 1, 2, 3));
+    assertEquals(2, fetch(index, 4, 3, 2, 1, 5));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(TrecForwardIndexTest.class);
+  }
+}
@@ -0,0 +1,64 @@
+package edu.umd.cloud9.collection.trecweb;
+
+import static org.junit.Assert.assertEquals;
+import junit.framework.JUnit4TestAdapter;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TrecWebDocumentTest {
+  private static final String DOC1 = "<DOC>\n<DOCNO>GX000-00-0000000</DOCNO>\n"
+      + "<DOCHDR>\nhttp://www.example.gov/ 200 OK\nContent-Type: text/html\n</DOCHDR>\n"
+      + "<html><body>Caf\u00e9 <b>text</b></body></html>\n</DOC>";
+  private static final String DOC2 = "<DOC>\n<DOCNO>GX000-00-0000001</DOCNO>\n"
+      + "<DOCHDR>\nhttp://short.gov/ 200 OK\n</DOCHDR>\nx\n</DOC>";
+
+  @Test
+  public void testReadDocument() throws Exception {
+    TrecWebDocument doc = new TrecWebDocument();
+    TrecWebDocument.readDocument(doc, DOC1);
+    assertEquals("GX000-00-0000000", doc.getDocid());
+    assertEquals("http://www.example.gov/", doc.getURL());
+    assertEquals("\n<html><body>Caf\u00e9 <b>text</b></body></html>\n", doc.getContent());
+
+    // Reuse the object for a shorter document, read from the middle of a buffer.
+    byte[] bytes = ("junk" + DOC2).getBytes(Charsets.UTF_8);
+    TrecWebDocument.readDocument(doc, bytes, 4, bytes.length - 4);
+    assertEquals("GX000-00-0000001", doc.getDocid());
+    assertEquals("http://short.gov/", doc.getURL());
+    assertEquals("\nx\n", doc.getContent());
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    TrecWebDocument doc = new TrecWebDocument();
+    TrecWebDocument.readDocument(doc, DOC1);
+
+    DataOutputBuffer out = new DataOutputBuffer();
+    doc.write(out);
+    TrecWebDocument.readDocument(doc, DOC2);
+    doc.write(out);
+
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    TrecWebDocument copy = new TrecWebDocument();
+    copy.readFields(in);
+    assertEquals("GX000-00-0000000", copy.getDocid());
+    assertEquals("\n<html><body>Caf\u00e9 <b>text</b></body></html>\n", copy.getContent());
+    copy.readFields(in);
+    assertEquals("GX000-00-0000001", copy.getDocid());
+    assertEquals("\nx\n", copy.getContent());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testMissingDocno() {
+    TrecWebDocument.readDocument(new TrecWebDocument(), "<DOC>\n<DOCHDR>\nx y\n</DOCHDR>\n</DOC>");
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(TrecWebDocumentTest.class);
+  }
+}
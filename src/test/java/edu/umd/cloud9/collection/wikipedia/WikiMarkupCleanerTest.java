@@ -0,0 +1,109 @@
+package edu.umd.cloud9.collection.wikipedia;
+
+import static org.junit.Assert.assertEquals;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.umd.cloud9.collection.wikipedia.language.EnglishWikipediaPage;
+
+public class WikiMarkupCleanerTest {
+  private static final String MARKUP = "{{Infobox person\n"
+      + "| name = Alan Turing\n"
+      + "| birth_date = {{birth date|1912|6|23}}\n"
+      + "}}\n"
+      + "'''Alan Mathison Turing''' (23 June 1912 &amp;ndash; 7 June 1954) was an "
+      + "[[England|English]] [[mathematician]].&lt;ref&gt;{{cite web|url=http://example.com/x"
+      + "|title=Foo}}&lt;/ref&gt; He was ''highly'' influential.&lt;ref name=\"b\"/&gt;\n"
+      + "\n"
+      + "== Early life ==\n"
+      + "\n"
+      + "Turing was born in [[Maida Vale]], London.&lt;!-- a comment --&gt; See "
+      + "[http://www.turing.org.uk/ the Turing site].\n"
+      + "* First item with [[Sherborne School]]\n"
+      + "* Second &amp;amp; item\n"
+      + "\n"
+      + "{| class=\"wikitable\"\n"
+      + "|-\n"
+      + "! Header\n"
+      + "|-\n"
+      + "| Cell one || Cell two\n"
+      + "|}\n"
+      + "Some &lt;b&gt;bold&lt;/b&gt; text. x &amp;lt; y.\n"
+      + "\n"
+      + "==References==\n"
+      + "{{reflist}}\n"
+      + "\n"
+      + "[[Category:1912 births]]\n"
+      + "[[de:Alan Turing]]\n";
+
+  private static List<String> tokenize(String s) {
+    List<String> tokens = Lists.newArrayList();
+    for (String token : s.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+      if (token.length() > 0) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  private static String clean(String markup) {
+    return new WikiMarkupCleaner().clean(null, markup).trim().replaceAll("\\s+", " ");
+  }
+
+  @Test
+  public void testSameTextAsBliki() {
+    WikipediaPage page = new EnglishWikipediaPage();
+    WikipediaPage.readPage(page, "<page>\n    <title>Alan Turing</title>\n    <ns>0</ns>\n"
+        + "    <id>1208</id>\n    <revision>\n      <text xml:space=\"preserve\">" + MARKUP
+        + "</text>\n    </revision>\n  </page>");
+
+    String bliki = page.getContent();
+    page.setFastContent(true);
+    String cleaner = page.getContent();
+
+    assertEquals(tokenize(bliki), tokenize(cleaner));
+    assertEquals(Arrays.asList("alan", "turing", "alan", "mathison", "turing", "23", "june", "1912",
+        "7", "june", "1954", "was", "an", "english", "mathematician", "he", "was", "highly",
+        "influential", "early", "life", "turing", "was", "born", "in", "maida", "vale", "london",
+        "see", "the", "turing", "site", "first", "item", "with", "sherborne", "school", "second",
+        "item", "header", "cell", "one", "cell", "two", "some", "bold", "text", "x", "y",
+        "references"), tokenize(cleaner));
+    assertEquals('–', cleaner.charAt(cleaner.indexOf("1912 ") + 5));
+    assertEquals("x < y", cleaner.substring(cleaner.indexOf("x <"), cleaner.indexOf("x <") + 5));
+  }
+
+  @Test
+  public void testConstructs() {
+    assertEquals("a b", clean("a {{outer|{{inner}}|x}} b"));
+    assertEquals("a b", clean("a &lt;ref name=\"x\"&gt;[[Foo]] {{cite}}&lt;/ref&gt; b"));
+    assertEquals("a b", clean("a &lt;ref name=x /&gt; b"));
+    assertEquals("a b", clean("a &lt;!-- http://foo.com/--&gt; b"));
+    assertEquals("a b", clean("a http://foo.com/x?y=z b"));
+    assertEquals("a b", clean("a [http://foo.com/] b"));
+    assertEquals("a c d b", clean("a [http://foo.com/ c d] b"));
+    assertEquals("a dogs b", clean("a [[dog]]s b"));
+    assertEquals("a big cat b", clean("a [[Cat|big ''cat'']] b"));
+    assertEquals("a Category:Foo b", clean("a [[:Category:Foo]] b"));
+    assertEquals("a b", clean("a [[File:X.jpg|thumb|A [[cat]] sitting]] b"));
+    assertEquals("a b", clean("a [[Image:X.jpg]] [[fr:Chat]] [[Category:Cats]] b"));
+    assertEquals("Title text", clean("== Title ==\ntext"));
+    assertEquals("one two", clean("* one\n# two"));
+    assertEquals("x y", clean("{|\n|-\n| style=\"a\" | x\n| y\n|}"));
+    assertEquals("a é © é b", clean("a &amp;eacute; &amp;copy; &amp;#233; b"));
+    assertEquals("a &foo; & b", clean("a &amp;foo; &amp; b"));
+    assertEquals("a [[b", clean("a [[b"));
+    assertEquals("a {{b", clean("a {{b"));
+    assertEquals("a 1 < 2 b", clean("a 1 &lt; 2 b"));
+    assertEquals("a b", clean("a __NOTOC__ b"));
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(WikiMarkupCleanerTest.class);
+  }
+}
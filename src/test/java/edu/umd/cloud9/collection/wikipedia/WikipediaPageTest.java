@@ -0,0 +1,191 @@
+package edu.umd.cloud9.collection.wikipedia;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+import edu.umd.cloud9.collection.wikipedia.language.EnglishWikipediaPage;
+
+public class WikipediaPageTest {
+  private static final String PAGE1 = "<page>\n"
+      + "    <title>Café &amp; Bar</title>\n"
+      + "    <ns>0</ns>\n"
+      + "    <id>12</id>\n"
+      + "    <revision>\n"
+      + "      <id>3456</id>\n"
+      + "      <text xml:space=\"preserve\">A '''café''' serves [[coffee|coffees]] and [[tea]]."
+      + "{{food-stub}}\n[[de:Café]]</text>\n"
+      + "    </revision>\n"
+      + "  </page>";
+
+  private static final String PAGE2 = "<page>\n"
+      + "    <title>Coffee house</title>\n"
+      + "    <ns>0</ns>\n"
+      + "    <id>7</id>\n"
+      + "    <revision>\n"
+      + "      <id>89</id>\n"
+      + "      <text xml:space=\"preserve\">#REDIRECT [[Café &amp; Bar]]</text>\n"
+      + "    </revision>\n"
+      + "  </page>";
+
+  private static byte[] serialize(WikipediaPage page) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    page.write(new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  private static void deserialize(WikipediaPage page, byte[] bytes) throws IOException {
+    page.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  private static void assertSamePage(WikipediaPage expected, WikipediaPage actual) {
+    assertEquals(expected.getDocid(), actual.getDocid());
+    assertEquals(expected.getTitle(), actual.getTitle());
+    assertEquals(expected.getWikiMarkup(), actual.getWikiMarkup());
+    assertEquals(expected.getLanguage(), actual.getLanguage());
+    assertEquals(expected.isRedirect(), actual.isRedirect());
+    assertEquals(expected.isStub(), actual.isStub());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    assertEquals(expected.isArticle(), actual.isArticle());
+    assertEquals(expected.getRawXML(), actual.getRawXML());
+    assertEquals(expected.extractLinkTargets(), actual.extractLinkTargets());
+    assertEquals(expected.findInterlanguageLink("de"), actual.findInterlanguageLink("de"));
+  }
+
+  @Test
+  public void testLazyMatchesEager() throws IOException {
+    WikipediaPage eager = new EnglishWikipediaPage();
+    WikipediaPage lazy = new EnglishWikipediaPage();
+    lazy.setLazy(true);
+    WikipediaPage strict = new EnglishWikipediaPage();
+
+    for (String s : new String[] { PAGE1, PAGE2, PAGE1 }) {
+      WikipediaPage.readPage(eager, s);
+      byte[] serialized = serialize(eager);
+
+      deserialize(lazy, serialized);
+      assertSamePage(eager, lazy);
+      deserialize(strict, serialized);
+      assertSamePage(eager, strict);
+
+      // Read straight from bytes, as the input formats do.
+      byte[] raw = ("xx" + s).getBytes("UTF-8");
+      WikipediaPage.readPage(lazy, raw, 2, raw.length - 2);
+      assertSamePage(eager, lazy);
+    }
+  }
+
+  @Test
+  public void testLazyFields() throws IOException {
+    WikipediaPage eager = new EnglishWikipediaPage();
+    WikipediaPage.readPage(eager, PAGE1);
+    byte[] serialized = serialize(eager);
+
+    // Each accessor on its own, starting from a fresh unparsed page.
+    WikipediaPage lazy = new EnglishWikipediaPage();
+    lazy.setLazy(true);
+    deserialize(lazy, serialized);
+    assertEquals("12", lazy.getDocid());
+    deserialize(lazy, serialized);
+    assertEquals("Café & Bar", lazy.getTitle());
+    deserialize(lazy, serialized);
+    assertTrue(lazy.getWikiMarkup().startsWith("A '''café'''"));
+    deserialize(lazy, serialized);
+    assertTrue(lazy.isStub());
+    assertFalse(lazy.isRedirect());
+
+    // Serialized bytes are copied straight through.
+    deserialize(lazy, serialized);
+    assertArrayEquals(serialized, serialize(lazy));
+  }
+
+  @Test
+  public void testEagerByDefault() throws IOException {
+    WikipediaPage eager = new EnglishWikipediaPage();
+    WikipediaPage.readPage(eager, PAGE2);
+    byte[] serialized = serialize(eager);
+
+    // Subclasses read the protected fields directly, so they must be up to date once a page has
+    // been read, without going through an accessor first.
+    WikipediaPage page = new EnglishWikipediaPage();
+    assertFalse(page.isLazy());
+    WikipediaPage.readPage(page, PAGE1);
+    deserialize(page, serialized);
+    assertEquals(eager.getTitle(), page.title);
+    assertTrue(page.isRedirect);
+
+    byte[] raw = PAGE1.getBytes("UTF-8");
+    WikipediaPage.readPage(page, raw, 0, raw.length);
+    assertEquals("Caf\u00e9 & Bar", page.title);
+    assertFalse(page.isRedirect);
+    assertTrue(page.isStub);
+  }
+
+  @Test
+  public void testEmptyPage() throws IOException {
+    String s = "<page><title>Empty</title><id>1</id></page>";
+    WikipediaPage lazy = new EnglishWikipediaPage();
+    lazy.setLazy(true);
+    byte[] raw = s.getBytes("UTF-8");
+    WikipediaPage.readPage(lazy, raw, 0, raw.length);
+    assertEquals("1", lazy.getDocid());
+    assertNull(lazy.getWikiMarkup());
+  }
+
+  @Test
+  public void testLinks() throws IOException {
+    String s = "<page>\n    <title>Links</title>\n    <id>5</id>\n    <revision>\n"
+        + "      <text xml:space=\"preserve\">Un [[Café]] et [[Thé vert|du thé]]. [[]] "
+        + "[[Category:Boissons]] [[#Histoire|plus haut]] [[Eau#Chimie|l'eau]] [[Lait#Laits]] "
+        + "[[a|b|c]] [[fr:Café]] [[Fin</text>\n    </revision>\n  </page>";
+    String[][] expected = { { "Café", "Café" }, { "Thé vert", "du thé" }, { "Eau", "l'eau" },
+        { "Lait", "Lait" }, { "a", "b|c" } };
+
+    WikipediaPage fromString = new EnglishWikipediaPage();
+    WikipediaPage.readPage(fromString, s);
+    WikipediaPage fromBytes = new EnglishWikipediaPage();
+    byte[] raw = s.getBytes("UTF-8");
+    WikipediaPage.readPage(fromBytes, raw, 0, raw.length);
+
+    for (WikipediaPage page : new WikipediaPage[] { fromString, fromBytes }) {
+      final List<String> visited = Lists.newArrayList();
+      page.visitLinks(new WikipediaPage.LinkVisitor() {
+        @Override
+        public void visitLink(byte[] bytes, int anchorStart, int anchorEnd, int targetStart,
+            int targetEnd) {
+          visited.add(new String(bytes, targetStart, targetEnd - targetStart, Charsets.UTF_8));
+          visited.add(new String(bytes, anchorStart, anchorEnd - anchorStart, Charsets.UTF_8));
+        }
+      });
+
+      List<WikipediaPage.Link> links = page.extractLinks();
+      assertEquals(expected.length, links.size());
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i][0], links.get(i).getTarget());
+        assertEquals(expected[i][1], links.get(i).getAnchorText());
+        assertEquals(expected[i][0], visited.get(2 * i));
+        assertEquals(expected[i][1], visited.get(2 * i + 1));
+        assertEquals(expected[i][0], page.extractLinkTargets().get(i));
+      }
+    }
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(WikipediaPageTest.class);
+  }
+}
@@ -0,0 +1,81 @@
+package edu.umd.cloud9.collection.wikipedia;
+
+import static org.junit.Assert.assertEquals;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.umd.cloud9.collection.wikipedia.language.EnglishWikipediaPage;
+
+public class WikipediaPagesBz2InputStreamTest {
+  private static final int NUM_PAGES = 5000;
+
+  private static File writeDump() throws IOException {
+    Random r = new Random(42);
+    File file = File.createTempFile("pages", ".xml.bz2");
+    file.deleteOnExit();
+    OutputStream out = new FileOutputStream(file);
+    out.write("BZ".getBytes());
+    // Use the smallest block size (100KB) so that the file spans many blocks.
+    CBZip2OutputStream bzip = new CBZip2OutputStream(out, 1);
+    bzip.write("<mediawiki>\n  <siteinfo>\n  </siteinfo>\n".getBytes("UTF-8"));
+    for (int i = 0; i < NUM_PAGES; i++) {
+      StringBuilder sb = new StringBuilder("  <page>\n    <title>Page " + i + "</title>\n"
+          + "    <ns>0</ns>\n    <id>" + i + "</id>\n    <revision>\n"
+          + "      <text xml:space=\"preserve\">");
+      int n = r.nextInt(500);
+      for (int j = 0; j < n; j++) {
+        sb.append((char) ('a' + r.nextInt(26)));
+      }
+      sb.append("</text>\n    </revision>\n  </page>\n");
+      bzip.write(sb.toString().getBytes("UTF-8"));
+    }
+    bzip.write("</mediawiki>\n".getBytes("UTF-8"));
+    bzip.close();
+    return file;
+  }
+
+  private static List<String> readAll(WikipediaPagesBz2InputStream stream) throws IOException {
+    List<String> pages = Lists.newArrayList();
+    WikipediaPage page = new EnglishWikipediaPage();
+    while (stream.readNext(page)) {
+      assertEquals("Page " + page.getDocid(), page.getTitle());
+      pages.add(page.getDocid() + "\t" + page.getWikiMarkup());
+    }
+    return pages;
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    File file = writeDump();
+    String path = file.getAbsolutePath();
+
+    List<String> expected = readAll(new WikipediaPagesBz2InputStream(path));
+    assertEquals(NUM_PAGES, expected.size());
+    for (int i = 0; i < NUM_PAGES; i++) {
+      assertEquals(i + "\t", expected.get(i).substring(0, expected.get(i).indexOf('\t') + 1));
+    }
+
+    assertEquals(expected, readAll(new WikipediaPagesBz2InputStream(path, true)));
+    assertEquals(expected, readAll(new WikipediaPagesBz2InputStream(path, 1)));
+
+    // Ranges both smaller and larger than a block.
+    for (int rangeSize : new int[] { 20000, 200000 }) {
+      assertEquals(expected, readAll(new WikipediaPagesBz2InputStream(path, 3, rangeSize)));
+    }
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(WikipediaPagesBz2InputStreamTest.class);
+  }
+}
@@ -0,0 +1,70 @@
+package edu.umd.cloud9.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LittleEndianArraysTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    // Large enough to span several chunks.
+    int n = 600000;
+    Random r = new Random(42);
+    int[] ints = new int[n];
+    long[] longs = new long[n];
+    short[] shorts = new short[n];
+    for (int i = 0; i < n; i++) {
+      ints[i] = r.nextInt();
+      longs[i] = r.nextLong();
+      shorts[i] = (short) r.nextInt();
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    LittleEndianArrays.writeInts(out, ints, 0, n);
+    LittleEndianArrays.writeLongs(out, longs, 0, n);
+    LittleEndianArrays.writeShorts(out, shorts, 0, n);
+    out.close();
+    assertEquals(14 * n, bytes.size());
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    int[] ints2 = new int[n];
+    long[] longs2 = new long[n];
+    short[] shorts2 = new short[n];
+    LittleEndianArrays.readInts(in, ints2, 0, n);
+    LittleEndianArrays.readLongs(in, longs2, 0, n);
+    LittleEndianArrays.readShorts(in, shorts2, 0, n);
+
+    assertArrayEquals(ints, ints2);
+    assertArrayEquals(longs, longs2);
+    assertArrayEquals(shorts, shorts2);
+  }
+
+  @Test
+  public void testByteOrderAndOffsets() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    LittleEndianArrays.writeInts(out, new int[] { 0, 1, 0x01020304 }, 1, 2);
+    out.close();
+
+    assertArrayEquals(new byte[] { 1, 0, 0, 0, 4, 3, 2, 1 }, bytes.toByteArray());
+
+    int[] arr = new int[3];
+    LittleEndianArrays.readInts(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+        arr, 1, 2);
+    assertArrayEquals(new int[] { 0, 1, 0x01020304 }, arr);
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(LittleEndianArraysTest.class);
+  }
+}
@@ -0,0 +1,58 @@
+package edu.umd.cloud9.io;
+
+import static org.junit.Assert.assertEquals;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class MappedFileBufferTest {
+
+  @Test
+  public void testReads() throws Exception {
+    File file = File.createTempFile("mapped", ".bin");
+    file.deleteOnExit();
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+    out.writeLong(1234567890123L);
+    out.writeInt(-42);
+    out.write("hello world".getBytes("UTF-8"));
+    out.close();
+
+    MappedFileBuffer buf = new MappedFileBuffer(file);
+    assertEquals(23, buf.length());
+    assertEquals(1234567890123L, buf.getLong(0));
+    assertEquals(-42, buf.getInt(8));
+    assertEquals('h', buf.get(12));
+
+    byte[] arr = new byte[5];
+    buf.get(18, arr, 0, 5);
+    assertEquals("world", new String(arr, "UTF-8"));
+
+    ByteBuffer slice = buf.slice(12, 5);
+    assertEquals(5, slice.remaining());
+    byte[] hello = new byte[5];
+    slice.get(hello);
+    assertEquals("hello", new String(hello, "UTF-8"));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testOutOfBounds() throws Exception {
+    File file = File.createTempFile("mapped", ".bin");
+    file.deleteOnExit();
+
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(new byte[4]);
+    out.close();
+
+    new MappedFileBuffer(file).getLong(0);
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(MappedFileBufferTest.class);
+  }
+}
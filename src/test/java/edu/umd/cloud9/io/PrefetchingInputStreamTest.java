@@ -0,0 +1,162 @@
+package edu.umd.cloud9.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Seekable;
+import org.junit.Test;
+
+public class PrefetchingInputStreamTest {
+
+  // Returns at most a random number of bytes per read, and reports the number of reads as its
+  // position.
+  private static class ChoppyInputStream extends ByteArrayInputStream implements Seekable {
+    private final Random r = new Random(1);
+    private long reads = 0;
+    private int failAfter = -1;
+
+    ChoppyInputStream(byte[] data) {
+      super(data);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      if (failAfter >= 0 && reads >= failAfter) {
+        throw new IllegalStateException("boom");
+      }
+      reads++;
+      return super.read(b, off, Math.min(len, 1 + r.nextInt(100)));
+    }
+
+    @Override
+    public long getPos() {
+      return reads;
+    }
+
+    @Override
+    public void seek(long pos) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    byte[] data = new byte[100000];
+    new Random(42).nextBytes(data);
+
+    for (int bufferSize : new int[] { 1, 7, 4096 }) {
+      for (int numBuffers : new int[] { 1, 2, 8 }) {
+        PrefetchingInputStream in =
+            new PrefetchingInputStream(new ByteArrayInputStream(data), numBuffers, bufferSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random r = new Random(numBuffers);
+        byte[] buf = new byte[500];
+        while (true) {
+          if (r.nextBoolean()) {
+            int b = in.read();
+            if (b < 0) {
+              break;
+            }
+            out.write(b);
+          } else {
+            int n = in.read(buf, 0, r.nextInt(buf.length));
+            if (n < 0) {
+              break;
+            }
+            out.write(buf, 0, n);
+          }
+        }
+        assertEquals(-1, in.read());
+        in.close();
+        assertArrayEquals(data, out.toByteArray());
+      }
+    }
+  }
+
+  @Test
+  public void testPositions() throws IOException {
+    byte[] data = new byte[10000];
+    PrefetchingInputStream in = new PrefetchingInputStream(new ChoppyInputStream(data), 3, 1000);
+
+    // Each read returns bytes from a single underlying read, and the position is the one reported
+    // after that read, which here is the number of reads.
+    byte[] buf = new byte[1000];
+    long total = 0;
+    long reads = 0;
+    int n;
+    while ((n = in.read(buf, 0, buf.length)) > 0) {
+      assertTrue(n <= 100);
+      assertEquals(++reads, in.getPos());
+      total += n;
+    }
+    assertEquals(data.length, total);
+    in.close();
+  }
+
+  @Test
+  public void testError() throws IOException {
+    ChoppyInputStream choppy = new ChoppyInputStream(new byte[10000]);
+    choppy.failAfter = 5;
+    InputStream in = new PrefetchingInputStream(choppy, 2, 100);
+    byte[] buf = new byte[100];
+    try {
+      while (in.read(buf, 0, buf.length) >= 0) {
+      }
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("boom", e.getMessage());
+    }
+    in.close();
+  }
+
+  @Test
+  public void testCloseEarly() throws IOException {
+    // The background thread is blocked on a full ring when the stream is closed.
+    PrefetchingInputStream in =
+        new PrefetchingInputStream(new ByteArrayInputStream(new byte[100000]), 2, 10);
+    assertEquals(0, in.read());
+    in.close();
+    try {
+      in.read();
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testSeek() throws IOException {
+    PrefetchingInputStream in = new PrefetchingInputStream(new ChoppyInputStream(new byte[100]));
+    assertEquals(0, in.read());
+    try {
+      in.seek(0);
+      fail();
+    } catch (IOException e) {
+      assertEquals("seek not supported", e.getMessage());
+    }
+    assertFalse(in.seekToNewSource(0));
+
+    // The stream is still usable.
+    assertEquals(0, in.read());
+    in.close();
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(PrefetchingInputStreamTest.class);
+  }
+}
@@ -0,0 +1,285 @@
+package edu.umd.cloud9.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.IdentityMapper;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Progressable;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class ForkJoinJobRunnerTest {
+  private static final int NUM_FILES = 5;
+
+  static enum Count { LINES, EMPTY };
+
+  public static class LineMapper extends Mapper<LongWritable, Text, Text, LongWritable> {
+    @Override
+    public void map(LongWritable key, Text line, Context context) throws IOException,
+        InterruptedException {
+      if (line.toString().equals("fail")) {
+        throw new IOException("Bad line!");
+      }
+      context.getCounter(Count.LINES).increment(1);
+      if (line.getLength() == 0) {
+        context.getCounter(Count.EMPTY).increment(1);
+      }
+      context.write(line, key);
+    }
+  }
+
+  public static class OldLineMapper extends MapReduceBase implements
+      org.apache.hadoop.mapred.Mapper<LongWritable, Text, LongWritable, Text> {
+    @Override
+    public void map(LongWritable key, Text line, OutputCollector<LongWritable, Text> output,
+        Reporter reporter) throws IOException {
+      if (line.toString().equals("fail")) {
+        throw new IOException("Bad line!");
+      }
+      output.collect(key, line);
+    }
+  }
+
+  // Number of writers opened and closed by the output formats below.
+  private static final AtomicInteger opened = new AtomicInteger();
+  private static final AtomicInteger closed = new AtomicInteger();
+
+  public static class ClosingOutputFormat extends TextOutputFormat<Text, LongWritable> {
+    @Override
+    public RecordWriter<Text, LongWritable> getRecordWriter(TaskAttemptContext context)
+        throws IOException, InterruptedException {
+      final RecordWriter<Text, LongWritable> writer = super.getRecordWriter(context);
+      opened.incrementAndGet();
+      return new RecordWriter<Text, LongWritable>() {
+        @Override
+        public void write(Text key, LongWritable value) throws IOException,
+            InterruptedException {
+          writer.write(key, value);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+          closed.incrementAndGet();
+          writer.close(context);
+        }
+      };
+    }
+  }
+
+  public static class OldClosingOutputFormat extends
+      org.apache.hadoop.mapred.TextOutputFormat<LongWritable, Text> {
+    @Override
+    public org.apache.hadoop.mapred.RecordWriter<LongWritable, Text> getRecordWriter(
+        FileSystem fs, JobConf job, String name, Progressable progress) throws IOException {
+      final org.apache.hadoop.mapred.RecordWriter<LongWritable, Text> writer =
+          super.getRecordWriter(fs, job, name, progress);
+      opened.incrementAndGet();
+      return new org.apache.hadoop.mapred.RecordWriter<LongWritable, Text>() {
+        @Override
+        public void write(LongWritable key, Text value) throws IOException {
+          writer.write(key, value);
+        }
+
+        @Override
+        public void close(Reporter reporter) throws IOException {
+          closed.incrementAndGet();
+          writer.close(reporter);
+        }
+      };
+    }
+  }
+
+  // Writes files with 0, 100, 200, ... lines, every tenth of which is empty.
+  private static File writeInput() throws IOException {
+    File dir = Files.createTempDir();
+    File input = new File(dir, "input");
+    input.mkdir();
+    for (int i = 0; i < NUM_FILES; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < 100 * i; j++) {
+        sb.append(j % 10 == 0 ? "" : "line " + j).append('\n');
+      }
+      Files.write(sb.toString(), new File(input, "file" + i + ".txt"), Charsets.UTF_8);
+    }
+    return dir;
+  }
+
+  private static List<String> readOutput(File output) throws IOException {
+    List<String> lines = Lists.newArrayList();
+    for (File file : output.listFiles()) {
+      if (file.getName().startsWith("part-")) {
+        lines.addAll(Files.readLines(file, Charsets.UTF_8));
+      }
+    }
+    return lines;
+  }
+
+  @Test
+  public void testNewApi() throws Exception {
+    File dir = writeInput();
+    Configuration conf = new Configuration();
+    conf.setInt(ForkJoinJobRunner.THREADS_PROPERTY, 3);
+
+    Job job = Job.getInstance(conf);
+    job.setNumReduceTasks(0);
+    FileInputFormat.setInputPaths(job, new Path(new File(dir, "input").toURI()));
+    FileOutputFormat.setOutputPath(job, new Path(new File(dir, "output").toURI()));
+    job.setInputFormatClass(TextInputFormat.class);
+    job.setOutputFormatClass(TextOutputFormat.class);
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(LongWritable.class);
+    job.setMapperClass(LineMapper.class);
+
+    Counters counters = ForkJoinJobRunner.runJob(job);
+    assertEquals(1000, counters.findCounter(Count.LINES).getValue());
+    assertEquals(100, counters.findCounter(Count.EMPTY).getValue());
+    assertEquals(1000, counters.findCounter(TaskCounter.MAP_INPUT_RECORDS).getValue());
+
+    File output = new File(dir, "output");
+    assertTrue(new File(output, "_SUCCESS").exists());
+    assertEquals(1000, readOutput(output).size());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    File dir = writeInput();
+    Files.write("ok\nfail\n", new File(dir, "input/bad.txt"), Charsets.UTF_8);
+
+    Job job = Job.getInstance(new Configuration());
+    job.setNumReduceTasks(0);
+    FileInputFormat.setInputPaths(job, new Path(new File(dir, "input").toURI()));
+    FileOutputFormat.setOutputPath(job, new Path(new File(dir, "output").toURI()));
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(LongWritable.class);
+    job.setMapperClass(LineMapper.class);
+
+    try {
+      ForkJoinJobRunner.run(job, 2);
+      fail();
+    } catch (IOException e) {
+      assertEquals("Bad line!", e.getCause().getMessage());
+    }
+    assertFalse(new File(dir, "output/_SUCCESS").exists());
+  }
+
+  // A single failing task, so that it's done by the time the job fails.
+  private static File writeBadInput() throws IOException {
+    File dir = Files.createTempDir();
+    File input = new File(dir, "input");
+    input.mkdir();
+    Files.write("ok\nfail\n", new File(input, "bad.txt"), Charsets.UTF_8);
+    return dir;
+  }
+
+  @Test
+  public void testFailureClosesOutput() throws Exception {
+    File dir = writeBadInput();
+    opened.set(0);
+    closed.set(0);
+
+    Job job = Job.getInstance(new Configuration());
+    job.setNumReduceTasks(0);
+    FileInputFormat.setInputPaths(job, new Path(new File(dir, "input").toURI()));
+    FileOutputFormat.setOutputPath(job, new Path(new File(dir, "output").toURI()));
+    job.setOutputFormatClass(ClosingOutputFormat.class);
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(LongWritable.class);
+    job.setMapperClass(LineMapper.class);
+
+    try {
+      ForkJoinJobRunner.run(job, 1);
+      fail();
+    } catch (IOException e) {
+      assertEquals("Bad line!", e.getCause().getMessage());
+    }
+    assertEquals(1, opened.get());
+    assertEquals(1, closed.get());
+  }
+
+  @Test
+  public void testOldApiFailureClosesOutput() throws Exception {
+    File dir = writeBadInput();
+    opened.set(0);
+    closed.set(0);
+
+    JobConf conf = new JobConf();
+    conf.setNumReduceTasks(0);
+    org.apache.hadoop.mapred.FileInputFormat.setInputPaths(conf,
+        new Path(new File(dir, "input").toURI()));
+    org.apache.hadoop.mapred.FileOutputFormat.setOutputPath(conf,
+        new Path(new File(dir, "output").toURI()));
+    conf.setOutputFormat(OldClosingOutputFormat.class);
+    conf.setOutputKeyClass(LongWritable.class);
+    conf.setOutputValueClass(Text.class);
+    conf.setMapperClass(OldLineMapper.class);
+
+    try {
+      edu.umd.cloud9.mapred.ForkJoinJobRunner.run(conf, 1);
+      fail();
+    } catch (IOException e) {
+      assertEquals("Bad line!", e.getCause().getMessage());
+    }
+    assertEquals(1, opened.get());
+    assertEquals(1, closed.get());
+    assertFalse(new File(dir, "output/_SUCCESS").exists());
+  }
+
+  @Test
+  public void testOldApi() throws Exception {
+    File dir = writeInput();
+    JobConf conf = new JobConf();
+    conf.setInt(ForkJoinJobRunner.THREADS_PROPERTY, 2);
+    conf.setNumReduceTasks(0);
+    org.apache.hadoop.mapred.FileInputFormat.setInputPaths(conf,
+        new Path(new File(dir, "input").toURI()));
+    org.apache.hadoop.mapred.FileOutputFormat.setOutputPath(conf,
+        new Path(new File(dir, "output").toURI()));
+    conf.setInputFormat(org.apache.hadoop.mapred.TextInputFormat.class);
+    conf.setOutputFormat(org.apache.hadoop.mapred.TextOutputFormat.class);
+    conf.setOutputKeyClass(LongWritable.class);
+    conf.setOutputValueClass(Text.class);
+    conf.setMapperClass(IdentityMapper.class);
+
+    org.apache.hadoop.mapred.Counters counters = edu.umd.cloud9.mapred.ForkJoinJobRunner
+        .runJob(conf);
+    assertEquals(1000, counters.getCounter(TaskCounter.MAP_INPUT_RECORDS));
+
+    File output = new File(dir, "output");
+    assertTrue(new File(output, "_SUCCESS").exists());
+    assertEquals(1000, readOutput(output).size());
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(ForkJoinJobRunnerTest.class);
+  }
+}
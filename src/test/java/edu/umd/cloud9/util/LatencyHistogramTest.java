@@ -0,0 +1,60 @@
+package edu.umd.cloud9.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    // Every value must fall inside the range of its bucket, and buckets must be contiguous.
+    long[] values = { 0, 1, 31, 32, 33, 63, 64, 100, 1000, 123456789L, Long.MAX_VALUE };
+    for (long v : values) {
+      int b = LatencyHistogram.bucket(v);
+      assertTrue(LatencyHistogram.lowestEquivalentValue(b) <= v);
+      assertTrue(LatencyHistogram.highestEquivalentValue(b) >= v);
+    }
+
+    for (int b = 0; b < LatencyHistogram.bucket(Long.MAX_VALUE); b++) {
+      assertEquals(LatencyHistogram.highestEquivalentValue(b) + 1,
+          LatencyHistogram.lowestEquivalentValue(b + 1));
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram h = new LatencyHistogram();
+    assertEquals(0, h.getPercentile(50));
+
+    Random r = new Random(42);
+    long[] values = new long[100000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) (Math.exp(r.nextDouble() * 15));
+      h.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertEquals(values.length, h.getCount());
+    assertEquals(values[values.length - 1], h.getMax());
+    for (double p : new double[] { 50, 90, 99, 99.9 }) {
+      long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+      long actual = h.getPercentile(p);
+      assertTrue(actual >= expected);
+      assertTrue(actual <= expected + expected / 16 + 1);
+    }
+
+    h.reset();
+    assertEquals(0, h.getCount());
+    assertEquals(0, h.getMax());
+  }
+
+  public static junit.framework.Test suite() {
+    return new JUnit4TestAdapter(LatencyHistogramTest.class);
+  }
+}